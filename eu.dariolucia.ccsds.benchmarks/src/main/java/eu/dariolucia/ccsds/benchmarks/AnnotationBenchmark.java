@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.AnnotatedObject;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the annotations attached to a TM frame object, from none (no annotation storage allocated) to more than
+ * {@link AnnotatedObject#INLINE_ANNOTATIONS} (map storage). Run with the GC profiler (enabled by default by the
+ * {@link BenchmarkRunner}) and look at gc.alloc.rate.norm to get the bytes allocated per frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AnnotationBenchmark {
+
+    private static final AnnotationKey<Integer> SOURCE_ID = new AnnotationKey<>("SOURCE_ID", Integer.class);
+
+    private static final AnnotationKey<String> STATION = new AnnotationKey<>("STATION", String.class);
+
+    private static final Integer SOURCE = 1;
+
+    @Param({"0", "1", "4", "5"})
+    private int annotations;
+
+    private byte[] tmFrame;
+
+    private final Instant receptionTime = Instant.now();
+
+    private final int[] correctedSymbols = new int[5];
+
+    @Setup
+    public void setup() {
+        tmFrame = BenchmarkData.tmFrame(0, 200).getFrame();
+    }
+
+    @Benchmark
+    public Object annotateTmFrame() {
+        TmTransferFrame frame = new TmTransferFrame(tmFrame, true);
+        switch (annotations) {
+            case 5:
+                frame.setAnnotationValue(STATION, "STATION");
+                // fall through
+            case 4:
+                frame.setAnnotationValue(SOURCE_ID, SOURCE);
+                frame.setAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS, correctedSymbols);
+                frame.setAnnotationValue(AnnotationKey.QUALITY, Boolean.TRUE);
+                // fall through
+            case 1:
+                frame.setAnnotationValue(AnnotationKey.RECEPTION_TIME, receptionTime);
+                // fall through
+            default:
+                break;
+        }
+        return frame.getAnnotationValue(AnnotationKey.RECEPTION_TIME);
+    }
+}
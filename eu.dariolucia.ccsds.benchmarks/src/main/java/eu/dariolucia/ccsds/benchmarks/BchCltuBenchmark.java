@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.BchCltuAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the BCH CLTU encoding and of the CLTU decoding with the different {@link BchCltuAlgorithm.DecodingMode}s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BchCltuBenchmark {
+
+    @Param({"64", "1024"})
+    private int length;
+
+    private final BchCltuAlgorithm bch = new BchCltuAlgorithm();
+
+    private byte[] frame;
+
+    private byte[] cltu;
+
+    private byte[] output;
+
+    private final int[] correctedCodeblocks = new int[1];
+
+    @Setup
+    public void setup() {
+        frame = new byte[length];
+        new Random(length).nextBytes(frame);
+        cltu = bch.encodeCltu(frame);
+        output = new byte[bch.computeFrameLength(cltu.length)];
+    }
+
+    @Benchmark
+    public byte[] encodeCltu() {
+        return bch.encodeCltu(frame);
+    }
+
+    @Benchmark
+    public byte[] decodeCltu(Decoding decoding) {
+        return bch.decodeCltu(cltu, decoding.mode);
+    }
+
+    @Benchmark
+    public int decodeCltuInto(Decoding decoding) {
+        return bch.decodeCltu(cltu, decoding.mode, output, 0, correctedCodeblocks);
+    }
+
+    /**
+     * Decoding mode, kept in a separate state so that the encoding benchmark is not repeated for each mode.
+     */
+    @State(Scope.Thread)
+    public static class Decoding {
+
+        @Param({"NONE", "ERROR_DETECTION", "ERROR_CORRECTION"})
+        private BchCltuAlgorithm.DecodingMode mode;
+    }
+}
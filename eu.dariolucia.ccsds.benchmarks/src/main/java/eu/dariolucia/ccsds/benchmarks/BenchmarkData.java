@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.builder.AosTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.datalink.builder.TmTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.builder.SpacePacketBuilder;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+
+import java.util.Random;
+
+/**
+ * Factory of the test data (space packets and transfer frames) shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final int SPACECRAFT_ID = 123;
+
+    static final int FRAME_LENGTH = 1115;
+
+    private BenchmarkData() {
+        // Private constructor
+    }
+
+    /**
+     * Create a telemetry space packet with random user data.
+     *
+     * @param apid the APID of the packet
+     * @param sequenceCount the packet sequence count
+     * @param length the total length of the packet, including the primary header
+     * @param random the source of the user data
+     * @return the space packet
+     */
+    static SpacePacket spacePacket(int apid, int sequenceCount, int length, Random random) {
+        byte[] userData = new byte[length - SpacePacket.SP_PRIMARY_HEADER_LENGTH];
+        random.nextBytes(userData);
+        SpacePacketBuilder builder = SpacePacketBuilder.create()
+                .setTelemetryPacket()
+                .setApid(apid)
+                .setSequenceFlag(SpacePacket.SequenceFlagType.UNSEGMENTED)
+                .setPacketSequenceCount(sequenceCount);
+        builder.addData(userData);
+        return builder.build();
+    }
+
+    /**
+     * Create a TM frame with FECF, filled up with space packets of the given length. The last packet spills over.
+     *
+     * @param virtualChannelFrameCount the virtual channel frame count
+     * @param packetLength the length of the packets
+     * @return the TM frame
+     */
+    static TmTransferFrame tmFrame(int virtualChannelFrameCount, int packetLength) {
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(FRAME_LENGTH, 0, false, true)
+                .setSpacecraftId(SPACECRAFT_ID)
+                .setVirtualChannelId(1)
+                .setMasterChannelFrameCount(virtualChannelFrameCount)
+                .setVirtualChannelFrameCount(virtualChannelFrameCount)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(false)
+                .setSegmentLengthIdentifier(3);
+        Random random = new Random(virtualChannelFrameCount);
+        int sequenceCount = 0;
+        while (!builder.isFull()) {
+            builder.addSpacePacket(spacePacket(100, sequenceCount++, packetLength, random).getPacket());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create an AOS frame (M_PDU, no FHEC, no insert zone, no OCF) with FECF, filled up with space packets of the
+     * given length. The last packet spills over.
+     *
+     * @param virtualChannelFrameCount the virtual channel frame count
+     * @param packetLength the length of the packets
+     * @return the AOS frame
+     */
+    static AosTransferFrame aosFrame(int virtualChannelFrameCount, int packetLength) {
+        AosTransferFrameBuilder builder = AosTransferFrameBuilder.create(FRAME_LENGTH, false, 0, AosTransferFrame.UserDataType.M_PDU, false, true)
+                .setSpacecraftId(SPACECRAFT_ID)
+                .setVirtualChannelId(1)
+                .setVirtualChannelFrameCount(virtualChannelFrameCount)
+                .setReplayFlag(false)
+                .setVirtualChannelFrameCountUsageFlag(false);
+        Random random = new Random(virtualChannelFrameCount);
+        int sequenceCount = 0;
+        while (!builder.isFull()) {
+            builder.addSpacePacket(spacePacket(100, sequenceCount++, packetLength, random).getPacket());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.Crc16Algorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the CRC-16 computation (FECF of TM/AOS/TC frames) for the available {@link Crc16Algorithm.Engine}s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Crc16Benchmark {
+
+    @Param({"BITWISE", "TABLE", "SLICE_BY_8"})
+    private Crc16Algorithm.Engine engine;
+
+    @Param({"223", "1115", "2048"})
+    private int length;
+
+    private byte[] frame;
+
+    @Setup
+    public void setup() {
+        frame = new byte[length];
+        new Random(length).nextBytes(frame);
+    }
+
+    @Benchmark
+    public short crc16() {
+        return Crc16Algorithm.getCrc16(frame, 0, frame.length, engine);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux.MultiStationFrameMerger;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link MultiStationFrameMerger}, merging the frames received from several ground stations. Each
+ * invocation processes 128 frames per source, with copies of the same frame received one after the other and different
+ * numbers of corrected Reed-Solomon symbols: the reported throughput is expressed in merged frames per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameMergerBenchmark {
+
+    private static final int FRAMES = 128;
+
+    /**
+     * Number of sources.
+     */
+    @Param({"2", "4"})
+    private int sources;
+
+    private final List<TmTransferFrame[]> frames = new ArrayList<>(FRAMES);
+
+    private MultiStationFrameMerger merger;
+
+    private long mergedFrames;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < FRAMES; ++i) {
+            TmTransferFrame[] copies = new TmTransferFrame[sources];
+            for (int s = 0; s < sources; ++s) {
+                copies[s] = BenchmarkData.tmFrame(i, 64);
+                copies[s].setAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS, new int[] { (i + s) % sources, 0, 0, 0, 0 });
+            }
+            frames.add(copies);
+        }
+        // The merger remembers 64 frames, less than the frames of an invocation: copies are never taken as late duplicates
+        merger = new MultiStationFrameMerger(sources, 32, 1, TimeUnit.SECONDS, false, frame -> ++mergedFrames);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long mergeFrames() {
+        for (TmTransferFrame[] copies : frames) {
+            for (int s = 0; s < sources; ++s) {
+                merger.processFrame(s, copies[s]);
+            }
+        }
+        return mergedFrames;
+    }
+}
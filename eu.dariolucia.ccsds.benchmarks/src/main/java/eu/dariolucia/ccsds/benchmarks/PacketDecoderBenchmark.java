@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.encdec.definition.Definition;
+import eu.dariolucia.ccsds.encdec.structure.DecodingException;
+import eu.dariolucia.ccsds.encdec.structure.DecodingResult;
+import eu.dariolucia.ccsds.encdec.structure.EncodingException;
+import eu.dariolucia.ccsds.encdec.structure.impl.DefaultPacketDecoder;
+import eu.dariolucia.ccsds.encdec.structure.impl.DefaultPacketEncoder;
+import eu.dariolucia.ccsds.encdec.structure.resolvers.PathLocationBasedResolver;
+import eu.dariolucia.ccsds.encdec.value.BitString;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link DefaultPacketDecoder} on two packet definitions: DEF1 mixes integers, booleans, bit/octet/
+ * character strings and CUC/relative times on non-aligned positions, DEF2 contains IEEE and MIL-STD real values and
+ * CDS/CUC times.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketDecoderBenchmark {
+
+    private DefaultPacketDecoder decoder;
+
+    private byte[] def1Packet;
+
+    private byte[] def2Packet;
+
+    @Setup
+    public void setup() throws IOException, EncodingException {
+        Definition definition;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("benchmark_definitions.xml")) {
+            definition = Definition.load(in);
+        }
+        DefaultPacketEncoder encoder = new DefaultPacketEncoder(definition);
+
+        Map<String, Object> map = new TreeMap<>();
+        map.put("DEF1.PARAM1", 2);
+        map.put("DEF1.PARAM2", 124.25f);
+        map.put("DEF1.PARAM3", 61);
+        map.put("DEF1.PARAM4", true);
+        map.put("DEF1.PARAM5", false);
+        map.put("DEF1.PARAM6", new BitString(new byte[]{0x05, 0x50}, 13));
+        map.put("DEF1.PARAM7", new byte[]{0x23, 0x12, (byte) 0x92});
+        map.put("DEF1.PARAM8", "Hello01");
+        map.put("DEF1.PARAM9", true);
+        map.put("DEF1.PARAM10", Instant.ofEpochSecond(123456789, 0));
+        map.put("DEF1.PARAM11", Duration.ofSeconds(127, 0));
+        map.put("DEF1.PARAM12", 7);
+        def1Packet = encoder.encode("DEF1", new PathLocationBasedResolver(map));
+
+        map.clear();
+        map.put("DEF2.PARAM1", 1);
+        map.put("DEF2.PARAM2", 3);
+        map.put("DEF2.PARAM3", 7);
+        map.put("DEF2.PARAM4", 432.345633);
+        map.put("DEF2.PARAM5", 1.234);
+        map.put("DEF2.PARAM6", 432.345633);
+        map.put("DEF2.PARAM7", Instant.ofEpochSecond(123456789, 123456000));
+        map.put("DEF2.PARAM8", Instant.ofEpochSecond(123456789, 123000000));
+        def2Packet = encoder.encode("DEF2", new PathLocationBasedResolver(map));
+
+        decoder = new DefaultPacketDecoder(definition);
+    }
+
+    @Benchmark
+    public DecodingResult decodeDef1() throws DecodingException {
+        return decoder.decode("DEF1", def1Packet);
+    }
+
+    @Benchmark
+    public DecodingResult decodeDef2() throws DecodingException {
+        return decoder.decode("DEF2", def2Packet);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.RandomizerAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the in-place TM and CLTU (de)randomization. Since the randomization is an XOR with a fixed pattern,
+ * applying it on every invocation keeps the buffer content bounded to two states.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomizerBenchmark {
+
+    @Param({"1115", "1279", "2048"})
+    private int length;
+
+    private byte[] frame;
+
+    @Setup
+    public void setup() {
+        frame = new byte[length];
+        new Random(length).nextBytes(frame);
+    }
+
+    @Benchmark
+    public byte[] randomizeTm() {
+        RandomizerAlgorithm.randomizeFrameTm(frame);
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] randomizeTmOffset() {
+        // Skip an attached sync marker, as done when processing CADUs
+        RandomizerAlgorithm.randomizeFrameTm(frame, 4, frame.length - 4);
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] randomizeCltu() {
+        RandomizerAlgorithm.randomizeFrameCltu(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the RS(255,223) encoding, error detection and error correction of interleaved TM frames.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReedSolomonBenchmark {
+
+    /**
+     * Number of corrupted symbols per codeword in the frame used by {@link #correctFrame()}.
+     */
+    private static final int ERRORS_PER_CODEWORD = 8;
+
+    @Param({"1", "5"})
+    private int interleavingDepth;
+
+    private final ReedSolomonAlgorithm rs = ReedSolomonAlgorithm.TM_255_223;
+
+    private byte[] frame;
+
+    private byte[] encoded;
+
+    private byte[] corrupted;
+
+    private byte[] output;
+
+    private final int[] correctedSymbols = new int[8];
+
+    @Setup
+    public void setup() {
+        frame = new byte[223 * interleavingDepth];
+        new Random(interleavingDepth).nextBytes(frame);
+        encoded = rs.encodeFrame(frame, interleavingDepth);
+        corrupted = encoded.clone();
+        // Symbol i belongs to codeword i % interleavingDepth: corrupt the same number of symbols in each codeword
+        for (int k = 0; k < ERRORS_PER_CODEWORD; ++k) {
+            for (int c = 0; c < interleavingDepth; ++c) {
+                corrupted[k * 20 * interleavingDepth + c] ^= 0x5A;
+            }
+        }
+        output = new byte[encoded.length];
+    }
+
+    @Benchmark
+    public byte[] encodeFrame() {
+        return rs.encodeFrame(frame, interleavingDepth);
+    }
+
+    @Benchmark
+    public int encodeFrameInto() {
+        return rs.encodeFrame(frame, 0, frame.length, interleavingDepth, output, 0);
+    }
+
+    @Benchmark
+    public byte[] decodeFrameChecked() {
+        return rs.decodeFrame(encoded, interleavingDepth, true);
+    }
+
+    @Benchmark
+    public boolean checkFrame() {
+        return rs.checkFrame(encoded, 0, encoded.length, interleavingDepth);
+    }
+
+    @Benchmark
+    public boolean correctFrame() {
+        // The correction is performed in place: restore the corrupted frame first
+        System.arraycopy(corrupted, 0, output, 0, corrupted.length);
+        return rs.correctFrame(output, 0, output.length, interleavingDepth, correctedSymbols);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.ExtractedPacket;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.IVirtualChannelReceiverOutput;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.PacketBufferPool;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.PacketGap;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.PacketView;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.TmReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the space packet extraction performed by a {@link TmReceiverVirtualChannel} in packet mode. Each
+ * invocation processes a full cycle of the virtual channel frame counter (256 frames), so that no gap is detected
+ * between invocations: the reported throughput is expressed in frames per second. Packets are delivered either as
+ * byte arrays or as {@link PacketView} objects, backed by a {@link PacketBufferPool}, frame by frame or at the end of
+ * the batch of frames.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SpacePacketExtractionBenchmark {
+
+    private static final int FRAMES = 256;
+
+    /**
+     * Length of the generated space packets: smaller than, comparable to and larger than the frame data field.
+     */
+    @Param({"64", "1000", "4096"})
+    private int packetLength;
+
+    /**
+     * If true, packets are delivered as views.
+     */
+    @Param({"false", "true"})
+    private boolean packetViews;
+
+    private final List<TmTransferFrame> frames = new ArrayList<>(FRAMES);
+
+    private TmReceiverVirtualChannel receiver;
+
+    private long extractedPackets;
+
+    @Setup
+    public void setup() {
+        TmSenderVirtualChannel sender = new TmSenderVirtualChannel(BenchmarkData.SPACECRAFT_ID, 1, VirtualChannelAccessMode.PACKET, true, BenchmarkData.FRAME_LENGTH, () -> 0, null);
+        sender.register((vc, generatedFrame, bufferedBytes) -> {
+            if (frames.size() < FRAMES) {
+                frames.add((TmTransferFrame) generatedFrame);
+            }
+        });
+        Random random = new Random(packetLength);
+        int sequenceCount = 0;
+        while (frames.size() < FRAMES) {
+            sender.dispatch(BenchmarkData.spacePacket(100, sequenceCount++ & 0x3FFF, packetLength, random));
+        }
+        receiver = new TmReceiverVirtualChannel(1, VirtualChannelAccessMode.PACKET, false);
+        // All the views of a batch are kept until the end of the batch
+        receiver.setPacketBufferPool(packetViews ? new PacketBufferPool(1024) : null);
+        receiver.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                extractedPackets += packet.length;
+            }
+
+            @Override
+            public void spacePacketViewExtracted(AbstractReceiverVirtualChannel<?> vc, AbstractTransferFrame firstFrame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                extractedPackets += packet.getLength();
+            }
+
+            @Override
+            public void spacePacketsExtracted(AbstractReceiverVirtualChannel<?> vc, List<ExtractedPacket> packets) {
+                for (ExtractedPacket p : packets) {
+                    extractedPackets += p.getPacketView() != null ? p.getPacketView().getLength() : p.getPacket().length;
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long extractPackets() {
+        for (TmTransferFrame frame : frames) {
+            receiver.processFrame(frame);
+        }
+        return extractedPackets;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long extractPacketsBatch() {
+        receiver.processFrames(frames);
+        return extractedPackets;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.IPacket;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the generation of TM frames with FECF by a {@link TmSenderVirtualChannel} in push mode. Each invocation
+ * dispatches enough space packets to generate a fixed number of frames: the reported throughput is expressed in frames
+ * per second. Packets are dispatched either as {@link IPacket} objects or as direct {@link ByteBuffer} objects.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TmSenderVirtualChannelBenchmark {
+
+    private static final int FRAMES = 64;
+
+    /**
+     * Length of the dispatched space packets: smaller than, comparable to and larger than the frame data field.
+     */
+    @Param({"64", "1000", "4096"})
+    private int packetLength;
+
+    private final List<IPacket> packets = new ArrayList<>();
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+
+    private TmSenderVirtualChannel sender;
+
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        sender = new TmSenderVirtualChannel(BenchmarkData.SPACECRAFT_ID, 1, VirtualChannelAccessMode.PACKET, true, BenchmarkData.FRAME_LENGTH, () -> 0, null);
+        sender.register((vc, generatedFrame, bufferedBytes) -> this.blackhole.consume(generatedFrame));
+        // Enough packets to fill up exactly FRAMES frames
+        Random random = new Random(packetLength);
+        int totalLength = FRAMES * sender.getMaxUserDataLength();
+        int sequenceCount = 0;
+        while (totalLength > 0) {
+            int length = Math.min(packetLength, totalLength);
+            if (length < SpacePacket.SP_PRIMARY_HEADER_LENGTH + 1) {
+                // Enlarge the previous packet, to avoid a packet too short
+                length += packets.remove(packets.size() - 1).getLength();
+            }
+            packets.add(BenchmarkData.spacePacket(100, sequenceCount++ & 0x3FFF, length, random));
+            totalLength -= length;
+        }
+        for (IPacket p : packets) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(p.getLength());
+            buffer.put(p.getPacket()).flip();
+            buffers.add(buffer);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int dispatchPackets() {
+        return sender.dispatch(packets);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int dispatchBuffers() {
+        return sender.dispatchBuffers(buffers);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.builder.TmTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the construction of a TM frame with FECF, containing five full space packets and the first part of a
+ * sixth one (so that the first header pointer and the FECF are computed). The frame is built either by a new builder
+ * or by a builder that is reset and re-used for each frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TmTransferFrameBuilderBenchmark {
+
+    private static final int PACKETS = 6;
+
+    private final byte[][] packets = new byte[PACKETS][];
+
+    private int counter;
+
+    private TmTransferFrameBuilder reusedBuilder;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(PACKETS);
+        for (int i = 0; i < PACKETS; ++i) {
+            packets[i] = BenchmarkData.spacePacket(100, i, 200, random).getPacket();
+        }
+        reusedBuilder = TmTransferFrameBuilder.create(BenchmarkData.FRAME_LENGTH, 0, false, true)
+                .setSpacecraftId(BenchmarkData.SPACECRAFT_ID)
+                .setVirtualChannelId(1)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(false)
+                .setSegmentLengthIdentifier(3);
+    }
+
+    @Benchmark
+    public TmTransferFrame build() {
+        int count = counter++ & 0xFF;
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(BenchmarkData.FRAME_LENGTH, 0, false, true)
+                .setSpacecraftId(BenchmarkData.SPACECRAFT_ID)
+                .setVirtualChannelId(1)
+                .setMasterChannelFrameCount(count)
+                .setVirtualChannelFrameCount(count)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(false)
+                .setSegmentLengthIdentifier(3);
+        for (byte[] packet : packets) {
+            builder.addSpacePacket(packet);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public TmTransferFrame buildReused() {
+        int count = counter++ & 0xFF;
+        TmTransferFrameBuilder builder = reusedBuilder.reset()
+                .setMasterChannelFrameCount(count)
+                .setVirtualChannelFrameCount(count);
+        for (byte[] packet : packets) {
+            builder.addSpacePacket(packet);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.benchmarks;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrameView;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrameView;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the construction of TM and AOS frame objects from raw data, including the FECF verification, followed
+ * by the access to the header fields typically used by the virtual channel demultiplexing. The same access is measured
+ * on re-pointable frame views, which do not allocate per frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransferFrameParsingBenchmark {
+
+    private byte[] tmFrame;
+
+    private byte[] aosFrame;
+
+    private final TmTransferFrameView tmView = new TmTransferFrameView(true);
+
+    private final AosTransferFrameView aosView = new AosTransferFrameView(false, 0, AosTransferFrame.UserDataType.M_PDU, false, true);
+
+    @Setup
+    public void setup() {
+        tmFrame = BenchmarkData.tmFrame(0, 200).getFrame();
+        aosFrame = BenchmarkData.aosFrame(0, 200).getFrame();
+    }
+
+    @Benchmark
+    public void parseTmFrame(Blackhole bh) {
+        TmTransferFrame frame = new TmTransferFrame(tmFrame, true);
+        bh.consume(frame.isValid());
+        bh.consume(frame.getSpacecraftId());
+        bh.consume(frame.getVirtualChannelId());
+        bh.consume(frame.getVirtualChannelFrameCount());
+        bh.consume(frame.getFirstHeaderPointer());
+    }
+
+    @Benchmark
+    public void parseAosFrame(Blackhole bh) {
+        AosTransferFrame frame = new AosTransferFrame(aosFrame, false, 0, AosTransferFrame.UserDataType.M_PDU, false, true);
+        bh.consume(frame.isValid());
+        bh.consume(frame.getSpacecraftId());
+        bh.consume(frame.getVirtualChannelId());
+        bh.consume(frame.getVirtualChannelFrameCount());
+        bh.consume(frame.getFirstHeaderPointer());
+    }
+
+    @Benchmark
+    public void wrapTmFrame(Blackhole bh) {
+        TmTransferFrameView frame = tmView.wrap(tmFrame);
+        bh.consume(frame.isValid());
+        bh.consume(frame.getSpacecraftId());
+        bh.consume(frame.getVirtualChannelId());
+        bh.consume(frame.getVirtualChannelFrameCount());
+        bh.consume(frame.getFirstHeaderPointer());
+    }
+
+    @Benchmark
+    public void wrapAosFrame(Blackhole bh) {
+        AosTransferFrameView frame = aosView.wrap(aosFrame);
+        bh.consume(frame.isValid());
+        bh.consume(frame.getSpacecraftId());
+        bh.consume(frame.getVirtualChannelId());
+        bh.consume(frame.getVirtualChannelFrameCount());
+        bh.consume(frame.getFirstHeaderPointer());
+    }
+}
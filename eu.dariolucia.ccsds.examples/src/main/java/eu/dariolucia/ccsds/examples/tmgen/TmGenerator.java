@@ -33,6 +33,7 @@ import eu.dariolucia.ccsds.tmtc.coding.encoder.TmRandomizerEncoder;
 import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
 import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
 import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.mux.TmMasterChannelMuxer;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util.FramePacer;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
 import eu.dariolucia.ccsds.tmtc.ocf.builder.ClcwBuilder;
 import eu.dariolucia.ccsds.tmtc.ocf.pdu.AbstractOcf;
@@ -237,18 +238,17 @@ public class TmGenerator {
 
         // Now we are ready to start the generation
 
-        // Compute the sleep time per frame, considering also the encoding information. Compute the frame total length:
+        // Compute the frame rate, considering also the encoding information. Compute the frame total length:
         // - frame length
         // - if ASM is present, add 4 bytes (0x1A, 0xCF, 0xFC, 0x1D)
         // - if RS is present, add 32 bytes for each 223 bytes, so 32 * interleaving depth
         int totalFrameLength = this.frameLength;
         totalFrameLength += this.useAsm ? TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER.length : 0;
         totalFrameLength += this.useRs ? 32 * (this.frameLength / 223) : 0;
-        int waitTimeMs = (int) Math.round(1000.0 / (this.bitrate / (double) (totalFrameLength * 8)));
         // Create a map to keep track of the APID counter
         Map<Integer, AtomicInteger> apid2counter = new HashMap<>();
-        // In this example, this loop will go forever and no separate thread is used to start the generation
-        while(this.running) {
+        // In this example, the pacer will go forever on the caller thread, one frame per slot at the configured bitrate
+        FramePacer pacer = new FramePacer(FramePacer.frameRate(this.bitrate, totalFrameLength), () -> {
             // Pick a VC
             int vcToGenerate = selectRandomVc(vcChoiceSet);
             // If it is VC 7, then generate an idle frame
@@ -261,20 +261,21 @@ public class TmGenerator {
                     // Pick a packet for that VC
                     PacketDefinition selectedPacketDefinition = selectRandomPacket(vc2packets.get(vcToGenerate));
                     // Generate the packet
-                    SpacePacket packet = generatePacket(encoder, selectedPacketDefinition, apid2counter);
+                    SpacePacket packet;
+                    try {
+                        packet = generatePacket(encoder, selectedPacketDefinition, apid2counter);
+                    } catch (EncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
                     // Send the packet to the VC
                     vc2sender.get(vcToGenerate).dispatch(packet);
                     // Increase the amount of written data
                     writtenData += packet.getLength();
                 }
             }
-            // Sleep for a computed amount of milliseconds, depending on the bitrate
-            try {
-                Thread.sleep(waitTimeMs);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+            return true;
+        }, null, FramePacer.DEFAULT_MAX_CATCH_UP_FRAMES);
+        pacer.run();
         // That's it
     }
 
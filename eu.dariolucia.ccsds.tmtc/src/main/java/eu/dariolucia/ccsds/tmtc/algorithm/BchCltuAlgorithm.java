@@ -16,14 +16,18 @@
 
 package eu.dariolucia.ccsds.tmtc.algorithm;
 
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
  * This class contains the algorithm to encode and check CLTUs using BCH CCSDS algorithm for TC frames, according
- * to the specification defined in CCSDS 231.0-B-3. The code is not optimized and it is fairly naive, but follows
- * strictly the standard specification, so that is can be exactly correlated to the block diagram provided in
- * CCSDS 231.0-B-3, Figure 3-2.
+ * to the specification defined in CCSDS 231.0-B-3. The bitwise shift register implementation follows strictly the
+ * standard specification, so that is can be exactly correlated to the block diagram provided in CCSDS 231.0-B-3,
+ * Figure 3-2: it is used to pre-compute a 256-entry lookup table, which is then used for encoding and decoding one
+ * byte at a time.
+ * <p>
+ * When decoding, the codeblocks can be optionally checked (error detection) or checked and corrected (single bit error
+ * correction), as allowed by CCSDS 231.0-B-3, 3.5. Since the minimum distance of the (63,56) modified BCH code is 4,
+ * in correction mode all single bit errors are corrected and all double bit errors are detected.
  */
 public class BchCltuAlgorithm {
 
@@ -44,6 +48,65 @@ public class BchCltuAlgorithm {
      * The default CLTU algorithm to be used (CCSDS compliant).
      */
     private static final BchCltuAlgorithm DEFAULT_CLTU_ALGORITHM = new BchCltuAlgorithm();
+    /**
+     * Number of information bytes in a codeblock.
+     */
+    private static final int CODEBLOCK_INFORMATION_LENGTH = 7;
+    /**
+     * Number of bytes in a codeblock (information bytes + parity byte).
+     */
+    private static final int CODEBLOCK_LENGTH = 8;
+    /**
+     * Marker for syndromes that do not correspond to a single bit error.
+     */
+    private static final int UNCORRECTABLE = -1;
+    /**
+     * Lookup table: for each possible input (the 7 bits of the shift register shifted left by one and XOR-ed with the
+     * value to ingest), the resulting state of the shift register.
+     */
+    private static final byte[] ENCODING_TABLE = new byte[256];
+    /**
+     * Lookup table: for each possible syndrome, the position of the single bit error in the codeblock (0-55 for the
+     * information bits, 56-62 for the parity bits, starting from the most significant bit), or {@link #UNCORRECTABLE}.
+     */
+    private static final int[] SYNDROME_TABLE = new int[128];
+
+    static {
+        for (int i = 0; i < ENCODING_TABLE.length; ++i) {
+            ENCODING_TABLE[i] = (byte) ingestValue((short) 0, (byte) i);
+        }
+        Arrays.fill(SYNDROME_TABLE, UNCORRECTABLE);
+        // single bit errors in the information bits: the syndrome is the shift register state of the error pattern
+        byte[] errorPattern = new byte[CODEBLOCK_INFORMATION_LENGTH];
+        for (int bit = 0; bit < CODEBLOCK_INFORMATION_LENGTH * 8; ++bit) {
+            Arrays.fill(errorPattern, (byte) 0);
+            errorPattern[bit / 8] = (byte) (0x80 >>> (bit % 8));
+            SYNDROME_TABLE[computeShiftRegister(errorPattern, 0)] = bit;
+        }
+        // single bit errors in the parity bits: the syndrome has only the corresponding bit set
+        for (int bit = 0; bit < 7; ++bit) {
+            SYNDROME_TABLE[0b0100_0000 >>> bit] = CODEBLOCK_INFORMATION_LENGTH * 8 + bit;
+        }
+    }
+
+    /**
+     * The decoding mode, as defined by CCSDS 231.0-B-3, 3.5.
+     */
+    public enum DecodingMode {
+        /**
+         * The parity bytes are discarded without any check.
+         */
+        NONE,
+        /**
+         * Codeblocks are checked: a codeblock with errors causes the rejection of the CLTU.
+         */
+        ERROR_DETECTION,
+        /**
+         * Codeblocks are checked and single bit errors are corrected: a codeblock with more than one bit in error
+         * causes the rejection of the CLTU.
+         */
+        ERROR_CORRECTION
+    }
 
     /**
      * This method encodes a TC frame (randomized or not) into a CLTU using the default BCH algorithm (as per CCSDS
@@ -156,6 +219,22 @@ public class BchCltuAlgorithm {
         return (short) (currentShiftRegisterState & 0b0111_1111);
     }
 
+    /**
+     * This method computes the state of the shift register after the ingestion of the 7 information bytes of a
+     * codeblock, starting from the provided offset, using the pre-computed lookup table.
+     *
+     * @param data the data containing the codeblock
+     * @param offset the offset of the first information byte of the codeblock
+     * @return the state of the shift register: the first 7 LSB are significant
+     */
+    private static int computeShiftRegister(byte[] data, int offset) {
+        int state = 0;
+        for (int i = offset; i < offset + CODEBLOCK_INFORMATION_LENGTH; ++i) {
+            state = ENCODING_TABLE[((state << 1) ^ data[i]) & 0xFF];
+        }
+        return state;
+    }
+
     /**
      * This method performs a CLTU BCH encoding of the provided frame using the pre-computer lookup table as per
      * CCSDS 231.0-B-3, 3.3.
@@ -166,57 +245,34 @@ public class BchCltuAlgorithm {
      * @return the BCH-encoded CLTU
      */
     public byte[] encodeCltu(byte[] frame) {
-        // payload length of the CLTU: if there are missing bytes to reach this end, fill bytes will be used
-        int cltuPayloadLength = (frame.length / 7 + (frame.length % 7 > 0 ? 1 : 0)) * 8;
-        // total length of the CLTU
-        int cltuTotalLength = effectivePrefix.length + cltuPayloadLength + effectiveSuffix.length;
-
-        // allocate the CLTU output buffer...
-        ByteBuffer cltuOutputBuffer = ByteBuffer.allocate(cltuTotalLength);
-        // ...and keep track of the number of payload bytes currently written in the CLTU: required to add fill bytes if necessary
-        int cltuWrittenBytes = 0;
-
+        // number of code blocks: if there are missing bytes to reach this end, fill bytes will be used
+        int codeblocks = (frame.length / CODEBLOCK_INFORMATION_LENGTH + (frame.length % CODEBLOCK_INFORMATION_LENGTH > 0 ? 1 : 0));
+        // allocate the CLTU output buffer
+        byte[] cltu = new byte[effectivePrefix.length + codeblocks * CODEBLOCK_LENGTH + effectiveSuffix.length];
         // add the prefix
-        cltuOutputBuffer.put(effectivePrefix);
-
+        System.arraycopy(effectivePrefix, 0, cltu, 0, effectivePrefix.length);
+        int cltuIndex = effectivePrefix.length;
         // index used to read the frame bytes, one byte at a time
         int currentFrameIndex = 0;
-        // index in the current code block: when 7 is reached (56 bits processed), the parity byte must be added and
-        // we need to start with the next code block
-        int currentBlockIndex = 0;
-        // the state of the shift register
-        short currentShiftRegisterState = 0;
-        // encode the CLTU body
-        while (cltuWrittenBytes < cltuPayloadLength) {
-            // take the next byte either from the frame (if you can) or from the fill byte
-            byte valueToProcess;
-            if (currentFrameIndex < frame.length) {
-                valueToProcess = frame[currentFrameIndex];
-                ++currentFrameIndex;
-            } else {
-                valueToProcess = effectiveFillByte;
-            }
-            // the value goes straight to the output buffer...
-            cltuOutputBuffer.put(valueToProcess);
-            ++cltuWrittenBytes;
-            // ...and the state of the shift register by processing the bits one by one is computed
-            currentShiftRegisterState = ingestValue(currentShiftRegisterState, valueToProcess);
-            // let's increment the code block index
-            currentBlockIndex++;
-            // if we are at the end of the code block, then we need to compute and add the parity byte: complement
-            // the 7 bits of the registry and set the filler bit to 0 (ref. CCSDS 231.0-B-3, 3.2.3)
-            if (currentBlockIndex >= 7) {
-                // add to the output buffer
-                cltuOutputBuffer.put((byte) (~currentShiftRegisterState << 1));
-                ++cltuWrittenBytes;
-                // reset the code block index, to start the next code block...
-                currentBlockIndex = 0;
-                // ...and reset the shift register as well
-                currentShiftRegisterState = 0;
+        // encode the CLTU body, one code block at a time
+        for (int block = 0; block < codeblocks; ++block) {
+            // the state of the shift register
+            int currentShiftRegisterState = 0;
+            for (int i = 0; i < CODEBLOCK_INFORMATION_LENGTH; ++i) {
+                // take the next byte either from the frame (if you can) or from the fill byte
+                byte valueToProcess = currentFrameIndex < frame.length ? frame[currentFrameIndex++] : effectiveFillByte;
+                // the value goes straight to the output buffer...
+                cltu[cltuIndex++] = valueToProcess;
+                // ...and the state of the shift register is computed via lookup table
+                currentShiftRegisterState = ENCODING_TABLE[((currentShiftRegisterState << 1) ^ valueToProcess) & 0xFF];
             }
+            // at the end of the code block, we need to compute and add the parity byte: complement the 7 bits of the
+            // registry and set the filler bit to 0 (ref. CCSDS 231.0-B-3, 3.2.3)
+            cltu[cltuIndex++] = (byte) (~currentShiftRegisterState << 1);
         }
         // add the suffix to the output buffer and return
-        return cltuOutputBuffer.put(effectiveSuffix).array();
+        System.arraycopy(effectiveSuffix, 0, cltu, cltuIndex, effectiveSuffix.length);
+        return cltu;
     }
 
     /**
@@ -233,26 +289,54 @@ public class BchCltuAlgorithm {
      * @throws IllegalArgumentException if the CLTU is malformed in its basic properties and cannot be decoded
      */
     public byte[] decodeCltu(byte[] cltu) {
+        return decodeCltu(cltu, DecodingMode.NONE);
+    }
+
+    /**
+     * This method decodes a CLTU into a frame, checking or correcting the codeblocks according to the provided
+     * decoding mode. The calculated frame contains additional fill octets at the end, which are not removed by this
+     * method. The provided CLTU is not modified.
+     *
+     * @param cltu the CLTU raw data
+     * @param mode the decoding mode
+     * @return the frame raw data, or null if a codeblock was rejected
+     * @throws IllegalArgumentException if the CLTU is malformed in its basic properties and cannot be decoded
+     */
+    public byte[] decodeCltu(byte[] cltu, DecodingMode mode) {
+        byte[] frame = new byte[computeFrameLength(cltu.length)];
+        return decodeCltu(cltu, mode, frame, 0, null) < 0 ? null : frame;
+    }
+
+    /**
+     * This method decodes a CLTU into the provided output buffer, checking or correcting the codeblocks according to
+     * the provided decoding mode. The decoded frame contains additional fill octets at the end, which are not removed
+     * by this method. The provided CLTU is not modified. No memory is allocated by this method.
+     * <p>
+     * If a codeblock is rejected, the decoding stops and the content of the output buffer is undefined.
+     *
+     * @param cltu the CLTU raw data
+     * @param mode the decoding mode
+     * @param output the buffer where the decoded frame is written
+     * @param outputOffset the offset in the output buffer where the decoded frame is written
+     * @param correctedCodeblocks if not null, the number of corrected codeblocks is written at position 0
+     * @return the number of bytes written in the output buffer (see {@link #computeFrameLength(int)}), or -1 if a codeblock was rejected
+     * @throws IllegalArgumentException if the CLTU is malformed in its basic properties and cannot be decoded
+     * @throws IndexOutOfBoundsException if the output buffer is too small
+     */
+    public int decodeCltu(byte[] cltu, DecodingMode mode, byte[] output, int outputOffset, int[] correctedCodeblocks) {
+        if (mode == null) {
+            throw new NullPointerException("Decoding mode cannot be null");
+        }
         // check if the prefix matches
         for (int i = 0; i < effectivePrefix.length; i++) {
             if (cltu[i] != effectivePrefix[i]) {
                 throw new IllegalArgumentException("The CLTU does not start with the expected prefix, expected prefix is " + Arrays.toString(effectivePrefix));
             }
         }
-        // calculate the data size from the CLTU size
-        int dataSize = cltu.length - effectivePrefix.length - effectiveSuffix.length;
-        // calculate the output frame size and allocate a temporary buffer
-        int blocksToRead = dataSize / 8;
-        ByteBuffer frameBuffer = ByteBuffer.allocate(blocksToRead * 7);
+        // calculate the number of codeblocks from the CLTU size
+        int blocksToRead = (cltu.length - effectivePrefix.length - effectiveSuffix.length) / CODEBLOCK_LENGTH;
         // keep memory of where you are reading, in order to verify the suffix later
-        int readBytePosition = 0;
-        // block copy
-        for (int i = 0; i < blocksToRead; ++i) {
-            frameBuffer.put(cltu, effectivePrefix.length + i * 8, 7);
-            readBytePosition = effectivePrefix.length + i * 8 + 7;
-        }
-        // add the last parity byte
-        ++readBytePosition;
+        int readBytePosition = effectivePrefix.length + blocksToRead * CODEBLOCK_LENGTH;
         // check CLTU suffix
         if (cltu.length - readBytePosition != effectiveSuffix.length) {
             throw new IllegalArgumentException("The CLTU suffix length is wrong (" + (cltu.length - readBytePosition) + ") at initial offset " + readBytePosition + ", expected length of " + effectiveSuffix.length);
@@ -262,7 +346,49 @@ public class BchCltuAlgorithm {
                 throw new IllegalArgumentException("The CLTU suffix at initial offset " + readBytePosition + " does not match, expected " + Arrays.toString(effectiveSuffix));
             }
         }
-        // return the output buffer
-        return frameBuffer.array();
+        int frameLength = blocksToRead * CODEBLOCK_INFORMATION_LENGTH;
+        if (outputOffset < 0 || output.length - outputOffset < frameLength) {
+            throw new IndexOutOfBoundsException("Output buffer too small: required " + frameLength + " bytes from offset " + outputOffset + ", buffer length " + output.length);
+        }
+        int corrected = 0;
+        // block copy, with check/correction if requested
+        for (int i = 0; i < blocksToRead; ++i) {
+            int blockOffset = effectivePrefix.length + i * CODEBLOCK_LENGTH;
+            int blockOutputOffset = outputOffset + i * CODEBLOCK_INFORMATION_LENGTH;
+            System.arraycopy(cltu, blockOffset, output, blockOutputOffset, CODEBLOCK_INFORMATION_LENGTH);
+            if (mode == DecodingMode.NONE) {
+                continue;
+            }
+            // compare the expected parity bits (complemented shift register) with the received ones: the filler bit is ignored
+            int syndrome = ((~computeShiftRegister(cltu, blockOffset) << 1 ^ cltu[blockOffset + CODEBLOCK_INFORMATION_LENGTH]) >>> 1) & 0b0111_1111;
+            if (syndrome == 0) {
+                continue;
+            }
+            int errorPosition = SYNDROME_TABLE[syndrome];
+            if (mode == DecodingMode.ERROR_DETECTION || errorPosition == UNCORRECTABLE) {
+                // codeblock rejected
+                return -1;
+            }
+            // errors in the parity bits do not affect the decoded frame
+            if (errorPosition < CODEBLOCK_INFORMATION_LENGTH * 8) {
+                output[blockOutputOffset + errorPosition / 8] ^= (byte) (0x80 >>> (errorPosition % 8));
+            }
+            ++corrected;
+        }
+        if (correctedCodeblocks != null) {
+            correctedCodeblocks[0] = corrected;
+        }
+        return frameLength;
+    }
+
+    /**
+     * This method returns the length of the frame (including fill octets) that is decoded from a CLTU of the provided
+     * length.
+     *
+     * @param cltuLength the length of the CLTU, including prefix and suffix
+     * @return the length of the decoded frame
+     */
+    public int computeFrameLength(int cltuLength) {
+        return Math.max(0, (cltuLength - effectivePrefix.length - effectiveSuffix.length) / CODEBLOCK_LENGTH) * CODEBLOCK_INFORMATION_LENGTH;
     }
 }
@@ -16,18 +16,75 @@
 
 package eu.dariolucia.ccsds.tmtc.algorithm;
 
+import java.util.Objects;
+
 /**
  * This class contains the algorithm to compute CRCs using different algorithms.
+ *
+ * Three implementations of the same CRC (CCSDS 132.0-B-2, 4.1.6.2) are provided, see {@link Engine}. The bitwise
+ * implementation follows the block diagram of the standard and it is kept as reference. The table-driven implementations
+ * are equivalent and much faster: by default, {@link #getCrc16(byte[], int, int)} uses {@link Engine#SLICE_BY_8}.
  */
 public class Crc16Algorithm {
 
+	/**
+	 * The available implementations of the CRC16 computation.
+	 */
+	public enum Engine {
+		/**
+		 * Bit by bit computation, as per block diagram defined in CCSDS 132.0-B-2, 4.1.6.2.
+		 */
+		BITWISE,
+		/**
+		 * Byte by byte computation, based on a 256-entry lookup table.
+		 */
+		TABLE,
+		/**
+		 * Computation processing 8 bytes per step, based on 8 256-entry lookup tables.
+		 */
+		SLICE_BY_8
+	}
+
+	/**
+	 * Initial value of the shift register.
+	 */
+	static final int INITIAL_VALUE = 0x0000FFFF;
+
+	/**
+	 * Lookup tables: CRC_TABLES[k][b] is the contribution of the byte b, followed by k zero bytes, to the shift register.
+	 */
+	private static final int[][] CRC_TABLES = generateTables();
+
+	private static volatile Engine defaultEngine = Engine.SLICE_BY_8;
+
 	private Crc16Algorithm() {
 		// Private constructor
 	}
 
+	/**
+	 * This method sets the {@link Engine} used by {@link #getCrc16(byte[], int, int)}.
+	 *
+	 * @param engine the engine to use, cannot be null
+	 */
+	public static void setDefaultEngine(Engine engine) {
+		if(engine == null) {
+			throw new NullPointerException("Engine cannot be null");
+		}
+		defaultEngine = engine;
+	}
+
+	/**
+	 * This method returns the {@link Engine} used by {@link #getCrc16(byte[], int, int)}.
+	 *
+	 * @return the default engine
+	 */
+	public static Engine getDefaultEngine() {
+		return defaultEngine;
+	}
+
 	/**
 	 * This method computs the CRC16 of the provided byte array, using the algorithm described in
-	 * CCSDS 132.0-B-2, 4.1.6.2.
+	 * CCSDS 132.0-B-2, 4.1.6.2, and the default {@link Engine}.
 	 *
 	 * @param frame the frame
 	 * @param offset the offset
@@ -35,11 +92,101 @@ public class Crc16Algorithm {
 	 * @return the 2 bytes CRC of the provided byte array, from offset (incl.) to offset + length (excl.)
 	 */
 	public static short getCrc16(byte[] frame, int offset, int length) {
-		int shiftRegister = 0x0000FFFF;
-		for(int i = 0; i < length; ++i) {
-			shiftRegister = ingestValue(shiftRegister, (short) Byte.toUnsignedInt(frame[offset + i]));
+		return getCrc16(frame, offset, length, defaultEngine);
+	}
+
+	/**
+	 * This method computs the CRC16 of the provided byte array, using the algorithm described in
+	 * CCSDS 132.0-B-2, 4.1.6.2, and the provided {@link Engine}.
+	 *
+	 * @param frame the frame
+	 * @param offset the offset
+	 * @param length the length
+	 * @param engine the engine to use
+	 * @return the 2 bytes CRC of the provided byte array, from offset (incl.) to offset + length (excl.)
+	 */
+	public static short getCrc16(byte[] frame, int offset, int length, Engine engine) {
+		return (short) update(INITIAL_VALUE, frame, offset, length, engine);
+	}
+
+	/**
+	 * This method updates the provided shift register state with the bytes of the provided array, from offset (incl.)
+	 * to offset + length (excl.).
+	 *
+	 * @param shiftRegister the current state of the shift register: the 16 LSB are significant
+	 * @param data the data
+	 * @param offset the offset
+	 * @param length the length
+	 * @param engine the engine to use
+	 * @return the state of the shift register at the end of the ingestion of the provided data
+	 */
+	static int update(int shiftRegister, byte[] data, int offset, int length, Engine engine) {
+		Objects.checkFromIndexSize(offset, length, data.length);
+		switch (engine) {
+			case BITWISE:
+				for(int i = 0; i < length; ++i) {
+					shiftRegister = ingestValue(shiftRegister, (short) Byte.toUnsignedInt(data[offset + i]));
+				}
+				return shiftRegister;
+			case TABLE:
+				return updateTable(shiftRegister, data, offset, length);
+			case SLICE_BY_8:
+				return updateSliceBy8(shiftRegister, data, offset, length);
+			default:
+				throw new IllegalArgumentException("Engine " + engine + " not supported");
+		}
+	}
+
+	private static int updateTable(int shiftRegister, byte[] data, int offset, int length) {
+		final int[] t0 = CRC_TABLES[0];
+		final int end = offset + length;
+		for(int i = offset; i < end; ++i) {
+			shiftRegister = ((shiftRegister << 8) ^ t0[((shiftRegister >>> 8) ^ data[i]) & 0xFF]) & 0x0000FFFF;
+		}
+		return shiftRegister;
+	}
+
+	private static int updateSliceBy8(int shiftRegister, byte[] data, int offset, int length) {
+		final int[] t0 = CRC_TABLES[0];
+		final int[] t1 = CRC_TABLES[1];
+		final int[] t2 = CRC_TABLES[2];
+		final int[] t3 = CRC_TABLES[3];
+		final int[] t4 = CRC_TABLES[4];
+		final int[] t5 = CRC_TABLES[5];
+		final int[] t6 = CRC_TABLES[6];
+		final int[] t7 = CRC_TABLES[7];
+		int i = offset;
+		final int blockEnd = offset + (length & ~0x07);
+		// The 16 bits of the shift register are added to the first two bytes of each block of 8 bytes: the contributions
+		// of the 8 bytes are then looked up and summed up
+		while(i < blockEnd) {
+			shiftRegister = t7[((shiftRegister >>> 8) ^ data[i]) & 0xFF]
+					^ t6[(shiftRegister ^ data[i + 1]) & 0xFF]
+					^ t5[data[i + 2] & 0xFF]
+					^ t4[data[i + 3] & 0xFF]
+					^ t3[data[i + 4] & 0xFF]
+					^ t2[data[i + 5] & 0xFF]
+					^ t1[data[i + 6] & 0xFF]
+					^ t0[data[i + 7] & 0xFF];
+			i += 8;
+		}
+		// Remaining bytes
+		return updateTable(shiftRegister, data, i, offset + length - i);
+	}
+
+	private static int[][] generateTables() {
+		int[][] tables = new int[8][256];
+		for(int b = 0; b < 256; ++b) {
+			tables[0][b] = ingestValue(0, (short) b);
+		}
+		for(int k = 1; k < tables.length; ++k) {
+			for(int b = 0; b < 256; ++b) {
+				int prev = tables[k - 1][b];
+				// Ingestion of a zero byte
+				tables[k][b] = ((prev << 8) ^ tables[0][(prev >>> 8) & 0xFF]) & 0x0000FFFF;
+			}
 		}
-		return (short) shiftRegister;
+		return tables;
 	}
 
 	/**
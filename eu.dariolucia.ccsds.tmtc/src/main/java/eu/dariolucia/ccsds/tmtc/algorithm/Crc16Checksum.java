@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.algorithm;
+
+import java.util.zip.Checksum;
+
+/**
+ * Incremental computation of the CRC16 defined in CCSDS 132.0-B-2, 4.1.6.2. Data can be provided in several chunks,
+ * e.g. while a frame is being written, and the final value retrieved with {@link #getCrc16()}.
+ *
+ * This class is not thread-safe.
+ */
+public class Crc16Checksum implements Checksum {
+
+	private final Crc16Algorithm.Engine engine;
+
+	private final byte[] singleByte = new byte[1];
+
+	private int shiftRegister = Crc16Algorithm.INITIAL_VALUE;
+
+	/**
+	 * Create a checksum using the default {@link Crc16Algorithm.Engine}.
+	 */
+	public Crc16Checksum() {
+		this(Crc16Algorithm.getDefaultEngine());
+	}
+
+	/**
+	 * Create a checksum using the provided {@link Crc16Algorithm.Engine}.
+	 *
+	 * @param engine the engine to use
+	 */
+	public Crc16Checksum(Crc16Algorithm.Engine engine) {
+		if(engine == null) {
+			throw new NullPointerException("Engine cannot be null");
+		}
+		this.engine = engine;
+	}
+
+	@Override
+	public void update(int b) {
+		singleByte[0] = (byte) b;
+		update(singleByte, 0, 1);
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+		shiftRegister = Crc16Algorithm.update(shiftRegister, b, off, len, engine);
+	}
+
+	/**
+	 * This method returns the current value of the CRC16.
+	 *
+	 * @return the 2 bytes CRC of the data provided so far
+	 */
+	public short getCrc16() {
+		return (short) shiftRegister;
+	}
+
+	@Override
+	public long getValue() {
+		return shiftRegister;
+	}
+
+	@Override
+	public void reset() {
+		shiftRegister = Crc16Algorithm.INITIAL_VALUE;
+	}
+
+	/**
+	 * This method returns the engine used by this object.
+	 *
+	 * @return the engine
+	 */
+	public Crc16Algorithm.Engine getEngine() {
+		return engine;
+	}
+}
@@ -16,8 +16,17 @@
 
 package eu.dariolucia.ccsds.tmtc.algorithm;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
 /**
  * This class contains the algorithm to compute randomization using different algorithms.
+ *
+ * The pseudo random patterns are pre-computed and applied in-place 8 bytes at a time. If a frame longer than the
+ * currently computed pattern is randomized, the pattern is extended on demand.
  */
 public class RandomizerAlgorithm {
 
@@ -26,16 +35,27 @@ public class RandomizerAlgorithm {
     }
 
     /**
-     * Definition of the CLTU pseudo random pattern, up to 65536 bytes, which is good enough for TC frames (max 1024),
-     * Proximity-1 (max 2048), USLP (max 65536) and for AOS frames with reasonable size.
+     * Initial length of the pseudo random patterns, which is good enough for TC frames (max 1024), TM frames (max 2048),
+     * Proximity-1 (max 2048) and for AOS frames with reasonable size. Longer frames (e.g. USLP, max 65536) cause the
+     * extension of the pattern.
+     */
+    private static final int INITIAL_PATTERN_LENGTH = 4096;
+
+    /**
+     * View of a byte[] as long values, used to XOR 8 bytes at a time. Since the same view is used for frame and pattern,
+     * the byte order is irrelevant for the result: the native one is used.
      */
-    private static final byte[] CLTU_PSEUDO_RANDOM_PATTERN = generateCltuPseudoRandomPattern(65536);
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
 
     /**
-     * Definition of the TM pseudo random pattern, up to 65536 bytes, which is good enough for TM frames (max 1024),
-     * Proximity-1 (max 2048), USLP (max 65536) and for AOS frames with reasonable size.
+     * Definition of the CLTU pseudo random pattern.
      */
-    private static final byte[] TM_PSEUDO_RANDOM_PATTERN = generateTmPseudoRandomPattern(65536);
+    private static final PseudoRandomPattern CLTU_PSEUDO_RANDOM_PATTERN = new PseudoRandomPattern(RandomizerAlgorithm::generateCltuPseudoRandomPattern);
+
+    /**
+     * Definition of the TM pseudo random pattern.
+     */
+    private static final PseudoRandomPattern TM_PSEUDO_RANDOM_PATTERN = new PseudoRandomPattern(RandomizerAlgorithm::generateTmPseudoRandomPattern);
 
     /**
      * This method generates the CLTU pseudo random pattern of the given length. The generator polynomial is the one
@@ -94,9 +114,22 @@ public class RandomizerAlgorithm {
      * @param frame the frame to randomize
      */
     public static void randomizeFrameCltu(byte[] frame) {
-        for (int i = 0; i < frame.length; ++i) {
-            frame[i] = (byte) (frame[i] ^ CLTU_PSEUDO_RANDOM_PATTERN[i]);
-        }
+        randomizeFrameCltu(frame, 0, frame.length);
+    }
+
+    /**
+     * This method randomizes the frame located in the provided array at the given offset, using the pseudo-random
+     * polynomial as defined in CCSDS 231.0-B-3, 6.2. The pseudo-random pattern is applied starting from the first byte
+     * of the frame. Randomization is performed in-place for efficiency reasons.
+     *
+     * @param data the array containing the frame to randomize
+     * @param offset the offset of the frame in the array
+     * @param length the length of the frame
+     * @throws IndexOutOfBoundsException if offset and length are not within the bounds of the array
+     */
+    public static void randomizeFrameCltu(byte[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        xor(data, offset, length, CLTU_PSEUDO_RANDOM_PATTERN.get(length));
     }
 
     /**
@@ -154,8 +187,77 @@ public class RandomizerAlgorithm {
      * @param frame the frame to randomize
      */
     public static void randomizeFrameTm(byte[] frame) {
-        for (int i = 0; i < frame.length; ++i) {
-            frame[i] = (byte) (frame[i] ^ TM_PSEUDO_RANDOM_PATTERN[i]);
+        randomizeFrameTm(frame, 0, frame.length);
+    }
+
+    /**
+     * This method randomizes the frame located in the provided array at the given offset, using the pseudo-random
+     * polynom as defined in CCSDS 131.0-B-3, 10.4. The pseudo-random pattern is applied starting from the first byte
+     * of the frame. Randomization is performed in-place for efficiency reasons.
+     *
+     * @param data the array containing the frame to randomize
+     * @param offset the offset of the frame in the array
+     * @param length the length of the frame
+     * @throws IndexOutOfBoundsException if offset and length are not within the bounds of the array
+     */
+    public static void randomizeFrameTm(byte[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        xor(data, offset, length, TM_PSEUDO_RANDOM_PATTERN.get(length));
+    }
+
+    /**
+     * This method XORs the provided pattern on the data, 8 bytes at a time. The remaining bytes (if any) are processed
+     * one at a time.
+     *
+     * @param data the data to XOR in-place
+     * @param offset the offset of the first byte to XOR
+     * @param length the number of bytes to XOR
+     * @param pattern the pattern, at least length bytes long
+     */
+    private static void xor(byte[] data, int offset, int length, byte[] pattern) {
+        int i = 0;
+        for (int longEnd = length - Long.BYTES; i <= longEnd; i += Long.BYTES) {
+            LONG_VIEW.set(data, offset + i, (long) LONG_VIEW.get(data, offset + i) ^ (long) LONG_VIEW.get(pattern, i));
+        }
+        for (; i < length; ++i) {
+            data[offset + i] ^= pattern[i];
+        }
+    }
+
+    /**
+     * A pseudo random pattern, which is extended by re-generating it when a longer pattern is requested.
+     */
+    private static final class PseudoRandomPattern {
+
+        private final IntFunction<byte[]> generator;
+
+        private volatile byte[] pattern;
+
+        private PseudoRandomPattern(IntFunction<byte[]> generator) {
+            this.generator = generator;
+            this.pattern = generator.apply(INITIAL_PATTERN_LENGTH);
+        }
+
+        /**
+         * Return the pattern, extending it if needed.
+         *
+         * @param length the minimum required length of the pattern
+         * @return the pattern, at least length bytes long
+         */
+        private byte[] get(int length) {
+            byte[] current = this.pattern;
+            if (current.length >= length) {
+                return current;
+            }
+            synchronized (this) {
+                current = this.pattern;
+                if (current.length < length) {
+                    // at least double the pattern length, to avoid frequent re-generations
+                    current = generator.apply(Math.max(length, (int) Math.min(Integer.MAX_VALUE - 8, 2L * current.length)));
+                    this.pattern = current;
+                }
+                return current;
+            }
         }
     }
 }
@@ -17,10 +17,9 @@
 package eu.dariolucia.ccsds.tmtc.algorithm;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.rs.ReedSolomon;
-import eu.dariolucia.ccsds.tmtc.algorithm.rs.RsDecoder;
-import eu.dariolucia.ccsds.tmtc.algorithm.rs.RsEncoder;
+import eu.dariolucia.ccsds.tmtc.algorithm.rs.RsBlockEncoder;
+import eu.dariolucia.ccsds.tmtc.algorithm.rs.RsErrorCorrector;
 
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -71,6 +70,9 @@ public class ReedSolomonAlgorithm {
     private final boolean dualbasis;
     private final int eccLength;
     private final ReedSolomon reedSolomon;
+    // Error correctors and block encoders keep their working memory, so they are allocated once per thread
+    private final ThreadLocal<RsErrorCorrector> errorCorrector;
+    private final ThreadLocal<RsBlockEncoder> blockEncoder;
 
     /**
      * Create a Reed-Solomon algorithm executor based on the provided characteristics.
@@ -88,6 +90,8 @@ public class ReedSolomonAlgorithm {
         this.eccLength = this.codewordLength - this.messageLength;
         this.dualbasis = dualbasis;
         this.reedSolomon = new ReedSolomon(galoisFieldModulus, generator, messageLength, eccLength, initialRoot);
+        this.errorCorrector = ThreadLocal.withInitial(() -> new RsErrorCorrector(this.reedSolomon, this.dualbasis));
+        this.blockEncoder = ThreadLocal.withInitial(() -> new RsBlockEncoder(this.reedSolomon, this.dualbasis));
     }
 
     /**
@@ -104,49 +108,86 @@ public class ReedSolomonAlgorithm {
      * @throws IllegalArgumentException if frame has an unexpected length, or if the interleaving is not supported
      */
     public byte[] encodeFrame(byte[] frame, int interleavingDepth) {
-        if(frame.length % messageLength != 0) {
-            throw new IllegalArgumentException("Frame length (" + frame.length + " bytes) is not a multiple of " + messageLength);
+        byte[] encoded = new byte[computeFinalMessageLength(frame.length)];
+        encodeFrame(frame, 0, frame.length, interleavingDepth, encoded, 0);
+        return encoded;
+    }
+
+    /**
+     * This method encodes the provided frame using the RS properties specified at construction time, writing the frame
+     * followed by the RS check symbols into the provided output array, starting at outputOffset. The same restrictions
+     * of {@link #encodeFrame(byte[], int)} apply. This method does not allocate memory: the output array can also be
+     * the frame array, if the frame is already located at outputOffset (in which case the frame is not copied).
+     *
+     * @param frame the array containing the frame to be encoded
+     * @param frameOffset the position of the frame in the array
+     * @param frameLength the length of the frame
+     * @param interleavingDepth the interleaving depth, allowed values are I=1, 2, 3, 4, 5, and 8
+     * @param output the array that receives the frame followed by the Reed Solomon blocks
+     * @param outputOffset the position in the output array where the frame is written
+     * @return the number of bytes written into the output array
+     * @throws IllegalArgumentException if frame has an unexpected length, if the interleaving is not supported, or if the output array is too short
+     */
+    public int encodeFrame(byte[] frame, int frameOffset, int frameLength, int interleavingDepth, byte[] output, int outputOffset) {
+        int encodedLength = computeFinalMessageLength(frameLength);
+        if(outputOffset < 0 || outputOffset + encodedLength > output.length) {
+            throw new IllegalArgumentException("Output array of length " + output.length + " cannot contain " + encodedLength + " bytes at offset " + outputOffset);
         }
-        if(interleavingDepth != 1 && interleavingDepth != 2 && interleavingDepth != 3 && interleavingDepth != 4 && interleavingDepth != 5 && interleavingDepth != 8) {
-            throw new IllegalArgumentException("Unsupported interleaving depth");
+        if(frame != output || frameOffset != outputOffset) {
+            System.arraycopy(frame, frameOffset, output, outputOffset, frameLength);
         }
+        encodeParity(output, outputOffset, frameLength, interleavingDepth, output, outputOffset + frameLength);
+        return encodedLength;
+    }
 
-        // Instantiate the sink
-        ByteBuffer sink = ByteBuffer.allocate(computeFinalMessageLength(frame.length));
-        // Instantiate interleavingDepth encoders
-        RsEncoder[] encs = new RsEncoder[interleavingDepth];
-        for(int i = 0; i < encs.length; ++i) {
-            encs[i] = new RsEncoder(reedSolomon, dualbasis, sink);
+    /**
+     * This method computes the RS check symbols of the provided frame, and writes them (interleaved according to
+     * CCSDS 131.0-B-3, 4.3.5) into the provided parity array, starting at parityOffset. The number of written bytes is
+     * equal to interleavingDepth * (codewordLength - messageLength). The frame length must be equal to the message
+     * length multiplied by the interleaving depth. This method does not allocate memory.
+     *
+     * @param frame the array containing the frame to be encoded
+     * @param frameOffset the position of the frame in the array
+     * @param frameLength the length of the frame
+     * @param interleavingDepth the interleaving depth, allowed values are I=1, 2, 3, 4, 5, and 8
+     * @param parity the array that receives the Reed Solomon blocks
+     * @param parityOffset the position in the parity array where the Reed Solomon blocks are written
+     * @throws IllegalArgumentException if frame has an unexpected length, or if the interleaving is not supported
+     */
+    public void encodeParity(byte[] frame, int frameOffset, int frameLength, int interleavingDepth, byte[] parity, int parityOffset) {
+        if(frameLength % messageLength != 0) {
+            throw new IllegalArgumentException("Frame length (" + frameLength + " bytes) is not a multiple of " + messageLength);
         }
-        // Encode
-        for(int i = 0; i < frame.length; ++i) {
-            encs[i % interleavingDepth].pushMessage(frame[i]);
+        if(interleavingDepth != 1 && interleavingDepth != 2 && interleavingDepth != 3 && interleavingDepth != 4 && interleavingDepth != 5 && interleavingDepth != 8) {
+            throw new IllegalArgumentException("Unsupported interleaving depth");
         }
-        // Verify completion
-        for(RsEncoder e : encs) {
-            if(!e.ready()) {
-                throw new IllegalStateException("One encoder is not ready to output the RS block");
-            }
+        if(frameLength / messageLength != interleavingDepth) {
+            throw new IllegalStateException("Frame length (" + frameLength + " bytes) does not correspond with the interleaving depth " + interleavingDepth);
         }
-        // Output RS block
-        int blockSize = encs[0].blockSize();
-        for(int i = 0; i < blockSize; ++i) {
-            for(int j = 0;j < encs.length; ++j) {
-                encs[j].pull();
-            }
+        RsBlockEncoder encoder = this.blockEncoder.get();
+        for(int i = 0; i < interleavingDepth; ++i) {
+            encoder.encode(frame, frameOffset + i, interleavingDepth, parity, parityOffset + i, interleavingDepth);
         }
-        // Return
-        return sink.array();
     }
 
     private int computeFinalMessageLength(int length) {
         return length + (length / messageLength) * eccLength;
     }
 
+    /**
+     * This method returns the length of the RS encoded frame, for a frame of the provided length.
+     *
+     * @param frameLength the length of the frame, multiple of the message length
+     * @return the length of the frame plus the RS check symbols
+     */
+    public int computeEncodedFrameLength(int frameLength) {
+        return computeFinalMessageLength(frameLength);
+    }
+
     /**
      * This method simply removes the Reed Solomon symbols and returns a copy of the frame contents.
      * Optionally, it can perform an error detection on the frame. If the frame has errors, then it returns null.
-     * It does not attempt to perform any error correction.
+     * It does not attempt to perform any error correction: see {@link #correctFrame(byte[], int, int[])} for that.
      *
      * @param encodedFrame the RS encoded frame, with the RS block at the end
      * @param interleavingDepth interleaving depth, only required if error checking is enabled, otherwise ignored
@@ -161,33 +202,117 @@ public class ReedSolomonAlgorithm {
         // Depending on the algorithm configuration, compute the number of bytes to discard from the end of the provided codeblock
         int numRsBlocks = encodedFrame.length / codewordLength;
         int numBytesToDiscard = numRsBlocks * eccLength;
-        byte[] decoded = Arrays.copyOfRange(encodedFrame, 0, encodedFrame.length - numBytesToDiscard);
         // If error detection is requested, we need to take into account the interleaving depth
-        if(errorChecking) {
-            if(encodedFrame.length / codewordLength != interleavingDepth) {
-                throw new IllegalArgumentException("The provided frame length does not correspond with the provided interleaving depth");
-            }
-            // Instantiate interleavingDepth buffers
-            ByteBuffer[] decs = new ByteBuffer[interleavingDepth];
-            for(int i = 0; i < decs.length; ++i) {
-                decs[i] = ByteBuffer.allocate(codewordLength);
-            }
-            // Fill the buffers
-            for(int i = 0; i < encodedFrame.length; ++i) {
-                decs[i % interleavingDepth].put(encodedFrame[i]);
+        // Check each codeword in-place
+        if(errorChecking && !checkFrame(encodedFrame, 0, encodedFrame.length, interleavingDepth)) {
+            return null;
+        }
+        return Arrays.copyOfRange(encodedFrame, 0, encodedFrame.length - numBytesToDiscard);
+    }
+
+    /**
+     * This method checks the provided RS encoded frame and corrects the detected errors, if possible. The correction is
+     * performed in-place, i.e. the provided encodedFrame array is modified. The number of corrected symbols for each
+     * codeword is reported in the correctedSymbols array, if provided: its length must be at least equal to the
+     * interleaving depth.
+     *
+     * @param encodedFrame the RS encoded frame, with the RS block at the end
+     * @param interleavingDepth interleaving depth
+     * @param correctedSymbols the array that receives the number of corrected symbols per codeword, can be null
+     * @return the corrected frame without the RS block, or null if at least one codeword cannot be corrected
+     */
+    public byte[] correctFrame(byte[] encodedFrame, int interleavingDepth, int[] correctedSymbols) {
+        if(!correctFrame(encodedFrame, 0, encodedFrame.length, interleavingDepth, correctedSymbols)) {
+            return null;
+        }
+        return Arrays.copyOfRange(encodedFrame, 0, encodedFrame.length - interleavingDepth * eccLength);
+    }
+
+    /**
+     * This method checks the RS encoded frame located in the provided array at the given offset. No data is modified
+     * and no memory is allocated.
+     *
+     * @param data the array containing the RS encoded frame, with the RS block at the end
+     * @param offset the offset of the RS encoded frame in the array
+     * @param length the length of the RS encoded frame, including the RS block
+     * @param interleavingDepth interleaving depth
+     * @return true if no errors are detected, false otherwise
+     * @throws IllegalArgumentException if the length does not match the interleaving depth
+     */
+    public boolean checkFrame(byte[] data, int offset, int length, int interleavingDepth) {
+        checkFrameLength(length, interleavingDepth);
+        RsErrorCorrector checker = this.errorCorrector.get();
+        for(int i = 0; i < interleavingDepth; ++i) {
+            if(checker.hasErrors(data, offset + i, interleavingDepth)) {
+                return false;
             }
-            // Instantiate the decoder
-            RsDecoder decoder = new RsDecoder(reedSolomon, dualbasis);
-
-            for(ByteBuffer bb : decs) {
-                bb.flip();
-                byte[] result = decoder.decode(bb.array(), true);
-                if(result == null) {
-                    return null;
+        }
+        return true;
+    }
+
+    /**
+     * This method checks the RS encoded frame located in the provided array at the given offset and corrects the
+     * detected errors in-place, if possible. No memory is allocated. The number of corrected symbols for each codeword
+     * is reported in the correctedSymbols array, if provided: its length must be at least equal to the interleaving depth.
+     * If a codeword cannot be corrected, the remaining codewords are not processed and the corrections already applied to
+     * the previous codewords are reverted, i.e. the provided array is not modified. In such case, the content of the
+     * correctedSymbols array is undefined.
+     *
+     * @param data the array containing the RS encoded frame, with the RS block at the end
+     * @param offset the offset of the RS encoded frame in the array
+     * @param length the length of the RS encoded frame, including the RS block
+     * @param interleavingDepth interleaving depth
+     * @param correctedSymbols the array that receives the number of corrected symbols per codeword, can be null
+     * @return true if the frame is correct or it was corrected, false if at least one codeword cannot be corrected
+     * @throws IllegalArgumentException if the length does not match the interleaving depth
+     */
+    public boolean correctFrame(byte[] data, int offset, int length, int interleavingDepth, int[] correctedSymbols) {
+        checkFrameLength(length, interleavingDepth);
+        if(correctedSymbols != null && correctedSymbols.length < interleavingDepth) {
+            throw new IllegalArgumentException("The provided array for the corrected symbols has length " + correctedSymbols.length + ", expected at least " + interleavingDepth);
+        }
+        RsErrorCorrector corrector = this.errorCorrector.get();
+        // Record the applied corrections, so that the frame can be restored if a later codeword cannot be corrected
+        corrector.startJournal(interleavingDepth);
+        try {
+            for(int i = 0; i < interleavingDepth; ++i) {
+                int corrected = corrector.correct(data, offset + i, interleavingDepth);
+                if(corrected < 0) {
+                    corrector.rollbackJournal(data);
+                    return false;
+                }
+                if(correctedSymbols != null) {
+                    correctedSymbols[i] = corrected;
                 }
             }
+            return true;
+        } finally {
+            corrector.stopJournal();
+        }
+    }
+
+    /**
+     * This method returns the length of the frame obtained by removing the RS block from a RS encoded frame of the
+     * provided length.
+     *
+     * @param encodedFrameLength the length of the RS encoded frame, including the RS block
+     * @return the length of the frame without the RS block
+     * @throws IllegalArgumentException if the length is not a multiple of the codeword length
+     */
+    public int computeDecodedFrameLength(int encodedFrameLength) {
+        if(encodedFrameLength % codewordLength != 0) {
+            throw new IllegalArgumentException("Expected frame length to be a multiple of " + codewordLength + ", got " + encodedFrameLength);
+        }
+        return encodedFrameLength / codewordLength * messageLength;
+    }
+
+    private void checkFrameLength(int length, int interleavingDepth) {
+        if(length % codewordLength != 0) {
+            throw new IllegalArgumentException("Expected frame length to be a multiple of " + codewordLength + ", got " + length);
+        }
+        if(length / codewordLength != interleavingDepth) {
+            throw new IllegalArgumentException("The provided frame length does not correspond with the provided interleaving depth");
         }
-        return decoded;
     }
 
     /**
@@ -202,20 +327,9 @@ public class ReedSolomonAlgorithm {
         if(message.length != messageLength) {
             throw new IllegalArgumentException("Message length " + message.length + " does not match the configured message length for this encoder: " + messageLength);
         }
-        // Instantiate the sink
-        ByteBuffer sink = ByteBuffer.allocate(codewordLength);
-        // Instantiate the encoder
-        RsEncoder encs = new RsEncoder(reedSolomon, dualbasis, sink);
-        // Encode
-        encs.pushMessage(message);
-        // Verify completion
-        if(!encs.ready()) {
-            throw new IllegalStateException("One encoder is not ready to output the RS block");
-        }
-        // Output RS block
-        encs.pullAll();
-        // Return
-        return sink.array();
+        byte[] codeword = Arrays.copyOf(message, codewordLength);
+        this.blockEncoder.get().encode(codeword, 0, 1, codeword, messageLength, 1);
+        return codeword;
     }
 
     /**
@@ -229,9 +343,23 @@ public class ReedSolomonAlgorithm {
         if(codeword.length != codewordLength) {
             throw new IllegalArgumentException("Codeword length " + codeword.length + " does not match the configured codeword length for this encoder: " + codewordLength);
         }
-        // Instantiate the decoder
-        RsDecoder decs = new RsDecoder(reedSolomon, dualbasis);
-        // Decode
-        return decs.decode(codeword, errorChecking);
+        if(errorChecking && this.errorCorrector.get().hasErrors(codeword, 0, 1)) {
+            return null;
+        }
+        return Arrays.copyOfRange(codeword, 0, messageLength);
+    }
+
+    /**
+     * The input must be the message plus the RS block at the end. This method checks the provided codeword and corrects
+     * the detected errors, if possible. The correction is performed in-place.
+     *
+     * @param codeword the encoded codeword (input + RS block)
+     * @return the number of corrected symbols, or -1 if the codeword cannot be corrected
+     */
+    public int correctCodeword(byte[] codeword) {
+        if(codeword.length != codewordLength) {
+            throw new IllegalArgumentException("Codeword length " + codeword.length + " does not match the configured codeword length for this encoder: " + codewordLength);
+        }
+        return this.errorCorrector.get().correct(codeword, 0, 1);
     }
 }
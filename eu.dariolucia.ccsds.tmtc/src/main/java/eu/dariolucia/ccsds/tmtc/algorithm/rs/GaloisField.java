@@ -0,0 +1,226 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.algorithm.rs;
+
+/**
+ * A Galois field GF(2^n), with arithmetic operations implemented by means of precomputed exponential and logarithm
+ * tables. The logarithm of zero is mapped to a sentinel value, whose sum with any valid logarithm points to the zero
+ * region of the exponential table: multiplications and divisions do not need any branch to deal with zero operands.
+ *
+ * This class is immutable and thread-safe.
+ */
+public final class GaloisField {
+
+    /**
+     * The modulus of the field, represented as a string of bits in natural order.
+     */
+    private final int modulus;
+
+    /**
+     * The number of elements of the field.
+     */
+    private final int size;
+
+    /**
+     * The number of non-zero elements of the field, i.e. the multiplicative order of the primitive element.
+     */
+    private final int order;
+
+    /**
+     * The primitive element used as base of the logarithm.
+     */
+    private final int primitive;
+
+    /**
+     * Logarithm value assigned to zero.
+     */
+    private final int zeroLog;
+
+    // expTable[i] = primitive^(i mod order) for i < 2 * order, 0 otherwise
+    private final int[] expTable;
+
+    // logTable[primitive^i] = i, logTable[0] = zeroLog
+    private final int[] logTable;
+
+    /**
+     * Construct the field with the provided modulus, which must be a primitive polynomial of degree between 1 and 16.
+     *
+     * @param modulus the modulus of the field
+     */
+    public GaloisField(int modulus) {
+        if (modulus <= 1) {
+            throw new IllegalArgumentException("Invalid modulus: " + modulus);
+        }
+        int degree = 31 - Integer.numberOfLeadingZeros(modulus);
+        if (degree > 16) {
+            throw new IllegalArgumentException("Modulus too large: " + modulus);
+        }
+        this.modulus = modulus;
+        this.size = 1 << degree;
+        this.order = this.size - 1;
+        this.zeroLog = 2 * this.order;
+        this.primitive = findPrimitive();
+        // The zero region must cover the sum of two zero logarithms
+        this.expTable = new int[4 * this.order + 1];
+        this.logTable = new int[this.size];
+        int value = 1;
+        for (int i = 0; i < this.order; ++i) {
+            this.expTable[i] = value;
+            this.expTable[i + this.order] = value;
+            this.logTable[value] = i;
+            value = multiplyImpl(value, this.primitive);
+        }
+        this.logTable[0] = this.zeroLog;
+    }
+
+    private int findPrimitive() {
+        for (int candidate = 2; candidate < size; ++candidate) {
+            int value = candidate;
+            int candidateOrder = 1;
+            while (value != 1 && candidateOrder < size) {
+                value = multiplyImpl(value, candidate);
+                ++candidateOrder;
+            }
+            if (value == 1 && candidateOrder == order) {
+                return candidate;
+            }
+        }
+        if (size == 2) {
+            return 1;
+        }
+        throw new IllegalArgumentException("Modulus " + modulus + " does not generate a field with a primitive element");
+    }
+
+    // Carry-less multiplication followed by reduction modulo the field modulus
+    private int multiplyImpl(int x, int y) {
+        int result = 0;
+        for (; y != 0; y >>>= 1) {
+            if ((y & 1) != 0) {
+                result ^= x;
+            }
+            x <<= 1;
+            if (x >= size) {
+                x ^= modulus;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the modulus of the field
+     */
+    public int modulus() {
+        return modulus;
+    }
+
+    /**
+     * @return the number of elements of the field
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of non-zero elements of the field
+     */
+    public int order() {
+        return order;
+    }
+
+    /**
+     * @return the primitive element used as base of the logarithm
+     */
+    public int primitive() {
+        return primitive;
+    }
+
+    /**
+     * This method multiplies two elements of the field.
+     *
+     * @param x the first element
+     * @param y the second element
+     * @return x * y
+     */
+    public int multiply(int x, int y) {
+        return expTable[logTable[x] + logTable[y]];
+    }
+
+    /**
+     * This method divides two elements of the field.
+     *
+     * @param x the dividend
+     * @param y the divisor, not zero
+     * @return x / y
+     * @throws ArithmeticException if y is zero
+     */
+    public int divide(int x, int y) {
+        if (y == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return expTable[logTable[x] + order - logTable[y]];
+    }
+
+    /**
+     * This method raises an element of the field to the provided power.
+     *
+     * @param x the element
+     * @param exp the power, not negative
+     * @return x^exp
+     */
+    public int pow(int x, int exp) {
+        if (exp < 0) {
+            throw new IllegalArgumentException("Power " + exp + " is negative");
+        }
+        if (x == 0) {
+            return exp == 0 ? 1 : 0;
+        }
+        return expTable[(int) (((long) logTable[x] * exp) % order)];
+    }
+
+    /**
+     * This method returns the logarithm of the provided element, in base {@link #primitive()}. The logarithm of zero
+     * is a sentinel value (not less than 2 * {@link #order()}), which can be summed to any other logarithm and used as
+     * index to {@link #exp(int)}, returning zero.
+     *
+     * @param x the element
+     * @return the logarithm of x
+     */
+    public int log(int x) {
+        return logTable[x];
+    }
+
+    /**
+     * This method returns the primitive element raised to the provided power. For powers between 0 and 2 * order - 1
+     * the result is primitive^(power mod order). For larger powers (i.e. sums involving the logarithm of zero) the
+     * result is zero.
+     *
+     * @param power the power, between 0 and 4 * {@link #order()}
+     * @return the corresponding element of the field
+     */
+    public int exp(int power) {
+        return expTable[power];
+    }
+
+    // Direct access to the tables for the decoding kernels of this package
+    int[] expTable() {
+        return expTable;
+    }
+
+    int[] logTable() {
+        return logTable;
+    }
+}
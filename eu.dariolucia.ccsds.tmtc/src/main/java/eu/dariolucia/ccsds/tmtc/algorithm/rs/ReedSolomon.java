@@ -187,6 +187,29 @@ public final class ReedSolomon {
 		return result;
 	}
 
+	/*---- Accessors ----*/
+
+	// Returns the exp/log tables of the Galois field
+	GaloisField field() {
+		return f.tables;
+	}
+
+	// Returns the generator of the field
+	int generator() {
+		return generator;
+	}
+
+	// Returns the initial root of the code generator polynomial
+	int initialRoot() {
+		return initialRoot;
+	}
+
+	// Returns the coefficients of the generator polynomial, in little endian, without the highest power: the returned
+	// array must not be modified
+	int[] generatorPolynomial() {
+		return genPoly;
+	}
+
 	/*---- Simple utility methods ----*/
 
 	// Returns the value of the given polynomial at the given point. The polynomial is represented
@@ -214,14 +237,7 @@ public final class ReedSolomon {
 
 	// Returns the given field element raised to the given power. The power must be non-negative.
 	private int pow(int base, int exp) {
-		if (exp < 0) {
-			throw new IllegalArgumentException("Power " + exp + " is negative");
-		}
-		int result = BinaryField.ONE;
-		for (int i = 0; i < exp; i++) {
-			result = f.multiply(base, result);
-		}
-		return result;
+		return f.tables.pow(base, exp);
 	}
 
 	/**
@@ -249,16 +265,17 @@ public final class ReedSolomon {
 		 */
 		final int size;
 
-		final int[][] precomputedAddTable;
-
-		final int[][] precomputedMulTable;
+		/**
+		 * The exp/log tables used to perform the multiplications.
+		 */
+		final GaloisField tables;
 
 		/*---- Constructor ----*/
 
 		/**
 		 * Constructs a binary field with the specified modulus. The modulus must have degree
-		 * between 1 and 30, inclusive. Also the modulus must be irreducible (not factorable)
-		 * in Z_2, but this critical property is not checked by the constructor.
+		 * between 1 and 16, inclusive. Also the modulus must be primitive in Z_2, i.e. the field
+		 * must have a primitive element, used as base for the exp/log tables.
 		 *
 		 * @param mod the modulus
 		 */
@@ -276,15 +293,8 @@ public final class ReedSolomon {
 			modulus = mod;
 			size = 1 << degree;
 
-			// Compute operation tables
-			precomputedAddTable = new int[size][size];
-			precomputedMulTable = new int[size][size];
-			for(int i = 0; i < size; ++i) {
-				for(int j = 0; j < size; ++j) {
-					precomputedAddTable[i][j] = add(i,j);
-					precomputedMulTable[i][j] = multiply(i,j);
-				}
-			}
+			// Compute exp/log tables
+			tables = new GaloisField(mod);
 		}
 
 		/*---- Methods ----*/
@@ -308,7 +318,7 @@ public final class ReedSolomon {
 		}
 
 		public int fadd(int x, int y) {
-			return precomputedAddTable[x][y];
+			return x ^ y;
 		}
 
 		public int add(int x, int y) {
@@ -324,25 +334,12 @@ public final class ReedSolomon {
 		}
 
 		public int fmultiply(int x, int y) {
-			return precomputedMulTable[x][y];
+			return tables.multiply(x, y);
 		}
 
 		public int multiply(int x, int y) {
-			return multiplyImpl(check(x), check(y));
+			return tables.multiply(check(x), check(y));
 		}
 
-		private int multiplyImpl(int x, int y) {
-			int result = 0;
-			for (; y != 0; y >>>= 1) {
-				if ((y & 1) != 0) {
-					result ^= x;
-				}
-				x <<= 1;
-				if (x >= size) {
-					x ^= modulus;
-				}
-			}
-			return result;
-		}
 	}
 }
@@ -0,0 +1,126 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.algorithm.rs;
+
+import java.util.Arrays;
+
+/**
+ * A Reed-Solomon encoder that computes the RS symbols of a message located inside a caller-provided array and writes
+ * them directly into a caller-provided array, supporting dual basis transformation as indicated in CCSDS 131.0-B-3,
+ * Annex F.
+ *
+ * Both the message and the RS symbols are accessed with a configurable stride, so that the codewords of an interleaved
+ * codeblock (CCSDS 131.0-B-3, 4.3.5) can be encoded without copying the message and without interleaving the RS symbols
+ * afterwards. The dual basis transformations are performed by means of lookup tables, and the division by the
+ * generator polynomial uses precomputed multiplication tables for its coefficients.
+ *
+ * All the working memory is allocated at construction time: an instance of this class does not allocate memory when
+ * used, but it is not thread-safe.
+ */
+public class RsBlockEncoder {
+
+    private final int messageLen;
+
+    private final int eccLen;
+
+    private final int fieldSize;
+
+    // Transformation of the input symbols to the conventional representation, and of the RS symbols back
+    private final int[] inputTable;
+    private final int[] outputTable;
+
+    // Multiplication tables for the coefficients of the generator polynomial: the product between x and the
+    // coefficient j is stored at index j * fieldSize + x
+    private final int[] generatorMulTables;
+
+    // Working memory: the remainder of the division by the generator polynomial
+    private final int[] remainder;
+
+    /**
+     * Constructor of the encoder.
+     *
+     * @param conventionalEncoder the conventional RS encoder/decoder defining the code
+     * @param dualBasis true if dual basis representation is used, false otherwise
+     */
+    public RsBlockEncoder(ReedSolomon conventionalEncoder, boolean dualBasis) {
+        GaloisField field = conventionalEncoder.field();
+        if(dualBasis && field.size() != 256) {
+            throw new IllegalArgumentException("Dual basis representation is supported only for GF(256)");
+        }
+        this.messageLen = conventionalEncoder.messageLen;
+        this.eccLen = conventionalEncoder.eccLen;
+        this.fieldSize = field.size();
+        if(dualBasis) {
+            this.inputTable = RsCcsdsUtil.invertedTable();
+            this.outputTable = RsCcsdsUtil.straightTable();
+        } else {
+            this.inputTable = RsErrorCorrector.identityTable();
+            this.outputTable = RsErrorCorrector.identityTable();
+        }
+        int[] genPoly = conventionalEncoder.generatorPolynomial();
+        this.generatorMulTables = new int[this.eccLen * this.fieldSize];
+        for(int j = 0; j < this.eccLen; ++j) {
+            for(int x = 0; x < this.fieldSize; ++x) {
+                this.generatorMulTables[j * this.fieldSize + x] = field.multiply(genPoly[j], x);
+            }
+        }
+        this.remainder = new int[this.eccLen];
+    }
+
+    /**
+     * This method computes the RS symbols of the provided message. The message symbols are read from the data array,
+     * starting at dataOffset and taking one symbol every dataStride bytes. The RS symbols are written in the output
+     * array, starting at outputOffset and writing one symbol every outputStride bytes. For an interleaved codeblock
+     * with interleaving depth I, the codeword i (0 &lt;= i &lt; I) is identified by offset i and stride I for the
+     * message, and by the offset of the RS check symbols area plus i and stride I for the RS symbols.
+     *
+     * @param data the array containing the message
+     * @param dataOffset the position of the first symbol of the message
+     * @param dataStride the distance between two consecutive symbols of the message
+     * @param output the array that receives the RS symbols
+     * @param outputOffset the position of the first RS symbol
+     * @param outputStride the distance between two consecutive RS symbols
+     */
+    public void encode(byte[] data, int dataOffset, int dataStride, byte[] output, int outputOffset, int outputStride) {
+        if(dataOffset < 0 || dataStride <= 0 || dataOffset + (long) (messageLen - 1) * dataStride >= data.length) {
+            throw new IllegalArgumentException("Message with offset " + dataOffset + " and stride " + dataStride + " does not fit into an array of length " + data.length);
+        }
+        if(outputOffset < 0 || outputStride <= 0 || outputOffset + (long) (eccLen - 1) * outputStride >= output.length) {
+            throw new IllegalArgumentException("RS symbols with offset " + outputOffset + " and stride " + outputStride + " do not fit into an array of length " + output.length);
+        }
+        final int[] in = this.inputTable;
+        final int[] mul = this.generatorMulTables;
+        final int[] r = this.remainder;
+        final int size = this.fieldSize;
+        final int last = eccLen - 1;
+        Arrays.fill(r, 0);
+        // Polynomial division, processing the message from the highest monomial power (last message symbol) to the
+        // lowest power (first message symbol)
+        for(int i = messageLen - 1; i >= 0; --i) {
+            int factor = in[data[dataOffset + i * dataStride] & 0xFF] ^ r[last];
+            for(int j = last; j > 0; --j) {
+                r[j] = r[j - 1] ^ mul[j * size + factor];
+            }
+            r[0] = mul[factor];
+        }
+        // Output the RS symbols
+        final int[] out = this.outputTable;
+        for(int j = 0; j < eccLen; ++j) {
+            output[outputOffset + j * outputStride] = (byte) out[r[j]];
+        }
+    }
+}
@@ -74,6 +74,15 @@ public class RsCcsdsUtil {
         return straightMatrix[i];
     }
 
+    // Direct access to the lookup tables for the decoding kernels of this package: the returned arrays must not be modified
+    static int[] invertedTable() {
+        return invertedMatrix;
+    }
+
+    static int[] straightTable() {
+        return straightMatrix;
+    }
+
     private static int multiply(int integer, int[] matrix) {
         // Even if an integer, we use only 8 bits (the least significant ones)
         // bit 0 corresponds to the bit whose value is 128
@@ -20,18 +20,18 @@ import java.util.Arrays;
 
 /**
  * A Reed-Solomon decoder that is used to check codewords and supports dual basis transformation as indicated in
- * CCSDS 131.0-B-3, Annex F. Internally it uses a conventional Reed-Solomon decoder: if needed, this decoder converts
- * the input symbols in dual basis representation and finalises the conversion at the output of the conventional decoder.
+ * CCSDS 131.0-B-3, Annex F. The check is performed in-place by a {@link RsErrorCorrector}, which merges the dual basis
+ * transformation with the syndrome computation. This class is not thread-safe.
  */
 public class RsDecoder {
 
     private final ReedSolomon conventionalDecoder;
 
-    private final boolean dualBasis;
+    private final RsErrorCorrector checker;
 
     public RsDecoder(ReedSolomon conventionalDecoder, boolean dualBasis) {
         this.conventionalDecoder = conventionalDecoder;
-        this.dualBasis = dualBasis;
+        this.checker = new RsErrorCorrector(conventionalDecoder, dualBasis);
     }
 
     /**
@@ -42,32 +42,9 @@ public class RsDecoder {
      * @return the decoded message, or null if error checking was enabled and there are errors in the codeword
      */
     public byte[] decode(byte[] codeword, boolean errorChecking) {
-        // Nayuki's decoder wants to have the RS symbols before the actual message
-
-        if (!errorChecking) {
-            // If no error checking, let's optimize
-            return Arrays.copyOfRange(codeword, 0, codeword.length - conventionalDecoder.eccLen);
-        } else {
-            // Move data in front
-            byte[] copied = new byte[codeword.length];
-            System.arraycopy(codeword, codeword.length - conventionalDecoder.eccLen, copied, 0, conventionalDecoder.eccLen);
-            System.arraycopy(codeword, 0, copied, conventionalDecoder.eccLen, codeword.length - conventionalDecoder.eccLen);
-
-            if (dualBasis) {
-                // Apply invertedT to the codeword: this action restores the RS symbols as generated by the conventional encoder
-                // and reconstruct the original input to the conventional encoder as well.
-                for (int i = 0; i < copied.length; ++i) {
-                    copied[i] = (byte) RsCcsdsUtil.multiplyInverted(Byte.toUnsignedInt(copied[i]));
-                }
-            }
-            byte[] decoded = conventionalDecoder.check(copied, true);
-            if (decoded != null && dualBasis) {
-                // Apply straightT to the decoded message
-                for (int i = 0; i < decoded.length; ++i) {
-                    decoded[i] = (byte) RsCcsdsUtil.multiplyStraight(Byte.toUnsignedInt(decoded[i]));
-                }
-            }
-            return decoded;
+        if (errorChecking && checker.hasErrors(codeword, 0, 1)) {
+            return null;
         }
+        return Arrays.copyOfRange(codeword, 0, codeword.length - conventionalDecoder.eccLen);
     }
 }
@@ -0,0 +1,413 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.algorithm.rs;
+
+import java.util.Arrays;
+
+/**
+ * A Reed-Solomon error corrector, supporting dual basis transformation as indicated in CCSDS 131.0-B-3, Annex F. The
+ * correction of a codeword is performed with the classic approach:
+ * <ul>
+ *     <li>computation of the syndromes;</li>
+ *     <li>computation of the error locator polynomial by means of the Berlekamp-Massey algorithm;</li>
+ *     <li>identification of the error positions by means of the Chien search;</li>
+ *     <li>computation of the error values by means of the Forney algorithm.</li>
+ * </ul>
+ * A codeword can be corrected if the number of symbol errors is not greater than half the number of RS symbols, i.e.
+ * 16 for a (255,223) code and 8 for a (255,239) code.
+ *
+ * The codeword is accessed directly inside the provided array with a configurable stride, so that the codewords of an
+ * interleaved codeblock (CCSDS 131.0-B-3, 4.3.5) can be checked and corrected in-place, without copying them. The
+ * dual basis transformation is merged into the syndrome computation by means of a lookup table (the identity table is
+ * used if the dual basis representation is not used), the syndromes are computed with precomputed multiplication tables
+ * for the evaluation points and all the other field operations are performed with the exp/log tables of
+ * {@link GaloisField}, without branches on zero operands.
+ *
+ * All the working memory is allocated at construction time: an instance of this class does not allocate memory when
+ * used, but it is not thread-safe.
+ */
+public class RsErrorCorrector {
+
+    private static final int[] IDENTITY_TABLE = createIdentityTable();
+
+    private final int messageLen;
+
+    private final int eccLen;
+
+    private final int codewordLen;
+
+    // The field order, i.e. the number of non-zero elements
+    private final int order;
+
+    private final int initialRoot;
+
+    // Logarithm of the code generator
+    private final int logGenerator;
+
+    // Exp/log tables of the field
+    private final int[] expTable;
+    private final int[] logTable;
+
+    // Transformation of the input symbols to the conventional representation, and back
+    private final int[] inputTable;
+    private final int[] outputTable;
+
+    // Multiplication tables for the points where the syndromes are evaluated, i.e. generator^(initialRoot + j): the
+    // product between x and the point j is stored at index j * fieldSize + x
+    private final int[] syndromeMulTables;
+
+    private final int fieldSize;
+
+    // Logarithms of the factors applied at each step of the Chien search to the term i: generator^(-i)
+    private final int[] chienStepLogs;
+
+    // Working memory
+    private final int[] syndromes;
+    private final int[] locator;
+    private final int[] previousLocator;
+    private final int[] tempLocator;
+    private final int[] evaluator;
+    private final int[] chienTerms;
+    private final int[] errorPositions;
+    private final int[] errorValues;
+
+    // Journal of the corrections applied since the last call to startJournal(): array index and applied mask
+    private int[] journalIndices = new int[0];
+    private byte[] journalMasks = new byte[0];
+    private int journalSize = -1; // -1 if the journal is not active
+
+    /**
+     * Constructor of the corrector.
+     *
+     * @param conventionalDecoder the conventional RS encoder/decoder defining the code
+     * @param dualBasis true if dual basis representation is used, false otherwise
+     */
+    public RsErrorCorrector(ReedSolomon conventionalDecoder, boolean dualBasis) {
+        GaloisField field = conventionalDecoder.field();
+        this.messageLen = conventionalDecoder.messageLen;
+        this.eccLen = conventionalDecoder.eccLen;
+        this.codewordLen = conventionalDecoder.codewordLen;
+        this.order = field.order();
+        this.initialRoot = conventionalDecoder.initialRoot();
+        if(this.codewordLen > this.order) {
+            throw new IllegalArgumentException("Codeword length " + this.codewordLen + " exceeds the field order " + this.order);
+        }
+        if(dualBasis && field.size() != 256) {
+            throw new IllegalArgumentException("Dual basis representation is supported only for GF(256)");
+        }
+        int generator = conventionalDecoder.generator();
+        if(generator <= 0 || generator >= field.size() || gcd(field.log(generator), this.order) != 1) {
+            throw new IllegalArgumentException("Generator " + generator + " is not a primitive element of the field");
+        }
+        this.logGenerator = field.log(generator);
+        this.expTable = field.expTable();
+        this.logTable = field.logTable();
+        if(dualBasis) {
+            this.inputTable = RsCcsdsUtil.invertedTable();
+            this.outputTable = RsCcsdsUtil.straightTable();
+        } else {
+            this.inputTable = IDENTITY_TABLE;
+            this.outputTable = IDENTITY_TABLE;
+        }
+        this.fieldSize = field.size();
+        this.syndromeMulTables = new int[this.eccLen * this.fieldSize];
+        for(int j = 0; j < this.eccLen; ++j) {
+            int logPoint = (int) (((long) (this.initialRoot + j) * this.logGenerator) % this.order);
+            for(int x = 0; x < this.fieldSize; ++x) {
+                this.syndromeMulTables[j * this.fieldSize + x] = this.expTable[this.logTable[x] + logPoint];
+            }
+        }
+        this.chienStepLogs = new int[this.eccLen + 1];
+        for(int i = 0; i <= this.eccLen; ++i) {
+            this.chienStepLogs[i] = this.order - (int) (((long) i * this.logGenerator) % this.order);
+        }
+        // Allocate the working memory
+        this.syndromes = new int[this.eccLen];
+        this.locator = new int[this.eccLen + 1];
+        this.previousLocator = new int[this.eccLen + 1];
+        this.tempLocator = new int[this.eccLen + 1];
+        this.evaluator = new int[this.eccLen];
+        this.chienTerms = new int[this.eccLen + 1];
+        this.errorPositions = new int[this.eccLen];
+        this.errorValues = new int[this.eccLen];
+    }
+
+    // The identity lookup table, used when the dual basis representation is not used: the returned array must not be modified
+    static int[] identityTable() {
+        return IDENTITY_TABLE;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static int[] createIdentityTable() {
+        int[] table = new int[256];
+        for(int i = 0; i < table.length; ++i) {
+            table[i] = i;
+        }
+        return table;
+    }
+
+    /**
+     * This method checks whether the codeword contains errors. The codeword symbols are read from the provided array,
+     * starting at the provided offset and taking one symbol every stride bytes: the message symbols come first,
+     * followed by the RS symbols, i.e. the transmission order of CCSDS 131.0-B-3. For non-interleaved codewords, stride
+     * must be 1. For an interleaved codeblock with interleaving depth I, the codeword i (0 &lt;= i &lt; I) is
+     * identified by offset i and stride I.
+     *
+     * @param data the array containing the codeword
+     * @param offset the position of the first symbol of the codeword
+     * @param stride the distance between two consecutive symbols of the codeword
+     * @return true if the codeword has errors, false otherwise
+     */
+    public boolean hasErrors(byte[] data, int offset, int stride) {
+        checkBounds(data, offset, stride);
+        return computeSyndromes(data, offset, stride);
+    }
+
+    /**
+     * This method checks the codeword and, if errors are detected, it tries to correct them in-place. The codeword is
+     * identified inside the provided array as described in {@link #hasErrors(byte[], int, int)}.
+     *
+     * If the codeword cannot be corrected, the provided array is not modified.
+     *
+     * @param data the array containing the codeword
+     * @param offset the position of the first symbol of the codeword
+     * @param stride the distance between two consecutive symbols of the codeword
+     * @return the number of corrected symbols (0 if the codeword has no errors), or -1 if the codeword cannot be corrected
+     */
+    public int correct(byte[] data, int offset, int stride) {
+        checkBounds(data, offset, stride);
+        if(!computeSyndromes(data, offset, stride)) {
+            // No errors
+            return 0;
+        }
+        int numErrors = computeErrorLocator();
+        if(numErrors < 0 || 2 * numErrors > eccLen) {
+            return -1;
+        }
+        if(!findErrorPositions(numErrors)) {
+            return -1;
+        }
+        computeErrorEvaluator(numErrors);
+        // Compute the error values first, so that the data is left untouched in case of failure
+        for(int i = 0; i < numErrors; ++i) {
+            int errorValue = computeErrorValue(errorPositions[i], numErrors);
+            if(errorValue == 0) {
+                return -1;
+            }
+            errorValues[i] = errorValue;
+        }
+        // Apply the correction
+        for(int i = 0; i < numErrors; ++i) {
+            int position = errorPositions[i];
+            int transmissionIndex = position < eccLen ? messageLen + position : position - eccLen;
+            int dataIndex = offset + transmissionIndex * stride;
+            byte mask = (byte) outputTable[errorValues[i]];
+            data[dataIndex] ^= mask;
+            if(journalSize >= 0) {
+                journalIndices[journalSize] = dataIndex;
+                journalMasks[journalSize] = mask;
+                ++journalSize;
+            }
+        }
+        return numErrors;
+    }
+
+    /**
+     * This method starts recording the corrections applied by the next invocations of {@link #correct(byte[], int, int)},
+     * up to the provided number of codewords, so that they can be reverted by {@link #rollbackJournal(byte[])}. Any
+     * previously recorded correction is forgotten.
+     *
+     * @param maxCodewords the maximum number of codewords that will be corrected before the journal is stopped
+     */
+    public void startJournal(int maxCodewords) {
+        int capacity = maxCodewords * (eccLen / 2);
+        if(journalIndices.length < capacity) {
+            journalIndices = new int[capacity];
+            journalMasks = new byte[capacity];
+        }
+        journalSize = 0;
+    }
+
+    /**
+     * This method reverts, in the provided array, all the corrections recorded since the last invocation of
+     * {@link #startJournal(int)}, and stops the journal.
+     *
+     * @param data the array containing the corrected codewords
+     */
+    public void rollbackJournal(byte[] data) {
+        for(int i = journalSize - 1; i >= 0; --i) {
+            data[journalIndices[i]] ^= journalMasks[i];
+        }
+        stopJournal();
+    }
+
+    /**
+     * This method stops recording the corrections applied by {@link #correct(byte[], int, int)}.
+     */
+    public void stopJournal() {
+        journalSize = -1;
+    }
+
+    private void checkBounds(byte[] data, int offset, int stride) {
+        if(offset < 0 || stride <= 0 || offset + (long) (codewordLen - 1) * stride >= data.length) {
+            throw new IllegalArgumentException("Codeword with offset " + offset + " and stride " + stride + " does not fit into an array of length " + data.length);
+        }
+    }
+
+    // Computes the syndromes S_j = codeword(generator^(initialRoot + j)) in a single pass over the codeword. The
+    // conventional decoder polynomial has the RS symbols as lowest coefficients and the message symbols as highest
+    // coefficients, so Horner's method starts from the last message symbol down to the first one, then from the last
+    // RS symbol down to the first one. Returns true if at least one syndrome is not zero.
+    private boolean computeSyndromes(byte[] data, int offset, int stride) {
+        final int[] mul = this.syndromeMulTables;
+        final int[] in = this.inputTable;
+        final int[] s = this.syndromes;
+        final int size = this.fieldSize;
+        Arrays.fill(s, 0);
+        for(int k = messageLen - 1; k >= 0; --k) {
+            int c = in[data[offset + k * stride] & 0xFF];
+            for(int j = 0, base = 0; j < s.length; ++j, base += size) {
+                s[j] = mul[base + s[j]] ^ c;
+            }
+        }
+        for(int k = codewordLen - 1; k >= messageLen; --k) {
+            int c = in[data[offset + k * stride] & 0xFF];
+            for(int j = 0, base = 0; j < s.length; ++j, base += size) {
+                s[j] = mul[base + s[j]] ^ c;
+            }
+        }
+        int nonZero = 0;
+        for(int value : s) {
+            nonZero |= value;
+        }
+        return nonZero != 0;
+    }
+
+    private int multiply(int a, int b) {
+        return expTable[logTable[a] + logTable[b]];
+    }
+
+    private int divide(int a, int b) {
+        return expTable[logTable[a] + order - logTable[b]];
+    }
+
+    // Berlekamp-Massey algorithm: computes the error locator polynomial and returns its degree, or -1 if the degree
+    // of the polynomial is not consistent with the number of errors.
+    private int computeErrorLocator() {
+        Arrays.fill(locator, 0);
+        Arrays.fill(previousLocator, 0);
+        locator[0] = 1;
+        previousLocator[0] = 1;
+        int numErrors = 0;
+        int shift = 1;
+        int previousDiscrepancy = 1;
+        for(int n = 0; n < eccLen; ++n) {
+            int discrepancy = syndromes[n];
+            for(int i = 1; i <= numErrors; ++i) {
+                discrepancy ^= multiply(locator[i], syndromes[n - i]);
+            }
+            if(discrepancy == 0) {
+                ++shift;
+            } else if(2 * numErrors <= n) {
+                System.arraycopy(locator, 0, tempLocator, 0, locator.length);
+                int coefficient = divide(discrepancy, previousDiscrepancy);
+                for(int i = 0; i + shift < locator.length; ++i) {
+                    locator[i + shift] ^= multiply(coefficient, previousLocator[i]);
+                }
+                numErrors = n + 1 - numErrors;
+                System.arraycopy(tempLocator, 0, previousLocator, 0, locator.length);
+                previousDiscrepancy = discrepancy;
+                shift = 1;
+            } else {
+                int coefficient = divide(discrepancy, previousDiscrepancy);
+                for(int i = 0; i + shift < locator.length; ++i) {
+                    locator[i + shift] ^= multiply(coefficient, previousLocator[i]);
+                }
+                ++shift;
+            }
+        }
+        // Check the actual degree of the polynomial
+        for(int i = numErrors + 1; i < locator.length; ++i) {
+            if(locator[i] != 0) {
+                return -1;
+            }
+        }
+        if(locator[numErrors] == 0) {
+            return -1;
+        }
+        return numErrors;
+    }
+
+    // Chien search: the error at position p (coefficient of x^p) is a root of the locator polynomial in generator^(-p).
+    // Returns true if the number of roots found matches the degree of the locator polynomial.
+    private boolean findErrorPositions(int numErrors) {
+        System.arraycopy(locator, 0, chienTerms, 0, numErrors + 1);
+        int found = 0;
+        for(int p = 0; p < codewordLen; ++p) {
+            int sum = 0;
+            for(int i = 0; i <= numErrors; ++i) {
+                sum ^= chienTerms[i];
+            }
+            if(sum == 0) {
+                if(found == numErrors) {
+                    return false;
+                }
+                errorPositions[found++] = p;
+            }
+            // Move to the next point: term i is multiplied by generator^(-i)
+            for(int i = 1; i <= numErrors; ++i) {
+                chienTerms[i] = expTable[logTable[chienTerms[i]] + chienStepLogs[i]];
+            }
+        }
+        return found == numErrors;
+    }
+
+    // Computes the error evaluator polynomial: Omega(x) = S(x) * Lambda(x) mod x^eccLen
+    private void computeErrorEvaluator(int numErrors) {
+        for(int i = 0; i < eccLen; ++i) {
+            int value = 0;
+            for(int j = 0; j <= Math.min(i, numErrors); ++j) {
+                value ^= multiply(locator[j], syndromes[i - j]);
+            }
+            evaluator[i] = value;
+        }
+    }
+
+    // Forney algorithm: e = X^(1 - initialRoot) * Omega(X^-1) / Lambda'(X^-1), with X = generator^position
+    private int computeErrorValue(int position, int numErrors) {
+        int logX = (int) (((long) position * logGenerator) % order);
+        int logInverse = (order - logX) % order;
+        // Evaluate Omega(X^-1)
+        int omega = 0;
+        for(int i = eccLen - 1; i >= 0; --i) {
+            omega = expTable[logTable[omega] + logInverse] ^ evaluator[i];
+        }
+        // Evaluate Lambda'(X^-1): in GF(2^m) only the odd powers survive the formal derivative
+        int derivative = 0;
+        for(int i = 1; i <= numErrors; i += 2) {
+            derivative ^= expTable[logTable[locator[i]] + (int) (((long) logInverse * (i - 1)) % order)];
+        }
+        if(derivative == 0 || omega == 0) {
+            return 0;
+        }
+        int logFactor = (int) Math.floorMod((long) logX * (1 - initialRoot), (long) order);
+        return expTable[logFactor + logTable[divide(omega, derivative)]];
+    }
+}
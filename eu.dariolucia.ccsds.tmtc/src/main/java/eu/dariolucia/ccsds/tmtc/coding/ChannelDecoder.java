@@ -18,7 +18,7 @@ package eu.dariolucia.ccsds.tmtc.coding;
 
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
@@ -43,6 +43,10 @@ import java.util.function.UnaryOperator;
  * If configure is invoked and a new encoder is added, an exception is thrown.
  * If the channel encoder is attempted to be used without invoking the configure method, an exception is thrown.
  *
+ * In addition to byte[] to byte[] functions, {@link IDecodingStage} objects can be added by means of the
+ * addDecodingStage method: such stages work in-place on a {@link DecodingBuffer} view of the provided byte[], so that
+ * sync marker removal, de-randomization and Reed-Solomon checks do not create intermediate copies of the data.
+ *
  * @param <T> subclass of the {@link AbstractTransferFrame} class
  */
 public class ChannelDecoder<T extends AbstractTransferFrame> implements Function<byte[], T> {
@@ -62,7 +66,7 @@ public class ChannelDecoder<T extends AbstractTransferFrame> implements Function
 
     private final IDecodingFunction<T> frameDecoder;
 
-    private final List<UnaryOperator<byte[]>> sequentialDecoders = new LinkedList<>();
+    private final List<IDecodingStage> sequentialDecoders = new ArrayList<>();
 
     private boolean configured = false;
 
@@ -75,16 +79,50 @@ public class ChannelDecoder<T extends AbstractTransferFrame> implements Function
 
     /**
      * This method adds a function byte[] to byte[] to the decoding chain. Functions are applied in the
-     * order used to add them to the channel decoder.
+     * order used to add them to the channel decoder. If the function also implements {@link IDecodingStage}, it is
+     * added as decoding stage (see {@link ChannelDecoder#addDecodingStage(IDecodingStage)}).
      *
      * @param function the {@link UnaryOperator} to add
      * @return this object instance
      */
     public ChannelDecoder<T> addDecodingFunction(UnaryOperator<byte[]> function) {
+        if(function == null) {
+            throw new NullPointerException("Decoding function cannot be null");
+        }
+        if(function instanceof IDecodingStage) {
+            return addStage((IDecodingStage) function);
+        }
+        return addStage(buffer -> {
+            byte[] decoded = function.apply(buffer.toArray());
+            if(decoded == null) {
+                return false;
+            }
+            buffer.set(decoded, 0, decoded.length);
+            return true;
+        });
+    }
+
+    /**
+     * This method adds a decoding stage to the decoding chain. Differently from byte[] to byte[] functions, decoding
+     * stages work in-place on a view of the provided byte[], so that no intermediate copies are created. Stages and
+     * functions are applied in the order used to add them to the channel decoder. The annotations attached by the
+     * stages to the {@link DecodingBuffer} are transferred to the decoded frame.
+     *
+     * @param stage the {@link IDecodingStage} to add
+     * @return this object instance
+     */
+    public ChannelDecoder<T> addDecodingStage(IDecodingStage stage) {
+        if(stage == null) {
+            throw new NullPointerException("Decoding stage cannot be null");
+        }
+        return addStage(stage);
+    }
+
+    private ChannelDecoder<T> addStage(IDecodingStage stage) {
         if(this.configured) {
             throw new IllegalStateException("Channel decoder already configured");
         }
-        this.sequentialDecoders.add(function);
+        this.sequentialDecoders.add(stage);
         return this;
     }
 
@@ -100,10 +138,11 @@ public class ChannelDecoder<T extends AbstractTransferFrame> implements Function
     }
 
     /**
-     * This method applies the full decoding pipeline.
+     * This method applies the full decoding pipeline. If a decoding function returns null or a decoding stage returns
+     * false (e.g. a Reed-Solomon or BCH decoder rejecting the data), the pipeline is interrupted and null is returned.
      *
      * @param item the encoded transfer frame to decode
-     * @return the decoded frame
+     * @return the decoded frame, or null if the frame was rejected by a decoding function
      * @throws IllegalStateException if the decoder is not configured via ({@link ChannelDecoder#configure()}
      */
     @Override
@@ -111,10 +150,16 @@ public class ChannelDecoder<T extends AbstractTransferFrame> implements Function
         if(!this.configured) {
             throw new IllegalStateException("Channel decoder not configured yet");
         }
-        byte[] toDecode = item;
-        for(UnaryOperator<byte[]> f : sequentialDecoders) {
-            toDecode = f.apply(toDecode);
+        DecodingBuffer toDecode = new DecodingBuffer(item);
+        for(IDecodingStage stage : sequentialDecoders) {
+            if(!stage.decode(toDecode)) {
+                return null;
+            }
+        }
+        T frame = this.frameDecoder.apply(toDecode.getData(), toDecode.getOffset(), toDecode.getLength());
+        if(frame != null) {
+            toDecode.annotate(frame);
         }
-        return this.frameDecoder.apply(toDecode);
+        return frame;
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding;
+
+import eu.dariolucia.ccsds.tmtc.util.AnnotatedObject;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A mutable view over a portion (offset and length) of a byte array, used by {@link IDecodingStage} objects to decode
+ * data in-place, without creating intermediate copies. Decoding stages can shrink the view (e.g. to remove a sync
+ * marker or a Reed-Solomon block) or replace the underlying array.
+ *
+ * Decoding stages can also attach information about the decoding process (e.g. the number of corrected symbols) to
+ * the buffer: the {@link ChannelDecoder} transfers such annotations to the decoded frame.
+ */
+public final class DecodingBuffer {
+
+    private byte[] data;
+
+    private int offset;
+
+    private int length;
+
+    private AnnotationKey<?>[] annotationKeys;
+
+    private Object[] annotationValues;
+
+    private int annotations;
+
+    /**
+     * Create a buffer view over the complete provided array.
+     *
+     * @param data the data
+     */
+    public DecodingBuffer(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Create a buffer view over the specified portion of the provided array.
+     *
+     * @param data the data
+     * @param offset the offset of the first byte of the view
+     * @param length the number of bytes of the view
+     * @throws IndexOutOfBoundsException if offset and length are not within the bounds of the array
+     */
+    public DecodingBuffer(byte[] data, int offset, int length) {
+        set(data, offset, length);
+    }
+
+    /**
+     * Replace the view with the specified portion of the provided array.
+     *
+     * @param data the data
+     * @param offset the offset of the first byte of the view
+     * @param length the number of bytes of the view
+     * @throws IndexOutOfBoundsException if offset and length are not within the bounds of the array
+     */
+    public void set(byte[] data, int offset, int length) {
+        if(data == null) {
+            throw new NullPointerException("Data cannot be null");
+        }
+        Objects.checkFromIndexSize(offset, length, data.length);
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * This method returns the direct reference to the underlying array.
+     *
+     * @return the underlying array
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * This method returns the offset of the first byte of the view in the underlying array.
+     *
+     * @return the offset of the view
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * This method returns the number of bytes of the view.
+     *
+     * @return the length of the view
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * This method removes the specified number of bytes from the beginning of the view.
+     *
+     * @param bytes the number of bytes to remove
+     * @throws IllegalArgumentException if bytes is negative or greater than the view length
+     */
+    public void skip(int bytes) {
+        if(bytes < 0 || bytes > length) {
+            throw new IllegalArgumentException("Cannot skip " + bytes + " bytes, view length is " + length);
+        }
+        this.offset += bytes;
+        this.length -= bytes;
+    }
+
+    /**
+     * This method removes the specified number of bytes from the end of the view.
+     *
+     * @param bytes the number of bytes to remove
+     * @throws IllegalArgumentException if bytes is negative or greater than the view length
+     */
+    public void truncate(int bytes) {
+        if(bytes < 0 || bytes > length) {
+            throw new IllegalArgumentException("Cannot truncate " + bytes + " bytes, view length is " + length);
+        }
+        this.length -= bytes;
+    }
+
+    /**
+     * This method attaches an annotation, related to the decoding of this buffer, to be transferred to the decoded
+     * frame. If an annotation with the same key is already present, its value is replaced.
+     *
+     * @param key the annotation key
+     * @param value the annotation value
+     * @param <T> the type of the annotation value
+     */
+    public <T> void setAnnotationValue(AnnotationKey<T> key, T value) {
+        if(key == null) {
+            throw new NullPointerException("Annotation key cannot be null");
+        }
+        for(int i = 0; i < annotations; ++i) {
+            if(annotationKeys[i].equals(key)) {
+                annotationValues[i] = value;
+                return;
+            }
+        }
+        if(annotationKeys == null) {
+            annotationKeys = new AnnotationKey<?>[2];
+            annotationValues = new Object[2];
+        } else if(annotations == annotationKeys.length) {
+            annotationKeys = Arrays.copyOf(annotationKeys, annotations * 2);
+            annotationValues = Arrays.copyOf(annotationValues, annotations * 2);
+        }
+        annotationKeys[annotations] = key;
+        annotationValues[annotations] = value;
+        ++annotations;
+    }
+
+    /**
+     * This method returns the value of the annotation attached to this buffer with the provided key.
+     *
+     * @param key the annotation key
+     * @param <T> the type of the annotation value
+     * @return the annotation value, or null if not present
+     */
+    public <T> T getAnnotationValue(AnnotationKey<T> key) {
+        for(int i = 0; i < annotations; ++i) {
+            if(annotationKeys[i].equals(key)) {
+                return key.cast(annotationValues[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method transfers the annotations attached to this buffer to the provided object.
+     *
+     * @param target the object to annotate
+     */
+    public void annotate(AnnotatedObject target) {
+        for(int i = 0; i < annotations; ++i) {
+            target.setAnnotationValue((Object) annotationKeys[i], annotationValues[i]);
+        }
+    }
+
+    /**
+     * This method returns the content of the view as byte array: if the view covers the complete underlying array,
+     * the underlying array is returned, otherwise a copy of the view is returned.
+     *
+     * @return the content of the view
+     */
+    public byte[] toArray() {
+        if(offset == 0 && length == data.length) {
+            return data;
+        } else {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+    }
+}
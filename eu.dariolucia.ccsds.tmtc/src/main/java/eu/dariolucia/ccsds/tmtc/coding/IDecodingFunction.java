@@ -18,6 +18,7 @@ package eu.dariolucia.ccsds.tmtc.coding;
 
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
 
+import java.util.Arrays;
 import java.util.function.Function;
 
 /**
@@ -30,4 +31,21 @@ import java.util.function.Function;
 @FunctionalInterface
 public interface IDecodingFunction<T extends AbstractTransferFrame> extends Function<byte[], T> {
 
+    /**
+     * This method decodes the frame located in the provided array at the given offset. The default implementation
+     * passes the array to {@link #apply(Object)} if the frame covers the complete array, otherwise it passes a copy of
+     * the frame.
+     *
+     * @param data the array containing the frame
+     * @param offset the offset of the frame in the array
+     * @param length the length of the frame
+     * @return the decoded frame
+     */
+    default T apply(byte[] data, int offset, int length) {
+        if(offset == 0 && length == data.length) {
+            return apply(data);
+        } else {
+            return apply(Arrays.copyOfRange(data, offset, offset + length));
+        }
+    }
 }
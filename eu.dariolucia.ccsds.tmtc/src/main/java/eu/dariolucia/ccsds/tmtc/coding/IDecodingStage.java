@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding;
+
+/**
+ * This interface embodies the concept of a decoding stage working on a {@link DecodingBuffer}, i.e. on a portion of a
+ * byte array. Differently from the byte[] to byte[] functions, a decoding stage is expected to work in-place and to
+ * reduce the view of the buffer instead of creating copies of the data.
+ *
+ * A decoding stage can attach information about the decoding process to the buffer (see
+ * {@link DecodingBuffer#setAnnotationValue(eu.dariolucia.ccsds.tmtc.util.AnnotationKey, Object)}): the
+ * {@link ChannelDecoder} transfers it to the decoded frame.
+ */
+@FunctionalInterface
+public interface IDecodingStage {
+
+    /**
+     * This method decodes the data in the provided buffer view, updating the view as needed.
+     *
+     * @param buffer the buffer view to decode
+     * @return true if the data was decoded, false if the data was rejected (e.g. uncorrectable errors detected)
+     */
+    boolean decode(DecodingBuffer buffer);
+}
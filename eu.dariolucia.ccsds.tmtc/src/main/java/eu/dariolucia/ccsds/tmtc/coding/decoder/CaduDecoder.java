@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.decoder;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.RandomizerAlgorithm;
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
+import eu.dariolucia.ccsds.tmtc.coding.IDecodingStage;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class decodes a CADU (channel access data unit) in a single stage: the sync marker is checked and removed,
+ * the data is de-randomized (TM pseudo-random pattern, as per CCSDS 131.0-B-3, 10.4) and the Reed-Solomon codewords
+ * are checked (and optionally corrected), before removing the Reed-Solomon block. All operations are performed in-place
+ * on the provided data, without intermediate copies: when used as {@link IDecodingStage} in a
+ * {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder}, the resulting view points to the frame inside the original array.
+ *
+ * If error correction is enabled, the number of corrected symbols per codeword (int[]) is attached to the frame decoded
+ * by the {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder}, using the annotation key
+ * {@link ReedSolomonDecoder#ANNOTATION_RS_CORRECTED_SYMBOLS}.
+ */
+public class CaduDecoder implements UnaryOperator<byte[]>, IDecodingStage {
+
+    private final byte[] synchMarker;
+    private final boolean derandomize;
+    private final ReedSolomonAlgorithm algorithm;
+    private final int interleavingDepth;
+    private final boolean errorCorrection;
+
+    /**
+     * Construct a CADU decoder.
+     *
+     * @param synchMarker the sync marker to be checked and removed, can be null if no sync marker is present
+     * @param derandomize true if the data shall be de-randomized, false otherwise
+     * @param rs the Reed-Solomon algorithm used to check the codewords, can be null if no Reed-Solomon block is present
+     * @param interleavingDepth the interleaving depth (meaningful only if rs is not null)
+     * @param errorCorrection true if the Reed-Solomon errors shall be corrected, false if they shall only be detected
+     */
+    public CaduDecoder(byte[] synchMarker, boolean derandomize, ReedSolomonAlgorithm rs, int interleavingDepth, boolean errorCorrection) {
+        if(rs != null && interleavingDepth <= 0) {
+            throw new IllegalArgumentException("Interleaving depth must be positive, got " + interleavingDepth);
+        }
+        this.synchMarker = synchMarker != null ? synchMarker : new byte[0];
+        this.derandomize = derandomize;
+        this.algorithm = rs;
+        this.interleavingDepth = interleavingDepth;
+        this.errorCorrection = rs != null && errorCorrection;
+    }
+
+    /**
+     * Construct a CADU decoder using the default sync marker and de-randomization.
+     *
+     * @param rs the Reed-Solomon algorithm used to check the codewords
+     * @param interleavingDepth the interleaving depth
+     * @param errorCorrection true if the Reed-Solomon errors shall be corrected, false if they shall only be detected
+     */
+    public CaduDecoder(ReedSolomonAlgorithm rs, int interleavingDepth, boolean errorCorrection) {
+        this(TmAsmDecoder.DEFAULT_ATTACHED_SYNC_MARKER, true, rs, interleavingDepth, errorCorrection);
+    }
+
+    /**
+     * This method decodes the provided CADU. Differently from the other functions, the provided input is de-randomized
+     * (and corrected) in-place.
+     *
+     * @param input the CADU to decode
+     * @return a copy of the decoded frame, or null if the Reed-Solomon check failed
+     * @throws NullPointerException if input is null
+     * @throws IllegalArgumentException if the sync marker cannot be detected in the provided input
+     */
+    @Override
+    public byte[] apply(byte[] input) {
+        if(input == null) {
+            throw new NullPointerException("Input cannot be null");
+        }
+        DecodingBuffer buffer = new DecodingBuffer(input);
+        return decode(buffer) ? Arrays.copyOfRange(input, buffer.getOffset(), buffer.getOffset() + buffer.getLength()) : null;
+    }
+
+    /**
+     * This method decodes the CADU in the provided buffer view, in-place.
+     *
+     * @param buffer the buffer view containing the CADU
+     * @return true if the CADU was decoded, false if the Reed-Solomon check failed
+     * @throws IllegalArgumentException if the sync marker cannot be detected in the provided buffer view
+     */
+    @Override
+    public boolean decode(DecodingBuffer buffer) {
+        byte[] data = buffer.getData();
+        int offset = buffer.getOffset();
+        int length = buffer.getLength();
+        // Sync marker
+        if(length < synchMarker.length || !Arrays.equals(data, offset, offset + synchMarker.length, synchMarker, 0, synchMarker.length)) {
+            throw new IllegalArgumentException("Configured ASM cannot be detected: " + Arrays.toString(synchMarker));
+        }
+        offset += synchMarker.length;
+        length -= synchMarker.length;
+        // De-randomization
+        if(derandomize) {
+            RandomizerAlgorithm.randomizeFrameTm(data, offset, length);
+        }
+        // Reed-Solomon
+        int frameLength = length;
+        if(algorithm != null) {
+            if(errorCorrection) {
+                int[] correctedSymbols = new int[interleavingDepth];
+                if(!algorithm.correctFrame(data, offset, length, interleavingDepth, correctedSymbols)) {
+                    return false;
+                }
+                buffer.setAnnotationValue(ReedSolomonDecoder.ANNOTATION_RS_CORRECTED_SYMBOLS, correctedSymbols);
+            } else if(!algorithm.checkFrame(data, offset, length, interleavingDepth)) {
+                return false;
+            }
+            frameLength = algorithm.computeDecodedFrameLength(length);
+        }
+        buffer.set(data, offset, frameLength);
+        return true;
+    }
+}
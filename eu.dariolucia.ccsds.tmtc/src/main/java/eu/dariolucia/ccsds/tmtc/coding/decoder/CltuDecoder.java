@@ -17,6 +17,9 @@
 package eu.dariolucia.ccsds.tmtc.coding.decoder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.BchCltuAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
+import eu.dariolucia.ccsds.tmtc.coding.IDecodingStage;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
 
 import java.util.function.UnaryOperator;
 
@@ -24,14 +27,41 @@ import java.util.function.UnaryOperator;
  * This functional class wraps a {@link BchCltuAlgorithm} instance to allow its usage in expression using {@link java.util.stream.Stream}
  * objects or in {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder} instances.
  *
- * XXX: It could be considered redundant, since the decodeCltu method can be addressed by using method references.
+ * If a {@link BchCltuAlgorithm.DecodingMode} different from NONE is specified, apply returns null if a codeblock is
+ * rejected. In {@link BchCltuAlgorithm.DecodingMode#ERROR_CORRECTION} mode, the number of corrected codeblocks (Integer)
+ * is attached to the frame decoded by the {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder}, using the annotation
+ * key {@link CltuDecoder#ANNOTATION_BCH_CORRECTED_CODEBLOCKS}.
  */
-public class CltuDecoder implements UnaryOperator<byte[]> {
+public class CltuDecoder implements UnaryOperator<byte[]>, IDecodingStage {
+
+    /**
+     * Annotation key for the number of corrected codeblocks (Integer), set if error correction is enabled.
+     */
+    public static final AnnotationKey<Integer> ANNOTATION_BCH_CORRECTED_CODEBLOCKS = AnnotationKey.BCH_CORRECTED_CODEBLOCKS;
 
     private final BchCltuAlgorithm cltuDecoderAlgorithm;
 
-    public CltuDecoder(BchCltuAlgorithm cltuDecoderAlgorithm) {
+    private final BchCltuAlgorithm.DecodingMode decodingMode;
+
+    /**
+     * Construct a function that decodes a CLTU with the provided algorithm and decoding mode.
+     *
+     * @param cltuDecoderAlgorithm the BCH algorithm to use for decoding
+     * @param decodingMode the decoding mode
+     */
+    public CltuDecoder(BchCltuAlgorithm cltuDecoderAlgorithm, BchCltuAlgorithm.DecodingMode decodingMode) {
+        if(cltuDecoderAlgorithm == null) {
+            throw new NullPointerException("BCH algorithm cannot be null");
+        }
+        if(decodingMode == null) {
+            throw new NullPointerException("Decoding mode cannot be null");
+        }
         this.cltuDecoderAlgorithm = cltuDecoderAlgorithm;
+        this.decodingMode = decodingMode;
+    }
+
+    public CltuDecoder(BchCltuAlgorithm cltuDecoderAlgorithm) {
+        this(cltuDecoderAlgorithm, BchCltuAlgorithm.DecodingMode.NONE);
     }
 
     public CltuDecoder() {
@@ -43,6 +73,22 @@ public class CltuDecoder implements UnaryOperator<byte[]> {
         if(input == null) {
             throw new NullPointerException("Input cannot be null");
         }
-        return this.cltuDecoderAlgorithm.decodeCltu(input);
+        return this.cltuDecoderAlgorithm.decodeCltu(input, decodingMode);
+    }
+
+    @Override
+    public boolean decode(DecodingBuffer buffer) {
+        byte[] input = buffer.toArray();
+        byte[] output = new byte[this.cltuDecoderAlgorithm.computeFrameLength(input.length)];
+        int[] correctedCodeblocks = decodingMode == BchCltuAlgorithm.DecodingMode.ERROR_CORRECTION ? new int[1] : null;
+        int frameLength = this.cltuDecoderAlgorithm.decodeCltu(input, decodingMode, output, 0, correctedCodeblocks);
+        if(frameLength < 0) {
+            return false;
+        }
+        buffer.set(output, 0, frameLength);
+        if(correctedCodeblocks != null) {
+            buffer.setAnnotationValue(ANNOTATION_BCH_CORRECTED_CODEBLOCKS, correctedCodeblocks[0]);
+        }
+        return true;
     }
 }
@@ -17,44 +17,71 @@
 package eu.dariolucia.ccsds.tmtc.coding.decoder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
+import eu.dariolucia.ccsds.tmtc.coding.IDecodingStage;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
 
 import java.util.function.UnaryOperator;
 
 /**
- * This functional class wraps a {@link ReedSolomonAlgorithm}, including the specification of the interleaving depth and
- * the error checking (set to 0 and false by default), to allow its usage in expression using {@link java.util.stream.Stream}
- * objects or in {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder} instances.
+ * This functional class wraps a {@link ReedSolomonAlgorithm}, including the specification of the interleaving depth,
+ * the error checking and the error correction (set to 0, false and false by default), to allow its usage in expression
+ * using {@link java.util.stream.Stream} objects or in {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder} instances.
+ *
+ * If error correction is enabled, the correction is performed in-place on the provided input and the number of corrected
+ * symbols per codeword (int[]) is attached to the frame decoded by the {@link eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder},
+ * using the annotation key {@link ReedSolomonDecoder#ANNOTATION_RS_CORRECTED_SYMBOLS}.
  */
-public class ReedSolomonDecoder implements UnaryOperator<byte[]> {
+public class ReedSolomonDecoder implements UnaryOperator<byte[]>, IDecodingStage {
+
+    /**
+     * Annotation key for the number of corrected symbols per codeword (int[]), set if error correction is enabled.
+     */
+    public static final AnnotationKey<int[]> ANNOTATION_RS_CORRECTED_SYMBOLS = AnnotationKey.RS_CORRECTED_SYMBOLS;
 
     private final ReedSolomonAlgorithm algorithm;
     private final int interleavingDepth;
     private final boolean errorChecking;
+    private final boolean errorCorrection;
 
     /**
-     * Construct a function that decodes a Reed-Solomon encoded frame, with the provided interleaving depth and error
-     * detection capability.
+     * Construct a function that decodes a Reed-Solomon encoded frame, with the provided interleaving depth, error
+     * detection and error correction capability.
      *
      * @param rs the Reed-Solomon algorithm to use for decoding
-     * @param interleavingDepth the interleaving depth (meaningful only if errorChecking is true)
+     * @param interleavingDepth the interleaving depth (meaningful only if errorChecking or errorCorrection is true)
      * @param errorChecking true if error detection shall be enabled (in that case apply returns null if the frame has errors), false otherwise
+     * @param errorCorrection true if error correction shall be enabled (in that case apply returns null if the frame has errors that cannot be corrected), false otherwise
      */
-    public ReedSolomonDecoder(ReedSolomonAlgorithm rs, int interleavingDepth, boolean errorChecking) {
+    public ReedSolomonDecoder(ReedSolomonAlgorithm rs, int interleavingDepth, boolean errorChecking, boolean errorCorrection) {
         if(rs == null) {
             throw new NullPointerException("Reed-Solomon algorithm cannot be null");
         }
         this.algorithm = rs;
         this.errorChecking = errorChecking;
+        this.errorCorrection = errorCorrection;
         this.interleavingDepth = interleavingDepth;
     }
 
+    /**
+     * Construct a function that decodes a Reed-Solomon encoded frame, with the provided interleaving depth and error
+     * detection capability.
+     *
+     * @param rs the Reed-Solomon algorithm to use for decoding
+     * @param interleavingDepth the interleaving depth (meaningful only if errorChecking is true)
+     * @param errorChecking true if error detection shall be enabled (in that case apply returns null if the frame has errors), false otherwise
+     */
+    public ReedSolomonDecoder(ReedSolomonAlgorithm rs, int interleavingDepth, boolean errorChecking) {
+        this(rs, interleavingDepth, errorChecking, false);
+    }
+
     /**
      * Construct a function that decodes a Reed-Solomon encoded frame without error detection (quick-look).
      *
      * @param rs the Reed-Solomon algorithm
      */
     public ReedSolomonDecoder(ReedSolomonAlgorithm rs) {
-        this(rs, 0, false);
+        this(rs, 0, false, false);
     }
 
     @Override
@@ -62,6 +89,28 @@ public class ReedSolomonDecoder implements UnaryOperator<byte[]> {
         if(input == null) {
             throw new NullPointerException("Input cannot be null");
         }
-        return this.algorithm.decodeFrame(input, interleavingDepth, errorChecking);
+        if(errorCorrection) {
+            return this.algorithm.correctFrame(input, interleavingDepth, null);
+        } else {
+            return this.algorithm.decodeFrame(input, interleavingDepth, errorChecking);
+        }
+    }
+
+    @Override
+    public boolean decode(DecodingBuffer buffer) {
+        byte[] data = buffer.getData();
+        int offset = buffer.getOffset();
+        int length = buffer.getLength();
+        if(errorCorrection) {
+            int[] correctedSymbols = new int[interleavingDepth];
+            if(!this.algorithm.correctFrame(data, offset, length, interleavingDepth, correctedSymbols)) {
+                return false;
+            }
+            buffer.setAnnotationValue(ANNOTATION_RS_CORRECTED_SYMBOLS, correctedSymbols);
+        } else if(errorChecking && !this.algorithm.checkFrame(data, offset, length, interleavingDepth)) {
+            return false;
+        }
+        buffer.truncate(length - this.algorithm.computeDecodedFrameLength(length));
+        return true;
     }
 }
@@ -16,6 +16,8 @@
 
 package eu.dariolucia.ccsds.tmtc.coding.decoder;
 
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
+import eu.dariolucia.ccsds.tmtc.coding.IDecodingStage;
 import eu.dariolucia.ccsds.tmtc.coding.encoder.TmAsmEncoder;
 
 import java.util.Arrays;
@@ -26,8 +28,11 @@ import java.util.function.UnaryOperator;
  * If no sync marker is specified, the 4 bytes sync marker specified by CCSDS for RS encoded frames are used (0x1ACFFC1D).
  * This class actually checks whether the sync marker is present. If it is not detected, the apply method throws an
  * {@link IllegalArgumentException}.
+ *
+ * When used as {@link IDecodingStage}, the sync marker is removed by moving the start of the buffer view, without
+ * copying the data.
  */
-public class TmAsmDecoder implements UnaryOperator<byte[]> {
+public class TmAsmDecoder implements UnaryOperator<byte[]>, IDecodingStage {
 
     public static final byte[] DEFAULT_ATTACHED_SYNC_MARKER = TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER;
 
@@ -68,4 +73,21 @@ public class TmAsmDecoder implements UnaryOperator<byte[]> {
 
         return Arrays.copyOfRange(input, synchMarker.length, input.length);
     }
+
+    /**
+     * This method removes the sync marker from the provided buffer view, without copying the data.
+     *
+     * @param buffer the buffer view from which the sync marker shall be removed
+     * @return true
+     * @throws IllegalArgumentException if the sync marker cannot be detected in the provided buffer view
+     */
+    @Override
+    public boolean decode(DecodingBuffer buffer) {
+        int offset = buffer.getOffset();
+        if(buffer.getLength() < synchMarker.length || !Arrays.equals(buffer.getData(), offset, offset + synchMarker.length, synchMarker, 0, synchMarker.length)) {
+            throw new IllegalArgumentException("Configured ASM cannot be detected: " + Arrays.toString(synchMarker));
+        }
+        buffer.skip(synchMarker.length);
+        return true;
+    }
 }
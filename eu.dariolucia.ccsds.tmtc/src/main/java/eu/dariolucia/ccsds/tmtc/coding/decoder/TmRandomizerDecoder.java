@@ -17,6 +17,8 @@
 package eu.dariolucia.ccsds.tmtc.coding.decoder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.RandomizerAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
+import eu.dariolucia.ccsds.tmtc.coding.IDecodingStage;
 
 import java.util.function.UnaryOperator;
 
@@ -26,7 +28,7 @@ import java.util.function.UnaryOperator;
  *
  * XXX: It could be considered redundant, since the randomizeFrameTm method can be addressed by using method references.
  */
-public class TmRandomizerDecoder implements UnaryOperator<byte[]> {
+public class TmRandomizerDecoder implements UnaryOperator<byte[]>, IDecodingStage {
 
     @Override
     public byte[] apply(byte[] input) {
@@ -37,4 +39,10 @@ public class TmRandomizerDecoder implements UnaryOperator<byte[]> {
 
         return input;
     }
+
+    @Override
+    public boolean decode(DecodingBuffer buffer) {
+        RandomizerAlgorithm.randomizeFrameTm(buffer.getData(), buffer.getOffset(), buffer.getLength());
+        return true;
+    }
 }
@@ -24,6 +24,14 @@ import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
  * This functional class wraps a {@link ReedSolomonAlgorithm}, including the specification of the interleaving depth
  * to allow its usage in expression using {@link java.util.stream.Stream} objects or in {@link eu.dariolucia.ccsds.tmtc.coding.ChannelEncoder} instances.
  *
+ * By default, each invocation returns a new array. If the reuse of the output buffer is requested at construction time,
+ * the frame and the RS symbols are written into an output array allocated once per thread and reused at each
+ * invocation (a new output array is allocated only if the frame length changes), so that no memory is allocated when
+ * encoding: in such case, the returned array is valid only until the next invocation of the function in the same
+ * thread. This mode is meant for {@link eu.dariolucia.ccsds.tmtc.coding.ChannelEncoder} chains
+ * where the following encoding functions copy the data (e.g. {@link TmAsmEncoder}) or the caller consumes the result
+ * before encoding the next frame.
+ *
  * @param <T> subtype of {@link AbstractTransferFrame}, typically {@link eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame} or {@link eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame}
  */
 public class ReedSolomonEncoder<T extends AbstractTransferFrame> implements IEncodingFunction<T> {
@@ -32,12 +40,36 @@ public class ReedSolomonEncoder<T extends AbstractTransferFrame> implements IEnc
 
     private final int interleavingDepth;
 
+    private final boolean reuseOutputBuffer;
+
+    // Output buffer, reused across invocations, if reuseOutputBuffer is true
+    private final ThreadLocal<byte[][]> outputBuffer;
+
+    /**
+     * Construct a function that encodes a frame, allocating a new array for each encoded frame.
+     *
+     * @param rs the Reed-Solomon algorithm to use for encoding
+     * @param interleavingDepth the interleaving depth
+     */
     public ReedSolomonEncoder(ReedSolomonAlgorithm rs, int interleavingDepth) {
+        this(rs, interleavingDepth, false);
+    }
+
+    /**
+     * Construct a function that encodes a frame, optionally reusing a per-thread output array.
+     *
+     * @param rs the Reed-Solomon algorithm to use for encoding
+     * @param interleavingDepth the interleaving depth
+     * @param reuseOutputBuffer true if the output array must be allocated once per thread and reused, false if a new array must be allocated for each encoded frame
+     */
+    public ReedSolomonEncoder(ReedSolomonAlgorithm rs, int interleavingDepth, boolean reuseOutputBuffer) {
         if(rs == null) {
             throw new NullPointerException("Reed-Solomon algorithm cannot be null");
         }
         this.algorithm = rs;
         this.interleavingDepth = interleavingDepth;
+        this.reuseOutputBuffer = reuseOutputBuffer;
+        this.outputBuffer = reuseOutputBuffer ? ThreadLocal.withInitial(() -> new byte[1][0]) : null;
     }
 
     @Override
@@ -45,6 +77,16 @@ public class ReedSolomonEncoder<T extends AbstractTransferFrame> implements IEnc
         if(input == null) {
             throw new NullPointerException("Input cannot be null");
         }
-        return this.algorithm.encodeFrame(input, interleavingDepth);
+        if(reuseOutputBuffer) {
+            byte[][] holder = this.outputBuffer.get();
+            int encodedLength = this.algorithm.computeEncodedFrameLength(input.length);
+            if(holder[0].length != encodedLength) {
+                holder[0] = new byte[encodedLength];
+            }
+            this.algorithm.encodeFrame(input, 0, input.length, interleavingDepth, holder[0], 0);
+            return holder[0];
+        } else {
+            return this.algorithm.encodeFrame(input, interleavingDepth);
+        }
     }
 }
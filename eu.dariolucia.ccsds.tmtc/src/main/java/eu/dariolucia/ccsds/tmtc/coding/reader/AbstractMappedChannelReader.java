@@ -0,0 +1,383 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Abstract class used to implement {@link IChannelReader} that read fixed length records from files, by means of
+ * memory-mapped {@link FileChannel} regions. Each record is made of an optional prefix (e.g. a sync marker) and of the
+ * transfer unit: the transfer units can be returned as zero-copy, read-only {@link ByteBuffer} slices of the mapped
+ * file, copied into a caller-provided buffer, or streamed via a {@link Spliterator}, which supports parallel processing.
+ *
+ * The file is mapped in windows (64 MB by default), so that files larger than 2 GB can be processed. Slices returned
+ * by this class remain valid after the reader moves to a new window, as long as they are referenced.
+ */
+public abstract class AbstractMappedChannelReader implements IChannelReader {
+
+    /**
+     * Default size of the mapped windows.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final long REPEAT_BYTE = 0x0101010101010101L;
+
+    protected final FileChannel channel;
+
+    protected final long fileSize;
+
+    protected final int recordLength;
+
+    protected final int unitOffset;
+
+    protected final int unitLength;
+
+    private final int windowSize;
+
+    private final MappedRegion region;
+
+    private long position;
+
+    /**
+     * Constructor of the reader.
+     *
+     * @param channel the file channel to read
+     * @param recordLength the length of each record in the file
+     * @param unitOffset the offset of the transfer unit inside each record
+     * @param unitLength the length of the transfer unit
+     * @param windowSize the size of the mapped windows, it must be at least twice the record length
+     * @throws IOException if the size of the file cannot be retrieved
+     */
+    protected AbstractMappedChannelReader(FileChannel channel, int recordLength, int unitOffset, int unitLength, int windowSize) throws IOException {
+        if(channel == null) {
+            throw new NullPointerException("Null channel provided");
+        }
+        if(recordLength <= 0 || unitOffset < 0 || unitLength <= 0 || unitOffset + unitLength > recordLength) {
+            throw new IllegalArgumentException("Wrong record definition: record length " + recordLength + ", unit offset " + unitOffset + ", unit length " + unitLength);
+        }
+        if(windowSize < 2 * recordLength) {
+            throw new IllegalArgumentException("Window size " + windowSize + " must be at least twice the record length " + recordLength);
+        }
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.recordLength = recordLength;
+        this.unitOffset = unitOffset;
+        this.unitLength = unitLength;
+        this.windowSize = windowSize;
+        this.region = new MappedRegion();
+        this.position = channel.position();
+    }
+
+    /**
+     * Utility method to open a file in read mode.
+     *
+     * @param file the file to open
+     * @return the file channel
+     * @throws IOException if the file cannot be opened
+     */
+    protected static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * This method locates the next record, whose start is in the range [position, end). The record must be fully
+     * contained in the file.
+     *
+     * @param region the region to use to access the file
+     * @param position the position in the file, from which the search starts
+     * @param end the limit (exclusive) for the start of the record
+     * @return the position of the start of the record, or -1 if no record starts in the provided range
+     * @throws IOException if the located record is truncated or wrong data is read
+     */
+    protected abstract long locate(MappedRegion region, long position, long end) throws IOException;
+
+    /**
+     * This method computes the position where the range [from, to) can be split, so that each record belongs to
+     * exactly one of the two resulting ranges.
+     *
+     * @param region the region to use to access the file
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the split position, or -1 if the range cannot be split
+     */
+    protected abstract long split(MappedRegion region, long from, long to);
+
+    /**
+     * This method returns whether the number of records in a range can be computed exactly from the range length.
+     *
+     * @return true if the number of records is known, false if it is an estimation
+     */
+    protected abstract boolean isSized();
+
+    /**
+     * This method returns the next transfer unit as zero-copy, read-only slice of the mapped file.
+     *
+     * @return the next transfer unit, or null if no more transfer units are available
+     * @throws IOException if the transfer unit is truncated or wrong data is read
+     */
+    public ByteBuffer readNextSlice() throws IOException {
+        long recordStart = position < fileSize ? locate(region, position, fileSize) : -1;
+        if(recordStart < 0) {
+            position = fileSize;
+            return null;
+        }
+        position = recordStart + recordLength;
+        return region.slice(recordStart + unitOffset, unitLength);
+    }
+
+    @Override
+    public int readNext(byte[] b, int offset, int maxLength) throws IOException {
+        if(maxLength < unitLength) {
+            throw new IOException("Provided buffer free space " + maxLength + " bytes is less than required " + unitLength + " bytes");
+        }
+        ByteBuffer slice = readNextSlice();
+        if(slice == null) {
+            return -1;
+        }
+        slice.get(b, offset, unitLength);
+        return unitLength;
+    }
+
+    @Override
+    public byte[] readNext() throws IOException {
+        byte[] b = new byte[unitLength];
+        int read = readNext(b, 0, b.length);
+        if(read > 0) {
+            return b;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * This method returns a {@link Spliterator} over the transfer units, from the current read position to the end of
+     * the file. The spliterator uses its own mappings and does not affect the read position of this reader. Exceptions
+     * raised during the traversal are reported as {@link UncheckedIOException}.
+     *
+     * @return the spliterator of the transfer units, as zero-copy slices
+     */
+    public Spliterator<ByteBuffer> spliterator() {
+        return new MappedSpliterator(position, fileSize);
+    }
+
+    /**
+     * This method returns a {@link Stream} over the transfer units, from the current read position to the end of
+     * the file.
+     *
+     * @param parallel true if the stream must be parallel, false otherwise
+     * @return the stream of the transfer units, as zero-copy slices
+     */
+    public Stream<ByteBuffer> stream(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * This method is used to close the underlying {@link FileChannel}.
+     *
+     * @throws IOException in case the channel raises an exception on close
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Access to the file via a mapped window, which is moved as needed. Objects of this class are not thread-safe.
+     */
+    protected final class MappedRegion {
+
+        private MappedByteBuffer buffer;
+
+        private long base;
+
+        private MappedRegion() {
+            // Only created by the reader
+        }
+
+        private ByteBuffer map(long position, int length) {
+            if(buffer == null || position < base || position + length > base + buffer.limit()) {
+                int size = (int) Math.min(Math.max(windowSize, length), fileSize - position);
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                base = position;
+            }
+            return buffer;
+        }
+
+        /**
+         * This method returns a read-only slice of the file.
+         *
+         * @param position the position in the file
+         * @param length the length of the slice
+         * @return the slice
+         */
+        public ByteBuffer slice(long position, int length) {
+            ByteBuffer b = map(position, length).duplicate();
+            int relative = (int) (position - base);
+            b.limit(relative + length).position(relative);
+            return b.slice();
+        }
+
+        /**
+         * This method checks whether the provided marker is present in the file at the provided position.
+         *
+         * @param position the position in the file
+         * @param marker the marker
+         * @return true if the marker is fully contained in the file at the provided position, false otherwise
+         */
+        public boolean matches(long position, byte[] marker) {
+            if(position < 0 || position + marker.length > fileSize) {
+                return false;
+            }
+            ByteBuffer b = map(position, marker.length);
+            return matches(b, (int) (position - base), marker);
+        }
+
+        private boolean matches(ByteBuffer b, int index, byte[] marker) {
+            for(int i = 0; i < marker.length; ++i) {
+                if(b.get(index + i) != marker[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * This method searches the first occurrence of the marker, fully contained in the [from, to) range of the file.
+         * The search for the first byte of the marker is performed 8 bytes at a time.
+         *
+         * @param marker the marker to search
+         * @param from the position in the file, from which the search starts
+         * @param to the limit (exclusive) of the search
+         * @return the position of the marker, or -1 if not found
+         */
+        public long indexOf(byte[] marker, long from, long to) {
+            to = Math.min(to, fileSize);
+            long pattern = (marker[0] & 0xFFL) * REPEAT_BYTE;
+            while(to - from >= marker.length) {
+                ByteBuffer b = map(from, (int) Math.min(windowSize, to - from));
+                int i = (int) (from - base);
+                // Last index (inclusive) where the marker can start, in this window
+                int last = (int) (Math.min(to, base + b.limit()) - base) - marker.length;
+                while(i <= last) {
+                    if(i + Long.BYTES - 1 <= last) {
+                        // Find the bytes equal to the first byte of the marker: set the MSB of each zero byte of x
+                        long x = b.getLong(i) ^ pattern;
+                        long zeroes = ~(((x & LOW_7_BITS) + LOW_7_BITS) | x | LOW_7_BITS);
+                        if(zeroes == 0) {
+                            i += Long.BYTES;
+                            continue;
+                        }
+                        // Big endian: the first byte in memory is the most significant one
+                        i += Long.numberOfLeadingZeros(zeroes) >>> 3;
+                    } else if(b.get(i) != marker[0]) {
+                        ++i;
+                        continue;
+                    }
+                    if(matches(b, i, marker)) {
+                        return base + i;
+                    }
+                    ++i;
+                }
+                from = base + last + 1;
+            }
+            return -1;
+        }
+
+        /**
+         * This method returns the size of the file.
+         *
+         * @return the size of the file
+         */
+        public long fileSize() {
+            return fileSize;
+        }
+    }
+
+    private final class MappedSpliterator implements Spliterator<ByteBuffer> {
+
+        private final MappedRegion spliteratorRegion = new MappedRegion();
+
+        private long position;
+
+        private final long end;
+
+        private MappedSpliterator(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ByteBuffer> action) {
+            if(position >= end) {
+                return false;
+            }
+            long recordStart;
+            try {
+                recordStart = locate(spliteratorRegion, position, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if(recordStart < 0) {
+                position = end;
+                return false;
+            }
+            position = recordStart + recordLength;
+            action.accept(spliteratorRegion.slice(recordStart + unitOffset, unitLength));
+            return true;
+        }
+
+        @Override
+        public Spliterator<ByteBuffer> trySplit() {
+            if(end - position < 2L * recordLength) {
+                return null;
+            }
+            long splitPosition = split(spliteratorRegion, position, end);
+            if(splitPosition <= position || splitPosition >= end) {
+                return null;
+            }
+            MappedSpliterator prefix = new MappedSpliterator(position, splitPosition);
+            position = splitPosition;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(0, (end - position + recordLength - 1) / recordLength);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE | (isSized() ? SIZED | SUBSIZED : 0);
+        }
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This class is an implementation of the {@link IChannelReader} that extracts fixed length transfer units from a
+ * continuous bitstream, read from a {@link ReadableByteChannel}, by correlating the synchronisation marker.
+ *
+ * The synchronizer implements the classic search/check/lock/flywheel state machine:
+ * <ul>
+ * <li>SEARCH: the sync marker is searched at every bit position (or at every byte position, if bit-level search is
+ * disabled), accepting up to a configurable number of bit errors. If enabled, the inverted sync marker is also
+ * searched: in such case, the bitstream is inverted when the transfer units are extracted;</li>
+ * <li>CHECK: the candidate position is confirmed if the sync marker is also found after the configured number of
+ * transfer units. If so, the synchronizer goes to LOCK and the transfer units are delivered starting from the candidate
+ * position, otherwise the search continues from the next position;</li>
+ * <li>LOCK: the sync marker is expected after each transfer unit, accepting up to a configurable number of bit errors.
+ * If it is not found at the expected position, it is searched within a configurable bit slip window: if found, the
+ * synchronizer realigns to it;</li>
+ * <li>FLYWHEEL: if the sync marker is not found, the transfer units are still delivered at the expected positions, up
+ * to the configured number of consecutive misses. Then the synchronizer goes back to SEARCH.</li>
+ * </ul>
+ *
+ * The provided channel is expected to be in blocking mode. The data is read in an internal buffer, allocated at
+ * construction time: no memory is allocated when transfer units are read via {@link #readNext(byte[], int, int)}.
+ * Sync markers up to 64 bits are supported.
+ *
+ * Objects of this class are not thread-safe.
+ */
+public class FrameSynchronizerChannelReader implements IChannelReader {
+
+    /**
+     * The state of the synchronizer.
+     */
+    public enum State {
+        SEARCH,
+        CHECK,
+        LOCK,
+        FLYWHEEL
+    }
+
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final byte[] syncMarker;
+
+    private final long syncMarkerValue;
+
+    private final long syncMarkerMask;
+
+    private final int syncMarkerBits;
+
+    private final int frameLength;
+
+    private final long recordBits;
+
+    // Configuration
+    private boolean includeSyncMarker = false;
+    private int searchErrorTolerance = 0;
+    private int lockErrorTolerance = 0;
+    private int checkCount = 1;
+    private int flywheelCount = 0;
+    private int bitSlipWindow = 0;
+    private boolean bitLevelSearch = true;
+    private boolean invertedPolarityDetection = false;
+
+    // Buffer: the extra bytes at the end allow reading 64 bits starting at any valid byte without bound checks
+    private byte[] data;
+    private ByteBuffer readBuffer;
+    private int dataLength;
+    private boolean endOfStream;
+    private boolean started;
+
+    // State machine
+    private State state = State.SEARCH;
+    private long bitPosition;
+    private boolean inverted;
+    private int missedMarkers;
+    private int lastMarkerErrors;
+
+    // Statistics
+    private long lockedFrames;
+    private long flywheelFrames;
+    private long lockLosses;
+    private long bitSlips;
+
+    /**
+     * Construct a frame synchronizer with the default configuration: no bit errors accepted in the sync marker, one
+     * sync marker to check before declaring lock, no flywheel, no bit slip window, bit-level search, no inverted
+     * polarity detection, sync marker not included in the transfer units.
+     *
+     * @param channel the channel to read
+     * @param syncMarker the sync marker, up to 8 bytes
+     * @param frameLength the length of the transfer unit that follows the sync marker
+     */
+    public FrameSynchronizerChannelReader(ReadableByteChannel channel, byte[] syncMarker, int frameLength) {
+        if(channel == null) {
+            throw new NullPointerException("Null channel provided");
+        }
+        if(syncMarker == null) {
+            throw new NullPointerException("Null sync marker provided");
+        }
+        if(syncMarker.length == 0 || syncMarker.length > Long.BYTES) {
+            throw new IllegalArgumentException("Sync marker length must be between 1 and 8 bytes, got " + syncMarker.length);
+        }
+        if(frameLength <= 0) {
+            throw new IllegalArgumentException("Frame length must be positive, got " + frameLength);
+        }
+        this.channel = channel;
+        this.syncMarker = syncMarker.clone();
+        this.syncMarkerBits = syncMarker.length * 8;
+        long value = 0;
+        for(byte b : syncMarker) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        this.syncMarkerValue = value;
+        this.syncMarkerMask = syncMarkerBits == 64 ? -1L : (1L << syncMarkerBits) - 1;
+        this.frameLength = frameLength;
+        this.recordBits = syncMarkerBits + 8L * frameLength;
+    }
+
+    /**
+     * Set whether the sync marker (as configured, i.e. without errors) shall be written before each transfer unit.
+     *
+     * @param includeSyncMarker true if the sync marker shall be included, false otherwise
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setIncludeSyncMarker(boolean includeSyncMarker) {
+        checkNotStarted();
+        this.includeSyncMarker = includeSyncMarker;
+        return this;
+    }
+
+    /**
+     * Set the number of bit errors accepted in the sync marker, when searching and when locked.
+     *
+     * @param searchErrorTolerance the number of bit errors accepted in SEARCH and CHECK states
+     * @param lockErrorTolerance the number of bit errors accepted in LOCK and FLYWHEEL states
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setErrorTolerance(int searchErrorTolerance, int lockErrorTolerance) {
+        checkNotStarted();
+        if(searchErrorTolerance < 0 || lockErrorTolerance < 0 || searchErrorTolerance >= syncMarkerBits / 2 || lockErrorTolerance >= syncMarkerBits / 2) {
+            throw new IllegalArgumentException("Error tolerance must be non-negative and less than half of the sync marker bits");
+        }
+        this.searchErrorTolerance = searchErrorTolerance;
+        this.lockErrorTolerance = lockErrorTolerance;
+        return this;
+    }
+
+    /**
+     * Set the number of subsequent sync markers that must be found, in order to confirm a candidate position.
+     *
+     * @param checkCount the number of sync markers to check (0 to lock on the first candidate)
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setCheckCount(int checkCount) {
+        checkNotStarted();
+        if(checkCount < 0) {
+            throw new IllegalArgumentException("Check count must be non-negative, got " + checkCount);
+        }
+        this.checkCount = checkCount;
+        return this;
+    }
+
+    /**
+     * Set the number of consecutive missing sync markers tolerated in lock, before going back to search.
+     *
+     * @param flywheelCount the number of consecutive missing sync markers
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setFlywheelCount(int flywheelCount) {
+        checkNotStarted();
+        if(flywheelCount < 0) {
+            throw new IllegalArgumentException("Flywheel count must be non-negative, got " + flywheelCount);
+        }
+        this.flywheelCount = flywheelCount;
+        return this;
+    }
+
+    /**
+     * Set the number of bits (before and after the expected position) in which the sync marker is searched in lock,
+     * if not found at the expected position.
+     *
+     * @param bitSlipWindow the bit slip window, in bits
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setBitSlipWindow(int bitSlipWindow) {
+        checkNotStarted();
+        if(bitSlipWindow < 0 || bitSlipWindow > 64) {
+            throw new IllegalArgumentException("Bit slip window must be between 0 and 64, got " + bitSlipWindow);
+        }
+        this.bitSlipWindow = bitSlipWindow;
+        return this;
+    }
+
+    /**
+     * Set whether the sync marker is searched at every bit position (true) or only at byte boundaries (false).
+     *
+     * @param bitLevelSearch true for bit-level search, false for byte-level search
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setBitLevelSearch(boolean bitLevelSearch) {
+        checkNotStarted();
+        this.bitLevelSearch = bitLevelSearch;
+        return this;
+    }
+
+    /**
+     * Set whether the inverted sync marker shall also be searched. If the inverted sync marker is found, the bitstream
+     * is inverted when extracting the transfer units.
+     *
+     * @param invertedPolarityDetection true to detect inverted polarity, false otherwise
+     * @return this object instance
+     */
+    public FrameSynchronizerChannelReader setInvertedPolarityDetection(boolean invertedPolarityDetection) {
+        checkNotStarted();
+        this.invertedPolarityDetection = invertedPolarityDetection;
+        return this;
+    }
+
+    private void checkNotStarted() {
+        if(started) {
+            throw new IllegalStateException("Frame synchronizer already started");
+        }
+    }
+
+    private void start() {
+        started = true;
+        int recordBytes = (int) ((recordBits + 7) / 8);
+        // Enough space for the record, the records to check, the bit slip margins
+        int size = Math.max(MIN_BUFFER_SIZE, (checkCount + 2) * recordBytes + 2 * (bitSlipWindow / 8 + 2));
+        data = new byte[size + Long.BYTES + 1];
+        readBuffer = ByteBuffer.wrap(data, 0, size);
+    }
+
+    @Override
+    public int readNext(byte[] b, int offset, int maxLength) throws IOException {
+        int outputLength = frameLength + (includeSyncMarker ? syncMarker.length : 0);
+        if(maxLength < outputLength) {
+            throw new IOException("Provided buffer free space " + maxLength + " bytes is less than required " + outputLength + " bytes");
+        }
+        if(!started) {
+            start();
+        }
+        while(true) {
+            switch (state) {
+                case SEARCH:
+                    if(!search()) {
+                        return -1;
+                    }
+                    break;
+                case CHECK:
+                    check();
+                    break;
+                case LOCK:
+                case FLYWHEEL:
+                    if(!track()) {
+                        return -1;
+                    }
+                    if(state == State.SEARCH) {
+                        break;
+                    }
+                    return extract(b, offset);
+                default:
+                    throw new IllegalStateException("State " + state + " not supported");
+            }
+            if(state == State.LOCK) {
+                // Just locked, deliver the first transfer unit
+                if(!ensure(bitPosition + recordBits)) {
+                    return -1;
+                }
+                lockedFrames++;
+                return extract(b, offset);
+            }
+        }
+    }
+
+    @Override
+    public byte[] readNext() throws IOException {
+        byte[] b = new byte[frameLength + (includeSyncMarker ? syncMarker.length : 0)];
+        int read = readNext(b, 0, b.length);
+        if(read > 0) {
+            return b;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Search the sync marker (normal or inverted) from the current position. If found, the state is set to CHECK and
+     * the current position is set to the candidate.
+     *
+     * @return false if the end of stream is reached before finding a candidate
+     */
+    private boolean search() throws IOException {
+        int step = bitLevelSearch ? 1 : 8;
+        if(!bitLevelSearch) {
+            // Realign to byte boundary
+            bitPosition = (bitPosition + 7) & ~7L;
+        }
+        while(ensure(bitPosition + syncMarkerBits)) {
+            long available = 8L * dataLength - syncMarkerBits;
+            while(bitPosition <= available) {
+                long value = readBits(bitPosition);
+                int errors = Long.bitCount(value ^ syncMarkerValue);
+                if(errors <= searchErrorTolerance) {
+                    inverted = false;
+                    lastMarkerErrors = errors;
+                    state = State.CHECK;
+                    return true;
+                }
+                if(invertedPolarityDetection && syncMarkerBits - errors <= searchErrorTolerance) {
+                    inverted = true;
+                    lastMarkerErrors = syncMarkerBits - errors;
+                    state = State.CHECK;
+                    return true;
+                }
+                bitPosition += step;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the subsequent sync markers after the candidate: if confirmed, the state is set to LOCK, otherwise the state
+     * is set to SEARCH and the current position is moved after the candidate.
+     */
+    private void check() throws IOException {
+        for(int i = 1; i <= checkCount; ++i) {
+            if(!ensure(bitPosition + i * recordBits + syncMarkerBits)) {
+                // End of stream: confirm on what is available
+                break;
+            }
+            // The buffer might have been compacted: compute the position after ensure()
+            if(markerErrors(bitPosition + i * recordBits) > searchErrorTolerance) {
+                state = State.SEARCH;
+                bitPosition += bitLevelSearch ? 1 : 8;
+                return;
+            }
+        }
+        state = State.LOCK;
+        missedMarkers = 0;
+    }
+
+    /**
+     * Verify the sync marker at the expected position (or in the bit slip window) and update the state accordingly.
+     *
+     * @return false if the end of stream is reached
+     */
+    private boolean track() throws IOException {
+        if(!ensure(bitPosition + recordBits + bitSlipWindow)) {
+            // Not enough data for a complete record (slip margin excluded)
+            if(!ensure(bitPosition + recordBits)) {
+                return false;
+            }
+        }
+        int errors = markerErrors(bitPosition);
+        if(errors > lockErrorTolerance) {
+            // Look in the bit slip window, closest positions first
+            for(int d = 1; d <= bitSlipWindow; ++d) {
+                int slipErrors;
+                if(bitPosition - d >= 0 && (slipErrors = markerErrors(bitPosition - d)) <= lockErrorTolerance) {
+                    bitPosition -= d;
+                    bitSlips++;
+                    errors = slipErrors;
+                    break;
+                }
+                if(ensure(bitPosition + d + recordBits) && (slipErrors = markerErrors(bitPosition + d)) <= lockErrorTolerance) {
+                    bitPosition += d;
+                    bitSlips++;
+                    errors = slipErrors;
+                    break;
+                }
+            }
+        }
+        lastMarkerErrors = errors;
+        if(errors <= lockErrorTolerance) {
+            state = State.LOCK;
+            missedMarkers = 0;
+            lockedFrames++;
+        } else if(++missedMarkers <= flywheelCount) {
+            state = State.FLYWHEEL;
+            flywheelFrames++;
+        } else {
+            state = State.SEARCH;
+            lockLosses++;
+            // Restart the search just after the previous lock position, considering the possible slip
+            bitPosition = Math.max(0, bitPosition - bitSlipWindow);
+        }
+        return true;
+    }
+
+    private int markerErrors(long position) {
+        long value = readBits(position);
+        if(inverted) {
+            value = ~value & syncMarkerMask;
+        }
+        return Long.bitCount(value ^ syncMarkerValue);
+    }
+
+    /**
+     * Write the transfer unit at the current position in the provided buffer and move to the next record.
+     */
+    private int extract(byte[] b, int offset) {
+        int written = 0;
+        if(includeSyncMarker) {
+            System.arraycopy(syncMarker, 0, b, offset, syncMarker.length);
+            written += syncMarker.length;
+        }
+        long frameStart = bitPosition + syncMarkerBits;
+        int byteIndex = (int) (frameStart >>> 3);
+        int shift = (int) (frameStart & 7);
+        int xor = inverted ? 0xFF : 0;
+        if(shift == 0) {
+            for(int i = 0; i < frameLength; ++i) {
+                b[offset + written + i] = (byte) (data[byteIndex + i] ^ xor);
+            }
+        } else {
+            for(int i = 0; i < frameLength; ++i) {
+                int v = (data[byteIndex + i] << shift) | ((data[byteIndex + i + 1] & 0xFF) >>> (8 - shift));
+                b[offset + written + i] = (byte) (v ^ xor);
+            }
+        }
+        bitPosition += recordBits;
+        return written + frameLength;
+    }
+
+    /**
+     * Read syncMarkerBits bits from the provided bit position. The data must be available.
+     */
+    private long readBits(long position) {
+        int byteIndex = (int) (position >>> 3);
+        int shift = (int) (position & 7);
+        long high = 0;
+        for(int i = 0; i < Long.BYTES; ++i) {
+            high = (high << 8) | (data[byteIndex + i] & 0xFF);
+        }
+        long value = shift == 0 ? high : (high << shift) | ((data[byteIndex + Long.BYTES] & 0xFF) >>> (8 - shift));
+        return (value >>> (64 - syncMarkerBits)) & syncMarkerMask;
+    }
+
+    /**
+     * Make sure that the bits up to the provided bit position (exclusive) are available in the buffer, compacting the
+     * buffer and reading from the channel as needed. Bit positions are adjusted upon compaction.
+     *
+     * @param untilBit the bit position (exclusive) that must be available
+     * @return true if the data is available, false if the end of stream was reached
+     */
+    private boolean ensure(long untilBit) throws IOException {
+        while(8L * dataLength < untilBit) {
+            if(endOfStream) {
+                return false;
+            }
+            if(dataLength == readBuffer.capacity() - (Long.BYTES + 1)) {
+                // Buffer full: discard the data before the current position, keeping the bit slip margin
+                int discard = (int) Math.max(0, (bitPosition - bitSlipWindow) >>> 3);
+                if(discard == 0) {
+                    throw new IllegalStateException("Frame synchronizer buffer too small");
+                }
+                System.arraycopy(data, discard, data, 0, dataLength - discard);
+                dataLength -= discard;
+                bitPosition -= 8L * discard;
+                untilBit -= 8L * discard;
+            }
+            readBuffer.limit(readBuffer.capacity() - (Long.BYTES + 1));
+            readBuffer.position(dataLength);
+            int read = channel.read(readBuffer);
+            if(read < 0) {
+                endOfStream = true;
+            } else {
+                dataLength += read;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method returns the current state of the synchronizer.
+     *
+     * @return the current state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * This method returns whether the bitstream is currently considered inverted.
+     *
+     * @return true if the inverted sync marker was detected, false otherwise
+     */
+    public boolean isInverted() {
+        return inverted;
+    }
+
+    /**
+     * This method returns the number of bit errors detected in the sync marker of the last delivered transfer unit.
+     *
+     * @return the number of bit errors in the last sync marker
+     */
+    public int getLastMarkerErrors() {
+        return lastMarkerErrors;
+    }
+
+    /**
+     * This method returns the number of transfer units delivered in LOCK state.
+     *
+     * @return the number of transfer units delivered in lock
+     */
+    public long getLockedFrames() {
+        return lockedFrames;
+    }
+
+    /**
+     * This method returns the number of transfer units delivered in FLYWHEEL state.
+     *
+     * @return the number of transfer units delivered in flywheel
+     */
+    public long getFlywheelFrames() {
+        return flywheelFrames;
+    }
+
+    /**
+     * This method returns the number of times the lock was lost.
+     *
+     * @return the number of lock losses
+     */
+    public long getLockLosses() {
+        return lockLosses;
+    }
+
+    /**
+     * This method returns the number of bit slips recovered in lock.
+     *
+     * @return the number of bit slips
+     */
+    public long getBitSlips() {
+        return bitSlips;
+    }
+
+    /**
+     * This method is used to close the underlying {@link ReadableByteChannel}.
+     *
+     * @throws IOException in case the channel raises an exception on close
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
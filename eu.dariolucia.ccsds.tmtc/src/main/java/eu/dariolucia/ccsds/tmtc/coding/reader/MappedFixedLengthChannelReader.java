@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * This class is an implementation of the {@link IChannelReader} capable to read transfer units of the same length
+ * from a memory-mapped file. It is the memory-mapped equivalent of {@link FixedLengthChannelReader}.
+ */
+public class MappedFixedLengthChannelReader extends AbstractMappedChannelReader {
+
+    public MappedFixedLengthChannelReader(Path file, int fixedLength) throws IOException {
+        this(open(file), fixedLength, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFixedLengthChannelReader(FileChannel channel, int fixedLength) throws IOException {
+        this(channel, fixedLength, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFixedLengthChannelReader(FileChannel channel, int fixedLength, int windowSize) throws IOException {
+        super(channel, fixedLength, 0, fixedLength, windowSize);
+    }
+
+    @Override
+    protected long locate(MappedRegion region, long position, long end) throws IOException {
+        if(position + recordLength > region.fileSize()) {
+            throw new IOException("File unexpectedly ended: " + (region.fileSize() - position) + " bytes available at position " + position + ", expected " + recordLength + " bytes");
+        }
+        return position;
+    }
+
+    @Override
+    protected long split(MappedRegion region, long from, long to) {
+        long records = (to - from) / recordLength;
+        return records < 2 ? -1 : from + (records / 2) * recordLength;
+    }
+
+    @Override
+    protected boolean isSized() {
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * This class is an implementation of the {@link IChannelReader} capable to read transfer units of fixed lengths,
+ * preceded by a synchronisation marker, from a memory-mapped file. It is the memory-mapped equivalent of
+ * {@link SyncMarkerFixedLengthChannelReader}: the implementation verifies the presence of the synchronisation marker and,
+ * depending on its construction, can try to recover a synchronisation loss or can throw an exception.
+ *
+ * The search of the synchronisation marker is performed 8 bytes at a time. When the {@link java.util.Spliterator}
+ * is split, the second part starts at the first synchronisation marker after the middle of the range, which is
+ * followed by another synchronisation marker (or by the end of the file) after the expected length.
+ */
+public class MappedSyncMarkerFixedLengthChannelReader extends AbstractMappedChannelReader {
+
+    private final byte[] syncMarker;
+
+    private final boolean throwExceptionOnSyncLoss;
+
+    public MappedSyncMarkerFixedLengthChannelReader(Path file, byte[] syncMarker, int fixedLength) throws IOException {
+        this(open(file), syncMarker, fixedLength, true, false, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedSyncMarkerFixedLengthChannelReader(FileChannel channel, byte[] syncMarker, int fixedLength, boolean includeStartMarker, boolean throwExceptionOnSyncLoss) throws IOException {
+        this(channel, syncMarker, fixedLength, includeStartMarker, throwExceptionOnSyncLoss, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedSyncMarkerFixedLengthChannelReader(FileChannel channel, byte[] syncMarker, int fixedLength, boolean includeStartMarker, boolean throwExceptionOnSyncLoss, int windowSize) throws IOException {
+        super(channel, syncMarker.length + fixedLength, includeStartMarker ? 0 : syncMarker.length, includeStartMarker ? syncMarker.length + fixedLength : fixedLength, windowSize);
+        if(syncMarker.length == 0) {
+            throw new IllegalArgumentException("Sync marker cannot be empty");
+        }
+        this.syncMarker = syncMarker.clone();
+        this.throwExceptionOnSyncLoss = throwExceptionOnSyncLoss;
+    }
+
+    @Override
+    protected long locate(MappedRegion region, long position, long end) throws IOException {
+        long recordStart;
+        if(region.matches(position, syncMarker)) {
+            recordStart = position;
+        } else if(throwExceptionOnSyncLoss) {
+            throw new SynchronizationLostException("Synchronization lost: sync marker not found at position " + position);
+        } else {
+            // The sync marker must start before the end of the range
+            recordStart = region.indexOf(syncMarker, position, end - 1 + syncMarker.length);
+            if(recordStart < 0) {
+                // No more data
+                return -1;
+            }
+        }
+        if(recordStart + recordLength > region.fileSize()) {
+            throw new IOException("File unexpectedly ended: " + (region.fileSize() - recordStart) + " bytes available at position " + recordStart + ", expected " + recordLength + " bytes");
+        }
+        return recordStart;
+    }
+
+    @Override
+    protected long split(MappedRegion region, long from, long to) {
+        long candidate = from + (to - from) / 2;
+        while(candidate < to) {
+            candidate = region.indexOf(syncMarker, candidate, to - 1 + syncMarker.length);
+            if(candidate < 0) {
+                return -1;
+            }
+            // Confirm the candidate with the next sync marker
+            long next = candidate + recordLength;
+            if(next == region.fileSize() || region.matches(next, syncMarker)) {
+                return candidate;
+            }
+            ++candidate;
+        }
+        return -1;
+    }
+
+    @Override
+    protected boolean isSized() {
+        return false;
+    }
+}
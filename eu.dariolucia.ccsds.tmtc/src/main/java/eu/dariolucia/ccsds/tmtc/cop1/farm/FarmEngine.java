@@ -19,10 +19,13 @@ package eu.dariolucia.ccsds.tmtc.cop1.farm;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrame;
 import eu.dariolucia.ccsds.tmtc.ocf.builder.ClcwBuilder;
 import eu.dariolucia.ccsds.tmtc.ocf.pdu.Clcw;
+import eu.dariolucia.ccsds.tmtc.util.SerialExecutor;
+import eu.dariolucia.ccsds.tmtc.util.SpscRingBuffer;
 
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -30,6 +33,17 @@ import java.util.function.Supplier;
  * This class implements the FARM side of the COP-1 protocol, as defined by CCSDS 232.1-B-2 Cor. 1.
  *
  * This class is thread-safe.
+ * <p>
+ * The FARM state machine and the delivery of the accepted frames to the higher procedures run on two
+ * {@link SerialExecutor} objects, i.e. the tasks of each of them are executed one at a time, in order. Accepted frames
+ * are handed over through a bounded ring buffer. By default, such tasks run on threads owned by the engine. To handle
+ * many virtual channels with a limited number of threads, engines can share the same executor (e.g. a fixed thread
+ * pool, or a virtual thread per task executor on Java 21+): see
+ * {@link FarmEngine#FarmEngine(int, Consumer, boolean, int, int, FarmState, int, Executor)}. Since the output consumer
+ * can block, the shared executor shall have enough threads to run the outputs of the engines and their state machines.
+ * <p>
+ * The CLCW reflecting the latest FARM status is published after each state transition and can be retrieved without
+ * blocking via {@link FarmEngine#getLastClcw()}, e.g. to feed the OCF supplier of a TM/AOS sender virtual channel.
  */
 public class FarmEngine implements Supplier<Clcw> {
 
@@ -37,13 +51,33 @@ public class FarmEngine implements Supplier<Clcw> {
 
     private final Consumer<TcTransferFrame> output;
 
-    private final ExecutorService farmExecutor;
+    private final SerialExecutor farmExecutor;
 
-    private final ExecutorService highLevelExecutor;
+    private final SerialExecutor highLevelExecutor;
 
-    private volatile Thread confinementThread; // NOSONAR only used for thread equality
+    /**
+     * The executor created by this engine, if no executor was provided: it is shut down upon disposal.
+     */
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Accepted frames waiting for delivery: the FARM entity processor is the only producer, the high level executor
+     * is the only consumer.
+     */
+    private final SpscRingBuffer<TcTransferFrame> framesToDeliver;
+
+    private final int bufferSize;
 
-    private final BlockingQueue<TcTransferFrame> framesToDeliver;
+    private final Runnable deliveryTask = this::deliverFrames;
+
+    private final Runnable bufferReleaseTask = this::processBufferRelease;
+
+    private final Runnable reportTask = this::processReport;
+
+    /**
+     * The last generated CLCW. Clcw objects are immutable.
+     */
+    private volatile Clcw lastClcw;
 
     private final List<IFarmObserver> observers = new CopyOnWriteArrayList<>();
 
@@ -104,6 +138,26 @@ public class FarmEngine implements Supplier<Clcw> {
      * @param initialReceiverFrameSequenceNumber the initial V(R), typically 0
      */
     public FarmEngine(int virtualChannelId, Consumer<TcTransferFrame> output, boolean retransmissionAllowed, int bufferSize, int farmSlidingWindowWidth, FarmState initialState, int initialReceiverFrameSequenceNumber) {
+        this(virtualChannelId, output, retransmissionAllowed, bufferSize, farmSlidingWindowWidth, initialState, initialReceiverFrameSequenceNumber, null);
+    }
+
+    /**
+     * Constructor of the FARM engine, running on the provided executor. The executor is not shut down when the engine
+     * is disposed, so that it can be shared among several engines.
+     *
+     * @param virtualChannelId the TC virtual channel ID controlled by this FARM entity
+     * @param output the {@link Consumer} to which accepted TC frames shall be forwarded
+     * @param retransmissionAllowed true if retransmission is allowed (ref. 6.1.8.2)
+     * @param bufferSize number of TC frames that can be accomodated in the buffer for forwarding to higher procedure
+     * @param farmSlidingWindowWidth width of the FARM sliding window
+     * @param initialState the initial state of the FARM, can be null. In such case, the FARM starts in LOCKOUT (S3)
+     * @param initialReceiverFrameSequenceNumber the initial V(R), typically 0
+     * @param executor the executor running the tasks of the FARM entity, can be null. In such case, the engine uses its own threads
+     */
+    public FarmEngine(int virtualChannelId, Consumer<TcTransferFrame> output, boolean retransmissionAllowed, int bufferSize, int farmSlidingWindowWidth, FarmState initialState, int initialReceiverFrameSequenceNumber, Executor executor) {
+        if(bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0, got " + bufferSize);
+        }
         if(retransmissionAllowed && (farmSlidingWindowWidth < 2 || farmSlidingWindowWidth > 254)) { // 6.1.8.2
             throw new IllegalArgumentException("If retransmission is allowed, farmSlidingWindowWidth must be within 2 and 254 (included)");
         }
@@ -117,23 +171,24 @@ public class FarmEngine implements Supplier<Clcw> {
         this.virtualChannelId = virtualChannelId;
         this.retransmissionAllowed = retransmissionAllowed;
         this.farmSlidingWindowWidth = farmSlidingWindowWidth;
-        this.farmExecutor = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r);
-            t.setDaemon(true);
-            t.setName("FARM Entity Processor for TC VC " + virtualChannelId);
-            FarmEngine.this.confinementThread = t;
-            return t;
-        });
-        this.framesToDeliver = new ArrayBlockingQueue<>(bufferSize);
-        this.highLevelExecutor = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r);
-            t.setDaemon(true);
-            t.setName("FARM Entity High Level for TC VC " + virtualChannelId);
-            return t;
-        });
-        this.highLevelExecutor.execute(this::deliverFrames);
+        if(executor == null) {
+            AtomicInteger threadCounter = new AtomicInteger(0);
+            this.ownedExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                t.setName("FARM Entity for TC VC " + virtualChannelId + " #" + threadCounter.incrementAndGet());
+                return t;
+            });
+            executor = this.ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+        }
+        this.farmExecutor = new SerialExecutor(executor);
+        this.highLevelExecutor = new SerialExecutor(executor);
+        this.bufferSize = bufferSize;
+        this.framesToDeliver = new SpscRingBuffer<>(bufferSize);
         //
-        switch (initialState) {
+        switch (initialState == null ? FarmState.S3 : initialState) {
             case S1:
                 this.state = new S1FarmState(this);
                 break;
@@ -150,15 +205,11 @@ public class FarmEngine implements Supplier<Clcw> {
         }
         // Prepare the builder
         this.clcwBuilder = ClcwBuilder.create().setVirtualChannelId(virtualChannelId);
-        try {
-            // Set the initial VR to 0
-            this.farmExecutor.submit(() -> setVr(this.receiverFrameSequenceNumber)).get();
-            // Generate the first CLCW state based on the initialised state
-            this.farmExecutor.submit(this::processReport).get();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-            throw new IllegalArgumentException("Exception while creating first CLCW during initialisation", e);
-        }
+        // Set the initial VR and generate the first CLCW state based on the initialised state. No task of the engine
+        // can run before the end of the constructor, so the FARM variables are initialised directly: waiting for the
+        // (possibly shared and busy) executor here could block forever.
+        updateVr(this.receiverFrameSequenceNumber);
+        processReport();
     }
 
     /**
@@ -180,18 +231,11 @@ public class FarmEngine implements Supplier<Clcw> {
     }
 
     private void deliverFrames() {
-        while(!highLevelExecutor.isShutdown()) {
-            try {
-                TcTransferFrame frameToDeliver = this.framesToDeliver.take();
-                farmExecutor.execute(this::processBufferRelease);
-                if(!highLevelExecutor.isShutdown()) {
-                    this.output.accept(frameToDeliver);
-                }
-            } catch(InterruptedException e) {
-                // Nothing, about to be disposed
-                Thread.currentThread().interrupt();
-                return;
-            }
+        // Invoked by the high level executor, the only consumer of the buffer
+        TcTransferFrame frameToDeliver;
+        while(!highLevelExecutor.isShutdown() && (frameToDeliver = this.framesToDeliver.poll()) != null) {
+            execute(farmExecutor, bufferReleaseTask);
+            this.output.accept(frameToDeliver);
         }
     }
 
@@ -221,6 +265,7 @@ public class FarmEngine implements Supplier<Clcw> {
             throw new IllegalArgumentException("Status field must be between 0 and 7 (inclusive), got " + statusField);
         }
         this.statusField = statusField;
+        execute(farmExecutor, reportTask);
     }
 
     /**
@@ -230,6 +275,7 @@ public class FarmEngine implements Supplier<Clcw> {
      */
     public void setNoBitLockFlag(boolean noBitLockFlag) {
         this.noBitLockFlag = noBitLockFlag;
+        execute(farmExecutor, reportTask);
     }
 
     /**
@@ -239,6 +285,7 @@ public class FarmEngine implements Supplier<Clcw> {
      */
     public void setNoRfAvailableFlag(boolean noRfAvailableFlag) {
         this.noRfAvailableFlag = noRfAvailableFlag;
+        execute(farmExecutor, reportTask);
     }
 
     /**
@@ -251,12 +298,13 @@ public class FarmEngine implements Supplier<Clcw> {
             throw new IllegalArgumentException("Reserved Spare must be between 0 and 3 (inclusive), got " + reservedSpare);
         }
         this.reservedSpare = reservedSpare;
+        execute(farmExecutor, reportTask);
     }
 
     /**
      * Dispose the FARM entity. This operation has the following effects:
      * <ul>
-     *     <li>the internal executors are shutdown</li>
+     *     <li>the internal executors are shutdown (the shared executor, if provided, is not shut down)</li>
      * </ul>
      *
      * Calling other methods after that this method is invoked will likely cause the raising of {@link java.lang.reflect.InvocationTargetException}
@@ -265,6 +313,9 @@ public class FarmEngine implements Supplier<Clcw> {
     public void dispose() {
         this.farmExecutor.shutdownNow();
         this.highLevelExecutor.shutdownNow();
+        if(this.ownedExecutor != null) {
+            this.ownedExecutor.shutdownNow();
+        }
     }
 
     // ---------------------------------------------------------------------------------------------------------
@@ -274,11 +325,12 @@ public class FarmEngine implements Supplier<Clcw> {
 
     void accept(TcTransferFrame frame) {
         checkThreadAccess();
-        boolean inBuffer = this.framesToDeliver.offer(frame);
+        boolean inBuffer = this.framesToDeliver.size() < this.bufferSize && this.framesToDeliver.offer(frame);
         if(!inBuffer) {
             // State machine problem
             throw new IllegalStateException("FARM buffer full but frame nevertheless accepted");
         }
+        execute(highLevelExecutor, deliveryTask);
     }
 
     void discard(TcTransferFrame frame) { // NOSONAR part of the standard
@@ -308,6 +360,10 @@ public class FarmEngine implements Supplier<Clcw> {
 
     void setVr(int setVrValue) {
         checkThreadAccess();
+        updateVr(setVrValue);
+    }
+
+    private void updateVr(int setVrValue) {
         this.receiverFrameSequenceNumber = setVrValue;
         this.positiveWindow.clear();
         this.negativeWindow.clear();
@@ -339,7 +395,7 @@ public class FarmEngine implements Supplier<Clcw> {
         FarmEvent event;
         if(frame.getFrameType() == TcTransferFrame.FrameType.AD) {
             if(frame.getVirtualChannelFrameCount() == this.receiverFrameSequenceNumber) {
-                if(this.framesToDeliver.remainingCapacity() > 0) {
+                if(this.framesToDeliver.size() < this.bufferSize) {
                     event = new FarmEvent(FarmEvent.EventNumber.E1, frame);
                 } else {
                     event = new FarmEvent(FarmEvent.EventNumber.E2, frame);
@@ -391,7 +447,9 @@ public class FarmEngine implements Supplier<Clcw> {
         this.clcwBuilder.setNoBitlockFlag(noBitLockFlag);
         this.clcwBuilder.setNoRfAvailableFlag(noRfAvailableFlag);
         this.clcwBuilder.setReservedSpare(reservedSpare);
-        return this.clcwBuilder.build();
+        Clcw clcw = this.clcwBuilder.build();
+        this.lastClcw = clcw;
+        return clcw;
     }
 
     private void reportStatus(FarmState previousState, FarmState currentState, FarmEvent.EventNumber number) {
@@ -411,13 +469,41 @@ public class FarmEngine implements Supplier<Clcw> {
     // ---------------------------------------------------------------------------------------------------------
 
     private void checkThreadAccess() {
-        if(Thread.currentThread() != this.confinementThread) {
-            throw new IllegalAccessError("Violation on thread confinement for class FarmEngine: method can only be accessed by thread " + this.confinementThread.getName());
+        if(!this.farmExecutor.isExecutorThread()) {
+            throw new IllegalAccessError("Violation on thread confinement for class FarmEngine: method can only be accessed by the FARM entity processor for TC VC " + this.virtualChannelId);
+        }
+    }
+
+    private static void execute(ExecutorService executor, Runnable task) {
+        if(executor.isShutdown()) {
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Disposed in the meantime
         }
     }
 
     /**
-     * Generate and return the information to be placed in the CLCW based on the current status of FARM-1.
+     * Return the last CLCW generated by FARM-1, without waiting for the processing of the pending events: the CLCW is
+     * updated after each state transition and each change of the CLCW flags. This method does not block and can be
+     * invoked by any thread.
+     *
+     * @return the last generated CLCW
+     */
+    public Clcw getLastClcw() {
+        return this.lastClcw;
+    }
+
+    /**
+     * Generate and return the information to be placed in the CLCW based on the current status of FARM-1, after
+     * processing all the pending events. This method blocks until the CLCW is generated by the FARM entity processor:
+     * use {@link FarmEngine#getLastClcw()} to retrieve the CLCW without blocking.
+     * <p>
+     * This method shall not be invoked by the tasks of the engine (e.g. by the output consumer or by an
+     * {@link IFarmObserver}), nor by a task running on the executor provided at construction time: if all the threads
+     * of such executor are busy, the FARM entity processor cannot run and this method never returns.
      *
      * @return the CLCW
      * @throws IllegalStateException in case of interruptions or error in executing the construction of the CLCW
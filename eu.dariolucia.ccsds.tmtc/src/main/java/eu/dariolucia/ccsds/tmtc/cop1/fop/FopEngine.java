@@ -18,12 +18,17 @@ package eu.dariolucia.ccsds.tmtc.cop1.fop;
 
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrame;
 import eu.dariolucia.ccsds.tmtc.ocf.pdu.Clcw;
+import eu.dariolucia.ccsds.tmtc.util.HashedWheelTimer;
+import eu.dariolucia.ccsds.tmtc.util.SerialExecutor;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -33,6 +38,15 @@ import java.util.function.Supplier;
 /**
  * This class implements the FOP side of the COP-1 protocol, as defined by CCSDS 232.1-B-2 Cor. 1.
  * This class is thread-safe.
+ * <p>
+ * The FOP state machine and the forwarding of frames to the lower procedures run on two {@link SerialExecutor}
+ * objects, i.e. the tasks of each of them are executed one at a time, in order. By default, such tasks run on threads
+ * owned by the engine. To control many virtual channels with a limited number of threads, engines can share the same
+ * executor (e.g. a fixed thread pool, or a virtual thread per task executor on Java 21+) and the same
+ * {@link HashedWheelTimer}: see {@link FopEngine#FopEngine(int, Supplier, Consumer, Supplier, IntFunction, Function, Executor, HashedWheelTimer)}.
+ * Since the output function can block, the shared executor shall have enough threads to run the outputs of the
+ * engines and their state machines. The timers of all the engines are managed by a single {@link HashedWheelTimer},
+ * if not specified.
  */
 @SuppressWarnings("StatementWithEmptyBody")
 public class FopEngine {
@@ -45,11 +59,12 @@ public class FopEngine {
     private final Supplier<TcTransferFrame> bcFrameUnlockFactory;
     private final IntFunction<TcTransferFrame> bcFrameSetVrFactory;
 
-    private final ExecutorService fopExecutor;
+    private final SerialExecutor fopExecutor;
 
-    private volatile Thread confinementThread; // NOSONAR only used for reference equality comparison
+    private final SerialExecutor lowLevelExecutor;
 
-    private final ExecutorService lowLevelExecutor;
+    // The executor created by this engine, if no executor is provided
+    private final ExecutorService ownedExecutor;
 
     private final List<IFopObserver> observers = new CopyOnWriteArrayList<>();
 
@@ -66,9 +81,10 @@ public class FopEngine {
      */
     private final Function<TcTransferFrame, Boolean> output;
 
-    private final Timer fopTimer;
+    private final HashedWheelTimer.Timeout fopTimer;
 
-    private TimerTask currentTimer;
+    // True if the timer was started and not cancelled, accessed only by the fopExecutor
+    private boolean timerRunning;
 
     // ---------------------------------------------------------------------------------------------------------
     // FOP variables as per CCSDS 232.1-B-2 Cor. 1, section 5.1
@@ -173,29 +189,48 @@ public class FopEngine {
      * @param output a {@link Consumer} function to forward {@link TcTransferFrame} as output of the FOP engine
      */
     public FopEngine(int virtualChannelId, Supplier<Integer> nextVirtualChannelFrameCounterGetter, Consumer<Integer> nextVirtualChannelFrameCounterSetter, Supplier<TcTransferFrame> bcFrameUnlockFactory, IntFunction<TcTransferFrame> bcFrameSetVrFactory, Function<TcTransferFrame, Boolean> output) {
+        this(virtualChannelId, nextVirtualChannelFrameCounterGetter, nextVirtualChannelFrameCounterSetter, bcFrameUnlockFactory, bcFrameSetVrFactory, output, null, null);
+    }
+
+    /**
+     * Constructor of the FOP engine, running on the provided executor and timer, which can be shared with other
+     * engines. The executor and the timer are not shut down when the engine is disposed.
+     *
+     * @param virtualChannelId the TC virtual channel ID controlled by this FOP entity
+     * @param nextVirtualChannelFrameCounterGetter a {@link Supplier} function to retrieve the next virtual channel frame counter
+     * @param nextVirtualChannelFrameCounterSetter a {@link Consumer} function to set the next virtual channel frame counter
+     * @param bcFrameUnlockFactory a {@link Function} to build a BC frame for FARM unlock
+     * @param bcFrameSetVrFactory a {@link Function} to build a BC frame for FARM Set_V(R)
+     * @param output a {@link Consumer} function to forward {@link TcTransferFrame} as output of the FOP engine
+     * @param executor the executor running the tasks of the engine: if null, the engine creates its own threads
+     * @param timer the timer managing the FOP timer: if null, a timer shared by all the engines is used
+     */
+    public FopEngine(int virtualChannelId, Supplier<Integer> nextVirtualChannelFrameCounterGetter, Consumer<Integer> nextVirtualChannelFrameCounterSetter, Supplier<TcTransferFrame> bcFrameUnlockFactory, IntFunction<TcTransferFrame> bcFrameSetVrFactory, Function<TcTransferFrame, Boolean> output, Executor executor, HashedWheelTimer timer) {
         this.virtualChannelId = virtualChannelId;
         this.nextVirtualChannelFrameCounterGetter = nextVirtualChannelFrameCounterGetter;
         this.nextVirtualChannelFrameCounterSetter = nextVirtualChannelFrameCounterSetter;
         this.bcFrameUnlockFactory = bcFrameUnlockFactory;
         this.bcFrameSetVrFactory = bcFrameSetVrFactory;
         this.output = output;
-        this.fopExecutor = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r);
-            t.setDaemon(true);
-            t.setName("FOP Entity Processor for TC VC " + virtualChannelId);
-            FopEngine.this.confinementThread = t;
-            return t;
-        });
-        this.lowLevelExecutor = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r);
-            t.setDaemon(true);
-            t.setName("FOP Entity Low Level for TC VC " + virtualChannelId);
-            return t;
-        });
+        if(executor == null) {
+            // At most two threads at the same time: one for the processor, one for the low level
+            AtomicInteger threadCounter = new AtomicInteger(0);
+            this.ownedExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                t.setName("FOP Entity for TC VC " + virtualChannelId + " #" + threadCounter.incrementAndGet());
+                return t;
+            });
+            executor = this.ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+        }
+        this.fopExecutor = new SerialExecutor(executor);
+        this.lowLevelExecutor = new SerialExecutor(executor);
         //
         this.state = new S6FopState(this); // In principle, the ‘Initial’ State is the first state entered by the state machine for a particular Virtual Channel.
         //
-        this.fopTimer = new Timer("FOP TC VC " + virtualChannelId + " Timer");
+        this.fopTimer = (timer != null ? timer : DefaultTimerHolder.TIMER).newTimeout(this::timerExpired);
     }
 
     /**
@@ -358,7 +393,7 @@ public class FopEngine {
      * <ul>
      *     <li>the timer is cancelled</li>
      *     <li>the wait and the sent queues are purged and related notifications are provided</li>
-     *     <li>the internal executors are shutdown</li>
+     *     <li>the internal executors are shutdown (the shared executor, if provided, is not shut down)</li>
      * </ul>
      *
      * Calling other methods after that this method is invoked will likely cause the raising of {@link java.lang.reflect.InvocationTargetException}
@@ -377,6 +412,9 @@ public class FopEngine {
             Thread.currentThread().interrupt();
         }
         this.lowLevelExecutor.shutdownNow();
+        if(this.ownedExecutor != null) {
+            this.ownedExecutor.shutdownNow();
+        }
     }
 
     // ---------------------------------------------------------------------------------------------------------
@@ -714,29 +752,14 @@ public class FopEngine {
 
     void restartTimer() {
         checkThreadAccess();
-        synchronized (fopTimer) {
-            if(currentTimer != null) {
-                currentTimer.cancel();
-                currentTimer = null;
-            }
-            currentTimer = new TimerTask() {
-                @Override
-                public void run() {
-                    timerExpired(this);
-                }
-            };
-            fopTimer.schedule(currentTimer, this.timerInitialValue * 1000L);
-        }
+        this.timerRunning = true;
+        this.fopTimer.start(this.timerInitialValue * 1000L, TimeUnit.MILLISECONDS);
     }
 
     void cancelTimer() {
         checkThreadAccess();
-        synchronized (fopTimer) {
-            if(currentTimer != null) {
-                currentTimer.cancel();
-                currentTimer = null;
-            }
-        }
+        this.timerRunning = false;
+        this.fopTimer.cancel();
     }
 
     void setFopSlidingWindow(int fopSlidingWindow) {
@@ -956,6 +979,11 @@ public class FopEngine {
     }
 
     private void processTimerExpired() {
+        // Discard the expiration of a timer restarted or cancelled after the expiration
+        if(!this.timerRunning || this.fopTimer.isStarted()) {
+            return;
+        }
+        this.timerRunning = false;
         FopEvent event;
         if(this.transmissionCount < this.transmissionLimit) {
             // Transmission count < Transmission limit
@@ -1102,10 +1130,14 @@ public class FopEngine {
     }
 
     private void lowerLayer(TcTransferFrame frame, boolean accepted) {
-        if(fopExecutor.isTerminated()) {
+        if(fopExecutor.isShutdown()) {
             return;
         }
-        fopExecutor.execute(() -> processLowerLayer(frame, accepted));
+        try {
+            fopExecutor.execute(() -> processLowerLayer(frame, accepted));
+        } catch (RejectedExecutionException e) {
+            // Disposed in the meantime
+        }
     }
 
     // ---------------------------------------------------------------------------------------------------------
@@ -1113,17 +1145,29 @@ public class FopEngine {
     // ---------------------------------------------------------------------------------------------------------
 
     private void checkThreadAccess() {
-        if(Thread.currentThread() != this.confinementThread) {
-            throw new IllegalAccessError("Violation on thread confinement for class FopEngine: method can only be accessed by thread " + this.confinementThread.getName());
+        if(!this.fopExecutor.isExecutorThread()) {
+            throw new IllegalAccessError("Violation on thread confinement for class FopEngine: method can only be accessed by the FOP entity processor for TC VC " + this.virtualChannelId);
         }
     }
 
-    private void timerExpired(TimerTask expiredTask) {
-        synchronized (fopTimer) {
-            if(currentTimer == expiredTask) {
-                fopExecutor.execute(this::processTimerExpired);
-            }
+    private void timerExpired() {
+        // Invoked by the timer thread
+        if(fopExecutor.isShutdown()) {
+            return;
         }
+        try {
+            fopExecutor.execute(this::processTimerExpired);
+        } catch (RejectedExecutionException e) {
+            // Disposed in the meantime
+        }
+    }
+
+    private static class DefaultTimerHolder {
+        private static final HashedWheelTimer TIMER = new HashedWheelTimer(HashedWheelTimer.DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, HashedWheelTimer.DEFAULT_WHEEL_SIZE, r -> {
+            Thread t = new Thread(r, "FOP Timer");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     private static class TransferFrameStatus {
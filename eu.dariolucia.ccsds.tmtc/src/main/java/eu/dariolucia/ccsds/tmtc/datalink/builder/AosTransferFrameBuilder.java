@@ -18,15 +18,18 @@ package eu.dariolucia.ccsds.tmtc.datalink.builder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.Crc16Algorithm;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.ByteBufferUtil;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
- * This class allows to build a CCSDS AOS frame using a typical Builder pattern. Once a frame is built, the builder should
- * not be re-used, as the internals (such as the payload data) are not cleaned up upon build.
+ * This class allows to build a CCSDS AOS frame using a typical Builder pattern. The payload data is copied directly into
+ * the array that will back the built frame, at its final position: the first header pointer (M_PDU) and the bitstream
+ * data pointer (B_PDU) are tracked while data is added, and the frame is encoded in place upon build.
+ *
+ * Once a frame is built, the builder can be re-used to build a new frame with the same characteristics by invoking
+ * {@link #reset()} or {@link #reset(byte[])}: the identifiers, the flags and the counters are kept, while the payload,
+ * the insert zone, the OCF and the security data are cleaned up.
  *
  * This class is not thread-safe.
  */
@@ -92,7 +95,19 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
     private byte[] securityHeader;
     private byte[] securityTrailer;
 
-    private List<AosTransferFrameBuilder.PayloadUnit> payloadUnits = new LinkedList<>();
+    private static final int TYPE_BITSTREAM = 0;
+    private static final int TYPE_PACKET = 1;
+    private static final int TYPE_DATA = 2;
+
+    private byte[] frame;
+    private boolean frameShared;
+    private int payloadLength;
+    // M_PDU: offset of the first packet in the packet zone, -1 if no packet was added
+    private int firstPacketOffset = -1;
+    // B_PDU: number of valid bits preceding the first spurious data, -1 if not determined yet
+    private int bitstreamDataPointer = -1;
+    private int validBitstreamBits;
+    private boolean spuriousDataPresent;
 
     private AosTransferFrameBuilder(int length, boolean frameHeaderErrorControlPresent, int insertZoneLength, AosTransferFrame.UserDataType userDataType, boolean ocfPresent, boolean fecfPresent) {
         this.length = length;
@@ -181,9 +196,14 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
             throw new IllegalArgumentException("AOS Frame cannot accomodate additional "
                     + securityDataSize + " bytes, remaining space is " + getFreeUserDataLength() + " bytes");
         }
+        int previousPayloadStart = payloadStart();
         this.securityHeader = header;
         this.securityTrailer = trailer;
         this.freeUserDataLength -= securityDataSize;
+        if(this.payloadLength > 0) {
+            // Move the data already added after the new security header
+            System.arraycopy(this.frame, previousPayloadStart, this.frame, payloadStart(), this.payloadLength);
+        }
 
         return this;
     }
@@ -209,32 +229,93 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
         int dataToBeWritten = Math.min(freeUserDataLength, length);
         int notWrittenData = freeUserDataLength < length ? length - freeUserDataLength : 0;
         if(dataToBeWritten > 0) {
-            this.payloadUnits.add(new AosTransferFrameBuilder.PayloadUnit(type, Arrays.copyOfRange(b, offset, offset + dataToBeWritten), validDataBits));
+            trackPointers(type, dataToBeWritten, validDataBits);
+            System.arraycopy(b, offset, frameBuffer(), payloadStart() + payloadLength, dataToBeWritten);
+            payloadLength += dataToBeWritten;
+            freeUserDataLength -= dataToBeWritten;
+        }
+        return notWrittenData;
+    }
+
+    private int addData(ByteBuffer b, int offset, int length, int type) {
+        // Compute if you can add the requested amount
+        int dataToBeWritten = Math.min(freeUserDataLength, length);
+        int notWrittenData = freeUserDataLength < length ? length - freeUserDataLength : 0;
+        if(dataToBeWritten > 0) {
+            trackPointers(type, dataToBeWritten, -1);
+            ByteBufferUtil.copy(b, offset, frameBuffer(), payloadStart() + payloadLength, dataToBeWritten);
+            payloadLength += dataToBeWritten;
             freeUserDataLength -= dataToBeWritten;
         }
         return notWrittenData;
     }
 
+    private void trackPointers(int type, int writtenBytes, int validDataBits) {
+        if(type == TYPE_PACKET && firstPacketOffset == -1) {
+            firstPacketOffset = payloadLength;
+        }
+        if(type == TYPE_BITSTREAM) {
+            int validBits = Math.min(writtenBytes * 8, validDataBits);
+            boolean spurious = validBits != writtenBytes * 8;
+            if(bitstreamDataPointer == -1) {
+                validBitstreamBits += validBits;
+                if(spurious) {
+                    bitstreamDataPointer = validBitstreamBits;
+                }
+            }
+            spuriousDataPresent |= spurious;
+        } else if(bitstreamDataPointer == -1) {
+            bitstreamDataPointer = validBitstreamBits;
+        }
+    }
+
     public int addBitstreamData(byte[] data, int validDataBits) {
         if(userDataType != AosTransferFrame.UserDataType.B_PDU) {
             throw new IllegalArgumentException("Only B_PDU AOS frames can contain bitstream data");
         }
-        return addData(data, 0 , data.length, PayloadUnit.TYPE_BITSTREAM, validDataBits);
+        return addData(data, 0 , data.length, TYPE_BITSTREAM, validDataBits);
     }
 
     public int addSpacePacket(byte[] packet) {
         if(userDataType != AosTransferFrame.UserDataType.M_PDU) {
             throw new IllegalArgumentException("Only M_PDU AOS frames can contain space packets");
         }
-        return addData(packet, 0, packet.length, PayloadUnit.TYPE_PACKET);
+        return addData(packet, 0, packet.length, TYPE_PACKET);
     }
 
     public int addData(byte[] data) {
-        return addData(data, 0, data.length, PayloadUnit.TYPE_DATA);
+        return addData(data, 0, data.length, TYPE_DATA);
     }
 
     public int addData(byte[] data, int offset, int length) {
-        return addData(data, offset, length, PayloadUnit.TYPE_DATA);
+        return addData(data, offset, length, TYPE_DATA);
+    }
+
+    /**
+     * This method adds the space packet contained in the remaining bytes of the provided buffer. The position of the
+     * buffer is not changed.
+     *
+     * @param packet the buffer containing the packet
+     * @return the number of bytes that could not be written in the frame
+     */
+    public int addSpacePacket(ByteBuffer packet) {
+        if(userDataType != AosTransferFrame.UserDataType.M_PDU) {
+            throw new IllegalArgumentException("Only M_PDU AOS frames can contain space packets");
+        }
+        return addData(packet, 0, packet.remaining(), TYPE_PACKET);
+    }
+
+    /**
+     * This method adds the provided amount of bytes of the provided buffer, starting from the provided offset (relative
+     * to the buffer position). The position of the buffer is not changed.
+     *
+     * @param data the buffer containing the data
+     * @param offset the offset of the data, relative to the buffer position
+     * @param length the number of bytes to add
+     * @return the number of bytes that could not be written in the frame
+     */
+    public int addData(ByteBuffer data, int offset, int length) {
+        return addData(data, offset, length, TYPE_DATA);
     }
 
     @Override
@@ -246,6 +327,47 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
         return this.freeUserDataLength == 0;
     }
 
+    /**
+     * This method resets the builder, so that a new frame can be built. The spacecraft ID, the virtual channel ID, the
+     * frame counter, the frame count cycle and the flags are kept. The payload, the idle flag, the insert zone, the OCF
+     * and the security header and trailer are cleaned up.
+     *
+     * The frame array is re-used, unless it backs a frame that was already built: in such case, a new array is allocated.
+     *
+     * @return the builder object
+     */
+    public AosTransferFrameBuilder reset() {
+        return reset(this.frameShared ? null : this.frame);
+    }
+
+    /**
+     * This method resets the builder like {@link #reset()}, and uses the provided array (e.g. taken from a pool) to
+     * build the next frame. The array will back the built {@link AosTransferFrame}: it is responsibility of the caller
+     * not to re-use it, as long as the frame is in use.
+     *
+     * @param frameBuffer the array to use, with length equal to the frame length, or null to allocate a new array
+     * @return the builder object
+     */
+    public AosTransferFrameBuilder reset(byte[] frameBuffer) {
+        if(frameBuffer != null && frameBuffer.length != this.length) {
+            throw new IllegalArgumentException("Frame buffer length must be " + this.length + ", got " + frameBuffer.length);
+        }
+        this.frame = frameBuffer;
+        this.frameShared = false;
+        this.payloadLength = 0;
+        this.firstPacketOffset = -1;
+        this.bitstreamDataPointer = -1;
+        this.validBitstreamBits = 0;
+        this.spuriousDataPresent = false;
+        this.idle = false;
+        this.insertZone = null;
+        this.ocf = null;
+        this.securityHeader = null;
+        this.securityTrailer = null;
+        this.freeUserDataLength = computeUserDataLength(this.length, this.frameHeaderErrorControlPresent, this.insertZoneLength, this.userDataType, this.ocfPresent, this.fecfPresent);
+        return this;
+    }
+
     @Override
     public AosTransferFrame build() {
         if(this.freeUserDataLength > 0) {
@@ -263,7 +385,12 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
             throw new IllegalStateException("OCF marked as present, but not set");
         }
 
-        ByteBuffer bb = ByteBuffer.allocate(this.length);
+        byte[] encodedFrame = frameBuffer();
+        if(this.frameShared) {
+            // Built again without reset: do not alter the frame already built
+            encodedFrame = encodedFrame.clone();
+            this.frame = encodedFrame;
+        }
 
         // Write the primary header (6 bytes)
         short firstTwoOctets = 0;
@@ -271,7 +398,8 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
         firstTwoOctets |= (short) (spacecraftId << 6);
         firstTwoOctets |= (short) (virtualChannelId);
 
-        bb.putShort(firstTwoOctets);
+        encodedFrame[0] = (byte) (firstTwoOctets >> 8);
+        encodedFrame[1] = (byte) firstTwoOctets;
 
         int next4octets = 0;
         next4octets |= (this.virtualChannelFrameCount << 8);
@@ -286,65 +414,67 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
 
         next4octets |= this.virtualChannelFrameCountCycle;
 
-        bb.putInt(next4octets);
+        encodedFrame[2] = (byte) (next4octets >> 24);
+        encodedFrame[3] = (byte) (next4octets >> 16);
+        encodedFrame[4] = (byte) (next4octets >> 8);
+        encodedFrame[5] = (byte) next4octets;
+        int position = AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH;
 
         if(this.frameHeaderErrorControlPresent) {
             // Add 2 bytes to be filled after the encoding
-            bb.put(new byte[2]);
+            position += AosTransferFrame.AOS_PRIMARY_HEADER_FHEC_LENGTH;
         }
 
         if(insertZoneLength > 0) {
-            bb.put(this.insertZone);
+            System.arraycopy(this.insertZone, 0, encodedFrame, position, this.insertZoneLength);
+            position += this.insertZoneLength;
         }
 
         // Write security header if present
         if(this.securityHeader != null && this.securityHeader.length > 0) {
-            bb.put(this.securityHeader);
+            System.arraycopy(this.securityHeader, 0, encodedFrame, position, this.securityHeader.length);
+            position += this.securityHeader.length;
         }
 
+        short firstHeaderPointer = 0;
         if(userDataType == AosTransferFrame.UserDataType.M_PDU) {
-            short firstHeaderPointer = computeMPDUFirstHeaderPointer();
-            bb.putShort(firstHeaderPointer);
+            firstHeaderPointer = computeMPDUFirstHeaderPointer();
         } else if(userDataType == AosTransferFrame.UserDataType.B_PDU) {
-            short firstHeaderPointer = computeBPDUBitstreamDataPointer();
-            bb.putShort(firstHeaderPointer);
+            firstHeaderPointer = computeBPDUBitstreamDataPointer();
         }
-
-        // Write the user data
-        for(AosTransferFrameBuilder.PayloadUnit pu : this.payloadUnits) {
-            bb.put(pu.data);
+        if(userDataType == AosTransferFrame.UserDataType.M_PDU || userDataType == AosTransferFrame.UserDataType.B_PDU) {
+            encodedFrame[position++] = (byte) (firstHeaderPointer >> 8);
+            encodedFrame[position++] = (byte) firstHeaderPointer;
         }
 
+        // The user data is already in place
+        position += this.payloadLength;
+
         // Write security trailer if present
         if(this.securityTrailer != null && this.securityTrailer.length > 0) {
-            bb.put(this.securityTrailer);
+            System.arraycopy(this.securityTrailer, 0, encodedFrame, position, this.securityTrailer.length);
+            position += this.securityTrailer.length;
         }
 
         // Write the OCF (if present, 4 bytes)
         if(this.ocfPresent && this.ocf != null) {
-            bb.put(this.ocf);
+            System.arraycopy(this.ocf, 0, encodedFrame, position, this.ocf.length);
         }
 
-        byte[] encodedFrame;
+        if(frameHeaderErrorControlPresent) {
+            computeFHEC(encodedFrame);
+        }
 
         // Compute and write the FECF (if present, 2 bytes)
         if(this.fecfPresent) {
-            bb.put((byte) 0x00);
-            bb.put((byte) 0x00);
-            encodedFrame = bb.array();
-            if(frameHeaderErrorControlPresent) {
-                computeFHEC(encodedFrame);
-            }
             short crc = Crc16Algorithm.getCrc16(encodedFrame, 0, encodedFrame.length - 2);
             encodedFrame[encodedFrame.length - 2] = (byte) (crc >> 8);
             encodedFrame[encodedFrame.length - 1] = (byte) (crc);
-        } else {
-            encodedFrame = bb.array();
-            if(frameHeaderErrorControlPresent) {
-                computeFHEC(encodedFrame);
-            }
         }
 
+        // The array now backs the built frame
+        this.frameShared = true;
+
         // Return the frame
         return new AosTransferFrame(encodedFrame, frameHeaderErrorControlPresent, insertZoneLength, userDataType, ocfPresent, fecfPresent,
                 securityHeader != null ? securityHeader.length : 0, securityTrailer != null ? securityTrailer.length : 0);
@@ -389,73 +519,35 @@ public class AosTransferFrameBuilder implements ITransferFrameBuilder<AosTransfe
     private short computeMPDUFirstHeaderPointer() {
         if(this.idle) {
             return AosTransferFrame.AOS_M_PDU_FIRST_HEADER_POINTER_IDLE;
-        } else if(this.payloadUnits.stream().noneMatch(o -> o.type == PayloadUnit.TYPE_PACKET)) {
+        } else if(this.firstPacketOffset == -1) {
             return AosTransferFrame.AOS_M_PDU_FIRST_HEADER_POINTER_NO_PACKET;
         } else {
-            short firstPacket = (short) 0;
-            for(AosTransferFrameBuilder.PayloadUnit pu : payloadUnits) {
-                if(pu.type == PayloadUnit.TYPE_PACKET) {
-                    return firstPacket;
-                } else {
-                    firstPacket += (short) pu.data.length;
-                }
-            }
-            // If here, no pdu present
-            return AosTransferFrame.AOS_M_PDU_FIRST_HEADER_POINTER_NO_PACKET;
+            return (short) this.firstPacketOffset;
         }
     }
 
     private short computeBPDUBitstreamDataPointer() {
         if(this.idle) {
             return AosTransferFrame.AOS_B_PDU_FIRST_HEADER_POINTER_IDLE;
-        } else if(this.payloadUnits.stream().noneMatch(PayloadUnit::hasSpuriousData)) {
+        } else if(!this.spuriousDataPresent || this.bitstreamDataPointer == -1) {
             return AosTransferFrame.AOS_B_PDU_FIRST_HEADER_POINTER_ALL_DATA;
         } else {
-            short lastValidBit = (short) 0;
-            for(AosTransferFrameBuilder.PayloadUnit pu : payloadUnits) {
-                if(pu.type == PayloadUnit.TYPE_BITSTREAM) {
-                    lastValidBit += pu.validDataBits;
-                    if(pu.hasSpuriousData()) {
-                        return lastValidBit;
-                    }
-                } else {
-                    return lastValidBit;
-                }
-            }
-            // If here, no pdu present
-            return AosTransferFrame.AOS_B_PDU_FIRST_HEADER_POINTER_ALL_DATA;
+            return (short) this.bitstreamDataPointer;
         }
     }
 
-    private class PayloadUnit {
-        private static final int TYPE_BITSTREAM = 0;
-        private static final int TYPE_PACKET = 1;
-        private static final int TYPE_DATA = 2;
-
-        public final int type;
-        public final byte[] data;
-        public final int validDataBits;
-
-        public PayloadUnit(int type, byte[] data, int validDataBits) {
-            this.type = type;
-            this.data = data;
-            if(type == TYPE_PACKET) {
-                this.validDataBits = data.length * 8;
-            } else if(type == TYPE_DATA) {
-                this.validDataBits = data.length * 8;
-            } else if(type == TYPE_BITSTREAM) {
-                if(data.length * 8 >= validDataBits) {
-                    this.validDataBits = validDataBits;
-                } else {
-                    this.validDataBits = data.length * 8;
-                }
-            } else {
-                throw new IllegalArgumentException("Type " + type + " not recognized");
-            }
-        }
+    private int payloadStart() {
+        return AosTransferFrame.AOS_PRIMARY_HEADER_LENGTH
+                + (this.frameHeaderErrorControlPresent ? AosTransferFrame.AOS_PRIMARY_HEADER_FHEC_LENGTH : 0)
+                + this.insertZoneLength
+                + (this.securityHeader == null ? 0 : this.securityHeader.length)
+                + (this.userDataType == AosTransferFrame.UserDataType.M_PDU || this.userDataType == AosTransferFrame.UserDataType.B_PDU ? 2 : 0);
+    }
 
-        public boolean hasSpuriousData() {
-            return data.length * 8 != validDataBits;
+    private byte[] frameBuffer() {
+        if(this.frame == null) {
+            this.frame = new byte[this.length];
         }
+        return this.frame;
     }
 }
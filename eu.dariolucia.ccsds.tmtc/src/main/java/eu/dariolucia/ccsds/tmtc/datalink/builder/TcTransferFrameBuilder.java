@@ -19,14 +19,17 @@ package eu.dariolucia.ccsds.tmtc.datalink.builder;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrame;
 import eu.dariolucia.ccsds.tmtc.algorithm.Crc16Algorithm;
 
-import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
- * This class allows to build a CCSDS TC frame using a typical Builder pattern. Once a frame is built, the builder should
- * not be re-used, as the internals (such as the payload data) are not cleaned up upon build.
+ * This class allows to build a CCSDS TC frame using a typical Builder pattern. The payload data is copied directly into
+ * an array of the maximum TC frame length, at its final position, and the frame is encoded in place upon build. As the
+ * length of a TC frame is known only upon build, the encoded frame is then copied into an array of the exact length,
+ * unless the frame has the maximum length.
+ *
+ * Once a frame is built, the builder can be re-used to build a new frame by invoking {@link #reset()}: the identifiers,
+ * the flags and the frame sequence number are kept, while the payload, the segment header and the security data are
+ * cleaned up.
  *
  * This class is not thread-safe.
  */
@@ -71,7 +74,9 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
     private byte[] securityHeader;
     private byte[] securityTrailer;
 
-    private List<byte[]> payloadUnits = new LinkedList<>();
+    private byte[] frame;
+    private boolean frameShared;
+    private int payloadLength;
 
     private TcTransferFrameBuilder(boolean fecfPresent) {
         this.fecfPresent = fecfPresent;
@@ -123,8 +128,13 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
             throw new IllegalArgumentException("TC Frame already full");
         }
         if(!this.segmented) {
+            int previousPayloadStart = payloadStart();
             this.segmented = true;
             this.freeUserDataLength -= 1;
+            if(this.payloadLength > 0) {
+                // Move the data already added after the segment header
+                System.arraycopy(this.frame, previousPayloadStart, this.frame, payloadStart(), this.payloadLength);
+            }
         }
         this.sequenceFlag = sequenceFlag;
         this.mapId = (byte) mapId;
@@ -160,9 +170,14 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
             throw new IllegalArgumentException("TC Frame cannot accomodate additional "
                     + securityDataSize + " bytes, remaining space is " + getFreeUserDataLength() + " bytes");
         }
+        int previousPayloadStart = payloadStart();
         this.securityHeader = header;
         this.securityTrailer = trailer;
         this.freeUserDataLength -= securityDataSize;
+        if(this.payloadLength > 0) {
+            // Move the data already added after the new security header
+            System.arraycopy(this.frame, previousPayloadStart, this.frame, payloadStart(), this.payloadLength);
+        }
 
         return this;
     }
@@ -172,7 +187,8 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
         int dataToBeWritten = Math.min(freeUserDataLength, length);
         int notWrittenData = freeUserDataLength < length ? length - freeUserDataLength : 0;
         if(dataToBeWritten > 0) {
-            this.payloadUnits.add(Arrays.copyOfRange(b, offset, offset + dataToBeWritten));
+            System.arraycopy(b, offset, frameBuffer(), payloadStart() + payloadLength, dataToBeWritten);
+            payloadLength += dataToBeWritten;
             freeUserDataLength -= dataToBeWritten;
         }
         return notWrittenData;
@@ -191,10 +207,31 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
         return this.freeUserDataLength == 0;
     }
 
+    /**
+     * This method resets the builder, so that a new frame can be built. The spacecraft ID, the virtual channel ID, the
+     * frame sequence number and the bypass and control command flags are kept. The payload, the segment header and the
+     * security header and trailer are cleaned up.
+     *
+     * @return the builder object
+     */
+    public TcTransferFrameBuilder reset() {
+        if(this.frameShared) {
+            this.frame = null;
+            this.frameShared = false;
+        }
+        this.payloadLength = 0;
+        this.segmented = false;
+        this.sequenceFlag = null;
+        this.mapId = 0;
+        this.securityHeader = null;
+        this.securityTrailer = null;
+        this.freeUserDataLength = computeMaxUserDataLength(this.fecfPresent);
+        return this;
+    }
+
     @Override
     public TcTransferFrame build() {
-        int payloadDataLength = this.payloadUnits.stream().map(o -> o.length).reduce(0, (a,b) -> a + b);
-        int frameLength = TcTransferFrame.TC_PRIMARY_HEADER_LENGTH + payloadDataLength + (fecfPresent ? 2 : 0) + (this.segmented ? 1 : 0);
+        int frameLength = TcTransferFrame.TC_PRIMARY_HEADER_LENGTH + this.payloadLength + (fecfPresent ? 2 : 0) + (this.segmented ? 1 : 0);
         if(securityHeader != null) {
             frameLength += securityHeader.length;
         }
@@ -202,7 +239,13 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
             frameLength += securityTrailer.length;
         }
 
-        ByteBuffer bb = ByteBuffer.allocate(frameLength);
+        byte[] buffer = frameBuffer();
+        if(this.frameShared) {
+            // Built again without reset: do not alter the frame already built
+            buffer = buffer.clone();
+            this.frame = buffer;
+            this.frameShared = false;
+        }
 
         short first2octets = 0;
 
@@ -216,7 +259,8 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
 
         first2octets |= (short) spacecraftId;
 
-        bb.putShort(first2octets);
+        buffer[0] = (byte) (first2octets >> 8);
+        buffer[1] = (byte) first2octets;
 
         short next2octets = 0;
 
@@ -224,49 +268,65 @@ public class TcTransferFrameBuilder implements ITransferFrameBuilder<TcTransferF
 
         next2octets |= (short) (frameLength - 1);
 
-        bb.putShort(next2octets);
+        buffer[2] = (byte) (next2octets >> 8);
+        buffer[3] = (byte) next2octets;
 
-        bb.put((byte) frameSequenceNumber);
+        buffer[4] = (byte) frameSequenceNumber;
+        int position = TcTransferFrame.TC_PRIMARY_HEADER_LENGTH;
 
         if(this.segmented) {
             int toWrite = 0;
             toWrite |= this.sequenceFlag.ordinal();
             toWrite <<= 6;
             toWrite |= this.mapId;
-            bb.put((byte) toWrite);
+            buffer[position++] = (byte) toWrite;
         }
 
         // If security header, write it
         if(securityHeader != null) {
-            bb.put(securityHeader);
+            System.arraycopy(securityHeader, 0, buffer, position, securityHeader.length);
+            position += securityHeader.length;
         }
 
-        // Write the user data
-        for(byte[] pu : this.payloadUnits) {
-            bb.put(pu);
-        }
+        // The user data is already in place
+        position += this.payloadLength;
 
         // If security trailer, write it
         if(securityTrailer != null) {
-            bb.put(securityTrailer);
+            System.arraycopy(securityTrailer, 0, buffer, position, securityTrailer.length);
         }
 
-        byte[] encodedFrame;
-
         // Compute and write the FECF (if present, 2 bytes)
         if(this.fecfPresent) {
-            bb.put((byte) 0x00);
-            bb.put((byte) 0x00);
-            encodedFrame = bb.array();
-            short crc = Crc16Algorithm.getCrc16(encodedFrame, 0, encodedFrame.length - 2);
-            encodedFrame[encodedFrame.length - 2] = (byte) (crc >> 8);
-            encodedFrame[encodedFrame.length - 1] = (byte) (crc);
+            short crc = Crc16Algorithm.getCrc16(buffer, 0, frameLength - 2);
+            buffer[frameLength - 2] = (byte) (crc >> 8);
+            buffer[frameLength - 1] = (byte) (crc);
+        }
+
+        byte[] encodedFrame;
+        if(frameLength == buffer.length) {
+            // The array now backs the built frame
+            encodedFrame = buffer;
+            this.frameShared = true;
         } else {
-            encodedFrame = bb.array();
+            encodedFrame = Arrays.copyOf(buffer, frameLength);
         }
 
         // Return the frame
         return new TcTransferFrame(encodedFrame, vc -> segmented, fecfPresent,
                 (securityHeader != null ? securityHeader.length : 0), (securityTrailer != null ? securityTrailer.length : 0));
     }
+
+    private int payloadStart() {
+        return TcTransferFrame.TC_PRIMARY_HEADER_LENGTH
+                + (this.segmented ? 1 : 0)
+                + (this.securityHeader == null ? 0 : this.securityHeader.length);
+    }
+
+    private byte[] frameBuffer() {
+        if(this.frame == null) {
+            this.frame = new byte[TcTransferFrame.MAX_TC_FRAME_LENGTH];
+        }
+        return this.frame;
+    }
 }
@@ -18,15 +18,18 @@ package eu.dariolucia.ccsds.tmtc.datalink.builder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.Crc16Algorithm;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.ByteBufferUtil;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
- * This class allows to build a CCSDS TM frame using a typical Builder pattern. Once a frame is built, the builder should
- * not be re-used, as the internals (such as the payload data) are not cleaned up upon build.
+ * This class allows to build a CCSDS TM frame using a typical Builder pattern. The payload data is copied directly into
+ * the array that will back the built frame, at its final position: the first header pointer is tracked while data is
+ * added, and the frame is encoded in place upon build.
+ *
+ * Once a frame is built, the builder can be re-used to build a new frame with the same characteristics by invoking
+ * {@link #reset()} or {@link #reset(byte[])}: the identifiers, the flags and the counters are kept, while the payload,
+ * the secondary header, the OCF and the security data are cleaned up.
  *
  * This class is not thread-safe.
  */
@@ -86,7 +89,10 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
     private byte[] securityHeader;
     private byte[] securityTrailer;
 
-    private List<PayloadUnit> payloadUnits = new LinkedList<>();
+    private byte[] frame;
+    private boolean frameShared;
+    private int payloadLength;
+    private int firstPacketOffset = -1;
 
     private TmTransferFrameBuilder(int length, int secondaryHeaderLength, boolean ocfPresent, boolean fecfPresent) {
         if(secondaryHeaderLength > 63) {
@@ -189,9 +195,14 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
             throw new IllegalArgumentException("TM Frame cannot accomodate additional "
                     + securityDataSize + " bytes, remaining space is " + getFreeUserDataLength() + " bytes");
         }
+        int previousPayloadStart = payloadStart();
         this.securityHeader = header;
         this.securityTrailer = trailer;
         this.freeUserDataLength -= securityDataSize;
+        if(this.payloadLength > 0) {
+            // Move the data already added after the new security header
+            System.arraycopy(this.frame, previousPayloadStart, this.frame, payloadStart(), this.payloadLength);
+        }
 
         return this;
     }
@@ -201,12 +212,31 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
         int dataToBeWritten = Math.min(freeUserDataLength, length);
         int notWrittenData = freeUserDataLength < length ? length - freeUserDataLength : 0;
         if(dataToBeWritten > 0) {
-            this.payloadUnits.add(new PayloadUnit(isPacket, Arrays.copyOfRange(b, offset, offset + dataToBeWritten)));
-            freeUserDataLength -= dataToBeWritten;
+            System.arraycopy(b, offset, frameBuffer(), payloadStart() + payloadLength, dataToBeWritten);
+            payloadAdded(dataToBeWritten, isPacket);
+        }
+        return notWrittenData;
+    }
+
+    private int addData(ByteBuffer b, int offset, int length, boolean isPacket) {
+        // Compute if you can add the requested amount
+        int dataToBeWritten = Math.min(freeUserDataLength, length);
+        int notWrittenData = freeUserDataLength < length ? length - freeUserDataLength : 0;
+        if(dataToBeWritten > 0) {
+            ByteBufferUtil.copy(b, offset, frameBuffer(), payloadStart() + payloadLength, dataToBeWritten);
+            payloadAdded(dataToBeWritten, isPacket);
         }
         return notWrittenData;
     }
 
+    private void payloadAdded(int writtenData, boolean isPacket) {
+        if(isPacket && firstPacketOffset == -1) {
+            firstPacketOffset = payloadLength;
+        }
+        payloadLength += writtenData;
+        freeUserDataLength -= writtenData;
+    }
+
     public int addSpacePacket(byte[] packet) {
         return addData(packet, 0, packet.length, true);
     }
@@ -219,6 +249,30 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
         return addData(data, offset, length, false);
     }
 
+    /**
+     * This method adds the space packet contained in the remaining bytes of the provided buffer. The position of the
+     * buffer is not changed.
+     *
+     * @param packet the buffer containing the packet
+     * @return the number of bytes that could not be written in the frame
+     */
+    public int addSpacePacket(ByteBuffer packet) {
+        return addData(packet, 0, packet.remaining(), true);
+    }
+
+    /**
+     * This method adds the provided amount of bytes of the provided buffer, starting from the provided offset (relative
+     * to the buffer position). The position of the buffer is not changed.
+     *
+     * @param data the buffer containing the data
+     * @param offset the offset of the data, relative to the buffer position
+     * @param length the number of bytes to add
+     * @return the number of bytes that could not be written in the frame
+     */
+    public int addData(ByteBuffer data, int offset, int length) {
+        return addData(data, offset, length, false);
+    }
+
     @Override
     public int getFreeUserDataLength() {
         return this.freeUserDataLength;
@@ -228,6 +282,44 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
         return this.freeUserDataLength == 0;
     }
 
+    /**
+     * This method resets the builder, so that a new frame can be built. The spacecraft ID, the virtual channel ID, the
+     * frame counters and the flags are kept. The payload, the idle flag, the secondary header, the OCF and the security
+     * header and trailer are cleaned up.
+     *
+     * The frame array is re-used, unless it backs a frame that was already built: in such case, a new array is allocated.
+     *
+     * @return the builder object
+     */
+    public TmTransferFrameBuilder reset() {
+        return reset(this.frameShared ? null : this.frame);
+    }
+
+    /**
+     * This method resets the builder like {@link #reset()}, and uses the provided array (e.g. taken from a pool) to
+     * build the next frame. The array will back the built {@link TmTransferFrame}: it is responsibility of the caller not
+     * to re-use it, as long as the frame is in use.
+     *
+     * @param frameBuffer the array to use, with length equal to the frame length, or null to allocate a new array
+     * @return the builder object
+     */
+    public TmTransferFrameBuilder reset(byte[] frameBuffer) {
+        if(frameBuffer != null && frameBuffer.length != this.length) {
+            throw new IllegalArgumentException("Frame buffer length must be " + this.length + ", got " + frameBuffer.length);
+        }
+        this.frame = frameBuffer;
+        this.frameShared = false;
+        this.payloadLength = 0;
+        this.firstPacketOffset = -1;
+        this.idle = false;
+        this.secondaryHeader = null;
+        this.ocf = null;
+        this.securityHeader = null;
+        this.securityTrailer = null;
+        this.freeUserDataLength = computeUserDataLength(this.length, this.secondaryHeaderLength, this.ocfPresent, this.fecfPresent);
+        return this;
+    }
+
     @Override
     public TmTransferFrame build() {
         if(this.freeUserDataLength > 0) {
@@ -245,7 +337,12 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
             throw new IllegalStateException("OCF marked as present, but not set");
         }
 
-        ByteBuffer bb = ByteBuffer.allocate(this.length);
+        byte[] encodedFrame = frameBuffer();
+        if(this.frameShared) {
+            // Built again without reset: do not alter the frame already built
+            encodedFrame = encodedFrame.clone();
+            this.frame = encodedFrame;
+        }
 
         // Write the primary header (6 bytes)
         short firstTwoOctets = 0;
@@ -254,10 +351,11 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
         if(ocfPresent) {
             firstTwoOctets |= (short) (0x0001);
         }
-        bb.putShort(firstTwoOctets);
+        encodedFrame[0] = (byte) (firstTwoOctets >> 8);
+        encodedFrame[1] = (byte) firstTwoOctets;
 
-        bb.put((byte)this.masterChannelFrameCount);
-        bb.put((byte)this.virtualChannelFrameCount);
+        encodedFrame[2] = (byte) this.masterChannelFrameCount;
+        encodedFrame[3] = (byte) this.virtualChannelFrameCount;
 
         short lastTwoOctets = 0;
         if(secondaryHeaderLength > 0 && secondaryHeader != null) {
@@ -292,48 +390,47 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
         short firstHeaderPointer = computeFirstHeaderPointer();
         lastTwoOctets |= firstHeaderPointer;
 
-        bb.putShort(lastTwoOctets);
+        encodedFrame[4] = (byte) (lastTwoOctets >> 8);
+        encodedFrame[5] = (byte) lastTwoOctets;
+        int position = TmTransferFrame.TM_PRIMARY_HEADER_LENGTH;
 
         // Write the secondary header (if present, 1 byte + secondary header length)
         if(secondaryHeaderLength > 0 && secondaryHeader != null) {
-            bb.put((byte) this.secondaryHeaderLength);
-            bb.put(this.secondaryHeader);
+            encodedFrame[position++] = (byte) this.secondaryHeaderLength;
+            System.arraycopy(this.secondaryHeader, 0, encodedFrame, position, this.secondaryHeaderLength);
+            position += this.secondaryHeaderLength;
         }
 
         // Write security header if present
         if(this.securityHeader != null && this.securityHeader.length > 0) {
-            bb.put(this.securityHeader);
+            System.arraycopy(this.securityHeader, 0, encodedFrame, position, this.securityHeader.length);
+            position += this.securityHeader.length;
         }
 
-        // Write the user data
-        for(PayloadUnit pu : this.payloadUnits) {
-            bb.put(pu.data);
-        }
+        // The user data is already in place
+        position += this.payloadLength;
 
         // Write security trailer if present
         if(this.securityTrailer != null && this.securityTrailer.length > 0) {
-            bb.put(this.securityTrailer);
+            System.arraycopy(this.securityTrailer, 0, encodedFrame, position, this.securityTrailer.length);
+            position += this.securityTrailer.length;
         }
 
         // Write the OCF (if present, 4 bytes)
         if(this.ocfPresent && this.ocf != null) {
-            bb.put(this.ocf);
+            System.arraycopy(this.ocf, 0, encodedFrame, position, this.ocf.length);
         }
 
-        byte[] encodedFrame = null;
-
         // Compute and write the FECF (if present, 2 bytes)
         if(this.fecfPresent) {
-            bb.put((byte) 0x00);
-            bb.put((byte) 0x00);
-            encodedFrame = bb.array();
             short crc = Crc16Algorithm.getCrc16(encodedFrame, 0, encodedFrame.length - 2);
             encodedFrame[encodedFrame.length - 2] = (byte) (crc >> 8);
             encodedFrame[encodedFrame.length - 1] = (byte) (crc);
-        } else {
-            encodedFrame = bb.array();
         }
 
+        // The array now backs the built frame
+        this.frameShared = true;
+
         // Return the frame
         return new TmTransferFrame(encodedFrame, fecfPresent, securityHeader != null ? securityHeader.length : 0, securityTrailer != null ? securityTrailer.length : 0);
     }
@@ -341,29 +438,23 @@ public class TmTransferFrameBuilder implements ITransferFrameBuilder<TmTransferF
     private short computeFirstHeaderPointer() {
         if(this.idle) {
             return TmTransferFrame.TM_FIRST_HEADER_POINTER_IDLE;
-        } else if(this.payloadUnits.stream().noneMatch(o -> o.packet)) {
+        } else if(this.firstPacketOffset == -1) {
             return TmTransferFrame.TM_FIRST_HEADER_POINTER_NO_PACKET;
         } else {
-            short firstPacket = (short) 0;
-            for(PayloadUnit pu : payloadUnits) {
-                if(pu.packet) {
-                    return firstPacket;
-                } else {
-                    firstPacket += (short) pu.data.length;
-                }
-            }
-            // If here, no pdu present
-            return TmTransferFrame.TM_FIRST_HEADER_POINTER_NO_PACKET;
+            return (short) this.firstPacketOffset;
         }
     }
 
-    private class PayloadUnit {
-        public final boolean packet;
-        public final byte[] data;
+    private int payloadStart() {
+        return TmTransferFrame.TM_PRIMARY_HEADER_LENGTH
+                + (this.secondaryHeaderLength == 0 ? 0 : 1 + this.secondaryHeaderLength)
+                + (this.securityHeader == null ? 0 : this.securityHeader.length);
+    }
 
-        public PayloadUnit(boolean packet, byte[] data) {
-            this.packet = packet;
-            this.data = data;
+    private byte[] frameBuffer() {
+        if(this.frame == null) {
+            this.frame = new byte[this.length];
         }
+        return this.frame;
     }
 }
@@ -25,7 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -38,13 +38,18 @@ import java.util.function.Consumer;
  * In order to receive the extracted space packets, gap notifications, and other data, registration of a {@link IVirtualChannelReceiverOutput}
  * implementation shall be performed via the register method.
  * <p>
+ * By default, each extracted packet is delivered as a new byte array. If a {@link PacketBufferPool} is set, packets are
+ * delivered as {@link PacketView} objects instead: packets fully contained in a frame are delivered without copy, while
+ * packets spanning more than one frame are reassembled in buffers taken from the pool.
+ * <p>
  * This class is not thread safe.
  *
  * @param <T> the type of transfer frame
  */
 public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferFrame> implements Consumer<T> {
 
-    private final List<IVirtualChannelReceiverOutput> listeners = new CopyOnWriteArrayList<>();
+    // Copy-on-write array of listeners: notifications iterate on it without allocations
+    private volatile IVirtualChannelReceiverOutput[] listeners = new IVirtualChannelReceiverOutput[0];
 
     private final int virtualChannelId;
 
@@ -54,8 +59,10 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
 
     private volatile int currentVcSequenceCounter = -1;
 
+    // Reassembly area for space packets, used when packets are delivered as byte arrays
+    private final byte[] spacePacketArea = new byte[65536 + 6]; // Max pdu length for space packets
     // If not null, it indicates that a space pdu of the already allocated length is under reconstruction (segmented)
-    private byte[] currentPacket = new byte[65536 + 6]; // Max pdu length for space packets
+    private byte[] currentPacket = spacePacketArea;
     // It points to the next byte to the written in currentPacket
     private int currentOffset = -1;
     //
@@ -66,7 +73,20 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
     private int detectedFrameDataLength = -1;
 
     // list of PacketGap objects: start of gap, length of gap
-    private final List<PacketGap> currentGaps = new ArrayList<>(80);
+    private List<PacketGap> currentGaps = new ArrayList<>(80);
+
+    // If not null, packets are delivered as PacketView objects and reassembled in buffers taken from this pool
+    private PacketBufferPool packetBufferPool = null;
+    // Staging area for packet headers split across frames, used when packet views are delivered
+    private final byte[] packetHeaderArea = new byte[8]; // max packet header length
+
+    // True if a batch of frames is being processed: extracted packets are collected and notified at the end of the batch
+    private boolean batchInProgress = false;
+    private final List<ExtractedPacket> batchSpacePackets = new ArrayList<>();
+    private final List<ExtractedPacket> batchEncapsulationPackets = new ArrayList<>();
+
+    // If not null, frames are re-sequenced and duplicates are dropped before processing
+    private FrameReorderWindow<T> reorderWindow = null;
 
     protected AbstractReceiverVirtualChannel(int virtualChannelId, VirtualChannelAccessMode mode, boolean exceptionIfVcViolated) {
         this.virtualChannelId = virtualChannelId;
@@ -88,36 +108,221 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
         return currentVcSequenceCounter;
     }
 
-    public final void register(IVirtualChannelReceiverOutput listener) {
-        this.listeners.add(listener);
+    /**
+     * This method sets the pool used to reassemble packets spanning more than one frame. If a pool is set, packets are
+     * delivered to the registered listeners as {@link PacketView} objects, via the spacePacketViewExtracted and
+     * encapsulationPacketViewExtracted methods. If null, packets are delivered as byte arrays. This method shall be
+     * invoked before processing the first frame.
+     *
+     * @param packetBufferPool the pool to use, or null to deliver packets as byte arrays
+     */
+    public final void setPacketBufferPool(PacketBufferPool packetBufferPool) {
+        this.packetBufferPool = packetBufferPool;
     }
 
-    public final void deregister(IVirtualChannelReceiverOutput listener) {
-        this.listeners.remove(listener);
+    /**
+     * This method returns the pool used to reassemble packets spanning more than one frame.
+     *
+     * @return the pool, or null if packets are delivered as byte arrays
+     */
+    public final PacketBufferPool getPacketBufferPool() {
+        return this.packetBufferPool;
+    }
+
+    /**
+     * This method configures a reorder window, used to re-sequence the received frames according to their virtual channel
+     * frame count and to drop duplicated frames, before packet extraction. Frames received ahead of the expected one are
+     * kept in the window until the missing frames are received, the window is full, or the maximum delay expires: in the
+     * last two cases, the missing frames are considered lost and a gap is detected as usual. The maximum delay is checked
+     * upon reception of a frame and when {@link AbstractReceiverVirtualChannel#releaseExpiredFrames()} is invoked.
+     * The window has no effect on frames for which gap detection is not applicable (e.g. TC frames). This method shall be
+     * invoked before processing the first frame.
+     *
+     * @param size the maximum number of frames kept in the window (rounded up to a power of two), or 0 to disable the window
+     * @param maxDelay the maximum time a frame can be kept in the window, 0 for no limit
+     * @param unit the unit of the maximum delay
+     */
+    public final void setReorderWindow(int size, long maxDelay, TimeUnit unit) {
+        if(size == 0) {
+            this.reorderWindow = null;
+        } else {
+            this.reorderWindow = new FrameReorderWindow<>(size, getVcFrameCounterModulo(), unit.toNanos(maxDelay), System::nanoTime, this::doProcessFrame);
+        }
+    }
+
+    /**
+     * This method releases the frames kept in the reorder window for longer than the configured maximum delay. It can be
+     * invoked periodically, to avoid keeping frames in the window when no frame is received. As the frame processing
+     * methods, this method is not thread safe: it shall be invoked by the thread processing the frames, or under the
+     * same external synchronisation, and never while a frame is being processed by another thread.
+     */
+    public final void releaseExpiredFrames() {
+        if(this.reorderWindow != null) {
+            this.reorderWindow.releaseExpired();
+        }
+    }
+
+    /**
+     * This method releases all the frames kept in the reorder window, in sequence order (e.g. at the end of a replay).
+     * The same threading constraints of {@link AbstractReceiverVirtualChannel#releaseExpiredFrames()} apply.
+     */
+    public final void flushReorderWindow() {
+        if(this.reorderWindow != null) {
+            this.reorderWindow.flush();
+        }
+    }
+
+    /**
+     * This method returns the number of frames currently kept in the reorder window.
+     *
+     * @return the number of frames in the reorder window, 0 if no window is configured
+     */
+    public final int getReorderWindowFrames() {
+        return this.reorderWindow != null ? this.reorderWindow.getBufferedFrames() : 0;
+    }
+
+    /**
+     * This method returns the number of frames dropped by the reorder window as duplicated or received too late.
+     *
+     * @return the number of dropped frames, 0 if no window is configured
+     */
+    public final long getDuplicatedFrames() {
+        return this.reorderWindow != null ? this.reorderWindow.getDuplicatedFrames() : 0;
+    }
+
+    /**
+     * This method returns the number of frames re-sequenced by the reorder window, i.e. received ahead of the expected
+     * frame and released later.
+     *
+     * @return the number of re-sequenced frames, 0 if no window is configured
+     */
+    public final long getReorderedFrames() {
+        return this.reorderWindow != null ? this.reorderWindow.getReorderedFrames() : 0;
+    }
+
+    public final synchronized void register(IVirtualChannelReceiverOutput listener) {
+        IVirtualChannelReceiverOutput[] newListeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        newListeners[newListeners.length - 1] = listener;
+        this.listeners = newListeners;
+    }
+
+    public final synchronized void deregister(IVirtualChannelReceiverOutput listener) {
+        for(int i = 0; i < this.listeners.length; ++i) {
+            if(this.listeners[i].equals(listener)) {
+                IVirtualChannelReceiverOutput[] newListeners = new IVirtualChannelReceiverOutput[this.listeners.length - 1];
+                System.arraycopy(this.listeners, 0, newListeners, 0, i);
+                System.arraycopy(this.listeners, i + 1, newListeners, i, newListeners.length - i);
+                this.listeners = newListeners;
+                return;
+            }
+        }
     }
 
     protected final void notifyTransferFrameReceived(T frame) {
-        this.listeners.forEach(o -> o.transferFrameReceived(this, frame));
+        for(IVirtualChannelReceiverOutput o : this.listeners) {
+            o.transferFrameReceived(this, frame);
+        }
     }
 
     protected final void notifyBitstreamExtracted(T frame, byte[] data, int numBits, int missingBytes) {
-        this.listeners.forEach(o -> o.bitstreamExtracted(this, frame, data, numBits, missingBytes));
+        for(IVirtualChannelReceiverOutput o : this.listeners) {
+            o.bitstreamExtracted(this, frame, data, numBits, missingBytes);
+        }
     }
 
     protected final void notifyDataExtracted(T frame, byte[] data, int missingBytes) {
-        this.listeners.forEach(o -> o.dataExtracted(this, frame, data, missingBytes));
+        for(IVirtualChannelReceiverOutput o : this.listeners) {
+            o.dataExtracted(this, frame, data, missingBytes);
+        }
     }
 
     protected final void notifySpacePacketExtracted(T frame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
-        this.listeners.forEach(o -> o.spacePacketExtracted(this, frame, packet, qualityIndicator, gaps));
+        if(this.batchInProgress) {
+            this.batchSpacePackets.add(new ExtractedPacket(frame, packet, qualityIndicator, gaps));
+            return;
+        }
+        for(IVirtualChannelReceiverOutput o : this.listeners) {
+            o.spacePacketExtracted(this, frame, packet, qualityIndicator, gaps);
+        }
     }
 
     protected final void notifyEncapsulationPacketExtracted(T frame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
-        this.listeners.forEach(o -> o.encapsulationPacketExtracted(this, frame, packet, qualityIndicator, gaps));
+        if(this.batchInProgress) {
+            this.batchEncapsulationPackets.add(new ExtractedPacket(frame, packet, qualityIndicator, gaps));
+            return;
+        }
+        for(IVirtualChannelReceiverOutput o : this.listeners) {
+            o.encapsulationPacketExtracted(this, frame, packet, qualityIndicator, gaps);
+        }
+    }
+
+    protected final void notifySpacePacketExtracted(T frame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+        if(this.batchInProgress) {
+            // Released at the end of the batch
+            this.batchSpacePackets.add(new ExtractedPacket(frame, packet, qualityIndicator, gaps));
+            return;
+        }
+        try {
+            for(IVirtualChannelReceiverOutput o : this.listeners) {
+                o.spacePacketViewExtracted(this, frame, packet, qualityIndicator, gaps);
+            }
+        } finally {
+            packet.release();
+        }
+    }
+
+    protected final void notifyEncapsulationPacketExtracted(T frame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+        if(this.batchInProgress) {
+            // Released at the end of the batch
+            this.batchEncapsulationPackets.add(new ExtractedPacket(frame, packet, qualityIndicator, gaps));
+            return;
+        }
+        try {
+            for(IVirtualChannelReceiverOutput o : this.listeners) {
+                o.encapsulationPacketViewExtracted(this, frame, packet, qualityIndicator, gaps);
+            }
+        } finally {
+            packet.release();
+        }
     }
 
     protected final void notifyGapDetected(int expectedVcCount, int receivedVcCount, int missingFrames) {
-        this.listeners.forEach(o -> o.gapDetected(this, expectedVcCount, receivedVcCount, missingFrames));
+        for(IVirtualChannelReceiverOutput o : this.listeners) {
+            o.gapDetected(this, expectedVcCount, receivedVcCount, missingFrames);
+        }
+    }
+
+    private void notifyBatch() {
+        if(!this.batchSpacePackets.isEmpty()) {
+            List<ExtractedPacket> packets = List.copyOf(this.batchSpacePackets);
+            this.batchSpacePackets.clear();
+            try {
+                for (IVirtualChannelReceiverOutput o : this.listeners) {
+                    o.spacePacketsExtracted(this, packets);
+                }
+            } finally {
+                releaseViews(packets);
+            }
+        }
+        if(!this.batchEncapsulationPackets.isEmpty()) {
+            List<ExtractedPacket> packets = List.copyOf(this.batchEncapsulationPackets);
+            this.batchEncapsulationPackets.clear();
+            try {
+                for (IVirtualChannelReceiverOutput o : this.listeners) {
+                    o.encapsulationPacketsExtracted(this, packets);
+                }
+            } finally {
+                releaseViews(packets);
+            }
+        }
+    }
+
+    private static void releaseViews(List<ExtractedPacket> packets) {
+        for(ExtractedPacket p : packets) {
+            if(p.getPacketView() != null) {
+                p.getPacketView().release();
+            }
+        }
     }
 
     @Override
@@ -125,6 +330,44 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
         processFrame(frame);
     }
 
+    /**
+     * This method processes the provided frames in sequence, as per {@link AbstractReceiverVirtualChannel#processFrame(AbstractTransferFrame)}.
+     * The space packets and encapsulation packets extracted from the frames are notified at the end of the batch, with a
+     * single invocation of the spacePacketsExtracted and encapsulationPacketsExtracted methods per listener. All the other
+     * notifications (frame reception, gaps, data) are delivered while the frames are processed.
+     *
+     * @param frames the frames to process
+     */
+    public void processFrames(List<? extends T> frames) {
+        this.batchInProgress = true;
+        try {
+            for (T frame : frames) {
+                processFrame(frame);
+            }
+        } finally {
+            this.batchInProgress = false;
+            notifyBatch();
+        }
+    }
+
+    /**
+     * This method processes the provided frames in sequence, as per {@link AbstractReceiverVirtualChannel#processFrames(List)}.
+     *
+     * @param frames the frames to process
+     */
+    @SafeVarargs
+    public final void processFrames(T... frames) {
+        this.batchInProgress = true;
+        try {
+            for (T frame : frames) {
+                processFrame(frame);
+            }
+        } finally {
+            this.batchInProgress = false;
+            notifyBatch();
+        }
+    }
+
     public void processFrame(T frame) {
         if (frame.getVirtualChannelId() != getVirtualChannelId()) {
             if (this.exceptionIfVcViolated) {
@@ -135,6 +378,14 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                 return;
             }
         }
+        if(this.reorderWindow != null && isGapDetectionApplicable(frame)) {
+            this.reorderWindow.add(frame);
+        } else {
+            doProcessFrame(frame);
+        }
+    }
+
+    private void doProcessFrame(T frame) {
         // forwardItem frame reception
         notifyTransferFrameReceived(frame);
 
@@ -272,9 +523,15 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                     this.currentPacketLength = (int) EncapsulationPacket.getEncapsulationPacketLength(this.currentPacket);
                     // Replace the currentPacket (which has 8 bytes) with a byte array with the correct length, capable to
                     // hold the entire packet
-                    byte[] fullPacket = new byte[this.currentPacketLength];
-                    System.arraycopy(this.currentPacket, 0, fullPacket, 0, this.currentPacket.length);
-                    this.currentPacket = fullPacket;
+                    if (this.packetBufferPool != null) {
+                        byte[] fullPacket = this.packetBufferPool.acquire(this.currentPacketLength);
+                        System.arraycopy(this.currentPacket, 0, fullPacket, 0, this.currentOffset);
+                        this.currentPacket = fullPacket;
+                    } else {
+                        byte[] fullPacket = new byte[this.currentPacketLength];
+                        System.arraycopy(this.currentPacket, 0, fullPacket, 0, this.currentPacket.length);
+                        this.currentPacket = fullPacket;
+                    }
                     alreadyRead = headerToRead;
                 }
             }
@@ -295,7 +552,7 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                     if (yetToRead > firstHeaderPointer - alreadyRead) {
                         // Packet overlap: close the reconstruction of the current pdu and notify it with bad quality
                         System.arraycopy(fullFrame, firstFrameDataOffset + alreadyRead, this.currentPacket, this.currentOffset, firstHeaderPointer - alreadyRead);
-                        notifyEncapsulationPacketExtracted(this.currentFirstFrame, toPacket(), false, buildGapList());
+                        emitCurrentEncapsulationPacket(false);
                         clearCurrentPacketFields();
                         this.currentPacket = null;
                     } else {
@@ -306,7 +563,7 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                 }
                 // If the pdu is closed, notify it with success
                 if (this.currentPacketLength != -1 && (this.currentPacketLength == this.currentOffset)) {
-                    notifyEncapsulationPacketExtracted(this.currentFirstFrame, toPacket(), this.currentGaps.isEmpty(), buildGapList());
+                    emitCurrentEncapsulationPacket(this.currentGaps.isEmpty());
                     clearCurrentPacketFields();
                     this.currentPacket = null;
                 }
@@ -330,21 +587,32 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
         // If at least headerLength bytes are available, then the pdu length can be derived, do it
         if (currentHeaderPointer + headerLength < frameDataLength) {
             this.currentPacketLength = (int) EncapsulationPacket.getEncapsulationPacketLength(fullFrame, firstFrameDataOffset + currentHeaderPointer);
-            this.currentPacket = new byte[this.currentPacketLength];
             // Now read as much as you can, which is the minimum between the packet length and the remaining data in the frame.
             int toRead = Math.min(this.currentPacketLength, (frameDataLength + firstFrameDataOffset) - (firstFrameDataOffset + currentHeaderPointer));
+            if (this.packetBufferPool != null) {
+                if (toRead == this.currentPacketLength) {
+                    // Packet fully contained in the frame: notify a view on the frame, no copy
+                    notifyEncapsulationPacketExtracted(frame, new PacketView(fullFrame, firstFrameDataOffset + currentHeaderPointer, toRead), this.currentGaps.isEmpty(), buildGapList());
+                    clearCurrentPacketFields();
+                    this.currentPacket = null;
+                    return currentHeaderPointer + toRead;
+                }
+                this.currentPacket = this.packetBufferPool.acquire(this.currentPacketLength);
+            } else {
+                this.currentPacket = new byte[this.currentPacketLength];
+            }
             System.arraycopy(fullFrame, firstFrameDataOffset + currentHeaderPointer, this.currentPacket, this.currentOffset, toRead);
             this.currentOffset += toRead;
             // If the pdu is complete, notify
             if (toRead == this.currentPacketLength) {
                 // Packet complete, notify
-                notifyEncapsulationPacketExtracted(this.currentFirstFrame, toPacket(), this.currentGaps.isEmpty(), buildGapList());
+                emitCurrentEncapsulationPacket(this.currentGaps.isEmpty());
                 clearCurrentPacketFields();
                 this.currentPacket = null;
             }
             return currentHeaderPointer + toRead;
         } else {
-            this.currentPacket = new byte[8]; // max packet header length
+            this.currentPacket = this.packetBufferPool != null ? this.packetHeaderArea : new byte[8]; // max packet header length
             // Read what you can
             int toRead = frameDataLength - currentHeaderPointer;
             System.arraycopy(fullFrame, firstFrameDataOffset + currentHeaderPointer, this.currentPacket, this.currentOffset, toRead);
@@ -384,6 +652,12 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                     ByteBuffer bb = ByteBuffer.wrap(this.currentPacket, 0, 6);
                     bb.getInt(); // discard
                     this.currentPacketLength = Short.toUnsignedInt(bb.getShort()) + 1 + 6;
+                    if (this.packetBufferPool != null) {
+                        // Length known: move the header to a pooled buffer, where the rest of the packet is assembled
+                        byte[] fullPacket = this.packetBufferPool.acquire(this.currentPacketLength);
+                        System.arraycopy(this.currentPacket, 0, fullPacket, 0, this.currentOffset);
+                        this.currentPacket = fullPacket;
+                    }
                     alreadyRead = headerToRead;
                 }
             }
@@ -404,7 +678,7 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                     if (yetToRead > firstHeaderPointer - alreadyRead) {
                         // Packet overlap: close the reconstruction of the current pdu and notify it with bad quality
                         System.arraycopy(fullFrame, firstFrameDataOffset + alreadyRead, this.currentPacket, this.currentOffset, firstHeaderPointer - alreadyRead);
-                        notifySpacePacketExtracted(this.currentFirstFrame, toPacket(), false, buildGapList());
+                        emitCurrentSpacePacket(false);
                         clearCurrentPacketFields();
                     } else {
                         // No pdu overlap: close the reconstruction with success
@@ -414,7 +688,7 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
                 }
                 // If the pdu is closed, notify it with success
                 if (this.currentPacketLength != -1 && (this.currentPacketLength == this.currentOffset)) {
-                    notifySpacePacketExtracted(this.currentFirstFrame, toPacket(), this.currentGaps.isEmpty(), buildGapList());
+                    emitCurrentSpacePacket(this.currentGaps.isEmpty());
                     clearCurrentPacketFields();
                 }
             }
@@ -438,16 +712,29 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
             this.currentPacketLength = Short.toUnsignedInt(bb.getShort()) + 1 + 6; // the field returns the length of the packet data field - 1, we have to add also the header length (6)
             // Now read as much as you can, which is the minimum between the packet length and the remaining data in the frame.
             int toRead = Math.min(this.currentPacketLength, (frameDataLength + firstFrameDataOffset) - (firstFrameDataOffset + currentHeaderPointer));
+            if (this.packetBufferPool != null) {
+                if (toRead == this.currentPacketLength) {
+                    // Packet fully contained in the frame: notify a view on the frame, no copy
+                    notifySpacePacketExtracted(frame, new PacketView(fullFrame, firstFrameDataOffset + currentHeaderPointer, toRead), this.currentGaps.isEmpty(), buildGapList());
+                    clearCurrentPacketFields();
+                    return currentHeaderPointer + toRead;
+                }
+                // Packet spanning more frames: assemble it directly in a pooled buffer
+                this.currentPacket = this.packetBufferPool.acquire(this.currentPacketLength);
+            } else {
+                this.currentPacket = this.spacePacketArea;
+            }
             System.arraycopy(fullFrame, firstFrameDataOffset + currentHeaderPointer, this.currentPacket, this.currentOffset, toRead);
             this.currentOffset += toRead;
             // If the pdu is complete, notify
             if (toRead == this.currentPacketLength) {
                 // Packet complete, notify
-                notifySpacePacketExtracted(this.currentFirstFrame, toPacket(), this.currentGaps.isEmpty(), buildGapList());
+                emitCurrentSpacePacket(this.currentGaps.isEmpty());
                 clearCurrentPacketFields();
             }
             return currentHeaderPointer + toRead;
         } else {
+            this.currentPacket = this.packetBufferPool != null ? this.packetHeaderArea : this.spacePacketArea;
             // Read what you can
             int toRead = frameDataLength - currentHeaderPointer;
             System.arraycopy(fullFrame, firstFrameDataOffset + currentHeaderPointer, this.currentPacket, this.currentOffset, toRead);
@@ -462,7 +749,7 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
         }
         // Close only if you can
         if(this.currentPacketLength > -1) {
-            notifySpacePacketExtracted(this.currentFirstFrame, toPacket(), false, buildGapList());
+            emitCurrentSpacePacket(false);
         }
         // If you could not close it, then it is impossible to understand the length, there must have been a gap, ignored
         clearCurrentPacketFields();
@@ -474,13 +761,32 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
         }
         // Close only if you can
         if(this.currentPacketLength > -1) {
-            notifyEncapsulationPacketExtracted(this.currentFirstFrame, toPacket(), false, buildGapList());
+            emitCurrentEncapsulationPacket(false);
         }
         // If you could not close it, then it is impossible to understand the length, there must have been a gap, ignored
         clearCurrentPacketFields();
         this.currentPacket = null;
     }
 
+    private void emitCurrentSpacePacket(boolean qualityIndicator) {
+        if(this.packetBufferPool == null) {
+            notifySpacePacketExtracted(this.currentFirstFrame, toPacket(), qualityIndicator, buildGapList());
+        } else {
+            // The packet was reassembled directly in a pooled buffer, which is handed over to the listeners
+            notifySpacePacketExtracted(this.currentFirstFrame, new PacketView(this.currentPacket, 0, this.currentPacketLength, this.packetBufferPool), qualityIndicator, buildGapList());
+            this.currentPacket = null;
+        }
+    }
+
+    private void emitCurrentEncapsulationPacket(boolean qualityIndicator) {
+        if(this.packetBufferPool == null) {
+            notifyEncapsulationPacketExtracted(this.currentFirstFrame, toPacket(), qualityIndicator, buildGapList());
+        } else {
+            // The packet was reassembled directly in a pooled buffer
+            notifyEncapsulationPacketExtracted(this.currentFirstFrame, new PacketView(this.currentPacket, 0, this.currentPacketLength, this.packetBufferPool), qualityIndicator, buildGapList());
+        }
+    }
+
     private void clearCurrentPacketFields() {
         this.currentOffset = -1;
         this.currentPacketLength = -1;
@@ -489,7 +795,13 @@ public abstract class AbstractReceiverVirtualChannel<T extends AbstractTransferF
     }
 
     private List<PacketGap> buildGapList() {
-        return this.currentGaps.isEmpty() ? Collections.emptyList() : List.copyOf(this.currentGaps);
+        if(this.currentGaps.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // The list is handed over to the listeners: start a new one for the next packet
+        List<PacketGap> gaps = Collections.unmodifiableList(this.currentGaps);
+        this.currentGaps = new ArrayList<>(80);
+        return gaps;
     }
 
     protected byte[] toPacket() {
@@ -0,0 +1,109 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+
+import java.util.List;
+
+/**
+ * This class is used to inform implementors of the {@link IVirtualChannelReceiverOutput} interface about a packet
+ * extracted during the processing of a batch of frames (see {@link AbstractReceiverVirtualChannel#processFrames(List)}).
+ * The packet is provided either as byte array or, if the virtual channel is configured with a {@link PacketBufferPool},
+ * as {@link PacketView}.
+ */
+public class ExtractedPacket {
+
+    private final AbstractTransferFrame firstFrame;
+    private final byte[] packet;
+    private final PacketView packetView;
+    private final boolean qualityIndicator;
+    private final List<PacketGap> gaps;
+
+    /**
+     * The constructor of an extracted packet, delivered as byte array.
+     *
+     * @param firstFrame the frame containing the first part of the packet
+     * @param packet the extracted packet
+     * @param qualityIndicator true if the packet has been fully extracted, false if there were problems (frame gap, packet overlap)
+     * @param gaps the gaps present in the packet, due to frame gaps
+     */
+    public ExtractedPacket(AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+        this(firstFrame, packet, null, qualityIndicator, gaps);
+    }
+
+    /**
+     * The constructor of an extracted packet, delivered as {@link PacketView}.
+     *
+     * @param firstFrame the frame containing the first part of the packet
+     * @param packetView the view over the extracted packet
+     * @param qualityIndicator true if the packet has been fully extracted, false if there were problems (frame gap, packet overlap)
+     * @param gaps the gaps present in the packet, due to frame gaps
+     */
+    public ExtractedPacket(AbstractTransferFrame firstFrame, PacketView packetView, boolean qualityIndicator, List<PacketGap> gaps) {
+        this(firstFrame, null, packetView, qualityIndicator, gaps);
+    }
+
+    private ExtractedPacket(AbstractTransferFrame firstFrame, byte[] packet, PacketView packetView, boolean qualityIndicator, List<PacketGap> gaps) {
+        this.firstFrame = firstFrame;
+        this.packet = packet;
+        this.packetView = packetView;
+        this.qualityIndicator = qualityIndicator;
+        this.gaps = gaps;
+    }
+
+    /**
+     * This method returns the frame containing the first part of the packet.
+     * @return the frame containing the first part of the packet
+     */
+    public AbstractTransferFrame getFirstFrame() {
+        return firstFrame;
+    }
+
+    /**
+     * This method returns the packet as byte array. If the packet was delivered as {@link PacketView}, a copy of the
+     * packet is returned.
+     * @return the packet
+     */
+    public byte[] getPacket() {
+        return packet != null ? packet : packetView.toByteArray();
+    }
+
+    /**
+     * This method returns the view over the packet, if the packet was delivered as {@link PacketView}.
+     * @return the view over the packet, or null if the packet was delivered as byte array
+     */
+    public PacketView getPacketView() {
+        return packetView;
+    }
+
+    /**
+     * This method returns the quality indicator of the packet.
+     * @return true if the packet has been fully extracted, false if there were problems (frame gap, packet overlap)
+     */
+    public boolean isQualityIndicator() {
+        return qualityIndicator;
+    }
+
+    /**
+     * This method returns the gaps present in the packet.
+     * @return the gaps present in the packet, due to frame gaps
+     */
+    public List<PacketGap> getGaps() {
+        return gaps;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * This class re-sequences the frames of a virtual channel according to their virtual channel frame count, and drops
+ * duplicated frames. Frames received ahead of the expected one are kept in a fixed-size array, indexed by frame count,
+ * until the missing frames arrive. The size of the array is rounded up to a power of two, so that it divides the frame
+ * count modulo. Frames are released in order when:
+ * <ul>
+ *     <li>the missing frames arrive;</li>
+ *     <li>a frame beyond the window is received: the window slides, skipping the missing frames;</li>
+ *     <li>a frame is kept for longer than the maximum delay: the missing frames before it are skipped;</li>
+ *     <li>the window is flushed.</li>
+ * </ul>
+ * Frames with a frame count already released, up to twice the size of the window, are considered duplicated (or too
+ * late) and dropped. Frames with a frame count too far from the expected one are considered a restart of the frame count: the window
+ * is flushed and the sequence is restarted from the received frame.
+ * <p>
+ * The arrival time of the oldest frame in the window is tracked, so that checking the maximum delay upon reception of a
+ * frame does not require a scan of the window, unless a frame actually expired.
+ * <p>
+ * This class is not thread safe: all its methods, including {@link FrameReorderWindow#releaseExpired()}, shall be
+ * invoked by the thread processing the frames of the virtual channel, or under the same external synchronisation.
+ *
+ * @param <T> the type of transfer frame
+ */
+final class FrameReorderWindow<T extends AbstractTransferFrame> {
+
+    private final Object[] frames;
+
+    private final long[] arrivalTimes;
+
+    private final int modulo;
+
+    private final long maxDelayNanos;
+
+    private final LongSupplier nanoTime;
+
+    private final Consumer<T> output;
+
+    // Frame count of the next frame to release, -1 if unknown
+    private int nextExpected = -1;
+
+    private int bufferedFrames = 0;
+
+    // Arrival time of the oldest frame in the window, meaningful only if bufferedFrames > 0. It can be older than the
+    // actual one, if the oldest frame was released: the exact value is computed again upon the next expiration check
+    // that requires a scan of the window.
+    private long oldestArrivalTime = 0;
+
+    private long duplicatedFrames = 0;
+
+    private long reorderedFrames = 0;
+
+    /**
+     * Create a reorder window.
+     *
+     * @param size the number of frames that can be kept in the window, rounded up to a power of two
+     * @param modulo the modulo of the virtual channel frame count
+     * @param maxDelayNanos the maximum time a frame can be kept in the window, in nanoseconds: 0 or negative for no limit
+     * @param nanoTime the time source
+     * @param output the consumer of the released frames
+     */
+    FrameReorderWindow(int size, int modulo, long maxDelayNanos, LongSupplier nanoTime, Consumer<T> output) {
+        if(size <= 0 || size > modulo / 4) {
+            throw new IllegalArgumentException("Reorder window size must be between 1 and " + modulo / 4 + ", got " + size);
+        }
+        size = size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        if(nanoTime == null) {
+            throw new NullPointerException("Time source cannot be null");
+        }
+        if(output == null) {
+            throw new NullPointerException("Output cannot be null");
+        }
+        this.frames = new Object[size];
+        this.arrivalTimes = new long[size];
+        this.modulo = modulo;
+        this.maxDelayNanos = maxDelayNanos;
+        this.nanoTime = nanoTime;
+        this.output = output;
+    }
+
+    /**
+     * This method adds a frame to the window, releasing all the frames that can be released.
+     *
+     * @param frame the frame
+     */
+    void add(T frame) {
+        int count = frame.getVirtualChannelFrameCount();
+        if(this.nextExpected == -1) {
+            release(frame);
+            return;
+        }
+        int ahead = Math.floorMod(count - this.nextExpected, this.modulo);
+        int behind = this.modulo - ahead;
+        if(ahead == 0) {
+            release(frame);
+            releaseInSequence();
+        } else if(ahead < this.frames.length) {
+            int slot = count % this.frames.length;
+            if(this.frames[slot] != null) {
+                ++this.duplicatedFrames;
+            } else {
+                long now = this.nanoTime.getAsLong();
+                if(this.bufferedFrames == 0) {
+                    this.oldestArrivalTime = now;
+                }
+                this.frames[slot] = frame;
+                this.arrivalTimes[slot] = now;
+                ++this.bufferedFrames;
+            }
+        } else if(behind <= 2 * this.frames.length) {
+            // Already released
+            ++this.duplicatedFrames;
+        } else if(ahead < 2 * this.frames.length) {
+            // Slide the window, so that the frame falls in the window
+            while(Math.floorMod(count - this.nextExpected, this.modulo) >= this.frames.length) {
+                skip();
+            }
+            releaseInSequence();
+            add(frame);
+            return;
+        } else {
+            // Restart of the frame count
+            flush();
+            release(frame);
+        }
+        releaseExpired();
+    }
+
+    /**
+     * This method releases the frames kept in the window for longer than the maximum delay, together with all the frames
+     * preceding them, skipping the missing ones.
+     */
+    void releaseExpired() {
+        if(this.bufferedFrames == 0 || this.maxDelayNanos <= 0) {
+            return;
+        }
+        long now = this.nanoTime.getAsLong();
+        if(now - this.oldestArrivalTime < this.maxDelayNanos) {
+            // Not even the oldest frame expired
+            return;
+        }
+        // Look for the last expired frame in sequence order
+        int lastExpired = -1;
+        for(int i = 0; i < this.frames.length; ++i) {
+            int slot = (this.nextExpected + i) % this.frames.length;
+            if(this.frames[slot] != null && now - this.arrivalTimes[slot] >= this.maxDelayNanos) {
+                lastExpired = i;
+            }
+        }
+        for(int i = 0; i <= lastExpired; ++i) {
+            skip();
+        }
+        releaseInSequence();
+        // Compute the arrival time of the oldest frame still in the window
+        long oldest = now;
+        for(int i = 0; this.bufferedFrames > 0 && i < this.frames.length; ++i) {
+            if(this.frames[i] != null && this.arrivalTimes[i] - oldest < 0) {
+                oldest = this.arrivalTimes[i];
+            }
+        }
+        this.oldestArrivalTime = oldest;
+    }
+
+    /**
+     * This method releases all the frames kept in the window, in sequence order.
+     */
+    void flush() {
+        while(this.bufferedFrames > 0) {
+            skip();
+        }
+    }
+
+    int getBufferedFrames() {
+        return this.bufferedFrames;
+    }
+
+    long getDuplicatedFrames() {
+        return this.duplicatedFrames;
+    }
+
+    long getReorderedFrames() {
+        return this.reorderedFrames;
+    }
+
+    // Release the expected frame if present, and move to the next one
+    @SuppressWarnings("unchecked")
+    private void skip() {
+        int slot = this.nextExpected % this.frames.length;
+        T frame = (T) this.frames[slot];
+        if(frame != null) {
+            take(slot);
+            release(frame);
+        } else {
+            this.nextExpected = (this.nextExpected + 1) % this.modulo;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void releaseInSequence() {
+        int slot = this.nextExpected % this.frames.length;
+        while(this.bufferedFrames > 0 && this.frames[slot] != null) {
+            T frame = (T) this.frames[slot];
+            take(slot);
+            release(frame);
+            slot = this.nextExpected % this.frames.length;
+        }
+    }
+
+    private void take(int slot) {
+        this.frames[slot] = null;
+        --this.bufferedFrames;
+        ++this.reorderedFrames;
+    }
+
+    private void release(T frame) {
+        this.nextExpected = (frame.getVirtualChannelFrameCount() + 1) % this.modulo;
+        this.output.accept(frame);
+    }
+}
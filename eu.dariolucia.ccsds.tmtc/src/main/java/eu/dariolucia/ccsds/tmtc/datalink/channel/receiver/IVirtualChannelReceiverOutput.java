@@ -61,6 +61,21 @@ public interface IVirtualChannelReceiverOutput {
         spacePacketExtracted(vc, firstFrame, packet, qualityIndicator);
     }
 
+    /**
+     * This method signals the extraction of the provided space packet, including the first frame, from the provided virtual channel.
+     * It is invoked instead of the byte array variant when the virtual channel is configured with a {@link PacketBufferPool}.
+     * The default implementation copies the packet and invokes the byte array variant.
+     *
+     * @param vc the virtual channel that extracted the packet
+     * @param firstFrame the frame containing the first part of the packet
+     * @param packet the view over the extracted space packet, see {@link PacketView} for its validity
+     * @param qualityIndicator true if the packet has been fully extracted, false if there were problems (frame gap, packet overlap)
+     * @param gaps the gaps present in the packet, due to frame gaps
+     */
+    default void spacePacketViewExtracted(AbstractReceiverVirtualChannel<?> vc, AbstractTransferFrame firstFrame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+        spacePacketExtracted(vc, firstFrame, packet.toByteArray(), qualityIndicator, gaps);
+    }
+
     /**
      * This method signals the extraction of the provided encapsulation packet, including the first frame, from the provided virtual channel.
      *
@@ -87,6 +102,57 @@ public interface IVirtualChannelReceiverOutput {
         encapsulationPacketExtracted(vc, firstFrame, packet, qualityIndicator);
     }
 
+    /**
+     * This method signals the extraction of the provided encapsulation packet, including the first frame, from the provided virtual channel.
+     * It is invoked instead of the byte array variant when the virtual channel is configured with a {@link PacketBufferPool}.
+     * The default implementation copies the packet and invokes the byte array variant.
+     *
+     * @param vc the virtual channel that extracted the packet
+     * @param firstFrame the frame containing the first part of the packet
+     * @param packet the view over the extracted encapsulation packet, see {@link PacketView} for its validity
+     * @param qualityIndicator true if the packet has been fully extracted, false if there were problems (frame gap, packet overlap)
+     * @param gaps the gaps present in the packet, due to frame gaps
+     */
+    default void encapsulationPacketViewExtracted(AbstractReceiverVirtualChannel<?> vc, AbstractTransferFrame firstFrame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+        encapsulationPacketExtracted(vc, firstFrame, packet.toByteArray(), qualityIndicator, gaps);
+    }
+
+    /**
+     * This method signals the extraction of the provided space packets from the provided virtual channel, at the end of
+     * the processing of a batch of frames (see {@link AbstractReceiverVirtualChannel#processFrames(List)}).
+     * The default implementation invokes spacePacketViewExtracted or spacePacketExtracted for each packet.
+     *
+     * @param vc the virtual channel that extracted the packets
+     * @param packets the extracted space packets, in extraction order. Packet views are valid only for the duration of the call
+     */
+    default void spacePacketsExtracted(AbstractReceiverVirtualChannel<?> vc, List<ExtractedPacket> packets) {
+        for(ExtractedPacket p : packets) {
+            if(p.getPacketView() != null) {
+                spacePacketViewExtracted(vc, p.getFirstFrame(), p.getPacketView(), p.isQualityIndicator(), p.getGaps());
+            } else {
+                spacePacketExtracted(vc, p.getFirstFrame(), p.getPacket(), p.isQualityIndicator(), p.getGaps());
+            }
+        }
+    }
+
+    /**
+     * This method signals the extraction of the provided encapsulation packets from the provided virtual channel, at the end of
+     * the processing of a batch of frames (see {@link AbstractReceiverVirtualChannel#processFrames(List)}).
+     * The default implementation invokes encapsulationPacketViewExtracted or encapsulationPacketExtracted for each packet.
+     *
+     * @param vc the virtual channel that extracted the packets
+     * @param packets the extracted encapsulation packets, in extraction order. Packet views are valid only for the duration of the call
+     */
+    default void encapsulationPacketsExtracted(AbstractReceiverVirtualChannel<?> vc, List<ExtractedPacket> packets) {
+        for(ExtractedPacket p : packets) {
+            if(p.getPacketView() != null) {
+                encapsulationPacketViewExtracted(vc, p.getFirstFrame(), p.getPacketView(), p.isQualityIndicator(), p.getGaps());
+            } else {
+                encapsulationPacketExtracted(vc, p.getFirstFrame(), p.getPacket(), p.isQualityIndicator(), p.getGaps());
+            }
+        }
+    }
+
     /**
      * This method signals the reception of the provided user data from the provided virtual channel.
      *
@@ -0,0 +1,145 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a pool of byte arrays used for the reassembly of packets spanning more than one frame, when the
+ * {@link AbstractReceiverVirtualChannel} is configured to deliver {@link PacketView} objects. Buffers are organised in
+ * power-of-two size classes, from 64 bytes up to 128 KB, which covers the maximum length of a space packet. Requests
+ * for larger buffers are served with new, non-pooled arrays.
+ * <p>
+ * This class is thread safe: buffers can be released by threads different from the one processing the frames.
+ */
+public class PacketBufferPool {
+
+    /**
+     * Default maximum number of buffers kept in the pool for each size class.
+     */
+    public static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+
+    private static final int MIN_SIZE_CLASS = 6; // 64 bytes
+
+    private static final int MAX_SIZE_CLASS = 17; // 128 KB
+
+    private final ArrayBlockingQueue<byte[]>[] pools;
+
+    private final AtomicLong allocatedBuffers = new AtomicLong(0);
+
+    /**
+     * Create a pool with {@link PacketBufferPool#DEFAULT_MAX_POOLED_BUFFERS} buffers per size class.
+     */
+    public PacketBufferPool() {
+        this(DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    /**
+     * Create a pool with the provided maximum number of buffers per size class. Buffers released when the related
+     * size class is full are left to the garbage collector.
+     *
+     * @param maxPooledBuffers the maximum number of buffers kept for each size class, must be positive
+     */
+    public PacketBufferPool(int maxPooledBuffers) {
+        if(maxPooledBuffers <= 0) {
+            throw new IllegalArgumentException("Maximum number of pooled buffers must be positive, got " + maxPooledBuffers);
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayBlockingQueue<byte[]>[] sizeClasses = new ArrayBlockingQueue[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1];
+        this.pools = sizeClasses;
+        for(int i = 0; i < this.pools.length; ++i) {
+            this.pools[i] = new ArrayBlockingQueue<>(maxPooledBuffers);
+        }
+    }
+
+    /**
+     * This method returns a buffer with at least the requested length. The content of the returned buffer is
+     * undefined.
+     *
+     * @param length the minimum length of the buffer
+     * @return the buffer
+     */
+    public byte[] acquire(int length) {
+        if(length < 0) {
+            throw new IllegalArgumentException("Buffer length cannot be negative, got " + length);
+        }
+        int sizeClass = sizeClass(length);
+        if(sizeClass > MAX_SIZE_CLASS) {
+            this.allocatedBuffers.incrementAndGet();
+            return new byte[length];
+        }
+        byte[] buffer = this.pools[sizeClass - MIN_SIZE_CLASS].poll();
+        if(buffer == null) {
+            this.allocatedBuffers.incrementAndGet();
+            buffer = new byte[1 << sizeClass];
+        }
+        return buffer;
+    }
+
+    /**
+     * This method returns the provided buffer to the pool. Buffers whose length is not exactly the one of a size class
+     * (e.g. the non-pooled buffers larger than 128 KB) are ignored. The pool does not track the buffers it hands out:
+     * any array with the length of a size class is accepted, including an array not acquired from this pool or already
+     * released. Since such buffers are handed out again by {@link PacketBufferPool#acquire(int)}, releasing a buffer
+     * that is still in use, or releasing the same buffer twice, results in the same array being used by two owners.
+     * The caller shall therefore release only buffers acquired from this pool, once, and shall not use them after this
+     * call. Pooled {@link PacketView} objects are reference counted and release their buffer only once.
+     *
+     * @param buffer the buffer to release
+     */
+    public void release(byte[] buffer) {
+        if(buffer == null) {
+            throw new NullPointerException("Buffer cannot be null");
+        }
+        int sizeClass = sizeClass(buffer.length);
+        if(sizeClass > MAX_SIZE_CLASS || buffer.length != 1 << sizeClass) {
+            return;
+        }
+        this.pools[sizeClass - MIN_SIZE_CLASS].offer(buffer);
+    }
+
+    /**
+     * This method returns the number of buffers allocated by this pool since its creation, i.e. the number of
+     * {@link PacketBufferPool#acquire(int)} invocations that could not be served by a pooled buffer.
+     *
+     * @return the number of allocated buffers
+     */
+    public long getAllocatedBuffers() {
+        return this.allocatedBuffers.get();
+    }
+
+    /**
+     * This method returns the number of buffers currently available in the pool.
+     *
+     * @return the number of available buffers
+     */
+    public int getAvailableBuffers() {
+        int available = 0;
+        for(ArrayBlockingQueue<byte[]> pool : this.pools) {
+            available += pool.size();
+        }
+        return available;
+    }
+
+    private static int sizeClass(int length) {
+        if(length <= 1 << MIN_SIZE_CLASS) {
+            return MIN_SIZE_CLASS;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * This class is a view over the bytes of an extracted packet, delivered to {@link IVirtualChannelReceiverOutput}
+ * implementations when the {@link AbstractReceiverVirtualChannel} is configured with a {@link PacketBufferPool}.
+ * <p>
+ * Packets fully contained in a frame are views over the frame data and remain valid as long as the frame is available.
+ * Packets spanning more than one frame are reassembled in a buffer taken from the pool: such views are reference
+ * counted, and the buffer is returned to the pool when the count drops to zero. The virtual channel releases its own
+ * reference when all the listeners have been notified, so a listener that needs to access a pooled view after the
+ * notification shall call {@link PacketView#retain()} and, when done, {@link PacketView#release()}.
+ * <p>
+ * The content of a view shall not be modified.
+ */
+public final class PacketView {
+
+    private static final AtomicIntegerFieldUpdater<PacketView> REF_COUNT_UPDATER = AtomicIntegerFieldUpdater.newUpdater(PacketView.class, "refCount");
+
+    private final byte[] data;
+
+    private final int offset;
+
+    private final int length;
+
+    private final PacketBufferPool pool;
+
+    private volatile int refCount;
+
+    /**
+     * Create a view over a portion of the provided array (typically a frame). The view is not pooled.
+     *
+     * @param data the array containing the packet
+     * @param offset the offset of the packet in the array
+     * @param length the length of the packet
+     */
+    public PacketView(byte[] data, int offset, int length) {
+        this(data, offset, length, null);
+    }
+
+    /**
+     * Create a view over a portion of the provided array. If a pool is provided, the array is returned to it when the
+     * view is released for the last time.
+     *
+     * @param data the array containing the packet
+     * @param offset the offset of the packet in the array
+     * @param length the length of the packet
+     * @param pool the pool owning the array, can be null
+     */
+    public PacketView(byte[] data, int offset, int length, PacketBufferPool pool) {
+        if(data == null) {
+            throw new NullPointerException("Data cannot be null");
+        }
+        if(offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Packet view out of bounds: offset " + offset + ", length " + length + ", array length " + data.length);
+        }
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.pool = pool;
+        this.refCount = 1;
+    }
+
+    /**
+     * This method returns the array containing the packet (direct reference). The packet starts at {@link PacketView#getOffset()}.
+     *
+     * @return the array containing the packet
+     */
+    public byte[] getData() {
+        checkAccessible();
+        return this.data;
+    }
+
+    /**
+     * This method returns the offset of the packet in the array returned by {@link PacketView#getData()}.
+     *
+     * @return the offset of the packet
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * This method returns the length of the packet.
+     *
+     * @return the length of the packet in bytes
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * This method returns the byte of the packet at the provided index.
+     *
+     * @param index the index, starting from the beginning of the packet
+     * @return the byte at the index
+     */
+    public byte getByte(int index) {
+        checkAccessible();
+        if(index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.length);
+        }
+        return this.data[this.offset + index];
+    }
+
+    /**
+     * This method returns a read-only {@link ByteBuffer} over the packet.
+     *
+     * @return the packet as {@link ByteBuffer}
+     */
+    public ByteBuffer asByteBuffer() {
+        checkAccessible();
+        return ByteBuffer.wrap(this.data, this.offset, this.length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * This method returns a copy of the packet.
+     *
+     * @return a new array containing the packet
+     */
+    public byte[] toByteArray() {
+        checkAccessible();
+        return Arrays.copyOfRange(this.data, this.offset, this.offset + this.length);
+    }
+
+    /**
+     * This method returns whether the packet is stored in a buffer taken from a {@link PacketBufferPool}.
+     *
+     * @return true if the view is pooled, otherwise false
+     */
+    public boolean isPooled() {
+        return this.pool != null;
+    }
+
+    /**
+     * This method increments the reference count of the view. It has no effect on non-pooled views.
+     *
+     * @return this view
+     * @throws IllegalStateException if the view was already released
+     */
+    public PacketView retain() {
+        if(this.pool == null) {
+            return this;
+        }
+        int current;
+        do {
+            current = this.refCount;
+            if(current <= 0) {
+                throw new IllegalStateException("Packet view already released");
+            }
+        } while(!REF_COUNT_UPDATER.compareAndSet(this, current, current + 1));
+        return this;
+    }
+
+    /**
+     * This method decrements the reference count of the view. When the count drops to zero, the underlying buffer is
+     * returned to the pool and the view cannot be accessed any longer. It has no effect on non-pooled views.
+     *
+     * @throws IllegalStateException if the view was already released
+     */
+    public void release() {
+        if(this.pool == null) {
+            return;
+        }
+        int current = REF_COUNT_UPDATER.decrementAndGet(this);
+        if(current == 0) {
+            this.pool.release(this.data);
+        } else if(current < 0) {
+            this.refCount = 0;
+            throw new IllegalStateException("Packet view already released");
+        }
+    }
+
+    private void checkAccessible() {
+        if(this.pool != null && this.refCount <= 0) {
+            throw new IllegalStateException("Packet view already released");
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.SpscRingBuffer;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * This class is a {@link VirtualChannelReceiverDemux} that processes the frames of each virtual channel on a dedicated
+ * worker thread. Frames are routed by the caller thread into a bounded single-producer/single-consumer queue per
+ * virtual channel, and each queue is drained by its own worker, which invokes the processing of the virtual channel.
+ * Therefore, the extraction of packets and data for different virtual channels runs in parallel, while the frames of the
+ * same virtual channel are processed in order. The listeners of the virtual channels are notified by the worker
+ * threads.
+ * <p>
+ * When the queue of a virtual channel is full, the frame is handled according to the {@link OverflowPolicy}: the caller
+ * thread either waits for space in the queue or drops the frame. Dropped frames are detected as frame gaps by the
+ * virtual channel. Frames belonging to unregistered virtual channels are passed to the handler (if any) on the caller
+ * thread.
+ * <p>
+ * If the processing of a frame fails with an exception, the frame is counted as failed and the worker continues with the
+ * next frames. The exception is passed, on the worker thread, to the error handler provided at construction time or, if
+ * no error handler is provided, to the uncaught exception handler of the worker thread.
+ * <p>
+ * Worker threads are created upon registration of the virtual channels, using the provided {@link ThreadFactory}
+ * (e.g. a factory of virtual threads on Java 21+), and are stopped by {@link AsyncVirtualChannelReceiverDemux#dispose()}.
+ * <p>
+ * Frames shall be provided by a single thread. This class is not thread-safe.
+ */
+public class AsyncVirtualChannelReceiverDemux extends VirtualChannelReceiverDemux {
+
+    /**
+     * Default capacity of the queue of each virtual channel.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final int MAX_VIRTUAL_CHANNELS = 64;
+
+    private static final int IDLE_SPINS = 100;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    /**
+     * The policy used when a frame is routed to a virtual channel with a full queue.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The caller thread waits until the queue has space for the frame.
+         */
+        BLOCK,
+        /**
+         * The frame is dropped and counted.
+         */
+        DROP
+    }
+
+    private final int queueCapacity;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final ThreadFactory threadFactory;
+
+    private final BiConsumer<AbstractTransferFrame, RuntimeException> errorHandler;
+
+    private final VirtualChannelQueue[] queues = new VirtualChannelQueue[MAX_VIRTUAL_CHANNELS];
+
+    private volatile boolean running = true;
+
+    /**
+     * Create an asynchronous demux with the provided virtual channels, the default queue capacity, the
+     * {@link OverflowPolicy#BLOCK} policy, daemon worker threads and no handler for transfer frames belonging to
+     * unregistered virtual channels.
+     *
+     * @param receivers the initial set of virtual channels
+     */
+    public AsyncVirtualChannelReceiverDemux(AbstractReceiverVirtualChannel<?>... receivers) {
+        this(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK, null, null, receivers);
+    }
+
+    /**
+     * Create an asynchronous demux with the provided virtual channels and no error handler.
+     *
+     * @param queueCapacity the capacity of the queue of each virtual channel
+     * @param overflowPolicy the policy to use when a queue is full
+     * @param threadFactory the factory of the worker threads, if null daemon threads are created
+     * @param missingVcHandler the handler for not registered VCs, can be null
+     * @param receivers the initial set of virtual channels
+     */
+    public AsyncVirtualChannelReceiverDemux(int queueCapacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory, Consumer<AbstractTransferFrame> missingVcHandler, AbstractReceiverVirtualChannel<?>... receivers) {
+        this(queueCapacity, overflowPolicy, threadFactory, missingVcHandler, null, receivers);
+    }
+
+    /**
+     * Create an asynchronous demux with the provided virtual channels.
+     *
+     * @param queueCapacity the capacity of the queue of each virtual channel
+     * @param overflowPolicy the policy to use when a queue is full
+     * @param threadFactory the factory of the worker threads, if null daemon threads are created
+     * @param missingVcHandler the handler for not registered VCs, can be null
+     * @param errorHandler the handler of the exceptions raised by the processing of a frame, invoked on the worker thread: if null, the exceptions are passed to the uncaught exception handler of the worker thread
+     * @param receivers the initial set of virtual channels
+     */
+    public AsyncVirtualChannelReceiverDemux(int queueCapacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory, Consumer<AbstractTransferFrame> missingVcHandler, BiConsumer<AbstractTransferFrame, RuntimeException> errorHandler, AbstractReceiverVirtualChannel<?>... receivers) {
+        super(missingVcHandler);
+        if(queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive, got " + queueCapacity);
+        }
+        if(overflowPolicy == null) {
+            throw new NullPointerException("Overflow policy cannot be null");
+        }
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.threadFactory = threadFactory;
+        this.errorHandler = errorHandler;
+        for(AbstractReceiverVirtualChannel<?> rcv : receivers) {
+            register(rcv);
+        }
+    }
+
+    /**
+     * This method registers a virtual channel and starts the related worker thread.
+     *
+     * @param channel the virtual channel to register
+     * @throws IllegalArgumentException if a virtual channel ID is already registered, or it is out of range
+     * @throws IllegalStateException if the demux was disposed
+     */
+    @Override
+    public void register(AbstractReceiverVirtualChannel<?> channel) {
+        if(!this.running) {
+            throw new IllegalStateException("Demux disposed");
+        }
+        int vcId = channel.getVirtualChannelId();
+        if(vcId < 0 || vcId >= MAX_VIRTUAL_CHANNELS) {
+            throw new IllegalArgumentException("Virtual channel ID " + vcId + " out of range");
+        }
+        super.register(channel);
+        VirtualChannelQueue queue = new VirtualChannelQueue(channel);
+        this.queues[vcId] = queue;
+        queue.start();
+    }
+
+    /**
+     * This method inserts the frame in the queue of the provided virtual channel, according to the overflow policy.
+     *
+     * @param receiver the virtual channel selected for the frame
+     * @param frame the transfer frame to process
+     * @throws IllegalStateException if the demux was disposed
+     */
+    @Override
+    protected void forwardFrame(AbstractReceiverVirtualChannel<?> receiver, AbstractTransferFrame frame) {
+        if(!this.running) {
+            throw new IllegalStateException("Demux disposed");
+        }
+        this.queues[receiver.getVirtualChannelId()].enqueue(frame);
+    }
+
+    /**
+     * This method returns the statistics of the queue of the provided virtual channel.
+     *
+     * @param virtualChannelId the virtual channel ID
+     * @return the statistics, or null if no virtual channel is registered with the provided ID
+     */
+    public VirtualChannelQueueStatistics getStatistics(int virtualChannelId) {
+        if(virtualChannelId < 0 || virtualChannelId >= MAX_VIRTUAL_CHANNELS || this.queues[virtualChannelId] == null) {
+            return null;
+        }
+        return this.queues[virtualChannelId].getStatistics();
+    }
+
+    /**
+     * This method waits until all the frames inserted so far have been processed, or the timeout expires.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return true if all the frames were processed, false if the timeout expired
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitProcessed(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(VirtualChannelQueue queue : this.queues) {
+            while(queue != null && !queue.isProcessed()) {
+                if(System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method stops the worker threads, after the processing of the frames waiting in the queues. The method waits
+     * for the termination of the worker threads. Frames cannot be processed after the invocation of this method.
+     */
+    public void dispose() {
+        this.running = false;
+        for(VirtualChannelQueue queue : this.queues) {
+            if(queue != null) {
+                LockSupport.unpark(queue.worker);
+            }
+        }
+        for(VirtualChannelQueue queue : this.queues) {
+            if(queue != null) {
+                try {
+                    queue.worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private class VirtualChannelQueue implements Runnable {
+
+        private final AbstractReceiverVirtualChannel<?> receiver;
+        private final SpscRingBuffer<AbstractTransferFrame> ring;
+        // Time of insertion of each frame, using the same position of the frame in the ring
+        private final long[] enqueueTimes;
+        private final int mask;
+        private final Thread worker;
+        private volatile boolean waiting = false;
+
+        // Written by the producer
+        private final AtomicLong enqueuedFrames = new AtomicLong(0);
+        private final AtomicLong droppedFrames = new AtomicLong(0);
+        // Written by the worker
+        private final AtomicLong processedFrames = new AtomicLong(0);
+        private final AtomicLong failedFrames = new AtomicLong(0);
+        private volatile long lastLagNanos = 0;
+        private volatile long maxLagNanos = 0;
+
+        private VirtualChannelQueue(AbstractReceiverVirtualChannel<?> receiver) {
+            this.receiver = receiver;
+            this.ring = new SpscRingBuffer<>(queueCapacity);
+            this.enqueueTimes = new long[this.ring.capacity()];
+            this.mask = this.ring.capacity() - 1;
+            if(threadFactory != null) {
+                this.worker = threadFactory.newThread(this);
+            } else {
+                this.worker = new Thread(this, "Receiver demux worker for VC " + receiver.getVirtualChannelId());
+                this.worker.setDaemon(true);
+            }
+        }
+
+        private void start() {
+            this.worker.start();
+        }
+
+        private void enqueue(AbstractTransferFrame frame) {
+            if(this.ring.remainingCapacity() == 0) {
+                if(overflowPolicy == OverflowPolicy.DROP) {
+                    this.droppedFrames.lazySet(this.droppedFrames.get() + 1);
+                    return;
+                }
+                while(this.ring.remainingCapacity() == 0) {
+                    if(!running) {
+                        throw new IllegalStateException("Demux disposed");
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+            }
+            // There is space for sure: the timestamp can be written in the slot of the frame
+            long enqueued = this.enqueuedFrames.get();
+            this.enqueueTimes[(int) (enqueued & this.mask)] = System.nanoTime();
+            this.ring.offer(frame);
+            this.enqueuedFrames.lazySet(enqueued + 1);
+            if(this.waiting) {
+                LockSupport.unpark(this.worker);
+            }
+        }
+
+        private boolean isProcessed() {
+            return this.processedFrames.get() + this.failedFrames.get() >= this.enqueuedFrames.get();
+        }
+
+        private VirtualChannelQueueStatistics getStatistics() {
+            return new VirtualChannelQueueStatistics(this.receiver.getVirtualChannelId(), this.ring.size(), this.ring.capacity(),
+                    this.enqueuedFrames.get(), this.processedFrames.get(), this.droppedFrames.get(), this.failedFrames.get(),
+                    this.lastLagNanos, this.maxLagNanos);
+        }
+
+        @Override
+        public void run() {
+            long taken = 0;
+            int idleCount = 0;
+            while(true) {
+                AbstractTransferFrame frame = this.ring.peek();
+                if(frame == null) {
+                    if(!running) {
+                        // Disposed and no more frames to process
+                        return;
+                    }
+                    if(++idleCount < IDLE_SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        // The park is bounded, to cover a wakeup missed by the producer
+                        this.waiting = true;
+                        if(this.ring.isEmpty() && running) {
+                            LockSupport.parkNanos(IDLE_PARK_NANOS);
+                        }
+                        this.waiting = false;
+                    }
+                    continue;
+                }
+                idleCount = 0;
+                // Read the timestamp before releasing the slot to the producer
+                long lag = System.nanoTime() - this.enqueueTimes[(int) (taken++ & this.mask)];
+                this.ring.poll();
+                this.lastLagNanos = lag;
+                if(lag > this.maxLagNanos) {
+                    this.maxLagNanos = lag;
+                }
+                try {
+                    deliver(this.receiver, frame);
+                    this.processedFrames.lazySet(this.processedFrames.get() + 1);
+                } catch (RuntimeException e) {
+                    // Report and keep processing the next frames
+                    this.failedFrames.lazySet(this.failedFrames.get() + 1);
+                    reportError(frame, e);
+                }
+            }
+        }
+
+        private void reportError(AbstractTransferFrame frame, RuntimeException error) {
+            if(errorHandler != null) {
+                errorHandler.accept(frame, error);
+            } else {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+/**
+ * This class is a snapshot of the statistics collected by a {@link MultiStationFrameMerger} for one of its sources.
+ */
+public final class FrameMergerSourceStatistics {
+
+    private final int source;
+    private final long frames;
+    private final long invalidFrames;
+    private final long selectedFrames;
+    private final long duplicateFrames;
+
+    /**
+     * The constructor of the statistics.
+     *
+     * @param source the index of the source
+     * @param frames the number of received frames
+     * @param invalidFrames the number of received frames with wrong FECF
+     * @param selectedFrames the number of frames selected for the merged stream
+     * @param duplicateFrames the number of frames dropped as duplicates
+     */
+    public FrameMergerSourceStatistics(int source, long frames, long invalidFrames, long selectedFrames, long duplicateFrames) {
+        this.source = source;
+        this.frames = frames;
+        this.invalidFrames = invalidFrames;
+        this.selectedFrames = selectedFrames;
+        this.duplicateFrames = duplicateFrames;
+    }
+
+    /**
+     * This method returns the index of the source.
+     * @return the index of the source
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * This method returns the number of received frames, including the invalid ones.
+     * @return the number of received frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * This method returns the number of received frames with wrong FECF.
+     * @return the number of received frames with wrong FECF
+     */
+    public long getInvalidFrames() {
+        return invalidFrames;
+    }
+
+    /**
+     * This method returns the number of frames of this source selected for the merged stream, i.e. the contribution of
+     * the source to the merged stream.
+     * @return the number of selected frames
+     */
+    public long getSelectedFrames() {
+        return selectedFrames;
+    }
+
+    /**
+     * This method returns the number of frames dropped as duplicates: copies received after the emission of the
+     * frame, or received twice from this source.
+     * @return the number of duplicate frames
+     */
+    public long getDuplicateFrames() {
+        return duplicateFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameMergerSourceStatistics{" +
+                "source=" + source +
+                ", frames=" + frames +
+                ", invalidFrames=" + invalidFrames +
+                ", selectedFrames=" + selectedFrames +
+                ", duplicateFrames=" + duplicateFrames +
+                '}';
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+/**
+ * This class is a snapshot of the statistics collected by a {@link MasterChannelReceiverDemux} for a registered route,
+ * i.e. a global virtual channel (transfer frame version number, spacecraft ID, virtual channel ID) or a master channel
+ * (transfer frame version number, spacecraft ID).
+ */
+public final class GvcidStatistics {
+
+    private final int transferFrameVersionNumber;
+    private final int spacecraftId;
+    private final int virtualChannelId;
+    private final long frames;
+    private final long invalidFrames;
+    private final long gaps;
+    private final long missingFrames;
+
+    /**
+     * The constructor of the statistics.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number
+     * @param spacecraftId the spacecraft ID
+     * @param virtualChannelId the virtual channel ID, -1 for master channel routes
+     * @param frames the number of received frames
+     * @param invalidFrames the number of received frames with wrong FECF
+     * @param gaps the number of detected frame gaps
+     * @param missingFrames the number of frames missing due to frame gaps
+     */
+    public GvcidStatistics(int transferFrameVersionNumber, int spacecraftId, int virtualChannelId, long frames, long invalidFrames, long gaps, long missingFrames) {
+        this.transferFrameVersionNumber = transferFrameVersionNumber;
+        this.spacecraftId = spacecraftId;
+        this.virtualChannelId = virtualChannelId;
+        this.frames = frames;
+        this.invalidFrames = invalidFrames;
+        this.gaps = gaps;
+        this.missingFrames = missingFrames;
+    }
+
+    /**
+     * This method returns the transfer frame version number.
+     * @return the transfer frame version number
+     */
+    public int getTransferFrameVersionNumber() {
+        return transferFrameVersionNumber;
+    }
+
+    /**
+     * This method returns the spacecraft ID.
+     * @return the spacecraft ID
+     */
+    public int getSpacecraftId() {
+        return spacecraftId;
+    }
+
+    /**
+     * This method returns the virtual channel ID.
+     * @return the virtual channel ID, -1 if the statistics refer to a master channel route
+     */
+    public int getVirtualChannelId() {
+        return virtualChannelId;
+    }
+
+    /**
+     * This method returns the number of received frames, including the invalid ones.
+     * @return the number of received frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * This method returns the number of received frames with wrong FECF.
+     * @return the number of received frames with wrong FECF
+     */
+    public long getInvalidFrames() {
+        return invalidFrames;
+    }
+
+    /**
+     * This method returns the number of detected frame gaps, based on the virtual channel frame counter.
+     * @return the number of detected frame gaps
+     */
+    public long getGaps() {
+        return gaps;
+    }
+
+    /**
+     * This method returns the number of frames missing due to frame gaps.
+     * @return the number of missing frames
+     */
+    public long getMissingFrames() {
+        return missingFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "GvcidStatistics{" +
+                "transferFrameVersionNumber=" + transferFrameVersionNumber +
+                ", spacecraftId=" + spacecraftId +
+                ", virtualChannelId=" + virtualChannelId +
+                ", frames=" + frames +
+                ", invalidFrames=" + invalidFrames +
+                ", gaps=" + gaps +
+                ", missingFrames=" + missingFrames +
+                '}';
+    }
+}
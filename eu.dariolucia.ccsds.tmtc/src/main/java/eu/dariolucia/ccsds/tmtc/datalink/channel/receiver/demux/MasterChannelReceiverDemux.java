@@ -0,0 +1,438 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrameView;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrameView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class is used to demux a stream of transfer frames coming from one or more master channels (e.g. the frames
+ * received by a ground station serving several spacecraft), possibly mixing TM, AOS and TC frames. Each frame is
+ * routed according to its global virtual channel ID, i.e. the transfer frame version number, the spacecraft ID and the
+ * virtual channel ID. Routes can be registered for a specific global virtual channel, or for a whole master channel: the
+ * latter receives the frames of the virtual channels of the master channel that do not have a specific route.
+ * <p>
+ * Routes are stored in a primitive open-addressing table. Routes can be registered and deregistered by any thread
+ * while frames are being processed: changes are published with a copy of the table, so that the lookup performed upon
+ * each frame does not require locks. Frames that cannot be routed are passed to the handler, if any.
+ * <p>
+ * TM and TC frames have the same transfer frame version number (0): in a stream mixing TM and TC frames, a TM frame and
+ * a TC frame with the same spacecraft ID and virtual channel ID are delivered to the same route, and counted in the same
+ * statistics. TM and TC frames of the same spacecraft shall be processed by different demux instances.
+ * <p>
+ * For each route, the demux keeps statistics about the received frames, the frames with wrong FECF and the frame
+ * gaps, detected on the virtual channel frame counter (TM and AOS frames only). Frames with wrong FECF are forwarded
+ * only if configured to do so.
+ * <p>
+ * Frames shall be processed by a single thread.
+ */
+public class MasterChannelReceiverDemux implements Consumer<AbstractTransferFrame> {
+
+    private static final int MASTER_CHANNEL_ROUTE = 64;
+
+    private final Consumer<AbstractTransferFrame> unroutedFrameHandler;
+
+    private final boolean forwardInvalidFrames;
+
+    private final AtomicLong unroutedFrames = new AtomicLong(0);
+
+    private volatile RoutingTable routingTable = new RoutingTable(8);
+
+    /**
+     * Create a demux that drops frames with wrong FECF and frames that cannot be routed.
+     */
+    public MasterChannelReceiverDemux() {
+        this(null, false);
+    }
+
+    /**
+     * Create a demux.
+     *
+     * @param unroutedFrameHandler the handler for frames that cannot be routed, can be null
+     * @param forwardInvalidFrames true if frames with wrong FECF shall be forwarded, false if they shall be dropped
+     */
+    public MasterChannelReceiverDemux(Consumer<AbstractTransferFrame> unroutedFrameHandler, boolean forwardInvalidFrames) {
+        this.unroutedFrameHandler = unroutedFrameHandler;
+        this.forwardInvalidFrames = forwardInvalidFrames;
+    }
+
+    /**
+     * This method registers a route for the provided global virtual channel.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number (0 for TM and TC, 1 for AOS, see class description)
+     * @param spacecraftId the spacecraft ID
+     * @param virtualChannelId the virtual channel ID
+     * @param receiver the consumer of the frames
+     * @throws IllegalArgumentException if a route is already registered, or the provided values are out of range
+     */
+    public void register(int transferFrameVersionNumber, int spacecraftId, int virtualChannelId, Consumer<AbstractTransferFrame> receiver) {
+        if(virtualChannelId < 0 || virtualChannelId > 63) {
+            throw new IllegalArgumentException("Virtual channel ID " + virtualChannelId + " out of range");
+        }
+        addRoute(transferFrameVersionNumber, spacecraftId, virtualChannelId, receiver);
+    }
+
+    /**
+     * This method registers the provided virtual channel as route for the related global virtual channel.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number (0 for TM and TC, 1 for AOS, see class description)
+     * @param spacecraftId the spacecraft ID
+     * @param channel the virtual channel
+     * @throws IllegalArgumentException if a route is already registered, or the provided values are out of range
+     */
+    public void register(int transferFrameVersionNumber, int spacecraftId, AbstractReceiverVirtualChannel<?> channel) {
+        register(transferFrameVersionNumber, spacecraftId, channel.getVirtualChannelId(), frame -> VirtualChannelReceiverDemux.deliver(channel, frame));
+    }
+
+    /**
+     * This method registers a route for the provided master channel. The route receives the frames of the virtual
+     * channels of the master channel that do not have a specific route, e.g. to forward them to a
+     * {@link VirtualChannelReceiverDemux}.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number (0 for TM and TC, 1 for AOS, see class description)
+     * @param spacecraftId the spacecraft ID
+     * @param receiver the consumer of the frames
+     * @throws IllegalArgumentException if a route is already registered, or the provided values are out of range
+     */
+    public void registerMasterChannel(int transferFrameVersionNumber, int spacecraftId, Consumer<AbstractTransferFrame> receiver) {
+        addRoute(transferFrameVersionNumber, spacecraftId, MASTER_CHANNEL_ROUTE, receiver);
+    }
+
+    /**
+     * This method removes the route of the provided global virtual channel, if any.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number
+     * @param spacecraftId the spacecraft ID
+     * @param virtualChannelId the virtual channel ID
+     * @return true if the route was removed, false if the route was not registered
+     */
+    public boolean deregister(int transferFrameVersionNumber, int spacecraftId, int virtualChannelId) {
+        if(virtualChannelId < 0 || virtualChannelId > 63) {
+            return false;
+        }
+        return removeRoute(transferFrameVersionNumber, spacecraftId, virtualChannelId);
+    }
+
+    /**
+     * This method removes the route of the provided master channel, if any.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number
+     * @param spacecraftId the spacecraft ID
+     * @return true if the route was removed, false if the route was not registered
+     */
+    public boolean deregisterMasterChannel(int transferFrameVersionNumber, int spacecraftId) {
+        return removeRoute(transferFrameVersionNumber, spacecraftId, MASTER_CHANNEL_ROUTE);
+    }
+
+    /**
+     * This method processes a transfer frame.
+     *
+     * @see MasterChannelReceiverDemux#processFrame(AbstractTransferFrame)
+     * @param frame the frame to process
+     */
+    @Override
+    public void accept(AbstractTransferFrame frame) {
+        processFrame(frame);
+    }
+
+    /**
+     * This method forwards the provided transfer frame to the route of its global virtual channel, or to the route of
+     * its master channel, or to the handler (if not null) if no route is registered.
+     *
+     * @param frame the transfer frame to process
+     */
+    public void processFrame(AbstractTransferFrame frame) {
+        int tfvn = frame.getTransferFrameVersionNumber();
+        int vcId = frame.getVirtualChannelId();
+        Route route = this.routingTable.lookup(tfvn, frame.getSpacecraftId(), vcId);
+        if(route == null) {
+            unrouted(frame);
+            return;
+        }
+        if(route.update(tfvn, vcId, frame.getVirtualChannelFrameCount(), frame.isValid(), !(frame instanceof TcTransferFrame)) || this.forwardInvalidFrames) {
+            route.receiver.accept(frame);
+        }
+    }
+
+    /**
+     * This method forwards the transfer frame currently wrapped by the provided view, as per
+     * {@link MasterChannelReceiverDemux#processFrame(AbstractTransferFrame)}. The route is selected by reading the
+     * header fields from the view: the frame object is created (see {@link AbstractTransferFrameView#toFrame()}) only
+     * if the frame is forwarded.
+     *
+     * @param view the view wrapping the transfer frame to process
+     */
+    public void processFrame(AbstractTransferFrameView view) {
+        int tfvn = view.getTransferFrameVersionNumber();
+        int vcId = view.getVirtualChannelId();
+        Route route = this.routingTable.lookup(tfvn, view.getSpacecraftId(), vcId);
+        if(route == null) {
+            this.unroutedFrames.lazySet(this.unroutedFrames.get() + 1);
+            if(this.unroutedFrameHandler != null) {
+                this.unroutedFrameHandler.accept(view.toFrame());
+            }
+            return;
+        }
+        if(route.update(tfvn, vcId, view.getVirtualChannelFrameCount(), view.isValid(), !(view instanceof TcTransferFrameView)) || this.forwardInvalidFrames) {
+            route.receiver.accept(view.toFrame());
+        }
+    }
+
+    /**
+     * This method returns the statistics of the route of the provided global virtual channel.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number
+     * @param spacecraftId the spacecraft ID
+     * @param virtualChannelId the virtual channel ID
+     * @return the statistics, or null if no route is registered
+     */
+    public GvcidStatistics getStatistics(int transferFrameVersionNumber, int spacecraftId, int virtualChannelId) {
+        if(virtualChannelId < 0 || virtualChannelId > 63) {
+            return null;
+        }
+        Route route = this.routingTable.get(key(transferFrameVersionNumber, spacecraftId, virtualChannelId));
+        return route != null ? route.getStatistics() : null;
+    }
+
+    /**
+     * This method returns the statistics of the route of the provided master channel.
+     *
+     * @param transferFrameVersionNumber the transfer frame version number
+     * @param spacecraftId the spacecraft ID
+     * @return the statistics, or null if no route is registered
+     */
+    public GvcidStatistics getMasterChannelStatistics(int transferFrameVersionNumber, int spacecraftId) {
+        Route route = this.routingTable.get(key(transferFrameVersionNumber, spacecraftId, MASTER_CHANNEL_ROUTE));
+        return route != null ? route.getStatistics() : null;
+    }
+
+    /**
+     * This method returns the statistics of all the registered routes.
+     *
+     * @return the list of statistics
+     */
+    public List<GvcidStatistics> getStatistics() {
+        List<GvcidStatistics> stats = new ArrayList<>();
+        for(Route route : this.routingTable.values) {
+            if(route != null) {
+                stats.add(route.getStatistics());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * This method returns the number of frames that could not be routed.
+     *
+     * @return the number of frames that could not be routed
+     */
+    public long getUnroutedFrames() {
+        return this.unroutedFrames.get();
+    }
+
+    private void unrouted(AbstractTransferFrame frame) {
+        this.unroutedFrames.lazySet(this.unroutedFrames.get() + 1);
+        if(this.unroutedFrameHandler != null) {
+            this.unroutedFrameHandler.accept(frame);
+        }
+    }
+
+    private synchronized void addRoute(int tfvn, int scid, int vcid, Consumer<AbstractTransferFrame> receiver) {
+        if(receiver == null) {
+            throw new NullPointerException("Receiver cannot be null");
+        }
+        if(tfvn < 0 || tfvn > 3) {
+            throw new IllegalArgumentException("Transfer frame version number " + tfvn + " out of range");
+        }
+        if(scid < 0 || scid > 1023) {
+            throw new IllegalArgumentException("Spacecraft ID " + scid + " out of range");
+        }
+        int key = key(tfvn, scid, vcid);
+        if(this.routingTable.get(key) != null) {
+            throw new IllegalArgumentException("Route for TFVN " + tfvn + ", SCID " + scid + (vcid == MASTER_CHANNEL_ROUTE ? "" : ", VCID " + vcid) + " already registered");
+        }
+        this.routingTable = this.routingTable.with(key, new Route(tfvn, scid, vcid, receiver));
+    }
+
+    private synchronized boolean removeRoute(int tfvn, int scid, int vcid) {
+        if(tfvn < 0 || tfvn > 3 || scid < 0 || scid > 1023) {
+            return false;
+        }
+        int key = key(tfvn, scid, vcid);
+        if(this.routingTable.get(key) == null) {
+            return false;
+        }
+        this.routingTable = this.routingTable.without(key);
+        return true;
+    }
+
+    private static int key(int tfvn, int scid, int vcid) {
+        // 2 bits TFVN, 10 bits SCID, 7 bits VCID (64 is the master channel route). The key is never 0.
+        return ((tfvn << 17) | (scid << 7) | vcid) + 1;
+    }
+
+    /**
+     * Immutable open-addressing table (linear probing), mapping keys to routes.
+     */
+    private static final class RoutingTable {
+
+        private final int[] keys;
+        private final Route[] values;
+        private final int mask;
+        private final int size;
+
+        private RoutingTable(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new Route[capacity];
+            this.mask = capacity - 1;
+            this.size = 0;
+        }
+
+        private RoutingTable(int[] keys, Route[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.size = size;
+        }
+
+        private Route lookup(int tfvn, int scid, int vcid) {
+            int base = ((tfvn & 0x03) << 17) | ((scid & 0x3FF) << 7);
+            Route route = get(base + (vcid & 0x3F) + 1);
+            return route != null ? route : get(base + MASTER_CHANNEL_ROUTE + 1);
+        }
+
+        private Route get(int key) {
+            int idx = hash(key) & this.mask;
+            while(true) {
+                int k = this.keys[idx];
+                if(k == key) {
+                    return this.values[idx];
+                } else if(k == 0) {
+                    return null;
+                }
+                idx = (idx + 1) & this.mask;
+            }
+        }
+
+        private RoutingTable with(int key, Route route) {
+            // Keep the load factor below 0.5
+            int capacity = this.keys.length;
+            while((this.size + 1) * 2 > capacity) {
+                capacity <<= 1;
+            }
+            RoutingTable table = new RoutingTable(new int[capacity], new Route[capacity], this.size + 1);
+            for(int i = 0; i < this.keys.length; ++i) {
+                if(this.keys[i] != 0) {
+                    table.put(this.keys[i], this.values[i]);
+                }
+            }
+            table.put(key, route);
+            return table;
+        }
+
+        private RoutingTable without(int key) {
+            RoutingTable table = new RoutingTable(new int[this.keys.length], new Route[this.keys.length], this.size - 1);
+            for(int i = 0; i < this.keys.length; ++i) {
+                if(this.keys[i] != 0 && this.keys[i] != key) {
+                    table.put(this.keys[i], this.values[i]);
+                }
+            }
+            return table;
+        }
+
+        private void put(int key, Route route) {
+            int idx = hash(key) & this.mask;
+            while(this.keys[idx] != 0) {
+                idx = (idx + 1) & this.mask;
+            }
+            this.keys[idx] = key;
+            this.values[idx] = route;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * A route, with the related statistics. The statistics are updated by the thread processing the frames.
+     */
+    private static final class Route {
+
+        private final int tfvn;
+        private final int scid;
+        private final int vcid;
+        private final Consumer<AbstractTransferFrame> receiver;
+        // Last virtual channel frame counter per virtual channel, -1 if not received yet
+        private final int[] lastFrameCounters;
+
+        private final AtomicLong frames = new AtomicLong(0);
+        private final AtomicLong invalidFrames = new AtomicLong(0);
+        private final AtomicLong gaps = new AtomicLong(0);
+        private final AtomicLong missingFrames = new AtomicLong(0);
+
+        private Route(int tfvn, int scid, int vcid, Consumer<AbstractTransferFrame> receiver) {
+            this.tfvn = tfvn;
+            this.scid = scid;
+            this.vcid = vcid;
+            this.receiver = receiver;
+            this.lastFrameCounters = new int[vcid == MASTER_CHANNEL_ROUTE ? 64 : 1];
+            Arrays.fill(this.lastFrameCounters, -1);
+        }
+
+        /**
+         * Update the statistics and return whether the frame is valid.
+         */
+        private boolean update(int frameTfvn, int frameVcid, int frameCounter, boolean valid, boolean gapDetectionApplicable) {
+            this.frames.lazySet(this.frames.get() + 1);
+            if(!valid) {
+                this.invalidFrames.lazySet(this.invalidFrames.get() + 1);
+                return false;
+            }
+            if(gapDetectionApplicable) {
+                int idx = this.lastFrameCounters.length == 1 ? 0 : frameVcid & 0x3F;
+                int last = this.lastFrameCounters[idx];
+                if(last != -1) {
+                    int modulo = frameTfvn == 1 ? 16777216 : 256; // AOS or TM
+                    int expected = (last + 1) % modulo;
+                    if(frameCounter != expected) {
+                        int missing = frameCounter > expected ? frameCounter - expected : modulo - expected + frameCounter;
+                        this.gaps.lazySet(this.gaps.get() + 1);
+                        this.missingFrames.lazySet(this.missingFrames.get() + missing);
+                    }
+                }
+                this.lastFrameCounters[idx] = frameCounter;
+            }
+            return true;
+        }
+
+        private GvcidStatistics getStatistics() {
+            return new GvcidStatistics(this.tfvn, this.scid, this.vcid == MASTER_CHANNEL_ROUTE ? -1 : this.vcid,
+                    this.frames.get(), this.invalidFrames.get(), this.gaps.get(), this.missingFrames.get());
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * This class merges the streams of transfer frames received from the same spacecraft via several sources (e.g. the
+ * ground stations providing the frames via different RAF service instances) into a single stream without duplicates.
+ * <p>
+ * Copies of the same frame are aligned by global virtual channel ID, virtual channel frame count (and master channel
+ * frame count for TM frames) and earth reception time: the reception time, if set as {@link AnnotationKey#RECEPTION_TIME}
+ * annotation, disambiguates frames having the same frame counters after a counter wrap-around. Copies whose reception
+ * time differs by more than the maximum delay are considered different frames. The library does not set the reception
+ * time: if needed, the caller shall annotate each frame before providing it to the merger (e.g. with the earth receive
+ * time delivered by the ground station together with the frame). Among the copies, the best one is
+ * selected: a frame with valid FECF is preferred to an invalid one, then the frame with the fewest symbols corrected by
+ * the Reed-Solomon decoding ({@link AnnotationKey#RS_CORRECTED_SYMBOLS} annotation) is preferred. In case of tie, the
+ * first received copy is selected.
+ * <p>
+ * Frames are emitted in order of first reception, when a copy has been received from each source, or when the first
+ * copy has been waiting for the maximum delay. The maximum delay is checked upon reception of a frame and when
+ * {@link MultiStationFrameMerger#releaseExpiredFrames()} is invoked. At most capacity frames are pending: when full, the
+ * oldest pending frame is emitted. Emitted frames are remembered (up to capacity frames) to drop late copies.
+ * Pending and emitted frames are kept in a fixed-size ring, indexed by frame counters in a primitive open-addressing
+ * table, so that the lookup of the copies does not depend on the capacity. The capacity should be in the order of the
+ * frames received during the maximum delay. If the reception time is not available, twice the capacity shall be lower
+ * than the number of frames after which the frame counters wrap around.
+ * <p>
+ * For each source, the merger keeps statistics about the received frames, the frames with wrong FECF, the frames
+ * selected for the merged stream and the duplicated frames (late copies, or copies received twice from the same source).
+ * <p>
+ * This class is thread safe: each source can provide its frames from a different thread. The output is invoked while
+ * holding the lock of the merger.
+ */
+public class MultiStationFrameMerger {
+
+    private static final long UNKNOWN_RECEPTION_TIME = Long.MIN_VALUE;
+
+    private final int sources;
+
+    private final long maxDelayNanos;
+
+    private final boolean forwardInvalidFrames;
+
+    private final Consumer<AbstractTransferFrame> output;
+
+    private final LongSupplier nanoTime;
+
+    private final int capacity;
+
+    private final Entry[] ring;
+
+    // Sequence number of the most recent frame in the ring, for each key
+    private final SequenceIndex index;
+
+    private final SourceCounters[] counters;
+
+    // Sequence number of the oldest remembered frame
+    private long oldest = 0;
+    // Sequence number of the oldest pending frame
+    private long firstPending = 0;
+    // Sequence number of the next frame
+    private long next = 0;
+
+    private long emittedFrames = 0;
+
+    private long discardedFrames = 0;
+
+    /**
+     * Create a merger.
+     *
+     * @param sources the number of sources, from 1 to 64
+     * @param capacity the maximum number of frames pending selection
+     * @param maxDelay the maximum time a frame can be pending selection
+     * @param unit the unit of the maximum delay
+     * @param forwardInvalidFrames true if the best copy of a frame shall be emitted even if its FECF is wrong, false if it shall be dropped
+     * @param output the consumer of the merged frames
+     */
+    public MultiStationFrameMerger(int sources, int capacity, long maxDelay, TimeUnit unit, boolean forwardInvalidFrames, Consumer<AbstractTransferFrame> output) {
+        this(sources, capacity, unit.toNanos(maxDelay), forwardInvalidFrames, output, System::nanoTime);
+    }
+
+    MultiStationFrameMerger(int sources, int capacity, long maxDelayNanos, boolean forwardInvalidFrames, Consumer<AbstractTransferFrame> output, LongSupplier nanoTime) {
+        if(sources < 1 || sources > 64) {
+            throw new IllegalArgumentException("Number of sources must be between 1 and 64, got " + sources);
+        }
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        if(maxDelayNanos <= 0) {
+            throw new IllegalArgumentException("Maximum delay must be positive, got " + maxDelayNanos + " ns");
+        }
+        if(output == null) {
+            throw new NullPointerException("Output cannot be null");
+        }
+        this.sources = sources;
+        this.capacity = capacity;
+        this.maxDelayNanos = maxDelayNanos;
+        this.forwardInvalidFrames = forwardInvalidFrames;
+        this.output = output;
+        this.nanoTime = nanoTime;
+        this.ring = new Entry[2 * capacity];
+        for(int i = 0; i < this.ring.length; ++i) {
+            this.ring[i] = new Entry();
+        }
+        this.index = new SequenceIndex(this.ring.length);
+        this.counters = new SourceCounters[sources];
+        for(int i = 0; i < sources; ++i) {
+            this.counters[i] = new SourceCounters();
+        }
+    }
+
+    /**
+     * This method processes a frame received from the provided source.
+     *
+     * @param source the index of the source, from 0 to the number of sources - 1
+     * @param frame the frame
+     */
+    public synchronized void processFrame(int source, AbstractTransferFrame frame) {
+        if(source < 0 || source >= this.sources) {
+            throw new IllegalArgumentException("Source " + source + " out of range");
+        }
+        SourceCounters sc = this.counters[source];
+        ++sc.frames;
+        if(!frame.isValid()) {
+            ++sc.invalidFrames;
+        }
+        long now = this.nanoTime.getAsLong();
+        long key = key(frame);
+        long receptionTime = receptionTime(frame);
+        Entry e = lookup(key, receptionTime);
+        if(e == null) {
+            add(source, frame, key, receptionTime, now);
+        } else if(e.emitted || (e.sourceMask & (1L << source)) != 0) {
+            ++sc.duplicateFrames;
+        } else {
+            e.sourceMask |= 1L << source;
+            int corrected = correctedSymbols(frame);
+            if(isBetter(frame, corrected, e.best, e.bestCorrectedSymbols)) {
+                e.best = frame;
+                e.bestSource = source;
+                e.bestCorrectedSymbols = corrected;
+            }
+        }
+        release(now);
+    }
+
+    /**
+     * This method emits the frames pending selection for longer than the maximum delay. It can be invoked periodically,
+     * to avoid keeping frames pending when no frame is received.
+     */
+    public synchronized void releaseExpiredFrames() {
+        release(this.nanoTime.getAsLong());
+    }
+
+    /**
+     * This method emits all the frames pending selection (e.g. at the end of a pass).
+     */
+    public synchronized void flush() {
+        while(this.firstPending < this.next) {
+            emit(entry(this.firstPending));
+        }
+    }
+
+    /**
+     * This method returns the number of sources.
+     *
+     * @return the number of sources
+     */
+    public int getSources() {
+        return this.sources;
+    }
+
+    /**
+     * This method returns the number of frames pending selection.
+     *
+     * @return the number of pending frames
+     */
+    public synchronized int getPendingFrames() {
+        return (int) (this.next - this.firstPending);
+    }
+
+    /**
+     * This method returns the number of frames emitted in the merged stream.
+     *
+     * @return the number of emitted frames
+     */
+    public synchronized long getEmittedFrames() {
+        return this.emittedFrames;
+    }
+
+    /**
+     * This method returns the number of frames dropped because no copy had a valid FECF. Always 0 if the merger
+     * forwards invalid frames.
+     *
+     * @return the number of discarded frames
+     */
+    public synchronized long getDiscardedFrames() {
+        return this.discardedFrames;
+    }
+
+    /**
+     * This method returns a snapshot of the statistics of the provided source.
+     *
+     * @param source the index of the source
+     * @return the statistics of the source
+     */
+    public synchronized FrameMergerSourceStatistics getStatistics(int source) {
+        if(source < 0 || source >= this.sources) {
+            throw new IllegalArgumentException("Source " + source + " out of range");
+        }
+        SourceCounters sc = this.counters[source];
+        return new FrameMergerSourceStatistics(source, sc.frames, sc.invalidFrames, sc.selectedFrames, sc.duplicateFrames);
+    }
+
+    private Entry entry(long sequence) {
+        return this.ring[(int) (sequence % this.ring.length)];
+    }
+
+    private Entry lookup(long key, long receptionTime) {
+        // Look from the most recent frame with the same key, going back to the older ones still in the ring
+        for(long seq = this.index.get(key); seq >= this.oldest; seq = entry(seq).previous) {
+            Entry e = entry(seq);
+            if(e.key == key && (receptionTime == UNKNOWN_RECEPTION_TIME || e.receptionTime == UNKNOWN_RECEPTION_TIME
+                    || Math.abs(receptionTime - e.receptionTime) <= this.maxDelayNanos)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void add(int source, AbstractTransferFrame frame, long key, long receptionTime, long now) {
+        if(this.next - this.firstPending == this.capacity) {
+            // Too many pending frames
+            emit(entry(this.firstPending));
+        }
+        if(this.next - this.oldest == this.ring.length) {
+            // Forget the oldest emitted frame: if it is the only frame in the ring with its key, remove the key
+            long evictedKey = entry(this.oldest).key;
+            if(this.index.get(evictedKey) == this.oldest) {
+                this.index.remove(evictedKey);
+            }
+            ++this.oldest;
+        }
+        long seq = this.next++;
+        Entry e = entry(seq);
+        e.previous = this.index.get(key);
+        this.index.put(key, seq);
+        e.key = key;
+        e.receptionTime = receptionTime;
+        e.arrivalTime = now;
+        e.best = frame;
+        e.bestSource = source;
+        e.bestCorrectedSymbols = correctedSymbols(frame);
+        e.sourceMask = 1L << source;
+        e.emitted = false;
+    }
+
+    private void release(long now) {
+        while(this.firstPending < this.next) {
+            Entry e = entry(this.firstPending);
+            if(Long.bitCount(e.sourceMask) == this.sources || now - e.arrivalTime >= this.maxDelayNanos) {
+                emit(e);
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void emit(Entry e) {
+        ++this.firstPending;
+        e.emitted = true;
+        AbstractTransferFrame frame = e.best;
+        e.best = null;
+        if(frame.isValid() || this.forwardInvalidFrames) {
+            ++this.counters[e.bestSource].selectedFrames;
+            ++this.emittedFrames;
+            this.output.accept(frame);
+        } else {
+            ++this.discardedFrames;
+        }
+    }
+
+    private static boolean isBetter(AbstractTransferFrame candidate, int candidateCorrected, AbstractTransferFrame current, int currentCorrected) {
+        if(candidate.isValid() != current.isValid()) {
+            return candidate.isValid();
+        }
+        return candidateCorrected < currentCorrected;
+    }
+
+    private static long key(AbstractTransferFrame frame) {
+        long gvcid = ((long) frame.getTransferFrameVersionNumber() << 16) | ((long) frame.getSpacecraftId() << 6) | frame.getVirtualChannelId();
+        long counters = frame.getVirtualChannelFrameCount();
+        if(frame instanceof TmTransferFrame) {
+            counters |= (long) ((TmTransferFrame) frame).getMasterChannelFrameCount() << 24;
+        }
+        return (gvcid << 32) | counters;
+    }
+
+    private static long receptionTime(AbstractTransferFrame frame) {
+        Instant ert = frame.getAnnotationValue(AnnotationKey.RECEPTION_TIME);
+        return ert == null ? UNKNOWN_RECEPTION_TIME : ert.getEpochSecond() * 1000000000L + ert.getNano();
+    }
+
+    private static int correctedSymbols(AbstractTransferFrame frame) {
+        int[] corrected = frame.getAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS);
+        if(corrected == null) {
+            return 0;
+        }
+        int total = 0;
+        for(int c : corrected) {
+            total += c;
+        }
+        return total;
+    }
+
+    private static final class Entry {
+        private long key;
+        // Sequence number of the previous frame with the same key, -1 if none
+        private long previous;
+        private long receptionTime;
+        private long arrivalTime;
+        private AbstractTransferFrame best;
+        private int bestSource;
+        private int bestCorrectedSymbols;
+        private long sourceMask;
+        private boolean emitted;
+    }
+
+    /**
+     * Open-addressing table (linear probing, backward shift deletion), mapping keys to sequence numbers.
+     */
+    private static final class SequenceIndex {
+
+        private final long[] keys;
+        // Sequence number + 1, 0 if the slot is free
+        private final long[] sequences;
+        private final int mask;
+
+        private SequenceIndex(int entries) {
+            // Keep the load factor below 0.5
+            int capacity = Integer.highestOneBit(2 * entries - 1) << 1;
+            this.keys = new long[capacity];
+            this.sequences = new long[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private long get(long key) {
+            int idx = hash(key) & this.mask;
+            while(this.sequences[idx] != 0) {
+                if(this.keys[idx] == key) {
+                    return this.sequences[idx] - 1;
+                }
+                idx = (idx + 1) & this.mask;
+            }
+            return -1;
+        }
+
+        private void put(long key, long sequence) {
+            int idx = hash(key) & this.mask;
+            while(this.sequences[idx] != 0 && this.keys[idx] != key) {
+                idx = (idx + 1) & this.mask;
+            }
+            this.keys[idx] = key;
+            this.sequences[idx] = sequence + 1;
+        }
+
+        private void remove(long key) {
+            int idx = hash(key) & this.mask;
+            while(this.keys[idx] != key || this.sequences[idx] == 0) {
+                if(this.sequences[idx] == 0) {
+                    // Not present
+                    return;
+                }
+                idx = (idx + 1) & this.mask;
+            }
+            // Move back the following keys of the probe sequence, which could not be found anymore otherwise
+            int free = idx;
+            idx = (idx + 1) & this.mask;
+            while(this.sequences[idx] != 0) {
+                int home = hash(this.keys[idx]) & this.mask;
+                if(((idx - home) & this.mask) >= ((idx - free) & this.mask)) {
+                    this.keys[free] = this.keys[idx];
+                    this.sequences[free] = this.sequences[idx];
+                    free = idx;
+                }
+                idx = (idx + 1) & this.mask;
+            }
+            this.sequences[free] = 0;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private static final class SourceCounters {
+        private long frames;
+        private long invalidFrames;
+        private long selectedFrames;
+        private long duplicateFrames;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+/**
+ * This class is a snapshot of the state of the queue linked to a virtual channel in an
+ * {@link AsyncVirtualChannelReceiverDemux}.
+ */
+public final class VirtualChannelQueueStatistics {
+
+    private final int virtualChannelId;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long enqueuedFrames;
+    private final long processedFrames;
+    private final long droppedFrames;
+    private final long failedFrames;
+    private final long lastLagNanos;
+    private final long maxLagNanos;
+
+    /**
+     * The constructor of the statistics.
+     *
+     * @param virtualChannelId the virtual channel ID
+     * @param queueDepth the number of frames waiting in the queue
+     * @param queueCapacity the capacity of the queue
+     * @param enqueuedFrames the number of frames inserted in the queue
+     * @param processedFrames the number of frames processed by the virtual channel
+     * @param droppedFrames the number of frames dropped because the queue was full
+     * @param failedFrames the number of frames whose processing raised an exception
+     * @param lastLagNanos the time spent in the queue by the last processed frame, in nanoseconds
+     * @param maxLagNanos the maximum time spent in the queue by a frame, in nanoseconds
+     */
+    public VirtualChannelQueueStatistics(int virtualChannelId, int queueDepth, int queueCapacity, long enqueuedFrames, long processedFrames, long droppedFrames, long failedFrames, long lastLagNanos, long maxLagNanos) {
+        this.virtualChannelId = virtualChannelId;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.enqueuedFrames = enqueuedFrames;
+        this.processedFrames = processedFrames;
+        this.droppedFrames = droppedFrames;
+        this.failedFrames = failedFrames;
+        this.lastLagNanos = lastLagNanos;
+        this.maxLagNanos = maxLagNanos;
+    }
+
+    /**
+     * This method returns the virtual channel ID.
+     * @return the virtual channel ID
+     */
+    public int getVirtualChannelId() {
+        return virtualChannelId;
+    }
+
+    /**
+     * This method returns the number of frames waiting in the queue.
+     * @return the number of frames waiting in the queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * This method returns the capacity of the queue.
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * This method returns the number of frames inserted in the queue.
+     * @return the number of frames inserted in the queue
+     */
+    public long getEnqueuedFrames() {
+        return enqueuedFrames;
+    }
+
+    /**
+     * This method returns the number of frames processed by the virtual channel.
+     * @return the number of frames processed by the virtual channel
+     */
+    public long getProcessedFrames() {
+        return processedFrames;
+    }
+
+    /**
+     * This method returns the number of frames dropped because the queue was full.
+     * @return the number of frames dropped because the queue was full
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * This method returns the number of frames whose processing raised an exception.
+     * @return the number of frames whose processing raised an exception
+     */
+    public long getFailedFrames() {
+        return failedFrames;
+    }
+
+    /**
+     * This method returns the time spent in the queue by the last processed frame.
+     * @return the time spent in the queue by the last processed frame, in nanoseconds
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    /**
+     * This method returns the maximum time spent in the queue by a frame.
+     * @return the maximum time spent in the queue by a frame, in nanoseconds
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualChannelQueueStatistics{" +
+                "virtualChannelId=" + virtualChannelId +
+                ", queueDepth=" + queueDepth +
+                ", queueCapacity=" + queueCapacity +
+                ", enqueuedFrames=" + enqueuedFrames +
+                ", processedFrames=" + processedFrames +
+                ", droppedFrames=" + droppedFrames +
+                ", failedFrames=" + failedFrames +
+                ", lastLagNanos=" + lastLagNanos +
+                ", maxLagNanos=" + maxLagNanos +
+                '}';
+    }
+}
@@ -18,6 +18,7 @@ package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
 
 import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrameView;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -33,7 +34,7 @@ import java.util.function.Consumer;
  */
 public class VirtualChannelReceiverDemux implements Consumer<AbstractTransferFrame> {
 
-    private final Map<Integer, AbstractReceiverVirtualChannel> vcid2receiver = new HashMap<>();
+    private final Map<Integer, AbstractReceiverVirtualChannel<?>> vcid2receiver = new HashMap<>();
 
     private final Consumer<AbstractTransferFrame> missingVcHandler;
 
@@ -43,7 +44,7 @@ public class VirtualChannelReceiverDemux implements Consumer<AbstractTransferFra
      *
      * @param receivers the initial set of virtual channels
      */
-    public VirtualChannelReceiverDemux(AbstractReceiverVirtualChannel... receivers) {
+    public VirtualChannelReceiverDemux(AbstractReceiverVirtualChannel<?>... receivers) {
         this(null, receivers);
     }
 
@@ -54,7 +55,7 @@ public class VirtualChannelReceiverDemux implements Consumer<AbstractTransferFra
      * @param missingVcHandler the handler for not registered VCs
      * @param receivers the initial set of virtual channels
      */
-    public VirtualChannelReceiverDemux(Consumer<AbstractTransferFrame> missingVcHandler, AbstractReceiverVirtualChannel... receivers) {
+    public VirtualChannelReceiverDemux(Consumer<AbstractTransferFrame> missingVcHandler, AbstractReceiverVirtualChannel<?>... receivers) {
         this.missingVcHandler = missingVcHandler;
         // Register all of them
         Arrays.stream(receivers).forEach(this::register);
@@ -66,7 +67,7 @@ public class VirtualChannelReceiverDemux implements Consumer<AbstractTransferFra
      * @param channel the virtual channel to register
      * @throws IllegalArgumentException if a virtual channel ID is already registered
      */
-    public void register(AbstractReceiverVirtualChannel channel) {
+    public void register(AbstractReceiverVirtualChannel<?> channel) {
         if(this.vcid2receiver.containsKey(channel.getVirtualChannelId())) {
             throw new IllegalArgumentException("Virtual channel receiver for VCID " + channel.getVirtualChannelId() + " already registered");
         }
@@ -93,11 +94,55 @@ public class VirtualChannelReceiverDemux implements Consumer<AbstractTransferFra
      */
     public void processFrame(AbstractTransferFrame frame) {
         int vcId = frame.getVirtualChannelId();
-        AbstractReceiverVirtualChannel rcv = this.vcid2receiver.get(vcId);
+        AbstractReceiverVirtualChannel<?> rcv = this.vcid2receiver.get(vcId);
         if(rcv != null) {
-            rcv.processFrame(frame);
+            forwardFrame(rcv, frame);
         } else if(this.missingVcHandler != null) {
             this.missingVcHandler.accept(frame);
         }
     }
+
+    /**
+     * This method forwards the transfer frame currently wrapped by the provided view to the correct virtual channel,
+     * or to the handler if there is no virtual channel registered on the virtual channel ID set on the frame. The
+     * virtual channel is selected by reading the header field from the view: the frame object is created (see
+     * {@link AbstractTransferFrameView#toFrame()}) only if the frame is forwarded. If the handler is null, frames
+     * belonging to unregistered virtual channels are dropped without any allocation.
+     *
+     * @param view the view wrapping the transfer frame to process
+     */
+    public void processFrame(AbstractTransferFrameView view) {
+        int vcId = view.getVirtualChannelId();
+        AbstractReceiverVirtualChannel<?> rcv = this.vcid2receiver.get(vcId);
+        if(rcv != null) {
+            forwardFrame(rcv, view.toFrame());
+        } else if(this.missingVcHandler != null) {
+            this.missingVcHandler.accept(view.toFrame());
+        }
+    }
+
+    /**
+     * This method delivers the provided transfer frame to the provided virtual channel. By default, the frame is
+     * processed by the virtual channel on the caller thread. Subclasses can override, e.g. to process the frame on
+     * a different thread.
+     *
+     * @param receiver the virtual channel selected for the frame
+     * @param frame the transfer frame to process
+     */
+    protected void forwardFrame(AbstractReceiverVirtualChannel<?> receiver, AbstractTransferFrame frame) {
+        deliver(receiver, frame);
+    }
+
+    /**
+     * This method lets the provided virtual channel process the provided transfer frame. The frame type is not checked:
+     * a frame of the wrong type results in a {@link ClassCastException} raised by the virtual channel.
+     *
+     * @param receiver the virtual channel
+     * @param frame the transfer frame to process
+     * @param <T> the type of transfer frame processed by the virtual channel
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends AbstractTransferFrame> void deliver(AbstractReceiverVirtualChannel<T> receiver, AbstractTransferFrame frame) {
+        receiver.processFrame((T) frame);
+    }
 }
@@ -45,12 +45,18 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * This class keeps track of the virtual channel frame counter and of the amount of free space in each frame under construction.
  *
- * This class is not thread safe.
+ * This class is not thread safe. To feed a virtual channel with packets from several threads, use a
+ * {@link eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util.MultiProducerPacketQueue}.
  *
  * @param <T> the type of transfer frame
  */
 public abstract class AbstractSenderVirtualChannel<T extends AbstractTransferFrame> {
 
+    /**
+     * Empty security header/trailer, used when no security data is configured.
+     */
+    protected static final byte[] NO_SECURITY_DATA = new byte[0];
+
     private final List<IVirtualChannelSenderOutput> listeners = new CopyOnWriteArrayList<>();
 
     private final int spacecraftId;
@@ -23,6 +23,7 @@ import eu.dariolucia.ccsds.tmtc.ocf.pdu.AbstractOcf;
 import eu.dariolucia.ccsds.tmtc.transport.pdu.BitstreamData;
 import eu.dariolucia.ccsds.tmtc.transport.pdu.IPacket;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntFunction;
@@ -35,6 +36,40 @@ import java.util.function.Supplier;
  */
 public class AosSenderVirtualChannel extends AbstractSenderVirtualChannel<AosTransferFrame> {
 
+	private static final PacketAccessor<IPacket> PACKET_ACCESSOR = new PacketAccessor<>() {
+		@Override
+		public int length(IPacket packet) {
+			return packet.getLength();
+		}
+
+		@Override
+		public int addSpacePacket(AosTransferFrameBuilder builder, IPacket packet) {
+			return builder.addSpacePacket(packet.getPacket());
+		}
+
+		@Override
+		public int addData(AosTransferFrameBuilder builder, IPacket packet, int offset, int length) {
+			return builder.addData(packet.getPacket(), offset, length);
+		}
+	};
+
+	private static final PacketAccessor<ByteBuffer> BUFFER_ACCESSOR = new PacketAccessor<>() {
+		@Override
+		public int length(ByteBuffer packet) {
+			return packet.remaining();
+		}
+
+		@Override
+		public int addSpacePacket(AosTransferFrameBuilder builder, ByteBuffer packet) {
+			return builder.addSpacePacket(packet);
+		}
+
+		@Override
+		public int addData(AosTransferFrameBuilder builder, ByteBuffer packet, int offset, int length) {
+			return builder.addData(packet, offset, length);
+		}
+	};
+
 	private final IntFunction<AbstractOcf> ocfSupplier;
 
 	private final IntFunction<byte[]> insertZoneSupplier;
@@ -57,6 +92,9 @@ public class AosSenderVirtualChannel extends AbstractSenderVirtualChannel<AosTra
 	private final int secHeaderLength;
 	private final int secTrailerLength;
 
+	// Frame builder, reset and re-used for each frame
+	private AosTransferFrameBuilder frameBuilder;
+
 	public AosSenderVirtualChannel(int spacecraftId, int virtualChannelId, VirtualChannelAccessMode mode, boolean fecfPresent, int frameLength, IntFunction<AbstractOcf> ocfSupplier) {
 		this(spacecraftId, virtualChannelId, mode, fecfPresent, frameLength, ocfSupplier, false, false, 0, null);
 	}
@@ -215,32 +253,69 @@ public class AosSenderVirtualChannel extends AbstractSenderVirtualChannel<AosTra
 	}
 
 	public int dispatch(boolean replay, Collection<IPacket> pkts) {
+		return dispatchPackets(replay, pkts, PACKET_ACCESSOR);
+	}
+
+	/**
+	 * This method calls dispatchBuffers(isReplayFlag(), packets).
+	 *
+	 * @param packets the packets to be encapsulated inside transfer frames
+	 * @return the amount of free bytes that are still available in the last generated but not emitted frame, or a value equal to getMaxUserDataLength if there is no pending frame
+	 */
+	public int dispatchBuffers(Collection<? extends ByteBuffer> packets) {
+		return dispatchBuffers(isReplayFlag(), packets);
+	}
+
+	/**
+	 * This method requests the generation of one or more transfer frames, which contain the packets provided as
+	 * buffers: each buffer contains a single packet, from its position (incl.) to its limit (excl.). The bytes of each
+	 * packet are copied only once, directly into the frame under construction, and the position of the buffers is
+	 * not changed. Buffers can be slices of larger buffers (e.g. a buffer containing several packets generated by
+	 * a payload simulator).
+	 *
+	 * The behaviour of this method is the same of {@link #dispatch(boolean, Collection)}: the complete collection is
+	 * processed in a single invocation, so that large batches of packets can be dispatched at once.
+	 *
+	 * @param replay the replay flag to set in the generated frames
+	 * @param packets the packets to be encapsulated inside transfer frames
+	 * @return the amount of free bytes that are still available in the last generated but not emitted frame, or a value equal to getMaxUserDataLength if there is no pending frame
+	 */
+	public int dispatchBuffers(boolean replay, Collection<? extends ByteBuffer> packets) {
+		return dispatchPackets(replay, packets, BUFFER_ACCESSOR);
+	}
+
+	private <P> int dispatchPackets(boolean replay, Collection<? extends P> packets, PacketAccessor<P> accessor) {
 		if (getMode() != VirtualChannelAccessMode.PACKET && getMode() != VirtualChannelAccessMode.ENCAPSULATION) {
 			throw new IllegalStateException("Virtual channel " + getVirtualChannelId() + " access mode set to mode " + getMode() + ", but requested PACKET/ENCAPSULATION access");
 		}
-		List<IPacket> packets = new ArrayList<>(pkts);
+		// Amount of data of the packets following the packet being processed
+		int remainingData = 0;
+		for (P packet : packets) {
+			remainingData += accessor.length(packet);
+		}
 		// Strategy: fill in a transfer frame as much as you can, till the end. Do segmentation if needed.
-		for (int i = 0; i < packets.size(); ++i) {
-			IPacket isp = packets.get(i);
-			int notWrittenData = isp.getLength();
+		for (P packet : packets) {
+			int packetLength = accessor.length(packet);
+			remainingData -= packetLength;
+			int notWrittenData = packetLength;
 			while (notWrittenData > 0) {
 				// If there is no pending frame, create the frame builder
 				if (this.currentFrame == null) {
 					this.currentFrame = createFrameBuilder(replay);
 				}
 				// Add the packet: if the packet is not written yet, then write it and get the remaining data.
-				if (notWrittenData == isp.getLength()) {
-					notWrittenData = ((AosTransferFrameBuilder) this.currentFrame).addSpacePacket(isp.getPacket());
+				if (notWrittenData == packetLength) {
+					notWrittenData = accessor.addSpacePacket((AosTransferFrameBuilder) this.currentFrame, packet);
 				} else {
 					// Otherwise it means that this is a segmented packet that spilled over: write what you can
-					notWrittenData = ((AosTransferFrameBuilder) this.currentFrame).addData(isp.getPacket(), isp.getLength() - notWrittenData, notWrittenData);
+					notWrittenData = accessor.addData((AosTransferFrameBuilder) this.currentFrame, packet, packetLength - notWrittenData, notWrittenData);
 				}
 				if (((AosTransferFrameBuilder) this.currentFrame).isFull()) {
 					// Build
 					AosTransferFrame toSend = finalizeFullFrame();
 					// Dispatch
 					this.currentFrame = null;
-					notifyTransferFrameGenerated(toSend, notWrittenData + calculateRemainingData(packets, i + 1));
+					notifyTransferFrameGenerated(toSend, notWrittenData + remainingData);
 				}
 			}
 		}
@@ -336,13 +411,33 @@ public class AosSenderVirtualChannel extends AbstractSenderVirtualChannel<AosTra
 
 	protected AosTransferFrameBuilder createFrameBuilder(boolean isReplay) {
 		// Add security if present
-		byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : new byte[0];
-		byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : new byte[0];
+		byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : NO_SECURITY_DATA;
+		byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : NO_SECURITY_DATA;
 
-		return AosTransferFrameBuilder.create(getFrameLength(), isFhecfPresent(), getInsertZoneLength(), deriveAosType(), isOcfPresent(), isFecfPresent())
+		if (this.frameBuilder == null) {
+			this.frameBuilder = AosTransferFrameBuilder.create(getFrameLength(), isFhecfPresent(), getInsertZoneLength(), deriveAosType(), isOcfPresent(), isFecfPresent())
+					.setSpacecraftId(getSpacecraftId())
+					.setVirtualChannelId(getVirtualChannelId());
+		} else {
+			this.frameBuilder.reset();
+		}
+		return this.frameBuilder
 				.setSecurity(secH, secT)
-				.setSpacecraftId(getSpacecraftId())
-				.setVirtualChannelId(getVirtualChannelId())
 				.setReplayFlag(isReplay);
 	}
+
+	/**
+	 * Access to the packets of the different packet representations ({@link IPacket}, {@link ByteBuffer}), so that the
+	 * same packing loop can be used for all of them.
+	 *
+	 * @param <P> the packet representation
+	 */
+	private interface PacketAccessor<P> {
+
+		int length(P packet);
+
+		int addSpacePacket(AosTransferFrameBuilder builder, P packet);
+
+		int addData(AosTransferFrameBuilder builder, P packet, int offset, int length);
+	}
 }
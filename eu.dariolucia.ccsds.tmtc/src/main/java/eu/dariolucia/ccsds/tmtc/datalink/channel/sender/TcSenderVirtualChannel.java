@@ -42,6 +42,9 @@ public class TcSenderVirtualChannel extends AbstractSenderVirtualChannel<TcTrans
 
     private volatile boolean adMode;
 
+    // Frame builder, reset and re-used for each AD/BD frame
+    private TcTransferFrameBuilder frameBuilder;
+
     /**
      * Constructor used to create a TC virtual channel. The type of service provided by the virtual channel is driven by
      * the specified mode (Packet or Data) and segmentation, according to the following scheme:
@@ -221,16 +224,7 @@ public class TcSenderVirtualChannel extends AbstractSenderVirtualChannel<TcTrans
             if (this.currentFrame == null) {
                 // If the packet fits it, then create the frame and add it to the frame
                 if (maxDataPerFrame >= isp.getLength()) {
-                    byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : new byte[0];
-                    byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : new byte[0];
-
-                    this.currentFrame = TcTransferFrameBuilder.create(isFecfPresent())
-                            .setSpacecraftId(getSpacecraftId())
-                            .setVirtualChannelId(getVirtualChannelId())
-                            .setFrameSequenceNumber(adMode ? incrementVirtualChannelFrameCounter(256) : 0)
-                            .setBypassFlag(!adMode)
-                            .setControlCommandFlag(false)
-                            .setSecurity(secH, secT);
+                    this.currentFrame = createFrameBuilder(adMode);
                     if (segmented) {
                         ((TcTransferFrameBuilder) this.currentFrame).setSegment(TcTransferFrame.SequenceFlagType.NO_SEGMENT, mapId);
                     }
@@ -249,16 +243,7 @@ public class TcSenderVirtualChannel extends AbstractSenderVirtualChannel<TcTrans
                     int chunks = packetToSend.length / maxDataPerFrame + (packetToSend.length % maxDataPerFrame == 0 ? 0 : 1);
                     // Send the chunks
                     for (int cki = 0; cki < chunks; ++cki) {
-                        byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : new byte[0];
-                        byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : new byte[0];
-
-                        this.currentFrame = TcTransferFrameBuilder.create(isFecfPresent())
-                                .setSpacecraftId(getSpacecraftId())
-                                .setVirtualChannelId(getVirtualChannelId())
-                                .setFrameSequenceNumber(adMode ? incrementVirtualChannelFrameCounter(256) : 0)
-                                .setBypassFlag(!adMode)
-                                .setControlCommandFlag(false)
-                                .setSecurity(secH, secT);
+                        this.currentFrame = createFrameBuilder(adMode);
 
                         // First chunk is FIRST
                         if (cki == 0) {
@@ -335,16 +320,7 @@ public class TcSenderVirtualChannel extends AbstractSenderVirtualChannel<TcTrans
         int maxDataPerFrame = getMaxUserDataLength();
         // If the data fits it, then create the frame and add it to the frame
         if (maxDataPerFrame >= userData.length) {
-            byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : new byte[0];
-            byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : new byte[0];
-
-            this.currentFrame = TcTransferFrameBuilder.create(isFecfPresent())
-                    .setSpacecraftId(getSpacecraftId())
-                    .setVirtualChannelId(getVirtualChannelId())
-                    .setFrameSequenceNumber(adMode ? incrementVirtualChannelFrameCounter(256) : 0)
-                    .setBypassFlag(!adMode)
-                    .setControlCommandFlag(false)
-                    .setSecurity(secH, secT);
+            this.currentFrame = createFrameBuilder(adMode);
             if (segmented) {
                 ((TcTransferFrameBuilder) this.currentFrame).setSegment(TcTransferFrame.SequenceFlagType.NO_SEGMENT, mapId);
             }
@@ -361,16 +337,7 @@ public class TcSenderVirtualChannel extends AbstractSenderVirtualChannel<TcTrans
             int chunks = userData.length / maxDataPerFrame + (userData.length % maxDataPerFrame == 0 ? 0 : 1);
             // Send the chunks
             for (int cki = 0; cki < chunks; ++cki) {
-                byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : new byte[0];
-                byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : new byte[0];
-
-                this.currentFrame = TcTransferFrameBuilder.create(isFecfPresent())
-                        .setSpacecraftId(getSpacecraftId())
-                        .setVirtualChannelId(getVirtualChannelId())
-                        .setFrameSequenceNumber(adMode ? incrementVirtualChannelFrameCounter(256) : 0)
-                        .setBypassFlag(!adMode)
-                        .setControlCommandFlag(false)
-                        .setSecurity(secH, secT);
+                this.currentFrame = createFrameBuilder(adMode);
                 if (segmented) {
                     // First chunk is FIRST
                     if (cki == 0) {
@@ -425,5 +392,22 @@ public class TcSenderVirtualChannel extends AbstractSenderVirtualChannel<TcTrans
         return TcTransferFrameBuilder.computeMaxUserDataLength(isFecfPresent()) - (segmented ? 1 : 0) - secHeaderLength - secTrailerLength;
     }
 
-}
+    private TcTransferFrameBuilder createFrameBuilder(boolean adMode) {
+        // Add security if present
+        byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : NO_SECURITY_DATA;
+        byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : NO_SECURITY_DATA;
 
+        if(this.frameBuilder == null) {
+            this.frameBuilder = TcTransferFrameBuilder.create(isFecfPresent())
+                    .setSpacecraftId(getSpacecraftId())
+                    .setVirtualChannelId(getVirtualChannelId())
+                    .setControlCommandFlag(false);
+        } else {
+            this.frameBuilder.reset();
+        }
+        return this.frameBuilder
+                .setFrameSequenceNumber(adMode ? incrementVirtualChannelFrameCounter(256) : 0)
+                .setBypassFlag(!adMode)
+                .setSecurity(secH, secT);
+    }
+}
@@ -23,9 +23,8 @@ import eu.dariolucia.ccsds.tmtc.ocf.pdu.AbstractOcf;
 import eu.dariolucia.ccsds.tmtc.transport.pdu.BitstreamData;
 import eu.dariolucia.ccsds.tmtc.transport.pdu.IPacket;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Collection;
-import java.util.List;
 import java.util.function.IntFunction;
 import java.util.function.IntSupplier;
 import java.util.function.Supplier;
@@ -37,6 +36,40 @@ import java.util.function.Supplier;
  */
 public class TmSenderVirtualChannel extends AbstractSenderVirtualChannel<TmTransferFrame> {
 
+    private static final PacketAccessor<IPacket> PACKET_ACCESSOR = new PacketAccessor<>() {
+        @Override
+        public int length(IPacket packet) {
+            return packet.getLength();
+        }
+
+        @Override
+        public int addSpacePacket(TmTransferFrameBuilder builder, IPacket packet) {
+            return builder.addSpacePacket(packet.getPacket());
+        }
+
+        @Override
+        public int addData(TmTransferFrameBuilder builder, IPacket packet, int offset, int length) {
+            return builder.addData(packet.getPacket(), offset, length);
+        }
+    };
+
+    private static final PacketAccessor<ByteBuffer> BUFFER_ACCESSOR = new PacketAccessor<>() {
+        @Override
+        public int length(ByteBuffer packet) {
+            return packet.remaining();
+        }
+
+        @Override
+        public int addSpacePacket(TmTransferFrameBuilder builder, ByteBuffer packet) {
+            return builder.addSpacePacket(packet);
+        }
+
+        @Override
+        public int addData(TmTransferFrameBuilder builder, ByteBuffer packet, int offset, int length) {
+            return builder.addData(packet, offset, length);
+        }
+    };
+
     private final IntFunction<AbstractOcf> ocfSupplier;
 
     private final IntFunction<byte[]> secondaryHeaderSupplier;
@@ -53,6 +86,9 @@ public class TmSenderVirtualChannel extends AbstractSenderVirtualChannel<TmTrans
     private final int secHeaderLength;
     private final int secTrailerLength;
 
+    // Frame builder, reset and re-used for each frame
+    private TmTransferFrameBuilder frameBuilder;
+
     public TmSenderVirtualChannel(int spacecraftId, int virtualChannelId, VirtualChannelAccessMode mode, boolean fecfPresent, int frameLength, IntSupplier masterChannelFrameCounterSupplier, IntFunction<AbstractOcf> ocfSupplier) {
         this(spacecraftId, virtualChannelId, mode, fecfPresent, frameLength, masterChannelFrameCounterSupplier, ocfSupplier, 0, null);
     }
@@ -163,32 +199,58 @@ public class TmSenderVirtualChannel extends AbstractSenderVirtualChannel<TmTrans
 
     @Override
     public int dispatch(Collection<IPacket> pkts) {
+        return dispatchPackets(pkts, PACKET_ACCESSOR);
+    }
+
+    /**
+     * This method requests the generation of one or more transfer frames, which contain the packets provided as
+     * buffers: each buffer contains a single packet, from its position (incl.) to its limit (excl.). The bytes of each
+     * packet are copied only once, directly into the frame under construction, and the position of the buffers is
+     * not changed. Buffers can be slices of larger buffers (e.g. a buffer containing several packets generated by
+     * a payload simulator).
+     *
+     * The behaviour of this method is the same of {@link #dispatch(Collection)}: the complete collection is processed
+     * in a single invocation, so that large batches of packets can be dispatched at once.
+     *
+     * @param packets the packets to be encapsulated inside transfer frames
+     * @return the amount of free bytes that are still available in the last generated but not emitted frame, or a value equal to getMaxUserDataLength if there is no pending frame
+     */
+    public int dispatchBuffers(Collection<? extends ByteBuffer> packets) {
+        return dispatchPackets(packets, BUFFER_ACCESSOR);
+    }
+
+    private <P> int dispatchPackets(Collection<? extends P> packets, PacketAccessor<P> accessor) {
         if (getMode() != VirtualChannelAccessMode.PACKET && getMode() != VirtualChannelAccessMode.ENCAPSULATION) {
             throw new IllegalStateException("Virtual channel " + getVirtualChannelId() + " access mode set to mode " + getMode() + ", but requested PACKET/ENCAPSULATION access");
         }
-        List<IPacket> packets = new ArrayList<>(pkts);
+        // Amount of data of the packets following the packet being processed
+        int remainingData = 0;
+        for (P packet : packets) {
+            remainingData += accessor.length(packet);
+        }
         // Strategy: fill in a transfer frame as much as you can, till the end. Do segmentation if needed.
-        for (int i = 0; i < packets.size(); ++i) {
-            IPacket isp = packets.get(i);
-            int notWrittenData = isp.getLength();
+        for (P packet : packets) {
+            int packetLength = accessor.length(packet);
+            remainingData -= packetLength;
+            int notWrittenData = packetLength;
             while(notWrittenData > 0) {
                 // If there is no pending frame, create the frame builder
                 if (this.currentFrame == null) {
                     this.currentFrame = createFrameBuilder();
                 }
                 // Add the packet: if the packet is not written yet, then write it and get the remaining data.
-                if(notWrittenData == isp.getLength()) {
-                    notWrittenData = ((TmTransferFrameBuilder) this.currentFrame).addSpacePacket(isp.getPacket());
+                if(notWrittenData == packetLength) {
+                    notWrittenData = accessor.addSpacePacket((TmTransferFrameBuilder) this.currentFrame, packet);
                 } else {
                     // Otherwise it means that this is a segmented packet that spilled over: write what you can
-                    notWrittenData = ((TmTransferFrameBuilder) this.currentFrame).addData(isp.getPacket(), isp.getLength() - notWrittenData, notWrittenData);
+                    notWrittenData = accessor.addData((TmTransferFrameBuilder) this.currentFrame, packet, packetLength - notWrittenData, notWrittenData);
                 }
                 if(((TmTransferFrameBuilder) this.currentFrame).isFull()) {
                     // Build
                     TmTransferFrame toSend = finalizeFullFrame();
                     // Dispatch
                     this.currentFrame = null;
-                    notifyTransferFrameGenerated(toSend, notWrittenData + calculateRemainingData(packets, i + 1));
+                    notifyTransferFrameGenerated(toSend, notWrittenData + remainingData);
                 }
             }
         }
@@ -224,15 +286,34 @@ public class TmSenderVirtualChannel extends AbstractSenderVirtualChannel<TmTrans
 
     protected TmTransferFrameBuilder createFrameBuilder() {
         // Add security if present
-        byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : new byte[0];
-        byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : new byte[0];
-
-        return TmTransferFrameBuilder.create(getFrameLength(), getSecondaryHeaderLength(), isOcfPresent(), isFecfPresent())
-                .setSecurity(secH, secT)
-                .setSpacecraftId(getSpacecraftId())
-                .setVirtualChannelId(getVirtualChannelId())
-                .setSynchronisationFlag(false)
-                .setPacketOrderFlag(false)
-                .setSegmentLengthIdentifier(3);
+        byte[] secH = secHeaderSupplier != null ? secHeaderSupplier.get() : NO_SECURITY_DATA;
+        byte[] secT = secTrailerSupplier != null ? secTrailerSupplier.get() : NO_SECURITY_DATA;
+
+        if(this.frameBuilder == null) {
+            this.frameBuilder = TmTransferFrameBuilder.create(getFrameLength(), getSecondaryHeaderLength(), isOcfPresent(), isFecfPresent())
+                    .setSpacecraftId(getSpacecraftId())
+                    .setVirtualChannelId(getVirtualChannelId())
+                    .setSynchronisationFlag(false)
+                    .setPacketOrderFlag(false)
+                    .setSegmentLengthIdentifier(3);
+        } else {
+            this.frameBuilder.reset();
+        }
+        return this.frameBuilder.setSecurity(secH, secT);
+    }
+
+    /**
+     * Access to the packets of the different packet representations ({@link IPacket}, {@link ByteBuffer}), so that the
+     * same packing loop can be used for all of them.
+     *
+     * @param <P> the packet representation
+     */
+    private interface PacketAccessor<P> {
+
+        int length(P packet);
+
+        int addSpacePacket(TmTransferFrameBuilder builder, P packet);
+
+        int addData(TmTransferFrameBuilder builder, P packet, int offset, int length);
     }
 }
@@ -0,0 +1,359 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.mux;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.AbstractSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.IVirtualChannelSenderOutput;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.SpscRingBuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class implements a master channel scheduler for the various virtual channels, based on a pull model: the
+ * generated frames are queued per virtual channel, and the next frame to transmit is selected when requested via
+ * {@link PriorityMuxer#nextFrame()}, e.g. by the clock of the modulator.
+ *
+ * Each virtual channel is registered with a priority and a weight. Virtual channels with higher priority (lower
+ * priority value) are always served first (strict priority), so that the latency of e.g. real-time housekeeping
+ * virtual channels does not depend on the load of the other virtual channels. Virtual channels with the same priority
+ * share the bandwidth left by the higher priority ones according to their weight (weighted round robin with deficit
+ * reset: a virtual channel with weight N transmits up to N frames per round, if it has frames to transmit). If no
+ * frame is queued, the frame provided by the idle frame supplier (if any) is returned, so that a constant frame rate
+ * can be kept.
+ *
+ * Frames are queued in lock-free bounded queues. When the queue of a virtual channel is full, the frame is handled
+ * according to the {@link OverflowPolicy}: the thread generating the frame either waits for space in the queue or
+ * drops the frame. The frame selected for transmission can be adapted by subclasses before being returned, see
+ * {@link PriorityMuxer#prepareFrame(AbstractTransferFrame)}.
+ *
+ * This class implements the Consumer interface and the IVirtualChannelSenderOutput interface, so that objects of this
+ * class can be registered to a set of virtual channels, as per {@link SimpleMuxer}.
+ *
+ * Virtual channels shall be registered before frames are generated. The frames of each virtual channel shall be
+ * provided by a single thread at a time, and {@link PriorityMuxer#nextFrame()} shall be invoked by a single thread.
+ */
+public class PriorityMuxer<T extends AbstractTransferFrame> implements Consumer<T>, IVirtualChannelSenderOutput<T>, Supplier<T> {
+
+	/**
+	 * Default capacity of the queue of each virtual channel.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	private static final int MAX_VIRTUAL_CHANNELS = 64;
+
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+	/**
+	 * The policy used when a frame is generated by a virtual channel with a full queue.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The generating thread waits until the queue has space for the frame.
+		 */
+		BLOCK,
+		/**
+		 * The frame is dropped and counted.
+		 */
+		DROP
+	}
+
+	private final Supplier<T> idleFrameSupplier;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final VirtualChannelQueue<T>[] queues;
+
+	private volatile PriorityLevel<T>[] levels;
+
+	private final AtomicLong idleFrames = new AtomicLong(0);
+
+	/**
+	 * Create a new scheduler.
+	 *
+	 * @param idleFrameSupplier the supplier of the idle frames, returned when no frame is queued: can be null
+	 * @param overflowPolicy the policy to use when the queue of a virtual channel is full
+	 */
+	public PriorityMuxer(Supplier<T> idleFrameSupplier, OverflowPolicy overflowPolicy) {
+		if(overflowPolicy == null) {
+			throw new NullPointerException("Overflow policy cannot be null");
+		}
+		this.idleFrameSupplier = idleFrameSupplier;
+		this.overflowPolicy = overflowPolicy;
+		this.queues = newQueueArray(MAX_VIRTUAL_CHANNELS);
+		this.levels = newLevelArray(0);
+	}
+
+	/**
+	 * This method registers the provided virtual channel with the provided priority and weight, and the default
+	 * queue capacity. This object is registered as output of the virtual channel.
+	 *
+	 * @param vc the virtual channel
+	 * @param priority the priority of the virtual channel: the lower the value, the higher the priority
+	 * @param weight the weight of the virtual channel among the virtual channels with the same priority
+	 * @throws IllegalArgumentException if the virtual channel is already registered, or the weight is not positive
+	 */
+	public void register(AbstractSenderVirtualChannel<T> vc, int priority, int weight) {
+		register(vc.getVirtualChannelId(), priority, weight, DEFAULT_QUEUE_CAPACITY);
+		vc.register(this);
+	}
+
+	/**
+	 * This method registers the provided virtual channel ID with the provided priority, weight and queue capacity.
+	 *
+	 * @param virtualChannelId the virtual channel ID
+	 * @param priority the priority of the virtual channel: the lower the value, the higher the priority
+	 * @param weight the weight of the virtual channel among the virtual channels with the same priority
+	 * @param queueCapacity the capacity of the queue of the virtual channel
+	 * @throws IllegalArgumentException if the virtual channel is already registered, or the values are out of range
+	 */
+	public synchronized void register(int virtualChannelId, int priority, int weight, int queueCapacity) {
+		if(virtualChannelId < 0 || virtualChannelId >= MAX_VIRTUAL_CHANNELS) {
+			throw new IllegalArgumentException("Virtual channel ID " + virtualChannelId + " out of range");
+		}
+		if(this.queues[virtualChannelId] != null) {
+			throw new IllegalArgumentException("Virtual channel " + virtualChannelId + " already registered");
+		}
+		if(weight <= 0) {
+			throw new IllegalArgumentException("Weight must be positive, got " + weight);
+		}
+		if(queueCapacity <= 0) {
+			throw new IllegalArgumentException("Queue capacity must be positive, got " + queueCapacity);
+		}
+		VirtualChannelQueue<T> queue = new VirtualChannelQueue<>(weight, queueCapacity);
+		this.queues[virtualChannelId] = queue;
+		// Rebuild the priority levels
+		PriorityLevel<T>[] oldLevels = this.levels;
+		int position = 0;
+		while(position < oldLevels.length && oldLevels[position].priority < priority) {
+			++position;
+		}
+		PriorityLevel<T>[] newLevels;
+		if(position < oldLevels.length && oldLevels[position].priority == priority) {
+			newLevels = Arrays.copyOf(oldLevels, oldLevels.length);
+			newLevels[position] = new PriorityLevel<>(priority, Arrays.copyOf(oldLevels[position].members, oldLevels[position].members.length + 1));
+			newLevels[position].members[newLevels[position].members.length - 1] = queue;
+		} else {
+			newLevels = newLevelArray(oldLevels.length + 1);
+			System.arraycopy(oldLevels, 0, newLevels, 0, position);
+			VirtualChannelQueue<T>[] members = newQueueArray(1);
+			members[0] = queue;
+			newLevels[position] = new PriorityLevel<>(priority, members);
+			System.arraycopy(oldLevels, position, newLevels, position + 1, oldLevels.length - position);
+		}
+		this.levels = newLevels;
+	}
+
+	/**
+	 * This method queues the frame in the queue of the related virtual channel. If the queue is full, the frame is
+	 * handled according to the {@link OverflowPolicy}. With {@link OverflowPolicy#BLOCK}, if the thread is interrupted
+	 * while waiting for space in the queue, the frame is dropped and counted, and the interrupt flag is left set.
+	 *
+	 * @param frame the frame to queue
+	 * @throws IllegalArgumentException if the virtual channel of the frame is not registered
+	 */
+	@Override
+	public void accept(T frame) {
+		VirtualChannelQueue<T> queue = this.queues[frame.getVirtualChannelId()];
+		if(queue == null) {
+			throw new IllegalArgumentException("Virtual channel " + frame.getVirtualChannelId() + " not registered");
+		}
+		if(!queue.ring.offer(frame)) {
+			if(this.overflowPolicy == OverflowPolicy.DROP) {
+				queue.droppedFrames.lazySet(queue.droppedFrames.get() + 1);
+				return;
+			}
+			while(!queue.ring.offer(frame)) {
+				LockSupport.parkNanos(BLOCK_PARK_NANOS);
+				if(Thread.currentThread().isInterrupted()) {
+					// Stop the execution here: the frame is lost
+					queue.droppedFrames.lazySet(queue.droppedFrames.get() + 1);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method forwards the generated frame to the accept method. The virtual channel object and the bufferedBytes
+	 * value are ignored.
+	 *
+	 * @param vc The virtual channel that generated the frame
+	 * @param generatedFrame The generated frame
+	 * @param bufferedBytes the number of bytes still in the virtual channel buffer
+	 */
+	@Override
+	public void transferFrameGenerated(AbstractSenderVirtualChannel<T> vc, T generatedFrame, int bufferedBytes) {
+		accept(generatedFrame);
+	}
+
+	/**
+	 * This method returns the next frame to transmit, selected according to the priority and the weight of the
+	 * virtual channels. If no frame is queued, an idle frame is returned.
+	 *
+	 * @return the next frame to transmit, or null if no frame is queued and no idle frame supplier is set
+	 */
+	public T nextFrame() {
+		for(PriorityLevel<T> level : this.levels) {
+			T frame = level.poll();
+			if(frame != null) {
+				return prepareFrame(frame);
+			}
+		}
+		if(this.idleFrameSupplier == null) {
+			return null;
+		}
+		T idle = this.idleFrameSupplier.get();
+		if(idle != null) {
+			this.idleFrames.lazySet(this.idleFrames.get() + 1);
+			idle = prepareFrame(idle);
+		}
+		return idle;
+	}
+
+	/**
+	 * This method returns the next frame to transmit, as per {@link PriorityMuxer#nextFrame()}.
+	 *
+	 * @return the next frame to transmit
+	 */
+	@Override
+	public T get() {
+		return nextFrame();
+	}
+
+	/**
+	 * This method is invoked on the frame selected for transmission (including idle frames), before the frame is
+	 * returned by {@link PriorityMuxer#nextFrame()}. Subclasses can override this method to adapt the frame at
+	 * transmission time, e.g. to assign the master channel frame count. This implementation returns the frame as is.
+	 *
+	 * @param frame the frame selected for transmission
+	 * @return the frame to transmit
+	 */
+	protected T prepareFrame(T frame) {
+		return frame;
+	}
+
+	/**
+	 * This method returns the number of frames currently queued for the provided virtual channel.
+	 *
+	 * @param virtualChannelId the virtual channel ID
+	 * @return the number of queued frames
+	 */
+	public int getQueuedFrames(int virtualChannelId) {
+		return queue(virtualChannelId).ring.size();
+	}
+
+	/**
+	 * This method returns the number of frames of the provided virtual channel selected for transmission.
+	 *
+	 * @param virtualChannelId the virtual channel ID
+	 * @return the number of transmitted frames
+	 */
+	public long getTransmittedFrames(int virtualChannelId) {
+		return queue(virtualChannelId).transmittedFrames.get();
+	}
+
+	/**
+	 * This method returns the number of frames of the provided virtual channel dropped because the queue was full.
+	 *
+	 * @param virtualChannelId the virtual channel ID
+	 * @return the number of dropped frames
+	 */
+	public long getDroppedFrames(int virtualChannelId) {
+		return queue(virtualChannelId).droppedFrames.get();
+	}
+
+	/**
+	 * This method returns the number of idle frames selected for transmission.
+	 *
+	 * @return the number of idle frames
+	 */
+	public long getIdleFrames() {
+		return this.idleFrames.get();
+	}
+
+	private VirtualChannelQueue<T> queue(int virtualChannelId) {
+		VirtualChannelQueue<T> queue = virtualChannelId >= 0 && virtualChannelId < MAX_VIRTUAL_CHANNELS ? this.queues[virtualChannelId] : null;
+		if(queue == null) {
+			throw new IllegalArgumentException("Virtual channel " + virtualChannelId + " not registered");
+		}
+		return queue;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> VirtualChannelQueue<T>[] newQueueArray(int length) {
+		return new VirtualChannelQueue[length];
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> PriorityLevel<T>[] newLevelArray(int length) {
+		return new PriorityLevel[length];
+	}
+
+	private static final class VirtualChannelQueue<T> {
+		private final int weight;
+		private final SpscRingBuffer<T> ring;
+		private final AtomicLong transmittedFrames = new AtomicLong(0);
+		private final AtomicLong droppedFrames = new AtomicLong(0);
+
+		private VirtualChannelQueue(int weight, int queueCapacity) {
+			this.weight = weight;
+			this.ring = new SpscRingBuffer<>(queueCapacity);
+		}
+	}
+
+	private static final class PriorityLevel<T> {
+		private final int priority;
+		private final VirtualChannelQueue<T>[] members;
+		// Index of the member being served in the current round, and number of frames it can still transmit
+		private int current = 0;
+		private int credit;
+
+		private PriorityLevel(int priority, VirtualChannelQueue<T>[] members) {
+			this.priority = priority;
+			this.members = members;
+			this.credit = members[0].weight;
+		}
+
+		private T poll() {
+			for(int i = 0; i < this.members.length; ++i) {
+				VirtualChannelQueue<T> member = this.members[this.current];
+				T frame = member.ring.poll();
+				if(frame != null) {
+					member.transmittedFrames.lazySet(member.transmittedFrames.get() + 1);
+					if(--this.credit == 0) {
+						next();
+					}
+					return frame;
+				}
+				// Nothing to transmit: the credit is lost
+				next();
+			}
+			return null;
+		}
+
+		private void next() {
+			this.current = (this.current + 1) % this.members.length;
+			this.credit = this.members[this.current].weight;
+		}
+	}
+}
@@ -31,7 +31,8 @@ import java.util.function.Consumer;
  * IVirtualChannelSenderOutput, so objects of this class can be registered to a set of virtual channels and provide mux capabilities.
  *
  * This class does not implement any load balancing across the registered virtual channels (i.e. priorities), however it
- * makes sure that no virtual channel suffers from starvation.
+ * makes sure that no virtual channel suffers from starvation. For priorities and bandwidth
+ * sharing across virtual channels, see {@link PriorityMuxer}.
  *
  * This class is thread safe.
  */
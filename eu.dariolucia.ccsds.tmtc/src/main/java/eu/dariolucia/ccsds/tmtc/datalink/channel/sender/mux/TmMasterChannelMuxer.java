@@ -37,7 +37,8 @@ import java.util.function.Consumer;
  * will be transmitted according to the master channel frame counter, which is assigned at frame generation time. Method
  * getNextCounter can be used as a Supplier method for the provision of such frame counter. Frames that have a higher
  * master channel frame counter than the expected one will be buffered and transmitted at the correct time and in the
- * correct order.
+ * correct order. For priorities and bandwidth sharing across virtual channels, see
+ * {@link TmPriorityMuxer}.
  *
  * This class is thread safe.
  */
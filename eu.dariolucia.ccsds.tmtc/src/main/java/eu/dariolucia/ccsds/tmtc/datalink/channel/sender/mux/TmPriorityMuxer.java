@@ -0,0 +1,78 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.mux;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.Crc16Algorithm;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+
+import java.util.function.Supplier;
+
+/**
+ * This class implements a {@link PriorityMuxer} for TM frames, which assigns the master channel frame count at
+ * transmission time: since the scheduler changes the order of the frames generated by the different virtual channels,
+ * the master channel frame count cannot be assigned at generation time as for the {@link TmMasterChannelMuxer}.
+ * The virtual channels can therefore use any master channel frame counter supplier (e.g. () -> 0).
+ *
+ * The selected frame is copied, the master channel frame count is set and the FECF, if present, is recomputed. The
+ * annotations of the selected frame are copied to the transmitted frame.
+ */
+public class TmPriorityMuxer extends PriorityMuxer<TmTransferFrame> {
+
+	private int masterChannelCounter = 0;
+
+	/**
+	 * Create a new TM scheduler.
+	 *
+	 * @param idleFrameSupplier the supplier of the idle frames, returned when no frame is queued: can be null
+	 * @param overflowPolicy the policy to use when the queue of a virtual channel is full
+	 */
+	public TmPriorityMuxer(Supplier<TmTransferFrame> idleFrameSupplier, OverflowPolicy overflowPolicy) {
+		super(idleFrameSupplier, overflowPolicy);
+	}
+
+	/**
+	 * This method sets the master channel frame count of the next transmitted frame. If greater than 256, the method
+	 * will assign its mod 256 to the internal variable. This method shall be invoked by the thread invoking
+	 * {@link PriorityMuxer#nextFrame()}.
+	 *
+	 * @param masterChannelCounter the master channel frame count of the next transmitted frame
+	 */
+	public void setMasterChannelCounter(int masterChannelCounter) {
+		this.masterChannelCounter = masterChannelCounter % 256;
+	}
+
+	@Override
+	protected TmTransferFrame prepareFrame(TmTransferFrame frame) {
+		int counter = this.masterChannelCounter;
+		this.masterChannelCounter = (counter + 1) % 256;
+		if(frame.getMasterChannelFrameCount() == counter) {
+			return frame;
+		}
+		byte[] encoded = frame.getFrameCopy();
+		encoded[2] = (byte) counter;
+		if(frame.isFecfPresent()) {
+			short crc = Crc16Algorithm.getCrc16(encoded, 0, encoded.length - 2);
+			encoded[encoded.length - 2] = (byte) (crc >> 8);
+			encoded[encoded.length - 1] = (byte) crc;
+		}
+		TmTransferFrame prepared = new TmTransferFrame(encoded, frame.isFecfPresent(), frame.getSecurityHeaderLength(), frame.getSecurityTrailerLength());
+		for(Object key : frame.getAnnotationKeys()) {
+			prepared.setAnnotationValue(key, frame.getAnnotationValue(key));
+		}
+		return prepared;
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.AbstractSenderVirtualChannel;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class emits frames at a constant frame rate, e.g. to drive a modem or a RAF provider at the rate of the real
+ * link. For each frame slot, the frame generator is invoked: if it does not emit a frame (e.g. not enough data), the
+ * idle generator is invoked to fill the slot. The typical generator is a virtual channel in pull mode
+ * ({@link AbstractSenderVirtualChannel#pullNextFrame()}), and the typical idle generator is a virtual channel
+ * generating idle frames ({@link AbstractSenderVirtualChannel#dispatchIdle(byte[])}), see
+ * {@link FramePacer#FramePacer(double, AbstractSenderVirtualChannel, AbstractSenderVirtualChannel, byte[])}.
+ * <p>
+ * Frame slots are scheduled on an absolute time base, so that the error does not accumulate over time. The emitting
+ * thread parks ({@link LockSupport#parkNanos(long)}) until shortly before the slot and spins for the remaining time,
+ * to limit the jitter. If the emission falls behind (e.g. the generator was slow, or the thread was paused), the
+ * missed slots are emitted back to back, up to the configured number of catch-up frames: older slots are skipped and
+ * counted.
+ * <p>
+ * The pacer can run on the caller thread ({@link FramePacer#run()}) or on a dedicated thread ({@link FramePacer#start()}),
+ * until {@link FramePacer#stop()} is invoked. If the frame generator or the idle generator throws an exception, the
+ * emission stops and the exception is propagated to the caller of {@link FramePacer#run()} or to the uncaught exception
+ * handler of the dedicated thread: the pacer is then no longer running, and it can be started again. The statistics can
+ * be read by any thread.
+ */
+public class FramePacer implements Runnable {
+
+    /**
+     * Default maximum number of frames emitted back to back to catch up after a delay.
+     */
+    public static final int DEFAULT_MAX_CATCH_UP_FRAMES = 16;
+
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final double frameRate;
+
+    private final long intervalNanos;
+
+    private final BooleanSupplier frameGenerator;
+
+    private final Runnable idleGenerator;
+
+    private final int maxCatchUpFrames;
+
+    private volatile boolean running = false;
+
+    // Incremented at each start and stop: an emission loop runs only while the generation it was started with is current
+    private volatile long generation = 0;
+
+    // The thread running the emission, and whether it was created by this object
+    private volatile Thread thread;
+
+    private boolean ownedThread;
+
+    private final AtomicLong dataFrames = new AtomicLong(0);
+
+    private final AtomicLong idleFrames = new AtomicLong(0);
+
+    private final AtomicLong skippedFrames = new AtomicLong(0);
+
+    private final AtomicLong maxLatenessNanos = new AtomicLong(0);
+
+    private volatile long startTime = 0;
+
+    private volatile long lastEmissionTime = 0;
+
+    /**
+     * This method computes the frame rate corresponding to the provided bit rate.
+     *
+     * @param bitRate the bit rate on the channel, in bits per second
+     * @param channelFrameLength the length of the frame on the channel in bytes, including synchronisation marker and coding overhead
+     * @return the frame rate in frames per second
+     */
+    public static double frameRate(double bitRate, int channelFrameLength) {
+        if(channelFrameLength <= 0) {
+            throw new IllegalArgumentException("Channel frame length must be positive, got " + channelFrameLength);
+        }
+        return bitRate / (channelFrameLength * 8.0);
+    }
+
+    /**
+     * Create a pacer that pulls frames from the provided virtual channel, and generates an idle frame from the idle
+     * virtual channel when the virtual channel cannot emit a frame. The frames are emitted to the outputs registered to
+     * the virtual channels.
+     *
+     * @param frameRate the frame rate in frames per second
+     * @param vc the virtual channel, which shall be in pull mode
+     * @param idleVc the virtual channel generating the idle frames, which shall not have pending frames (e.g. a dedicated virtual channel)
+     * @param idlePattern the idle pattern
+     */
+    public FramePacer(double frameRate, AbstractSenderVirtualChannel<?> vc, AbstractSenderVirtualChannel<?> idleVc, byte[] idlePattern) {
+        this(frameRate, vc::pullNextFrame, () -> idleVc.dispatchIdle(idlePattern), DEFAULT_MAX_CATCH_UP_FRAMES);
+    }
+
+    /**
+     * Create a pacer.
+     *
+     * @param frameRate the frame rate in frames per second
+     * @param frameGenerator the generator of the frames: it returns true if a frame was emitted, false otherwise
+     * @param idleGenerator the generator of the idle frames, invoked when the frame generator does not emit a frame: can be null
+     * @param maxCatchUpFrames the maximum number of frames emitted back to back after a delay, must be positive
+     */
+    public FramePacer(double frameRate, BooleanSupplier frameGenerator, Runnable idleGenerator, int maxCatchUpFrames) {
+        if(!(frameRate > 0) || Double.isInfinite(frameRate)) {
+            throw new IllegalArgumentException("Frame rate must be positive, got " + frameRate);
+        }
+        if(frameGenerator == null) {
+            throw new NullPointerException("Frame generator cannot be null");
+        }
+        if(maxCatchUpFrames <= 0) {
+            throw new IllegalArgumentException("Maximum number of catch-up frames must be positive, got " + maxCatchUpFrames);
+        }
+        this.frameRate = frameRate;
+        this.intervalNanos = Math.max(1, Math.round(1_000_000_000.0 / frameRate));
+        this.frameGenerator = frameGenerator;
+        this.idleGenerator = idleGenerator;
+        this.maxCatchUpFrames = maxCatchUpFrames;
+    }
+
+    /**
+     * This method starts the emission on a new daemon thread.
+     *
+     * @throws IllegalStateException if the pacer is already running
+     */
+    public void start() {
+        start(null);
+    }
+
+    /**
+     * This method starts the emission on a new thread, created with the provided factory.
+     *
+     * @param threadFactory the factory of the thread, if null a daemon thread is created
+     * @throws IllegalStateException if the pacer is already running
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        if(this.running) {
+            throw new IllegalStateException("Frame pacer already running");
+        }
+        this.running = true;
+        long emitGeneration = ++this.generation;
+        Runnable emitter = () -> emit(emitGeneration);
+        Thread t;
+        if(threadFactory != null) {
+            t = threadFactory.newThread(emitter);
+        } else {
+            t = new Thread(emitter, "Frame pacer");
+            t.setDaemon(true);
+        }
+        this.thread = t;
+        this.ownedThread = true;
+        t.start();
+    }
+
+    /**
+     * This method runs the emission on the caller thread, until {@link FramePacer#stop()} is invoked.
+     *
+     * @throws IllegalStateException if the pacer is already running
+     */
+    @Override
+    public void run() {
+        long emitGeneration;
+        synchronized (this) {
+            if(this.running) {
+                throw new IllegalStateException("Frame pacer already running");
+            }
+            this.running = true;
+            emitGeneration = ++this.generation;
+            this.thread = Thread.currentThread();
+            this.ownedThread = false;
+        }
+        emit(emitGeneration);
+    }
+
+    /**
+     * This method stops the emission and waits for the emitting thread to terminate, if the pacer was started with
+     * {@link FramePacer#start()}.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        Thread t;
+        boolean join;
+        synchronized (this) {
+            this.running = false;
+            ++this.generation;
+            t = this.thread;
+            join = this.ownedThread;
+            this.thread = null;
+        }
+        if(t != null) {
+            LockSupport.unpark(t);
+            if(join && t != Thread.currentThread()) {
+                t.join();
+            }
+        }
+    }
+
+    /**
+     * This method returns whether the pacer is running.
+     *
+     * @return true if running, false otherwise
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    private void emit(long emitGeneration) {
+        try {
+            emitFrames(emitGeneration);
+        } finally {
+            synchronized (this) {
+                // Not running anymore, unless stopped (and possibly restarted) in the meantime
+                if(this.generation == emitGeneration) {
+                    this.running = false;
+                    ++this.generation;
+                    this.thread = null;
+                }
+            }
+        }
+    }
+
+    private void emitFrames(long emitGeneration) {
+        long start = System.nanoTime();
+        this.startTime = start;
+        long slot = 0;
+        // A stop followed by a restart does not resume this loop, even if it did not see the stop
+        while(this.generation == emitGeneration) {
+            long slotTime = start + slot * this.intervalNanos;
+            long remaining = slotTime - System.nanoTime();
+            while(remaining > 0 && this.generation == emitGeneration) {
+                if(remaining > SPIN_THRESHOLD_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+                remaining = slotTime - System.nanoTime();
+            }
+            if(this.generation != emitGeneration) {
+                break;
+            }
+            long lateness = -remaining;
+            if(lateness > this.maxCatchUpFrames * this.intervalNanos) {
+                // Too late: skip the older slots
+                long skipped = lateness / this.intervalNanos - this.maxCatchUpFrames;
+                this.skippedFrames.lazySet(this.skippedFrames.get() + skipped);
+                slot += skipped;
+            } else if(lateness > this.maxLatenessNanos.get()) {
+                this.maxLatenessNanos.lazySet(lateness);
+            }
+            emitFrame();
+            ++slot;
+        }
+    }
+
+    private void emitFrame() {
+        if(this.frameGenerator.getAsBoolean()) {
+            this.dataFrames.lazySet(this.dataFrames.get() + 1);
+        } else if(this.idleGenerator != null) {
+            this.idleGenerator.run();
+            this.idleFrames.lazySet(this.idleFrames.get() + 1);
+        }
+        this.lastEmissionTime = System.nanoTime();
+    }
+
+    /**
+     * This method returns the configured frame rate.
+     *
+     * @return the target frame rate in frames per second
+     */
+    public double getTargetFrameRate() {
+        return this.frameRate;
+    }
+
+    /**
+     * This method returns the frame rate actually achieved since the start of the emission.
+     *
+     * @return the emitted frame rate in frames per second, 0 if no frame was emitted
+     */
+    public double getEmittedFrameRate() {
+        long elapsed = this.lastEmissionTime - this.startTime;
+        long frames = getEmittedFrames();
+        // The first frame is emitted at time 0
+        return frames <= 1 || elapsed <= 0 ? 0 : (frames - 1) * 1_000_000_000.0 / elapsed;
+    }
+
+    /**
+     * This method returns the number of emitted frames, data and idle.
+     *
+     * @return the number of emitted frames
+     */
+    public long getEmittedFrames() {
+        return this.dataFrames.get() + this.idleFrames.get();
+    }
+
+    /**
+     * This method returns the number of frames emitted by the frame generator.
+     *
+     * @return the number of data frames
+     */
+    public long getDataFrames() {
+        return this.dataFrames.get();
+    }
+
+    /**
+     * This method returns the number of frames emitted by the idle generator.
+     *
+     * @return the number of idle frames
+     */
+    public long getIdleFrames() {
+        return this.idleFrames.get();
+    }
+
+    /**
+     * This method returns the number of frame slots skipped because the emission was too late.
+     *
+     * @return the number of skipped slots
+     */
+    public long getSkippedFrames() {
+        return this.skippedFrames.get();
+    }
+
+    /**
+     * This method returns the maximum delay between the scheduled time of a slot and the emission of its frame,
+     * excluding the slots emitted after skipping.
+     *
+     * @param unit the unit of the returned value
+     * @return the maximum delay
+     */
+    public long getMaxLateness(TimeUnit unit) {
+        return unit.convert(this.maxLatenessNanos.get(), TimeUnit.NANOSECONDS);
+    }
+}
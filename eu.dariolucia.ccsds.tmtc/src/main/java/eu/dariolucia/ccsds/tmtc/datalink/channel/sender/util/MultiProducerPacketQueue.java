@@ -0,0 +1,639 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.AbstractSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.IVirtualChannelDataProvider;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.BitstreamData;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.IPacket;
+import eu.dariolucia.ccsds.tmtc.util.MpscRingBuffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * This class allows several producer threads to feed the same sender virtual channel (in packet or encapsulation access
+ * mode) with packets, without locks. Producers insert packets into a bounded, lock-free multi-producer/single-consumer
+ * queue ({@link MpscRingBuffer}), and a single consumer thread packs them into frames. The consumer can be:
+ * <ul>
+ *     <li>a virtual channel in pull mode, using this object as {@link IVirtualChannelDataProvider}: packets are packed by
+ *     the thread invoking {@link AbstractSenderVirtualChannel#pullNextFrame()}, e.g. a {@link FramePacer};</li>
+ *     <li>a virtual channel in push mode, drained by the thread invoking
+ *     {@link MultiProducerPacketQueue#drainTo(AbstractSenderVirtualChannel, int)}, or by a dedicated packing thread
+ *     started with {@link MultiProducerPacketQueue#start(AbstractSenderVirtualChannel)}.</li>
+ * </ul>
+ * Each producer inserts packets through its own {@link Producer}, obtained with
+ * {@link MultiProducerPacketQueue#registerProducer(String, int)}, which limits the number of packets that the producer
+ * can have in the queue: when the limit is reached, the producer is rejected or waits, without affecting the other
+ * producers. The packets of the same producer are packed in insertion order, while the packets of different producers
+ * are interleaved in the order of insertion in the queue.
+ * <p>
+ * While the virtual channel is fed by this object, it shall not be used directly by other threads: the virtual channel
+ * itself is still not thread-safe. The statistics can be read by any thread.
+ */
+public class MultiProducerPacketQueue implements IVirtualChannelDataProvider {
+
+    /**
+     * Default capacity of the queue.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    /**
+     * Maximum number of packets dispatched at once to the virtual channel by the packing thread.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final int IDLE_SPINS = 100;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final MpscRingBuffer<QueuedPacket> ring;
+
+    private final List<Producer> producers = new CopyOnWriteArrayList<>();
+
+    // Packets dispatched at once to the virtual channel, used only by the consumer
+    private final List<IPacket> batch = new ArrayList<>();
+
+    private final AtomicInteger peakQueueDepth = new AtomicInteger(0);
+
+    // Written by the consumer
+    private final AtomicLong drainedPackets = new AtomicLong(0);
+
+    private final AtomicLong failedBatches = new AtomicLong(0);
+
+    private final AtomicLong failedPackets = new AtomicLong(0);
+
+    private volatile boolean running = false;
+
+    // The packing thread, if started
+    private volatile Thread thread;
+
+    private volatile boolean waiting = false;
+
+    /**
+     * Create a queue with the default capacity.
+     */
+    public MultiProducerPacketQueue() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Create a queue with the provided capacity, shared by all the producers.
+     *
+     * @param queueCapacity the minimum capacity of the queue, rounded up to the next power of two
+     */
+    public MultiProducerPacketQueue(int queueCapacity) {
+        this.ring = new MpscRingBuffer<>(queueCapacity);
+    }
+
+    /**
+     * This method registers a new producer. Producers can be registered at any time, by any thread.
+     *
+     * @param name the name of the producer, used for reporting purposes
+     * @param maxPendingPackets the maximum number of packets of the producer waiting in the queue, must be positive
+     * @return the producer
+     */
+    public Producer registerProducer(String name, int maxPendingPackets) {
+        if(name == null) {
+            throw new NullPointerException("Producer name cannot be null");
+        }
+        if(maxPendingPackets <= 0) {
+            throw new IllegalArgumentException("Maximum number of pending packets must be positive, got " + maxPendingPackets);
+        }
+        Producer producer = new Producer(name, maxPendingPackets);
+        this.producers.add(producer);
+        return producer;
+    }
+
+    /**
+     * This method returns the registered producers.
+     *
+     * @return the unmodifiable list of producers, in registration order
+     */
+    public List<Producer> getProducers() {
+        return Collections.unmodifiableList(this.producers);
+    }
+
+    /**
+     * This method removes up to maxPackets packets from the queue and dispatches them to the provided virtual channel,
+     * with a single invocation of {@link AbstractSenderVirtualChannel#dispatch(java.util.Collection)}. To be invoked
+     * by the consumer thread. If the dispatch fails, the removed packets are counted as failed and the exception is
+     * propagated.
+     *
+     * @param vc the virtual channel, in packet or encapsulation access mode
+     * @param maxPackets the maximum number of packets to dispatch, must be positive
+     * @return the number of dispatched packets
+     */
+    public int drainTo(AbstractSenderVirtualChannel<?> vc, int maxPackets) {
+        checkVirtualChannel(vc);
+        if(maxPackets <= 0) {
+            throw new IllegalArgumentException("Maximum number of packets must be positive, got " + maxPackets);
+        }
+        int drained = fillBatch(maxPackets);
+        if(drained > 0) {
+            try {
+                vc.dispatch(this.batch);
+                this.drainedPackets.lazySet(this.drainedPackets.get() + drained);
+            } catch (RuntimeException e) {
+                this.failedPackets.lazySet(this.failedPackets.get() + drained);
+                throw e;
+            } finally {
+                this.batch.clear();
+            }
+        }
+        return drained;
+    }
+
+    private int fillBatch(int maxPackets) {
+        QueuedPacket next;
+        while(this.batch.size() < maxPackets && (next = this.ring.poll()) != null) {
+            this.batch.add(taken(next));
+        }
+        return this.batch.size();
+    }
+
+    /**
+     * This method removes packets from the queue, up to the amount of data required to close the frame under
+     * construction, without exceeding maxNumBytesBeforeOverflow. Invoked by the virtual channel in pull mode, on the
+     * consumer thread.
+     * <p>
+     * A packet is always delivered, if present, even if longer than maxNumBytesBeforeOverflow: in such case, the
+     * virtual channel raises an {@link IllegalStateException}. Therefore, packets longer than the user data field of
+     * the frame shall be dispatched in push mode.
+     *
+     * @param virtualChannelId the virtual channel requesting the data
+     * @param availableSpaceInCurrentFrame the amount of data required to close and emit the transfer frame under construction
+     * @param maxNumBytesBeforeOverflow the maximum amount of bytes that the virtual channel can handle without overflow
+     * @return the list of packets, or null if the queue is empty
+     */
+    @Override
+    public List<IPacket> generateSpacePackets(int virtualChannelId, int availableSpaceInCurrentFrame, int maxNumBytesBeforeOverflow) {
+        List<IPacket> packets = null;
+        int size = 0;
+        QueuedPacket next;
+        while(size < availableSpaceInCurrentFrame && (next = this.ring.peek()) != null) {
+            int length = next.packet.getLength();
+            if(packets != null && size + length > maxNumBytesBeforeOverflow) {
+                break;
+            }
+            this.ring.poll();
+            if(packets == null) {
+                packets = new ArrayList<>();
+            }
+            packets.add(taken(next));
+            size += length;
+        }
+        if(packets != null) {
+            this.drainedPackets.lazySet(this.drainedPackets.get() + packets.size());
+        }
+        return packets;
+    }
+
+    /**
+     * This object provides only packets.
+     *
+     * @param virtualChannelId the virtual channel requesting the data
+     * @param availableSpaceInCurrentFrame the amount of data required to close and emit the transfer frame under construction
+     * @return null
+     */
+    @Override
+    public BitstreamData generateBitstreamData(int virtualChannelId, int availableSpaceInCurrentFrame) {
+        return null;
+    }
+
+    /**
+     * This object provides only packets.
+     *
+     * @param virtualChannelId the virtual channel requesting the data
+     * @param availableSpaceInCurrentFrame the amount of data required to close and emit the transfer frame under construction
+     * @return null
+     */
+    @Override
+    public byte[] generateData(int virtualChannelId, int availableSpaceInCurrentFrame) {
+        return null;
+    }
+
+    /**
+     * This method starts a daemon packing thread, which drains the queue into the provided virtual channel in push
+     * mode.
+     *
+     * @param vc the virtual channel, in packet or encapsulation access mode
+     * @throws IllegalStateException if the packing thread is already running
+     */
+    public void start(AbstractSenderVirtualChannel<?> vc) {
+        start(vc, null);
+    }
+
+    /**
+     * This method starts a packing thread, created with the provided factory, which drains the queue into the provided
+     * virtual channel in push mode, without error handler.
+     *
+     * @param vc the virtual channel, in packet or encapsulation access mode
+     * @param threadFactory the factory of the thread, if null a daemon thread is created
+     * @throws IllegalStateException if the packing thread is already running
+     */
+    public void start(AbstractSenderVirtualChannel<?> vc, ThreadFactory threadFactory) {
+        start(vc, threadFactory, null);
+    }
+
+    /**
+     * This method starts a packing thread, created with the provided factory, which drains the queue into the provided
+     * virtual channel in push mode. If the dispatch of a batch of packets raises an exception, the batch and its packets
+     * are counted as failed, the packets and the exception are passed to the error handler (e.g. to requeue the
+     * packets) and the packing continues. If no error handler is provided, the exception is passed to the uncaught
+     * exception handler of the packing thread.
+     * <p>
+     * If the packing thread is interrupted, it terminates without dispatching the packets still in the queue, and its
+     * interrupt flag is left set.
+     *
+     * @param vc the virtual channel, in packet or encapsulation access mode
+     * @param threadFactory the factory of the thread, if null a daemon thread is created
+     * @param errorHandler the handler of the failed batches, invoked on the packing thread with a copy of the batch, can be null
+     * @throws IllegalStateException if the packing thread is already running
+     */
+    public synchronized void start(AbstractSenderVirtualChannel<?> vc, ThreadFactory threadFactory, BiConsumer<List<IPacket>, RuntimeException> errorHandler) {
+        checkVirtualChannel(vc);
+        if(this.running) {
+            throw new IllegalStateException("Packing thread already running");
+        }
+        this.running = true;
+        Runnable task = () -> pack(vc, errorHandler);
+        Thread t;
+        if(threadFactory != null) {
+            t = threadFactory.newThread(task);
+        } else {
+            t = new Thread(task, "Packet queue packing for VC " + vc.getVirtualChannelId());
+            t.setDaemon(true);
+        }
+        this.thread = t;
+        t.start();
+    }
+
+    /**
+     * This method stops the packing thread, after the dispatch of the packets waiting in the queue, and waits for its
+     * termination. Packets inserted after the invocation of this method stay in the queue.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            this.running = false;
+            t = this.thread;
+            this.thread = null;
+        }
+        if(t != null) {
+            LockSupport.unpark(t);
+            if(t != Thread.currentThread()) {
+                t.join();
+            }
+        }
+    }
+
+    /**
+     * This method returns whether the packing thread is running.
+     *
+     * @return true if running, false otherwise
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * This method returns the capacity of the queue.
+     *
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity() {
+        return this.ring.capacity();
+    }
+
+    /**
+     * This method returns the number of packets waiting in the queue.
+     *
+     * @return the number of packets waiting in the queue
+     */
+    public int getQueueDepth() {
+        return this.ring.size();
+    }
+
+    /**
+     * This method returns the maximum number of packets observed in the queue.
+     *
+     * @return the maximum number of packets observed in the queue
+     */
+    public int getPeakQueueDepth() {
+        return this.peakQueueDepth.get();
+    }
+
+    /**
+     * This method returns the number of packets removed from the queue and delivered to the virtual channel by the
+     * consumer, excluding the failed packets.
+     *
+     * @return the number of packets removed from the queue and delivered
+     */
+    public long getDrainedPackets() {
+        return this.drainedPackets.get();
+    }
+
+    /**
+     * This method returns the number of batches of packets, whose dispatch by the packing thread raised an exception.
+     *
+     * @return the number of failed batches
+     */
+    public long getFailedBatches() {
+        return this.failedBatches.get();
+    }
+
+    /**
+     * This method returns the number of packets removed from the queue, whose dispatch raised an exception.
+     *
+     * @return the number of failed packets
+     */
+    public long getFailedPackets() {
+        return this.failedPackets.get();
+    }
+
+    private void checkVirtualChannel(AbstractSenderVirtualChannel<?> vc) {
+        if(vc == null) {
+            throw new NullPointerException("Virtual channel cannot be null");
+        }
+        if(vc.getMode() != VirtualChannelAccessMode.PACKET && vc.getMode() != VirtualChannelAccessMode.ENCAPSULATION) {
+            throw new IllegalArgumentException("Virtual channel " + vc.getVirtualChannelId() + " access mode " + vc.getMode() + " not supported, packet or encapsulation mode required");
+        }
+    }
+
+    private IPacket taken(QueuedPacket queued) {
+        queued.producer.pendingPackets.decrementAndGet();
+        return queued.packet;
+    }
+
+    private void pack(AbstractSenderVirtualChannel<?> vc, BiConsumer<List<IPacket>, RuntimeException> errorHandler) {
+        try {
+            packUntilStopped(vc, errorHandler);
+        } finally {
+            synchronized (this) {
+                // Not running anymore, unless stopped (and possibly restarted) in the meantime
+                if(this.thread == Thread.currentThread()) {
+                    this.running = false;
+                    this.thread = null;
+                }
+            }
+        }
+    }
+
+    private void packUntilStopped(AbstractSenderVirtualChannel<?> vc, BiConsumer<List<IPacket>, RuntimeException> errorHandler) {
+        int idleCount = 0;
+        // The interrupt flag is checked but not cleared
+        while(!Thread.currentThread().isInterrupted()) {
+            int drained = fillBatch(DEFAULT_BATCH_SIZE);
+            if(drained > 0) {
+                try {
+                    vc.dispatch(this.batch);
+                    this.drainedPackets.lazySet(this.drainedPackets.get() + drained);
+                } catch (RuntimeException e) {
+                    // Report and keep packing the next packets
+                    this.failedBatches.lazySet(this.failedBatches.get() + 1);
+                    this.failedPackets.lazySet(this.failedPackets.get() + drained);
+                    reportError(new ArrayList<>(this.batch), e, errorHandler);
+                } finally {
+                    this.batch.clear();
+                }
+                idleCount = 0;
+                continue;
+            }
+            if(!this.running && this.ring.isEmpty()) {
+                // Stopped and no more packets to dispatch
+                return;
+            }
+            if(++idleCount < IDLE_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                // The park is bounded, to cover a wakeup missed by the producers
+                this.waiting = true;
+                if(this.ring.isEmpty() && this.running) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                this.waiting = false;
+            }
+        }
+    }
+
+    private static void reportError(List<IPacket> packets, RuntimeException error, BiConsumer<List<IPacket>, RuntimeException> errorHandler) {
+        if(errorHandler != null) {
+            errorHandler.accept(packets, error);
+        } else {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, error);
+        }
+    }
+
+    private boolean insert(Producer producer, IPacket packet) {
+        // Reserve a place in the quota of the producer first
+        int pending;
+        do {
+            pending = producer.pendingPackets.get();
+            if(pending >= producer.maxPendingPackets) {
+                return false;
+            }
+        } while(!producer.pendingPackets.compareAndSet(pending, pending + 1));
+        if(!this.ring.offer(new QueuedPacket(packet, producer))) {
+            producer.pendingPackets.decrementAndGet();
+            return false;
+        }
+        updatePeak(producer.peakPendingPackets, pending + 1);
+        updatePeak(this.peakQueueDepth, this.ring.size());
+        if(this.waiting) {
+            Thread t = this.thread;
+            if(t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+        return true;
+    }
+
+    private static void updatePeak(AtomicInteger peak, int value) {
+        int current;
+        do {
+            current = peak.get();
+            if(value <= current) {
+                return;
+            }
+        } while(!peak.compareAndSet(current, value));
+    }
+
+    /**
+     * This class is the entry point of a producer into the {@link MultiProducerPacketQueue}. Its methods can be invoked by
+     * any thread, although it is typically used by a single thread.
+     */
+    public final class Producer {
+
+        private final String name;
+
+        private final int maxPendingPackets;
+
+        private final AtomicInteger pendingPackets = new AtomicInteger(0);
+
+        private final AtomicInteger peakPendingPackets = new AtomicInteger(0);
+
+        private final AtomicLong acceptedPackets = new AtomicLong(0);
+
+        private final AtomicLong rejectedPackets = new AtomicLong(0);
+
+        private Producer(String name, int maxPendingPackets) {
+            this.name = name;
+            this.maxPendingPackets = maxPendingPackets;
+        }
+
+        /**
+         * This method inserts the packet in the queue, if the producer did not reach its maximum number of pending
+         * packets and the queue is not full.
+         *
+         * @param packet the packet to insert, cannot be null
+         * @return true if the packet was inserted, false otherwise
+         */
+        public boolean offer(IPacket packet) {
+            if(packet == null) {
+                throw new NullPointerException("Packet cannot be null");
+            }
+            if(insert(this, packet)) {
+                this.acceptedPackets.incrementAndGet();
+                return true;
+            } else {
+                this.rejectedPackets.incrementAndGet();
+                return false;
+            }
+        }
+
+        /**
+         * This method inserts the packet in the queue, waiting if the producer reached its maximum number of pending
+         * packets or the queue is full.
+         *
+         * @param packet the packet to insert, cannot be null
+         * @param timeout the maximum time to wait
+         * @param unit the time unit of the timeout
+         * @return true if the packet was inserted, false if the timeout expired
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public boolean offer(IPacket packet, long timeout, TimeUnit unit) throws InterruptedException {
+            if(packet == null) {
+                throw new NullPointerException("Packet cannot be null");
+            }
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while(!insert(this, packet)) {
+                if(System.nanoTime() - deadline >= 0) {
+                    this.rejectedPackets.incrementAndGet();
+                    return false;
+                }
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+            this.acceptedPackets.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * This method returns the name of the producer.
+         *
+         * @return the name of the producer
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * This method returns the maximum number of packets of the producer waiting in the queue.
+         *
+         * @return the maximum number of pending packets
+         */
+        public int getMaxPendingPackets() {
+            return this.maxPendingPackets;
+        }
+
+        /**
+         * This method returns the number of packets of the producer waiting in the queue.
+         *
+         * @return the number of pending packets
+         */
+        public int getPendingPackets() {
+            return this.pendingPackets.get();
+        }
+
+        /**
+         * This method returns the maximum number of packets of the producer observed in the queue.
+         *
+         * @return the peak number of pending packets
+         */
+        public int getPeakPendingPackets() {
+            return this.peakPendingPackets.get();
+        }
+
+        /**
+         * This method returns the number of packets inserted in the queue.
+         *
+         * @return the number of accepted packets
+         */
+        public long getAcceptedPackets() {
+            return this.acceptedPackets.get();
+        }
+
+        /**
+         * This method returns the number of packets that could not be inserted in the queue.
+         *
+         * @return the number of rejected packets
+         */
+        public long getRejectedPackets() {
+            return this.rejectedPackets.get();
+        }
+
+        @Override
+        public String toString() {
+            return "Producer{" +
+                    "name='" + name + '\'' +
+                    ", maxPendingPackets=" + maxPendingPackets +
+                    ", pendingPackets=" + pendingPackets.get() +
+                    ", acceptedPackets=" + acceptedPackets.get() +
+                    ", rejectedPackets=" + rejectedPackets.get() +
+                    '}';
+        }
+    }
+
+    private static final class QueuedPacket {
+
+        private final IPacket packet;
+
+        private final Producer producer;
+
+        private QueuedPacket(IPacket packet, Producer producer) {
+            this.packet = packet;
+            this.producer = producer;
+        }
+    }
+}
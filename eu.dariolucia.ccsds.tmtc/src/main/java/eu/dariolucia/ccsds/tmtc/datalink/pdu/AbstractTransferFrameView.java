@@ -0,0 +1,304 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.pdu;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.Crc16Algorithm;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * This class represents an abstraction of a re-pointable, read-only view on a transfer frame stored in a byte array.
+ * Differently from {@link AbstractTransferFrame}, a view does not copy nor decode the frame when it is wrapped: the
+ * header fields are read from the underlying array when the related getter is called, and the checks that are
+ * expensive to compute (e.g. the FECF verification) are performed on first access and cached until the view is
+ * wrapped around a different frame. A view does not carry annotations.
+ *
+ * A single view object can therefore be used to inspect, route or filter a stream of frames without allocating any
+ * object per frame. If the frame must be retained (e.g. to be delivered to a virtual channel), the {@link #toFrame()}
+ * method shall be used to create the equivalent {@link AbstractTransferFrame} object, which owns a copy of the frame data.
+ *
+ * Since the view does not own the underlying array, the content of the array shall not be changed while the view is
+ * in use. The wrapping method checks only the array boundaries: the full validation of the frame content is performed
+ * by {@link #toFrame()}, which raises an {@link IllegalArgumentException} if the frame cannot be decoded.
+ *
+ * This class is not thread-safe.
+ */
+public abstract class AbstractTransferFrameView {
+
+    private static final byte VALIDITY_UNKNOWN = 0;
+    private static final byte VALIDITY_VALID = 1;
+    private static final byte VALIDITY_INVALID = 2;
+
+    /**
+     * Frame error control field presence flag.
+     */
+    protected final boolean fecfPresent;
+
+    /**
+     * The array containing the frame, null if the view was never wrapped.
+     */
+    protected byte[] data;
+
+    /**
+     * The position of the first byte of the frame in the array.
+     */
+    protected int offset;
+
+    /**
+     * The length of the frame.
+     */
+    protected int length;
+
+    private byte validity = VALIDITY_UNKNOWN;
+
+    /**
+     * Constructor of the transfer frame view.
+     *
+     * @param fecfPresent true if the FECF is present, false otherwise
+     */
+    protected AbstractTransferFrameView(boolean fecfPresent) {
+        this.fecfPresent = fecfPresent;
+    }
+
+    /**
+     * This method points the view to the frame stored in the provided array, at the provided offset and length. Any
+     * information cached from the previously wrapped frame is discarded.
+     *
+     * @param data the array containing the frame
+     * @param offset the position of the first byte of the frame in the array
+     * @param length the length of the frame
+     * @return this view
+     * @throws NullPointerException if data is null
+     * @throws IndexOutOfBoundsException if offset and length do not identify a region of the array
+     * @throws IllegalArgumentException if the length is smaller than the length of the primary header and of the FECF
+     */
+    public abstract AbstractTransferFrameView wrap(byte[] data, int offset, int length);
+
+    /**
+     * This method points the view to the frame, which occupies the full provided array.
+     *
+     * @param data the array containing the frame
+     * @return this view
+     * @see #wrap(byte[], int, int)
+     */
+    public AbstractTransferFrameView wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * This method performs the boundary checks and sets the view on the provided region. Subclasses shall call this
+     * method from their implementation of {@link #wrap(byte[], int, int)}.
+     *
+     * @param data the array containing the frame
+     * @param offset the position of the first byte of the frame in the array
+     * @param length the length of the frame
+     * @param primaryHeaderLength the length of the primary header of the frame type
+     */
+    protected void setView(byte[] data, int offset, int length, int primaryHeaderLength) {
+        if(data == null) {
+            throw new NullPointerException("Data cannot be null");
+        }
+        Objects.checkFromIndexSize(offset, length, data.length);
+        if(length < primaryHeaderLength + (fecfPresent ? 2 : 0)) {
+            throw new IllegalArgumentException("Frame length too small: " + length);
+        }
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.validity = VALIDITY_UNKNOWN;
+    }
+
+    /**
+     * This method returns the direct reference to the array containing the frame.
+     *
+     * @return the array containing the frame, or null if the view was never wrapped
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * This method returns the position of the first byte of the frame in the array.
+     *
+     * @return the offset of the frame
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * This method returns the length of the frame.
+     *
+     * @return the length of the transfer frame in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * This method returns a copy of the frame.
+     *
+     * @return the frame byte array (copy)
+     */
+    public byte[] getFrameCopy() {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * This method returns whether the FECF is present or not.
+     *
+     * @return true if the FECF is present, otherwise false
+     */
+    public boolean isFecfPresent() {
+        return fecfPresent;
+    }
+
+    /**
+     * This method returns the value of the FECF as short.
+     *
+     * @return the FECF value as short
+     * @throws IllegalStateException if the FECF is not present
+     */
+    public short getFecf() {
+        if (fecfPresent) {
+            return (short) readUnsignedShort(length - 2);
+        } else {
+            throw new IllegalStateException("FECF not present");
+        }
+    }
+
+    /**
+     * This method returns the validity of the frame: if the FECF is present, then a frame is valid if the FECF is OK.
+     * If the FECF is not present, then this method always returns true. The FECF is verified at the first invocation of
+     * this method after the view is wrapped.
+     *
+     * @return true if the frame is correct, otherwise false
+     */
+    public boolean isValid() {
+        if(!fecfPresent) {
+            return true;
+        }
+        if(validity == VALIDITY_UNKNOWN) {
+            short crc16 = Crc16Algorithm.getCrc16(data, offset, length - 2);
+            validity = crc16 == getFecf() ? VALIDITY_VALID : VALIDITY_INVALID;
+        }
+        return validity == VALIDITY_VALID;
+    }
+
+    /**
+     * This method returns the transfer frame version number.
+     *
+     * @return the transfer frame version number
+     */
+    public abstract short getTransferFrameVersionNumber();
+
+    /**
+     * This method returns the spacecraft id.
+     *
+     * @return the spacecraft id
+     */
+    public abstract short getSpacecraftId();
+
+    /**
+     * This method returns the virtual channel id.
+     *
+     * @return the virtual channel id
+     */
+    public abstract short getVirtualChannelId();
+
+    /**
+     * This method returns the virtual channel frame count.
+     *
+     * @return the virtual channel frame count
+     */
+    public abstract int getVirtualChannelFrameCount();
+
+    /**
+     * This method returns the presence of the OCF.
+     *
+     * @return true if the OCF is present, otherwise false
+     */
+    public abstract boolean isOcfPresent();
+
+    /**
+     * This method returns the index of the byte from which the OCF starts. The offset is computed from the beginning
+     * of the frame (not from the beginning of the array).
+     *
+     * @return the start index of the OCF, or -1 if the OCF is not present
+     */
+    public int getOcfStart() {
+        if(isOcfPresent()) {
+            return length - 4 - (fecfPresent ? 2 : 0);
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * This method returns the index of the byte from which the transfer frame data field starts. The offset is computed
+     * from the beginning of the frame (not from the beginning of the array).
+     *
+     * @return the start index of the frame data field
+     */
+    public abstract int getDataFieldStart();
+
+    /**
+     * This method returns the length of the data field.
+     *
+     * @return the length of the data field (without OCF, FECF and security info, if present)
+     */
+    public abstract int getDataFieldLength();
+
+    /**
+     * This method returns true if the frame is an idle frame, false otherwise.
+     *
+     * @return true if the frame is an idle frame, false otherwise
+     */
+    public abstract boolean isIdleFrame();
+
+    /**
+     * This method decodes the frame and returns the equivalent {@link AbstractTransferFrame} object. The returned
+     * object owns a copy of the frame, therefore it is not affected by later changes to the underlying array or to
+     * this view.
+     *
+     * @return the decoded transfer frame
+     * @throws IllegalArgumentException if the frame cannot be decoded
+     */
+    public abstract AbstractTransferFrame toFrame();
+
+    /**
+     * This method returns the unsigned value of the byte at the provided position from the beginning of the frame.
+     *
+     * @param position the position in the frame
+     * @return the unsigned byte value
+     */
+    protected int readUnsignedByte(int position) {
+        return Byte.toUnsignedInt(data[offset + position]);
+    }
+
+    /**
+     * This method returns the unsigned value of the big endian short at the provided position from the beginning of the
+     * frame.
+     *
+     * @param position the position in the frame
+     * @return the unsigned short value
+     */
+    protected int readUnsignedShort(int position) {
+        return (Byte.toUnsignedInt(data[offset + position]) << 8) | Byte.toUnsignedInt(data[offset + position + 1]);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.pdu;
+
+import static eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame.*;
+
+/**
+ * Re-pointable view on an AOS transfer frame, compliant to CCSDS 732.0-B-3. Fields are read from the underlying array
+ * on access, see {@link AbstractTransferFrameView} for the details. The FHEC, if present, is verified at the first
+ * invocation of {@link #isValidHeader()} after the view is wrapped.
+ */
+public class AosTransferFrameView extends AbstractTransferFrameView {
+
+    private static final byte VALIDITY_UNKNOWN = 0;
+    private static final byte VALIDITY_VALID = 1;
+    private static final byte VALIDITY_INVALID = 2;
+
+    private static final int[] FHEC_OCTETS = new int[] { 0, 1, 5, 6, 7 };
+
+    private final boolean frameHeaderErrorControlPresent;
+    private final int transferFrameInsertZoneLength;
+    private final UserDataType userDataType;
+    private final boolean ocfPresent;
+    private final int securityHeaderLength;
+    private final int securityTrailerLength;
+
+    private final byte[] fhecCodeword = new byte[10];
+
+    private byte headerValidity = VALIDITY_UNKNOWN;
+
+    /**
+     * Constructor of an AOS transfer frame view, assuming no security protocol used.
+     *
+     * @param frameHeaderErrorControlPresent true if the FHEC is present, false otherwise
+     * @param transferFrameInsertZoneLength size of the insert zone field in bytes, 0 if not present
+     * @param userDataType user data type, depending on the channel access service: M_PDU, B_PDU, VCA or IDLE for VC 63 frames
+     * @param ocfPresent true if the OCF is present, false otherwise
+     * @param fecfPresent true if the FECF is present, false otherwise
+     */
+    public AosTransferFrameView(boolean frameHeaderErrorControlPresent, int transferFrameInsertZoneLength, UserDataType userDataType, boolean ocfPresent, boolean fecfPresent) {
+        this(frameHeaderErrorControlPresent, transferFrameInsertZoneLength, userDataType, ocfPresent, fecfPresent, 0, 0);
+    }
+
+    /**
+     * Constructor of an AOS transfer frame view.
+     *
+     * @param frameHeaderErrorControlPresent true if the FHEC is present, false otherwise
+     * @param transferFrameInsertZoneLength size of the insert zone field in bytes, 0 if not present
+     * @param userDataType user data type, depending on the channel access service: M_PDU, B_PDU, VCA or IDLE for VC 63 frames
+     * @param ocfPresent true if the OCF is present, false otherwise
+     * @param fecfPresent true if the FECF is present, false otherwise
+     * @param securityHeaderLength size of the security header length in bytes, 0 if not present
+     * @param securityTrailerLength size of the security trailer length in bytes, 0 if not present
+     */
+    public AosTransferFrameView(boolean frameHeaderErrorControlPresent, int transferFrameInsertZoneLength, UserDataType userDataType, boolean ocfPresent, boolean fecfPresent, int securityHeaderLength, int securityTrailerLength) {
+        super(fecfPresent);
+        if(userDataType == null) {
+            throw new NullPointerException("User data type cannot be null");
+        }
+        this.frameHeaderErrorControlPresent = frameHeaderErrorControlPresent;
+        this.transferFrameInsertZoneLength = transferFrameInsertZoneLength;
+        this.userDataType = userDataType;
+        this.ocfPresent = ocfPresent;
+        this.securityHeaderLength = securityHeaderLength;
+        this.securityTrailerLength = securityTrailerLength;
+    }
+
+    @Override
+    public AosTransferFrameView wrap(byte[] data, int offset, int length) {
+        setView(data, offset, length, AOS_PRIMARY_HEADER_LENGTH + (frameHeaderErrorControlPresent ? AOS_PRIMARY_HEADER_FHEC_LENGTH : 0));
+        this.headerValidity = VALIDITY_UNKNOWN;
+        return this;
+    }
+
+    @Override
+    public AosTransferFrameView wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    @Override
+    public short getTransferFrameVersionNumber() {
+        return (short) (readUnsignedByte(0) >>> 6);
+    }
+
+    @Override
+    public short getSpacecraftId() {
+        return (short) ((readUnsignedShort(0) & 0x3FC0) >>> 6);
+    }
+
+    @Override
+    public short getVirtualChannelId() {
+        return (short) (readUnsignedByte(1) & 0x3F);
+    }
+
+    @Override
+    public int getVirtualChannelFrameCount() {
+        return (readUnsignedByte(2) << 16) | readUnsignedShort(3);
+    }
+
+    /**
+     * This method returns the value of the replay flag.
+     *
+     * @return the value of the replay flag
+     */
+    public boolean isReplayFlag() {
+        return (readUnsignedByte(5) & 0x80) != 0;
+    }
+
+    /**
+     * This method returns the value of the virtual channel frame count usage flag.
+     *
+     * @return the value of the virtual channel frame count usage flag
+     */
+    public boolean isVirtualChannelFrameCountUsageFlag() {
+        return (readUnsignedByte(5) & 0x40) != 0;
+    }
+
+    /**
+     * This method returns the value of the virtual channel frame count cycle.
+     *
+     * @return the value of the virtual channel frame count cycle
+     */
+    public byte getVirtualChannelFrameCountCycle() {
+        return (byte) (readUnsignedByte(5) & 0x0F);
+    }
+
+    /**
+     * This method returns whether the FHEC field is present.
+     *
+     * @return true if the FHEC is present, false otherwise.
+     */
+    public boolean isFrameHeaderErrorControlPresent() {
+        return frameHeaderErrorControlPresent;
+    }
+
+    /**
+     * This method returns the validity of the frame header: if the FHEC is present, the header is valid if the FHEC
+     * is OK. If the FHEC is not present, this method always returns true.
+     *
+     * @return true if the frame header is correct, otherwise false
+     */
+    public boolean isValidHeader() {
+        if(!frameHeaderErrorControlPresent) {
+            return true;
+        }
+        if(headerValidity == VALIDITY_UNKNOWN) {
+            // Convert octets 0, 1 and 5, 6 and 7 into an array of 10 integers, J=4 bits, reversed
+            for(int i = 0; i < FHEC_OCTETS.length; ++i) {
+                int b = readUnsignedByte(FHEC_OCTETS[i]);
+                fhecCodeword[i * 2] = (byte) (b >>> 4);
+                fhecCodeword[i * 2 + 1] = (byte) (b & 0x0F);
+            }
+            headerValidity = AOS_FRAME_HEADER_ERROR_CONTROL_RS_UTIL.decodeCodeword(fhecCodeword, true) != null ? VALIDITY_VALID : VALIDITY_INVALID;
+        }
+        return headerValidity == VALIDITY_VALID;
+    }
+
+    /**
+     * This method returns the user data type of the frames, as provided at construction time.
+     *
+     * @return the user data type
+     */
+    public UserDataType getUserDataType() {
+        return userDataType;
+    }
+
+    /**
+     * This method returns the length of the insert zone, as provided at construction time.
+     *
+     * @return the length of the insert zone in bytes
+     */
+    public int getInsertZoneLength() {
+        return transferFrameInsertZoneLength;
+    }
+
+    @Override
+    public boolean isOcfPresent() {
+        return ocfPresent;
+    }
+
+    @Override
+    public int getDataFieldStart() {
+        return AOS_PRIMARY_HEADER_LENGTH + (frameHeaderErrorControlPresent ? AOS_PRIMARY_HEADER_FHEC_LENGTH : 0) + transferFrameInsertZoneLength + securityHeaderLength;
+    }
+
+    @Override
+    public int getDataFieldLength() {
+        return length - getDataFieldStart() - securityTrailerLength - (ocfPresent ? 4 : 0) - (fecfPresent ? 2 : 0);
+    }
+
+    /**
+     * This method returns the value of the first header pointer for M_PDU frame types.
+     *
+     * @return the value of the first header pointer, or -1 if the user data type is not M_PDU
+     */
+    public short getFirstHeaderPointer() {
+        if(userDataType != UserDataType.M_PDU) {
+            return -1;
+        }
+        return (short) (readUnsignedShort(getDataFieldStart()) & 0x07FF);
+    }
+
+    /**
+     * This method returns whether the frame does not contain the start of a packet, for M_PDU frame types.
+     *
+     * @return true if the frame does not contain the start of a packet, false otherwise
+     */
+    public boolean isNoStartPacket() {
+        return getFirstHeaderPointer() == AOS_M_PDU_FIRST_HEADER_POINTER_NO_PACKET;
+    }
+
+    /**
+     * This method returns the value of the bitstream data pointer for B_PDU frame types.
+     *
+     * @return the value of the bitstream data pointer, or -1 if the user data type is not B_PDU
+     */
+    public short getBitstreamDataPointer() {
+        if(userDataType != UserDataType.B_PDU) {
+            return -1;
+        }
+        return (short) (readUnsignedShort(getDataFieldStart()) & 0x3FFF);
+    }
+
+    @Override
+    public boolean isIdleFrame() {
+        // Same precedence as in AosTransferFrame: the data pointers, if present, override the VC 63 convention
+        switch (userDataType) {
+            case M_PDU:
+                return getFirstHeaderPointer() == AOS_M_PDU_FIRST_HEADER_POINTER_IDLE;
+            case B_PDU:
+                return getBitstreamDataPointer() == AOS_B_PDU_FIRST_HEADER_POINTER_IDLE;
+            default:
+                return getVirtualChannelId() == 63;
+        }
+    }
+
+    @Override
+    public AosTransferFrame toFrame() {
+        return new AosTransferFrame(getFrameCopy(), frameHeaderErrorControlPresent, transferFrameInsertZoneLength, userDataType, ocfPresent, fecfPresent, securityHeaderLength, securityTrailerLength);
+    }
+}
@@ -206,7 +206,7 @@ public class TcTransferFrame extends AbstractTransferFrame {
         // Next 2 octets
         twoOctets = in.getShort();
 
-        virtualChannelId = (short) ((twoOctets & (short) 0xFC00) >> 10);
+        virtualChannelId = (short) ((twoOctets & 0xFC00) >> 10);
 
         // At this stage, you know if the TC frame has segmentation active (only if not BC)
         this.segmented = getFrameType() != FrameType.BC && segmented.apply(virtualChannelId);
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.pdu;
+
+import java.util.function.IntFunction;
+
+import static eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrame.TC_PRIMARY_HEADER_LENGTH;
+
+/**
+ * Re-pointable view on a TC transfer frame, compliant to CCSDS 232.0-B-3. Fields are read from the underlying array
+ * on access, see {@link AbstractTransferFrameView} for the details.
+ *
+ * If the wrapped region is longer than the frame length reported in the TC frame header (e.g. virtual fill bytes
+ * resulting from the CLTU decoding), the view is restricted to the length reported in the header.
+ */
+public class TcTransferFrameView extends AbstractTransferFrameView {
+
+    private static final TcTransferFrame.SequenceFlagType[] SEQUENCE_FLAGS = TcTransferFrame.SequenceFlagType.values();
+
+    private final IntFunction<Boolean> segmented;
+    private final int securityHeaderLength;
+    private final int securityTrailerLength;
+
+    /**
+     * Constructor of a TC transfer frame view, assuming no security fields.
+     *
+     * @param segmented function that returns true if TC segmentation is used, it depends on the VC ID (CCSDS 232.0-B-3, 4.1.3.2.2.1.2)
+     * @param fecfPresent true if FECF is present
+     */
+    public TcTransferFrameView(IntFunction<Boolean> segmented, boolean fecfPresent) {
+        this(segmented, fecfPresent, 0, 0);
+    }
+
+    /**
+     * Constructor of a TC transfer frame view.
+     *
+     * @param segmented function that returns true if TC segmentation is used, it depends on the VC ID (CCSDS 232.0-B-3, 4.1.3.2.2.1.2)
+     * @param fecfPresent true if FECF is present
+     * @param securityHeaderLength length of the security header, 0 to disable
+     * @param securityTrailerLength length of the security trailer, 0 to disable
+     */
+    public TcTransferFrameView(IntFunction<Boolean> segmented, boolean fecfPresent, int securityHeaderLength, int securityTrailerLength) {
+        super(fecfPresent);
+        if(segmented == null) {
+            throw new NullPointerException("Segmentation function cannot be null");
+        }
+        this.segmented = segmented;
+        this.securityHeaderLength = securityHeaderLength;
+        this.securityTrailerLength = securityTrailerLength;
+    }
+
+    @Override
+    public TcTransferFrameView wrap(byte[] data, int offset, int length) {
+        setView(data, offset, length, TC_PRIMARY_HEADER_LENGTH);
+        int frameLength = getFrameLength();
+        if(frameLength < length) {
+            // Remove virtual fill
+            this.length = frameLength;
+        }
+        return this;
+    }
+
+    @Override
+    public TcTransferFrameView wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    @Override
+    public short getTransferFrameVersionNumber() {
+        return (short) (readUnsignedByte(0) >>> 6);
+    }
+
+    /**
+     * This method returns the value of the bypass flag.
+     *
+     * @return the value of the bypass flag
+     */
+    public boolean isBypassFlag() {
+        return (readUnsignedByte(0) & 0x20) != 0;
+    }
+
+    /**
+     * This method returns the value of the control command flag.
+     *
+     * @return the value of the control command flag
+     */
+    public boolean isControlCommandFlag() {
+        return (readUnsignedByte(0) & 0x10) != 0;
+    }
+
+    /**
+     * This method returns the type of the TC frame, derived from the bypass flag and the control command flag.
+     *
+     * @return the type of the TC frame
+     */
+    public TcTransferFrame.FrameType getFrameType() {
+        if(isBypassFlag()) {
+            return isControlCommandFlag() ? TcTransferFrame.FrameType.BC : TcTransferFrame.FrameType.BD;
+        } else {
+            return isControlCommandFlag() ? TcTransferFrame.FrameType.RESERVED : TcTransferFrame.FrameType.AD;
+        }
+    }
+
+    @Override
+    public short getSpacecraftId() {
+        return (short) (readUnsignedShort(0) & 0x03FF);
+    }
+
+    @Override
+    public short getVirtualChannelId() {
+        return (short) (readUnsignedByte(2) >>> 2);
+    }
+
+    /**
+     * This method returns the frame length as reported in the TC frame header.
+     *
+     * @return the frame length field + 1
+     */
+    public int getFrameLength() {
+        return (readUnsignedShort(2) & 0x03FF) + 1;
+    }
+
+    @Override
+    public int getVirtualChannelFrameCount() {
+        return readUnsignedByte(4);
+    }
+
+    /**
+     * This method reports whether the TC frame contains TC segments or not.
+     *
+     * @return true if the TC frame contains TC segments, false otherwise
+     */
+    public boolean isSegmented() {
+        return getFrameType() != TcTransferFrame.FrameType.BC && segmented.apply(getVirtualChannelId());
+    }
+
+    /**
+     * This method returns the MAP ID of the TC segment.
+     *
+     * @return the MAP ID, or -1 if the frame does not contain TC segments
+     */
+    public byte getMapId() {
+        return isSegmented() ? (byte) (readUnsignedByte(TC_PRIMARY_HEADER_LENGTH) & 0x3F) : -1;
+    }
+
+    /**
+     * This method returns the sequence flag of the TC segment.
+     *
+     * @return the sequence flag, or null if the frame does not contain TC segments
+     */
+    public TcTransferFrame.SequenceFlagType getSequenceFlag() {
+        return isSegmented() ? SEQUENCE_FLAGS[readUnsignedByte(TC_PRIMARY_HEADER_LENGTH) >>> 6] : null;
+    }
+
+    @Override
+    public boolean isOcfPresent() {
+        return false;
+    }
+
+    @Override
+    public int getDataFieldStart() {
+        if(getFrameType() == TcTransferFrame.FrameType.BC) {
+            return TC_PRIMARY_HEADER_LENGTH;
+        } else {
+            return TC_PRIMARY_HEADER_LENGTH + (isSegmented() ? 1 : 0) + securityHeaderLength;
+        }
+    }
+
+    @Override
+    public int getDataFieldLength() {
+        int trailer = getFrameType() == TcTransferFrame.FrameType.BC ? 0 : securityTrailerLength;
+        return length - getDataFieldStart() - trailer - (fecfPresent ? 2 : 0);
+    }
+
+    /**
+     * This method returns whether the frame is an idle frame. TC frames are never idle, so this method always
+     * returns false.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isIdleFrame() {
+        return false;
+    }
+
+    @Override
+    public TcTransferFrame toFrame() {
+        return new TcTransferFrame(getFrameCopy(), segmented, fecfPresent, securityHeaderLength, securityTrailerLength);
+    }
+}
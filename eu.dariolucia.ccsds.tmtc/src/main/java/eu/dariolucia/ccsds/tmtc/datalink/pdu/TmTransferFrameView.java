@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.pdu;
+
+import static eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame.TM_FIRST_HEADER_POINTER_IDLE;
+import static eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame.TM_FIRST_HEADER_POINTER_NO_PACKET;
+import static eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame.TM_PRIMARY_HEADER_LENGTH;
+
+/**
+ * Re-pointable view on a TM transfer frame, compliant to CCSDS 132.0-B-2. Fields are read from the underlying array
+ * on access, see {@link AbstractTransferFrameView} for the details.
+ */
+public class TmTransferFrameView extends AbstractTransferFrameView {
+
+    private final int securityHeaderLength;
+    private final int securityTrailerLength;
+
+    /**
+     * Constructor of a TM transfer frame view, assuming no security protocol used.
+     *
+     * @param fecfPresent true if the FECF is present, false otherwise
+     */
+    public TmTransferFrameView(boolean fecfPresent) {
+        this(fecfPresent, 0, 0);
+    }
+
+    /**
+     * Constructor of a TM transfer frame view.
+     *
+     * @param fecfPresent true if the FECF is present, false otherwise
+     * @param securityHeaderLength size of the security header length in bytes, 0 if not present
+     * @param securityTrailerLength size of the security trailer length in bytes, 0 if not present
+     */
+    public TmTransferFrameView(boolean fecfPresent, int securityHeaderLength, int securityTrailerLength) {
+        super(fecfPresent);
+        this.securityHeaderLength = securityHeaderLength;
+        this.securityTrailerLength = securityTrailerLength;
+    }
+
+    @Override
+    public TmTransferFrameView wrap(byte[] data, int offset, int length) {
+        setView(data, offset, length, TM_PRIMARY_HEADER_LENGTH);
+        return this;
+    }
+
+    @Override
+    public TmTransferFrameView wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    @Override
+    public short getTransferFrameVersionNumber() {
+        return (short) (readUnsignedByte(0) >>> 6);
+    }
+
+    @Override
+    public short getSpacecraftId() {
+        return (short) ((readUnsignedShort(0) & 0x3FF0) >>> 4);
+    }
+
+    @Override
+    public short getVirtualChannelId() {
+        return (short) ((readUnsignedByte(1) & 0x0E) >>> 1);
+    }
+
+    @Override
+    public boolean isOcfPresent() {
+        return (readUnsignedByte(1) & 0x01) != 0;
+    }
+
+    /**
+     * This method returns the value of the master channel frame count.
+     *
+     * @return the value of the master channel frame count field
+     */
+    public int getMasterChannelFrameCount() {
+        return readUnsignedByte(2);
+    }
+
+    @Override
+    public int getVirtualChannelFrameCount() {
+        return readUnsignedByte(3);
+    }
+
+    /**
+     * This method returns the value of the secondary header flag.
+     *
+     * @return true if the secondary header is present, false otherwise
+     */
+    public boolean isSecondaryHeaderPresent() {
+        return (readUnsignedByte(4) & 0x80) != 0;
+    }
+
+    /**
+     * This method returns the value of the synchronisation flag.
+     *
+     * @return the value of the synchronisation flag
+     */
+    public boolean isSynchronisationFlag() {
+        return (readUnsignedByte(4) & 0x40) != 0;
+    }
+
+    /**
+     * This method returns the value of the packet order flag.
+     *
+     * @return the value of the packet order flag
+     */
+    public boolean isPacketOrderFlag() {
+        return (readUnsignedByte(4) & 0x20) != 0;
+    }
+
+    /**
+     * This method returns the value of the segment length identifier.
+     *
+     * @return the value of the segment length identifier
+     */
+    public byte getSegmentLengthIdentifier() {
+        return (byte) ((readUnsignedByte(4) & 0x18) >>> 3);
+    }
+
+    /**
+     * This method returns the value of the first header pointer.
+     *
+     * @return the value of the first header pointer
+     */
+    public short getFirstHeaderPointer() {
+        return (short) (readUnsignedShort(4) & 0x07FF);
+    }
+
+    /**
+     * This method returns whether the frame does not contain the start of a packet.
+     *
+     * @return true if the frame does not contain the start of a packet, false otherwise
+     */
+    public boolean isNoStartPacket() {
+        return getFirstHeaderPointer() == TM_FIRST_HEADER_POINTER_NO_PACKET;
+    }
+
+    @Override
+    public boolean isIdleFrame() {
+        return getFirstHeaderPointer() == TM_FIRST_HEADER_POINTER_IDLE;
+    }
+
+    /**
+     * This method returns the value of the secondary header length. The value is meaningful only if the
+     * secondary header is present.
+     *
+     * @return the value of the secondary header length, 0 if the secondary header is not present
+     */
+    public byte getSecondaryHeaderLength() {
+        return isSecondaryHeaderPresent() ? (byte) (readUnsignedByte(TM_PRIMARY_HEADER_LENGTH) & 0x3F) : 0;
+    }
+
+    @Override
+    public int getDataFieldStart() {
+        int start = TM_PRIMARY_HEADER_LENGTH;
+        if(isSecondaryHeaderPresent()) {
+            start += 1 + getSecondaryHeaderLength();
+        }
+        return start + securityHeaderLength;
+    }
+
+    @Override
+    public int getDataFieldLength() {
+        return length - getDataFieldStart() - securityTrailerLength - (isOcfPresent() ? 4 : 0) - (fecfPresent ? 2 : 0);
+    }
+
+    @Override
+    public TmTransferFrame toFrame() {
+        return new TmTransferFrame(getFrameCopy(), fecfPresent, securityHeaderLength, securityTrailerLength);
+    }
+}
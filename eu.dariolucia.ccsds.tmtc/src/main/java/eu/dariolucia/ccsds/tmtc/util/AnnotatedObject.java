@@ -17,29 +17,54 @@
 package eu.dariolucia.ccsds.tmtc.util;
 
 import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 
 /**
  * A binary object (i.e. with a length) that allows to attach annotations in the form of key-value pairs.
  *
+ * Since most objects never carry annotations, the storage is allocated only when the first annotation is set: up to
+ * {@link #INLINE_ANNOTATIONS} annotations are stored in a small array, larger sets of annotations are moved to a map.
+ * In all cases, the insertion order of the annotations is preserved. Keys can be any object (typically strings): the
+ * {@link AnnotationKey} class provides typed keys, which can be used with the typed accessors.
+ *
  * This class is not thread-safe.
  */
 public abstract class AnnotatedObject implements Serializable {
 
+	/**
+	 * Number of annotations stored inline, before moving the annotations to a map.
+	 */
+	public static final int INLINE_ANNOTATIONS = 4;
+
 	public abstract int getLength();
 
-	// Annotations
-	private final Map<Object, Object> annotations = new LinkedHashMap<>();
+	// Annotations: key/value pairs in consecutive positions, allocated on first use
+	private Object[] annotations;
+	private int annotationCount;
+	// Annotations, if more than INLINE_ANNOTATIONS are set
+	private Map<Object, Object> annotationMap;
+	// View of the annotation keys, created on first use
+	private transient Set<Object> annotationKeySet;
 
 	/**
-	 * This method returns the set of keys present for the registered annotations.
+	 * This method returns the set of keys present for the registered annotations. The returned set is an unmodifiable
+	 * view, which reflects later changes to the annotations.
 	 *
 	 * @return the set of annotation keys
 	 */
 	public final Set<Object> getAnnotationKeys() {
-		return this.annotations.keySet();
+		if(this.annotationKeySet == null) {
+			this.annotationKeySet = new AnnotationKeySet();
+		}
+		return this.annotationKeySet;
 	}
 
 	/**
@@ -49,7 +74,23 @@ public abstract class AnnotatedObject implements Serializable {
 	 * @return the value linked to the key, null if no value
 	 */
 	public final Object getAnnotationValue(Object key) {
-		return this.annotations.get(key);
+		if(this.annotationMap != null) {
+			return this.annotationMap.get(key);
+		}
+		int idx = indexOf(key);
+		return idx < 0 ? null : this.annotations[idx + 1];
+	}
+
+	/**
+	 * This method returns the value linked to the provided typed key.
+	 *
+	 * @param key the annotation key
+	 * @param <T> the type of the annotation value
+	 * @return the value linked to the key, null if no value
+	 * @throws ClassCastException if the value is not of the type of the key
+	 */
+	public final <T> T getAnnotationValue(AnnotationKey<T> key) {
+		return key.cast(getAnnotationValue((Object) key));
 	}
 
 	/**
@@ -57,9 +98,32 @@ public abstract class AnnotatedObject implements Serializable {
 	 *
 	 * @param key the annotation key
 	 * @param value the annotation value
+	 * @throws ClassCastException if the key is an {@link AnnotationKey} and the value is not of the type of the key
 	 */
 	public final void setAnnotationValue(Object key, Object value) {
-		this.annotations.put(key, value);
+		checkType(key, value);
+		if(this.annotationMap != null) {
+			this.annotationMap.put(key, value);
+			return;
+		}
+		int idx = indexOf(key);
+		if(idx >= 0) {
+			this.annotations[idx + 1] = value;
+		} else {
+			append(key, value);
+		}
+	}
+
+	/**
+	 * This method sets the value linked to the provided typed key.
+	 *
+	 * @param key the annotation key
+	 * @param value the annotation value
+	 * @param <T> the type of the annotation value
+	 * @throws ClassCastException if the value is not of the type of the key
+	 */
+	public final <T> void setAnnotationValue(AnnotationKey<T> key, T value) {
+		setAnnotationValue((Object) key, value);
 	}
 
 	/**
@@ -68,9 +132,24 @@ public abstract class AnnotatedObject implements Serializable {
 	 * @param key the annotation key
 	 * @param value the annotation value
 	 * @return the previous value associated with the specified key, or null if there was no mapping for the key.
+	 * @throws ClassCastException if the key is an {@link AnnotationKey} and the value is not of the type of the key
 	 */
 	public final Object setAnnotationValueIfAbsent(Object key, Object value) {
-		return this.annotations.putIfAbsent(key, value);
+		checkType(key, value);
+		if(this.annotationMap != null) {
+			return this.annotationMap.putIfAbsent(key, value);
+		}
+		int idx = indexOf(key);
+		if(idx < 0) {
+			append(key, value);
+			return null;
+		}
+		Object current = this.annotations[idx + 1];
+		if(current == null) {
+			// Same semantic as Map.putIfAbsent: a key linked to null is considered absent
+			this.annotations[idx + 1] = value;
+		}
+		return current;
 	}
 
 	/**
@@ -80,14 +159,32 @@ public abstract class AnnotatedObject implements Serializable {
 	 * @return the value linked to the key, null if no value
 	 */
 	public final Object clearAnnotationValue(Object key) {
-		return this.annotations.remove(key);
+		if(this.annotationMap != null) {
+			return this.annotationMap.remove(key);
+		}
+		int idx = indexOf(key);
+		if(idx < 0) {
+			return null;
+		}
+		Object current = this.annotations[idx + 1];
+		int end = this.annotationCount * 2;
+		// Shift the following annotations, to keep the insertion order
+		System.arraycopy(this.annotations, idx + 2, this.annotations, idx, end - idx - 2);
+		this.annotations[end - 2] = null;
+		this.annotations[end - 1] = null;
+		--this.annotationCount;
+		return current;
 	}
 
 	/**
 	 * This method clears all the annotations.
 	 */
 	public final void clearAnnotations() {
-		this.annotations.clear();
+		this.annotationMap = null;
+		if(this.annotations != null) {
+			Arrays.fill(this.annotations, null);
+		}
+		this.annotationCount = 0;
 	}
 
 	/**
@@ -97,6 +194,85 @@ public abstract class AnnotatedObject implements Serializable {
 	 * @return true if the annotation key is present, false otherwise
 	 */
 	public final boolean isAnnotationPresent(Object key) {
-		return this.annotations.containsKey(key);
+		if(this.annotationMap != null) {
+			return this.annotationMap.containsKey(key);
+		}
+		return indexOf(key) >= 0;
+	}
+
+	private static void checkType(Object key, Object value) {
+		if(key instanceof AnnotationKey) {
+			((AnnotationKey<?>) key).cast(value);
+		}
+	}
+
+	private int indexOf(Object key) {
+		for(int i = 0; i < this.annotationCount * 2; i += 2) {
+			Object k = this.annotations[i];
+			if(Objects.equals(k, key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void append(Object key, Object value) {
+		if(this.annotationCount < INLINE_ANNOTATIONS) {
+			if(this.annotations == null) {
+				this.annotations = new Object[INLINE_ANNOTATIONS * 2];
+			}
+			this.annotations[this.annotationCount * 2] = key;
+			this.annotations[this.annotationCount * 2 + 1] = value;
+			++this.annotationCount;
+		} else {
+			// Move to a map, keeping the insertion order
+			Map<Object, Object> map = new LinkedHashMap<>();
+			for(int i = 0; i < this.annotationCount * 2; i += 2) {
+				map.put(this.annotations[i], this.annotations[i + 1]);
+			}
+			map.put(key, value);
+			this.annotationMap = map;
+			this.annotations = null;
+			this.annotationCount = 0;
+		}
+	}
+
+	/**
+	 * Unmodifiable view of the annotation keys.
+	 */
+	private class AnnotationKeySet extends AbstractSet<Object> {
+
+		@Override
+		public Iterator<Object> iterator() {
+			if(annotationMap != null) {
+				return Collections.unmodifiableSet(annotationMap.keySet()).iterator();
+			}
+			return new Iterator<>() {
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < annotationCount;
+				}
+
+				@Override
+				public Object next() {
+					if(!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return annotations[2 * next++];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return annotationMap != null ? annotationMap.size() : annotationCount;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return isAnnotationPresent(o);
+		}
 	}
 }
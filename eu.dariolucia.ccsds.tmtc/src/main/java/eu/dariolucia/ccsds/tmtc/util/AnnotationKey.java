@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A typed key for annotations attached to {@link AnnotatedObject} instances. When used with the typed accessors of
+ * {@link AnnotatedObject}, the value associated to the key is checked against, and returned as, the type of the key.
+ *
+ * Two keys are equal if they have the same name and the same type. This class defines the keys of the annotations
+ * set by the decoders of this library ({@link #RS_CORRECTED_SYMBOLS}, {@link #BCH_CORRECTED_CODEBLOCKS}), as well as
+ * keys for information known only to the application ({@link #RECEPTION_TIME}, {@link #QUALITY}): such annotations are
+ * never set by this library, it is up to the application to set them (e.g. when reading frames from a ground station)
+ * for the components using them.
+ *
+ * @param <T> the type of the annotation value
+ */
+public final class AnnotationKey<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Annotation key for the time at which the data unit was received. Not set by this library.
+     */
+    public static final AnnotationKey<Instant> RECEPTION_TIME = new AnnotationKey<>("##RECEPTION_TIME", Instant.class);
+
+    /**
+     * Annotation key for the number of symbols corrected by the Reed-Solomon decoding, per codeword.
+     */
+    public static final AnnotationKey<int[]> RS_CORRECTED_SYMBOLS = new AnnotationKey<>("##RS_CORRECTED_SYMBOLS", int[].class);
+
+    /**
+     * Annotation key for the number of codeblocks corrected by the BCH decoding of a CLTU.
+     */
+    public static final AnnotationKey<Integer> BCH_CORRECTED_CODEBLOCKS = new AnnotationKey<>("##BCH_CORRECTED_CODEBLOCKS", Integer.class);
+
+    /**
+     * Annotation key for the quality of the data unit: true if the data unit was received without problems, false
+     * if problems were detected (e.g. wrong FECF, frame gaps). Not set by this library.
+     */
+    public static final AnnotationKey<Boolean> QUALITY = new AnnotationKey<>("##QUALITY", Boolean.class);
+
+    private final String name;
+
+    private final Class<T> type;
+
+    /**
+     * Create a new annotation key.
+     *
+     * @param name the name of the key, cannot be null
+     * @param type the type of the annotation value, cannot be null
+     */
+    public AnnotationKey(String name, Class<T> type) {
+        if(name == null) {
+            throw new NullPointerException("Name cannot be null");
+        }
+        if(type == null) {
+            throw new NullPointerException("Type cannot be null");
+        }
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * This method returns the name of the key.
+     *
+     * @return the name of the key
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * This method returns the type of the annotation value.
+     *
+     * @return the type of the annotation value
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * This method casts the provided value to the type of the key.
+     *
+     * @param value the value to cast, can be null
+     * @return the value as type of the key
+     * @throws ClassCastException if the value is not an instance of the type of the key
+     */
+    public T cast(Object value) {
+        return type.cast(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AnnotationKey<?> that = (AnnotationKey<?>) o;
+        return name.equals(that.name) && type.equals(that.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, type);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
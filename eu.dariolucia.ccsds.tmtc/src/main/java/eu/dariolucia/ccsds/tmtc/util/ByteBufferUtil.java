@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class contains a set of utility functions to work with ByteBuffer objects.
+ */
+public class ByteBufferUtil {
+
+    private ByteBufferUtil() {
+        // Private constructor
+    }
+
+    /**
+     * Copy bytes from the provided buffer into the provided byte array, without changing the position of the buffer.
+     * The offset in the source buffer is relative to its current position. Buffers backed by an accessible array are
+     * copied with a single array copy, other buffers (direct or read-only) with a single bulk get.
+     *
+     * The position of a buffer that is not backed by an accessible array is temporarily moved: such buffer must not
+     * be used concurrently.
+     *
+     * @param src the source buffer
+     * @param srcOffset the offset of the first byte to copy, relative to the position of the buffer
+     * @param dst the destination array
+     * @param dstOffset the offset in the destination array
+     * @param length the number of bytes to copy
+     */
+    public static void copy(ByteBuffer src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        if(srcOffset < 0 || length < 0 || srcOffset + length > src.remaining()) {
+            throw new IndexOutOfBoundsException("Offset " + srcOffset + " and length " + length + " not valid for buffer with " + src.remaining() + " remaining bytes");
+        }
+        if(src.hasArray()) {
+            System.arraycopy(src.array(), src.arrayOffset() + src.position() + srcOffset, dst, dstOffset, length);
+        } else {
+            int position = src.position();
+            src.position(position + srcOffset);
+            try {
+                src.get(dst, dstOffset, length);
+            } finally {
+                src.position(position);
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer that manages a large number of timeouts with a single thread, using a hashed timing wheel: timeouts are
+ * placed in the bucket of the wheel corresponding to their deadline, and the timer thread checks one bucket per tick.
+ * The resolution of the timer is the tick duration, which makes it suitable for protocol timers (e.g. COP-1 timers, in
+ * the order of seconds), not for precise scheduling.
+ * <p>
+ * Timeouts are reusable: a {@link Timeout} is created once with {@link HashedWheelTimer#newTimeout(Runnable)}, and can
+ * then be started, restarted and cancelled any number of times, by any thread, without allocations. Restarting a
+ * started timeout only updates its deadline: the timer thread moves the timeout to the right bucket when it checks it.
+ * <p>
+ * The tasks of the expired timeouts are executed by the timer thread, therefore they shall be short: typically, they
+ * hand the expiration over to another executor. The timer thread is created upon the first start of a timeout, using
+ * the provided {@link ThreadFactory}, and it is stopped by {@link HashedWheelTimer#stop()}.
+ */
+public final class HashedWheelTimer {
+
+    /**
+     * Default tick duration in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    /**
+     * Default number of buckets of the wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final long DISARMED = Long.MIN_VALUE;
+
+    private static final int MAX_WHEEL_SIZE = 1 << 20;
+
+    private final long tickNanos;
+
+    // Head of the list of timeouts of each bucket, accessed only by the timer thread
+    private final Timeout[] wheel;
+
+    private final int mask;
+
+    private final ThreadFactory threadFactory;
+
+    // Stack of the timeouts to insert in the wheel
+    private final AtomicReference<Timeout> pending = new AtomicReference<>(null);
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private volatile boolean stopped = false;
+
+    private volatile Thread worker;
+
+    // Accessed only by the timer thread
+    private long startTime;
+
+    private long tick;
+
+    /**
+     * Create a timer with the default tick duration and wheel size, running on a daemon thread.
+     */
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, null);
+    }
+
+    /**
+     * Create a timer.
+     *
+     * @param tickDuration the duration of a tick, must be positive
+     * @param unit the time unit of the tick duration
+     * @param wheelSize the minimum number of buckets of the wheel, rounded up to the next power of two
+     * @param threadFactory the factory of the timer thread, if null a daemon thread is created
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize, ThreadFactory threadFactory) {
+        if(tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive, got " + tickDuration);
+        }
+        if(wheelSize <= 0 || wheelSize > MAX_WHEEL_SIZE) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and " + MAX_WHEEL_SIZE + ", got " + wheelSize);
+        }
+        int actualSize = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Timeout[actualSize];
+        this.mask = actualSize - 1;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * This method creates a new timeout, not started.
+     *
+     * @param task the task to execute on the timer thread when the timeout expires
+     * @return the timeout
+     */
+    public Timeout newTimeout(Runnable task) {
+        if(task == null) {
+            throw new NullPointerException("Task cannot be null");
+        }
+        return new Timeout(task);
+    }
+
+    /**
+     * This method stops the timer thread and waits for its termination. The started timeouts do not expire anymore, and
+     * timeouts cannot be started after the invocation of this method.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        this.stopped = true;
+        Thread t = this.worker;
+        if(t != null) {
+            LockSupport.unpark(t);
+            if(t != Thread.currentThread()) {
+                t.join();
+            }
+        }
+    }
+
+    /**
+     * This method returns whether the timer was stopped.
+     *
+     * @return true if stopped, otherwise false
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    private void enqueue(Timeout timeout) {
+        Timeout head;
+        do {
+            head = this.pending.get();
+            timeout.nextPending = head;
+        } while(!this.pending.compareAndSet(head, timeout));
+        if(this.started.compareAndSet(false, true)) {
+            Thread t;
+            if(this.threadFactory != null) {
+                t = this.threadFactory.newThread(this::run);
+            } else {
+                t = new Thread(this::run, "Hashed wheel timer");
+                t.setDaemon(true);
+            }
+            this.worker = t;
+            t.start();
+        }
+    }
+
+    private void run() {
+        this.startTime = System.nanoTime();
+        this.tick = 0;
+        while(!this.stopped) {
+            long tickTime = this.startTime + (this.tick + 1) * this.tickNanos;
+            long remaining;
+            while((remaining = tickTime - System.nanoTime()) > 0 && !this.stopped) {
+                LockSupport.parkNanos(remaining);
+            }
+            if(this.stopped) {
+                break;
+            }
+            transferPending();
+            expire(System.nanoTime());
+            ++this.tick;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout = this.pending.getAndSet(null);
+        while(timeout != null) {
+            Timeout next = timeout.nextPending;
+            timeout.nextPending = null;
+            long deadline = timeout.deadline.get();
+            if(deadline == DISARMED) {
+                release(timeout);
+            } else {
+                link(timeout, bucketOf(deadline));
+            }
+            timeout = next;
+        }
+    }
+
+    private void expire(long now) {
+        int index = (int) (this.tick & this.mask);
+        Timeout timeout = this.wheel[index];
+        while(timeout != null) {
+            Timeout next = timeout.next;
+            long deadline = timeout.deadline.get();
+            if(deadline == DISARMED) {
+                // Cancelled
+                unlink(timeout, index);
+                release(timeout);
+            } else if(deadline - now <= 0) {
+                unlink(timeout, index);
+                if(timeout.deadline.compareAndSet(deadline, DISARMED)) {
+                    release(timeout);
+                    runTask(timeout);
+                } else {
+                    // Restarted or cancelled in the meantime
+                    release(timeout);
+                }
+            } else {
+                int bucket = bucketOf(deadline);
+                if(bucket != index) {
+                    // Restarted: move to the new bucket
+                    unlink(timeout, index);
+                    link(timeout, bucket);
+                }
+                // Otherwise, the timeout expires in one of the next rounds
+            }
+            timeout = next;
+        }
+    }
+
+    private int bucketOf(long deadline) {
+        // The bucket of tick T is checked at the end of the tick, i.e. at startTime + (T + 1) * tickNanos
+        long ticks = (deadline - this.startTime + this.tickNanos - 1) / this.tickNanos - 1;
+        return (int) (Math.max(ticks, this.tick) & this.mask);
+    }
+
+    private void link(Timeout timeout, int bucket) {
+        Timeout head = this.wheel[bucket];
+        timeout.prev = null;
+        timeout.next = head;
+        if(head != null) {
+            head.prev = timeout;
+        }
+        this.wheel[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout, int bucket) {
+        if(timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.wheel[bucket] = timeout.next;
+        }
+        if(timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    private void release(Timeout timeout) {
+        timeout.inWheel.set(false);
+        // A start concurrent with the release could have found the timeout still in the wheel: insert it again
+        if(timeout.deadline.get() != DISARMED && timeout.inWheel.compareAndSet(false, true)) {
+            enqueue(timeout);
+        }
+    }
+
+    private static void runTask(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (RuntimeException | Error e) { // NOSONAR the timer thread keeps running
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+        }
+    }
+
+    /**
+     * A reusable timeout of a {@link HashedWheelTimer}.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+
+        private final AtomicLong deadline = new AtomicLong(DISARMED);
+
+        // True if the timeout is in the wheel or in the pending stack
+        private final AtomicBoolean inWheel = new AtomicBoolean(false);
+
+        // Accessed only by the timer thread, or before the insertion in the pending stack
+        private Timeout next;
+
+        private Timeout prev;
+
+        private Timeout nextPending;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * This method starts the timeout, or restarts it if already started: the task is executed when the provided
+         * delay elapses, unless the timeout is restarted or cancelled before.
+         *
+         * @param delay the delay
+         * @param unit the time unit of the delay
+         * @throws IllegalStateException if the timer is stopped
+         */
+        public void start(long delay, TimeUnit unit) {
+            if(stopped) {
+                throw new IllegalStateException("Timer stopped");
+            }
+            long value = System.nanoTime() + unit.toNanos(Math.max(0, delay));
+            if(value == DISARMED) {
+                ++value;
+            }
+            this.deadline.set(value);
+            if(this.inWheel.compareAndSet(false, true)) {
+                enqueue(this);
+            }
+        }
+
+        /**
+         * This method cancels the timeout.
+         *
+         * @return true if the timeout was started and not expired, otherwise false
+         */
+        public boolean cancel() {
+            // The timeout stays in the wheel, and it is removed when checked by the timer thread
+            return this.deadline.getAndSet(DISARMED) != DISARMED;
+        }
+
+        /**
+         * This method returns whether the timeout is started and not expired.
+         *
+         * @return true if the timeout is started and not expired, otherwise false
+         */
+        public boolean isStarted() {
+            return this.deadline.get() != DISARMED;
+        }
+    }
+}
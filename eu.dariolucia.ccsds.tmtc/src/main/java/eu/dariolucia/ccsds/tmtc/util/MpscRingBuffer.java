@@ -0,0 +1,172 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free, multi-producer/single-consumer FIFO queue backed by an array. Any thread can invoke the
+ * producer method ({@link MpscRingBuffer#offer(Object)}), while at most one thread at any time can invoke the consumer
+ * methods ({@link MpscRingBuffer#poll()}, {@link MpscRingBuffer#peek()}). The other methods can be invoked by any thread.
+ * <p>
+ * Producers claim a slot with a compare-and-set on the tail index, and publish the element by advancing the sequence
+ * number of the slot: the consumer does not see an element until it is published, so elements offered by the same
+ * thread are polled in the same order.
+ * <p>
+ * The capacity of the queue is rounded up to the next power of two.
+ *
+ * @param <E> the type of the elements
+ */
+public final class MpscRingBuffer<E> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Object[] buffer;
+
+    // Sequence number of each slot: equal to the index of the next element to write in the slot when the slot is
+    // free, and to such index plus one when the element is published
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    // Index of the next element to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong(0);
+
+    // Index of the next slot to claim, written by the producers
+    private final AtomicLong tail = new AtomicLong(0);
+
+    /**
+     * Create a ring buffer with the provided minimum capacity.
+     *
+     * @param capacity the minimum capacity, rounded up to the next power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if(capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ", got " + capacity);
+        }
+        int actualCapacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[actualCapacity];
+        this.sequences = new AtomicLongArray(actualCapacity);
+        for(int i = 0; i < actualCapacity; ++i) {
+            this.sequences.lazySet(i, i);
+        }
+        this.mask = actualCapacity - 1;
+    }
+
+    /**
+     * This method returns the capacity of the ring buffer.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    /**
+     * This method inserts the element at the tail of the queue, if there is space. Can be invoked by any thread.
+     *
+     * @param element the element to insert, cannot be null
+     * @return true if the element was inserted, false if the queue is full
+     */
+    public boolean offer(E element) {
+        if(element == null) {
+            throw new NullPointerException("Element cannot be null");
+        }
+        long currentTail = this.tail.get();
+        while(true) {
+            int index = (int) (currentTail & this.mask);
+            long difference = this.sequences.get(index) - currentTail;
+            if(difference == 0) {
+                // Slot free: try to claim it
+                if(this.tail.compareAndSet(currentTail, currentTail + 1)) {
+                    this.buffer[index] = element;
+                    // Publish the element to the consumer
+                    this.sequences.lazySet(index, currentTail + 1);
+                    return true;
+                }
+                currentTail = this.tail.get();
+            } else if(difference < 0) {
+                // Slot not yet released by the consumer: full
+                return false;
+            } else {
+                // Slot claimed by another producer in the meantime
+                currentTail = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * This method removes and returns the element at the head of the queue. To be invoked by the consumer.
+     *
+     * @return the element at the head of the queue, or null if the queue is empty or the element at the head is not
+     * published yet
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long currentHead = this.head.get();
+        int index = (int) (currentHead & this.mask);
+        if(this.sequences.get(index) != currentHead + 1) {
+            return null;
+        }
+        E element = (E) this.buffer[index];
+        this.buffer[index] = null;
+        // Release the slot to the producers, for the element at the next round
+        this.sequences.lazySet(index, currentHead + this.buffer.length);
+        this.head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    /**
+     * This method returns, without removing it, the element at the head of the queue. To be invoked by the consumer.
+     *
+     * @return the element at the head of the queue, or null if the queue is empty or the element at the head is not
+     * published yet
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long currentHead = this.head.get();
+        int index = (int) (currentHead & this.mask);
+        if(this.sequences.get(index) != currentHead + 1) {
+            return null;
+        }
+        return (E) this.buffer[index];
+    }
+
+    /**
+     * This method returns the number of elements in the queue, including the elements being inserted. If invoked
+     * concurrently with the producers or the consumer, the returned value is an estimate.
+     *
+     * @return the number of elements in the queue
+     */
+    public int size() {
+        // Read the head first, so that the size is never negative
+        long currentHead = this.head.get();
+        long currentTail = this.tail.get();
+        return (int) Math.max(0, Math.min(this.buffer.length, currentTail - currentHead));
+    }
+
+    /**
+     * This method returns whether the queue is empty. If invoked concurrently with the producers or the consumer, the
+     * returned value is an estimate.
+     *
+     * @return true if the queue is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.head.get() >= this.tail.get();
+    }
+}
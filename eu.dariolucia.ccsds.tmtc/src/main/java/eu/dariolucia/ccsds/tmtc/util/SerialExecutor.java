@@ -0,0 +1,182 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An executor service that runs the submitted tasks one at a time, in submission order, on the threads of an
+ * underlying (typically shared) executor. Many serial executors can share the same underlying executor: each of them
+ * behaves as a single-threaded executor, without owning a thread. Tasks of the same serial executor never run
+ * concurrently, and each task sees the effects of the previously executed tasks, even if they ran on different
+ * threads.
+ * <p>
+ * After a number of tasks, the serial executor yields the thread of the underlying executor and resubmits itself,
+ * so that a busy serial executor does not starve the others.
+ * <p>
+ * Runtime exceptions raised by the tasks submitted with {@link SerialExecutor#execute(Runnable)} are passed to the
+ * uncaught exception handler of the running thread, and the execution of the next tasks continues. Errors (e.g.
+ * {@link OutOfMemoryError}) are not handled: the next tasks are resubmitted to the underlying executor, and the error
+ * is propagated to the thread of the underlying executor. Shutting down a serial
+ * executor does not shut down the underlying executor, and {@link SerialExecutor#shutdownNow()} does not interrupt the
+ * running task.
+ */
+public final class SerialExecutor extends AbstractExecutorService {
+
+    private static final int MAX_TASKS_PER_RUN = 64;
+
+    private final Executor executor;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    // True if a run of this executor is submitted to the underlying executor, or it is running
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private volatile boolean shutdown = false;
+
+    // The thread executing a task of this executor, if any
+    private volatile Thread runningThread; // NOSONAR only used for reference equality comparison
+
+    /**
+     * Create a serial executor running its tasks on the provided executor.
+     *
+     * @param executor the underlying executor
+     */
+    public SerialExecutor(Executor executor) {
+        if(executor == null) {
+            throw new NullPointerException("Executor cannot be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * This method returns whether the caller thread is executing a task of this executor.
+     *
+     * @return true if the caller thread is executing a task of this executor, otherwise false
+     */
+    public boolean isExecutorThread() {
+        return Thread.currentThread() == this.runningThread;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if(command == null) {
+            throw new NullPointerException("Task cannot be null");
+        }
+        if(this.shutdown) {
+            throw new RejectedExecutionException("Serial executor shut down");
+        }
+        this.tasks.add(command);
+        if(this.shutdown && this.tasks.remove(command)) {
+            // Shut down in the meantime
+            throw new RejectedExecutionException("Serial executor shut down");
+        }
+        schedule();
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown = true;
+        tryTerminate();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        this.shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        Runnable task;
+        while((task = this.tasks.poll()) != null) {
+            pending.add(task);
+        }
+        tryTerminate();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.terminated.await(timeout, unit);
+    }
+
+    private void schedule() {
+        if(this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                // The underlying executor is shut down: the tasks cannot be executed anymore
+                this.scheduled.set(false);
+                this.tasks.clear();
+                throw e;
+            }
+        }
+    }
+
+    private void run() {
+        Thread current = Thread.currentThread();
+        this.runningThread = current;
+        try {
+            Runnable task;
+            for(int i = 0; i < MAX_TASKS_PER_RUN && (task = this.tasks.poll()) != null; ++i) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // The execution of the next tasks continues
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+            }
+        } finally {
+            // Also in case of Error: the serial lane is handed over before the error is propagated
+            this.runningThread = null;
+            this.scheduled.set(false);
+            // Tasks inserted after the last poll are executed by a new run
+            if(!this.tasks.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    // Nothing to do, the tasks are dropped
+                }
+            }
+            tryTerminate();
+        }
+    }
+
+    private void tryTerminate() {
+        if(this.shutdown && !this.scheduled.get() && this.tasks.isEmpty()) {
+            this.terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *   Copyright (c) 2023 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free, single-producer/single-consumer FIFO queue backed by an array. At any time, at most one thread
+ * can invoke the producer methods ({@link SpscRingBuffer#offer(Object)}, {@link SpscRingBuffer#remainingCapacity()})
+ * and at most one thread can invoke the consumer methods ({@link SpscRingBuffer#poll()}, {@link SpscRingBuffer#peek()}).
+ * The other methods can be invoked by any thread.
+ * <p>
+ * The capacity of the queue is rounded up to the next power of two.
+ *
+ * @param <E> the type of the elements
+ */
+public final class SpscRingBuffer<E> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Object[] buffer;
+
+    private final int mask;
+
+    // Index of the next element to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong(0);
+
+    // Index of the next element to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong(0);
+
+    // Last head value seen by the producer
+    private long producerHeadCache = 0;
+
+    // Last tail value seen by the consumer
+    private long consumerTailCache = 0;
+
+    /**
+     * Create a ring buffer with the provided minimum capacity.
+     *
+     * @param capacity the minimum capacity, rounded up to the next power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if(capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ", got " + capacity);
+        }
+        int actualCapacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[actualCapacity];
+        this.mask = actualCapacity - 1;
+    }
+
+    /**
+     * This method returns the capacity of the ring buffer.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    /**
+     * This method inserts the element at the tail of the queue, if there is space. To be invoked by the producer.
+     *
+     * @param element the element to insert, cannot be null
+     * @return true if the element was inserted, false if the queue is full
+     */
+    public boolean offer(E element) {
+        if(element == null) {
+            throw new NullPointerException("Element cannot be null");
+        }
+        long currentTail = this.tail.get();
+        if(currentTail - this.producerHeadCache >= this.buffer.length) {
+            this.producerHeadCache = this.head.get();
+            if(currentTail - this.producerHeadCache >= this.buffer.length) {
+                return false;
+            }
+        }
+        this.buffer[(int) (currentTail & this.mask)] = element;
+        // Publish the element to the consumer
+        this.tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * This method removes and returns the element at the head of the queue. To be invoked by the consumer.
+     *
+     * @return the element at the head of the queue, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long currentHead = this.head.get();
+        if(currentHead >= this.consumerTailCache) {
+            this.consumerTailCache = this.tail.get();
+            if(currentHead >= this.consumerTailCache) {
+                return null;
+            }
+        }
+        int index = (int) (currentHead & this.mask);
+        E element = (E) this.buffer[index];
+        this.buffer[index] = null;
+        // Release the slot to the producer
+        this.head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    /**
+     * This method returns, without removing it, the element at the head of the queue. To be invoked by the consumer.
+     *
+     * @return the element at the head of the queue, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long currentHead = this.head.get();
+        if(currentHead >= this.consumerTailCache) {
+            this.consumerTailCache = this.tail.get();
+            if(currentHead >= this.consumerTailCache) {
+                return null;
+            }
+        }
+        return (E) this.buffer[(int) (currentHead & this.mask)];
+    }
+
+    /**
+     * This method returns the number of elements that can be inserted without blocking. To be invoked by the producer:
+     * since only the producer inserts elements, the returned number of elements can be inserted for sure.
+     *
+     * @return the remaining capacity
+     */
+    public int remainingCapacity() {
+        this.producerHeadCache = this.head.get();
+        return (int) (this.buffer.length - (this.tail.get() - this.producerHeadCache));
+    }
+
+    /**
+     * This method returns the number of elements in the queue. If invoked concurrently with the producer or the
+     * consumer, the returned value is an estimate.
+     *
+     * @return the number of elements in the queue
+     */
+    public int size() {
+        // Read the head first, so that the size is never negative
+        long currentHead = this.head.get();
+        long currentTail = this.tail.get();
+        return (int) Math.max(0, Math.min(this.buffer.length, currentTail - currentHead));
+    }
+
+    /**
+     * This method returns whether the queue is empty. If invoked concurrently with the producer or the consumer, the
+     * returned value is an estimate.
+     *
+     * @return true if the queue is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.head.get() >= this.tail.get();
+    }
+}
@@ -16,6 +16,7 @@
 
 /**
  * This package contains utility classes to work with streams, strings and wrap functional interfaces (Consumer, Supplier,
- * Predicate) to transform underlying implementations into reactive elements (publisher, subscribers, processors).
+ * Predicate) to transform underlying implementations into reactive elements (publisher, subscribers, processors). It
+ * also contains the annotation support for the data units and lock-free queues used to exchange data between threads.
  */
 package eu.dariolucia.ccsds.tmtc.util;
\ No newline at end of file
@@ -91,4 +91,66 @@ class BchCltuAlgorithmTest {
 
 
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testSingleBitErrorCorrection() {
+		String cltu = "EB902062042900C10036010203040506077008090A0BAABBCCC4DDEEFFAABBCCDDE6EEFFAABBCCDDEE10FFAABBCCDDEEFF64C5C5C5C5C5C5C579";
+		byte[] cltuBytes = StringUtil.toByteArray(cltu);
+		byte[] expected = BchCltuAlgorithm.decode(cltuBytes);
+		BchCltuAlgorithm algorithm = new BchCltuAlgorithm();
+		// No errors
+		int[] corrected = new int[1];
+		byte[] output = new byte[expected.length + 3];
+		assertEquals(expected.length, algorithm.decodeCltu(cltuBytes, BchCltuAlgorithm.DecodingMode.ERROR_CORRECTION, output, 3, corrected));
+		assertEquals(0, corrected[0]);
+		assertArrayEquals(expected, Arrays.copyOfRange(output, 3, output.length));
+		assertArrayEquals(expected, algorithm.decodeCltu(cltuBytes, BchCltuAlgorithm.DecodingMode.ERROR_DETECTION));
+		// Flip every bit of every codeblock (except the filler bit), one at a time
+		for (int i = 2; i < cltuBytes.length - 8; ++i) {
+			for (int bit = 0; bit < 8; ++bit) {
+				boolean filler = (i - 2) % 8 == 7 && bit == 0;
+				byte[] corrupted = cltuBytes.clone();
+				corrupted[i] ^= (byte) (1 << bit);
+				// Quick-look decoding does not detect anything
+				assertNotNull(algorithm.decodeCltu(corrupted, BchCltuAlgorithm.DecodingMode.NONE));
+				// Detection rejects the CLTU
+				byte[] detected = algorithm.decodeCltu(corrupted, BchCltuAlgorithm.DecodingMode.ERROR_DETECTION);
+				if (filler) {
+					assertArrayEquals(expected, detected);
+				} else {
+					assertNull(detected);
+				}
+				// Correction fixes the error
+				assertEquals(expected.length, algorithm.decodeCltu(corrupted, BchCltuAlgorithm.DecodingMode.ERROR_CORRECTION, output, 0, corrected));
+				assertArrayEquals(expected, Arrays.copyOfRange(output, 0, expected.length));
+				assertEquals(filler ? 0 : 1, corrected[0]);
+				// Input not modified
+				assertEquals((byte) (cltuBytes[i] ^ (1 << bit)), corrupted[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testDoubleBitErrorDetection() {
+		BchCltuAlgorithm algorithm = new BchCltuAlgorithm();
+		byte[] cltu = algorithm.encodeCltu(new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+		// Flip every pair of bits in the 63 bits of the codeblock
+		for (int first = 0; first < 63; ++first) {
+			for (int second = first + 1; second < 63; ++second) {
+				byte[] corrupted = cltu.clone();
+				corrupted[2 + first / 8] ^= (byte) (0x80 >>> (first % 8));
+				corrupted[2 + second / 8] ^= (byte) (0x80 >>> (second % 8));
+				assertNull(algorithm.decodeCltu(corrupted, BchCltuAlgorithm.DecodingMode.ERROR_CORRECTION));
+			}
+		}
+	}
+
+	@Test
+	public void testDecodeIntoSmallBuffer() {
+		BchCltuAlgorithm algorithm = new BchCltuAlgorithm();
+		byte[] cltu = algorithm.encodeCltu(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		assertEquals(14, algorithm.computeFrameLength(cltu.length));
+		assertThrows(IndexOutOfBoundsException.class, () -> algorithm.decodeCltu(cltu, BchCltuAlgorithm.DecodingMode.NONE, new byte[14], 1, null));
+		assertThrows(NullPointerException.class, () -> algorithm.decodeCltu(cltu, null, new byte[14], 0, null));
+	}
+}
@@ -18,7 +18,10 @@ package eu.dariolucia.ccsds.tmtc.algorithm;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class Crc16AlgorithmTest {
 
@@ -28,4 +31,71 @@ class Crc16AlgorithmTest {
 		short crc = Crc16Algorithm.getCrc16(testData, 0, testData.length);
 		assertEquals(3747, crc);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testCrc16Engines() {
+		byte[] testData = new byte[] { 0x01, (byte) 0x92, (byte) 0xFE, 0x00, 0x11, (byte) 0x82, 0x5A };
+		for(Crc16Algorithm.Engine engine : Crc16Algorithm.Engine.values()) {
+			assertEquals(3747, Crc16Algorithm.getCrc16(testData, 0, testData.length, engine));
+		}
+	}
+
+	@Test
+	public void testCrc16EnginesAgainstBitwise() {
+		Random r = new Random(1234);
+		byte[] testData = new byte[2048];
+		r.nextBytes(testData);
+		for(int offset = 0; offset < 17; ++offset) {
+			for(int length = 0; length < testData.length - offset; length += 1 + r.nextInt(37)) {
+				short expected = Crc16Algorithm.getCrc16(testData, offset, length, Crc16Algorithm.Engine.BITWISE);
+				assertEquals(expected, Crc16Algorithm.getCrc16(testData, offset, length, Crc16Algorithm.Engine.TABLE));
+				assertEquals(expected, Crc16Algorithm.getCrc16(testData, offset, length, Crc16Algorithm.Engine.SLICE_BY_8));
+			}
+		}
+	}
+
+	@Test
+	public void testCrc16Checksum() {
+		Random r = new Random(4321);
+		byte[] testData = new byte[1115];
+		r.nextBytes(testData);
+		short expected = Crc16Algorithm.getCrc16(testData, 0, testData.length, Crc16Algorithm.Engine.BITWISE);
+		for(Crc16Algorithm.Engine engine : Crc16Algorithm.Engine.values()) {
+			Crc16Checksum checksum = new Crc16Checksum(engine);
+			assertEquals(engine, checksum.getEngine());
+			int offset = 0;
+			while(offset < testData.length) {
+				int len = Math.min(testData.length - offset, 1 + r.nextInt(50));
+				checksum.update(testData, offset, len);
+				offset += len;
+			}
+			assertEquals(expected, checksum.getCrc16());
+			assertEquals(Short.toUnsignedInt(expected), checksum.getValue());
+			// Reset and go byte by byte
+			checksum.reset();
+			for(byte b : testData) {
+				checksum.update(b);
+			}
+			assertEquals(expected, checksum.getCrc16());
+		}
+	}
+
+	@Test
+	public void testCrc16DefaultEngine() {
+		assertEquals(Crc16Algorithm.Engine.SLICE_BY_8, Crc16Algorithm.getDefaultEngine());
+		try {
+			Crc16Algorithm.setDefaultEngine(Crc16Algorithm.Engine.TABLE);
+			assertEquals(Crc16Algorithm.Engine.TABLE, Crc16Algorithm.getDefaultEngine());
+			assertEquals(Crc16Algorithm.Engine.TABLE, new Crc16Checksum().getEngine());
+			assertThrows(NullPointerException.class, () -> Crc16Algorithm.setDefaultEngine(null));
+			assertThrows(IndexOutOfBoundsException.class, () -> Crc16Algorithm.getCrc16(new byte[4], 2, 3));
+			// offset + length overflows: rejected by the range check, not by the array access
+			assertEquals(IndexOutOfBoundsException.class, assertThrows(IndexOutOfBoundsException.class,
+					() -> Crc16Algorithm.getCrc16(new byte[16], 8, Integer.MAX_VALUE, Crc16Algorithm.Engine.SLICE_BY_8)).getClass());
+			assertThrows(IndexOutOfBoundsException.class, () -> Crc16Algorithm.getCrc16(new byte[16], -1, 4));
+			assertThrows(IndexOutOfBoundsException.class, () -> Crc16Algorithm.getCrc16(new byte[16], 4, -1));
+		} finally {
+			Crc16Algorithm.setDefaultEngine(Crc16Algorithm.Engine.SLICE_BY_8);
+		}
+	}
+}
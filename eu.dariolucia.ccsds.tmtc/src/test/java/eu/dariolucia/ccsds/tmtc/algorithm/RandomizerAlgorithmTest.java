@@ -83,4 +83,55 @@ class RandomizerAlgorithmTest {
 		// Compare
 		assertArrayEquals(theFrame, ttf.getFrame());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testRandomizationWithOffsetAndLength() {
+		// The pattern is obtained by randomizing zeroes
+		byte[] tmPattern = new byte[2048];
+		RandomizerAlgorithm.randomizeFrameTm(tmPattern);
+		assertArrayEquals(new byte[] {(byte) 0xFF, 0x48, 0x0E, (byte) 0xC0, (byte) 0x9A}, Arrays.copyOfRange(tmPattern, 0, 5));
+		byte[] cltuPattern = new byte[2048];
+		RandomizerAlgorithm.randomizeFrameCltu(cltuPattern);
+		assertArrayEquals(new byte[] {(byte) 0xFF, 0x39, (byte) 0x9E, 0x5A, 0x68}, Arrays.copyOfRange(cltuPattern, 0, 5));
+
+		// Check all the combinations of small offsets and lengths, also not aligned to 8 bytes
+		for (int offset = 0; offset < 9; ++offset) {
+			for (int length = 0; length < 40; ++length) {
+				byte[] data = new byte[offset + length + 3];
+				Arrays.fill(data, (byte) 0x5A);
+				RandomizerAlgorithm.randomizeFrameTm(data, offset, length);
+				for (int i = 0; i < data.length; ++i) {
+					byte expected = i >= offset && i < offset + length ? (byte) (0x5A ^ tmPattern[i - offset]) : 0x5A;
+					assertEquals(expected, data[i]);
+				}
+				Arrays.fill(data, (byte) 0x5A);
+				RandomizerAlgorithm.randomizeFrameCltu(data, offset, length);
+				for (int i = 0; i < data.length; ++i) {
+					byte expected = i >= offset && i < offset + length ? (byte) (0x5A ^ cltuPattern[i - offset]) : 0x5A;
+					assertEquals(expected, data[i]);
+				}
+			}
+		}
+
+		assertThrows(IndexOutOfBoundsException.class, () -> RandomizerAlgorithm.randomizeFrameTm(new byte[10], 5, 6));
+		assertThrows(IndexOutOfBoundsException.class, () -> RandomizerAlgorithm.randomizeFrameCltu(new byte[10], -1, 2));
+	}
+
+	@Test
+	public void testRandomizationPatternExtension() {
+		// Longer than the initial pattern and than the previous fixed pattern (65536 bytes)
+		byte[] tmPattern = new byte[70001];
+		RandomizerAlgorithm.randomizeFrameTm(tmPattern);
+		byte[] cltuPattern = new byte[70001];
+		RandomizerAlgorithm.randomizeFrameCltu(cltuPattern);
+		// Both sequences are generated by 8-bit maximum length shift registers: the period is 255 bytes
+		for (int i = 255; i < tmPattern.length; ++i) {
+			assertEquals(tmPattern[i - 255], tmPattern[i]);
+			assertEquals(cltuPattern[i - 255], cltuPattern[i]);
+		}
+		// Shorter frames still use the beginning of the pattern
+		byte[] shortFrame = new byte[1115];
+		RandomizerAlgorithm.randomizeFrameTm(shortFrame);
+		assertArrayEquals(Arrays.copyOfRange(tmPattern, 0, 1115), shortFrame);
+	}
+}
@@ -20,6 +20,9 @@ import eu.dariolucia.ccsds.tmtc.util.StringUtil;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -52,6 +55,111 @@ class ReedSolomonAlgorithmTest {
         }
     }
 
+    @Test
+    public void testFrameEncodingInPlace() {
+        byte[] cadu = StringUtil.toByteArray(encodedTestFrame);
+        byte[] frame = StringUtil.toByteArray(testFrame);
+        // Encode into a larger buffer, at an offset
+        byte[] output = new byte[cadu.length + 10];
+        int written = ReedSolomonAlgorithm.TM_255_223.encodeFrame(frame, 0, frame.length, 5, output, 6);
+        assertEquals(cadu.length, written);
+        assertArrayEquals(cadu, Arrays.copyOfRange(output, 6, 6 + cadu.length));
+        // Encode in the same buffer, where the frame is already located
+        byte[] sameBuffer = new byte[cadu.length + 4];
+        System.arraycopy(frame, 0, sameBuffer, 4, frame.length);
+        ReedSolomonAlgorithm.TM_255_223.encodeFrame(sameBuffer, 4, frame.length, 5, sameBuffer, 4);
+        assertArrayEquals(cadu, Arrays.copyOfRange(sameBuffer, 4, 4 + cadu.length));
+        // Parity only
+        byte[] parity = new byte[5 * 32];
+        ReedSolomonAlgorithm.TM_255_223.encodeParity(frame, 0, frame.length, 5, parity, 0);
+        assertArrayEquals(Arrays.copyOfRange(cadu, frame.length, cadu.length), parity);
+        // Errors
+        assertThrows(IllegalArgumentException.class, () -> ReedSolomonAlgorithm.TM_255_223.encodeFrame(frame, 0, frame.length, 5, output, 11));
+        assertThrows(IllegalArgumentException.class, () -> ReedSolomonAlgorithm.TM_255_223.encodeParity(frame, 0, frame.length, 6, parity, 0));
+        assertThrows(IllegalStateException.class, () -> ReedSolomonAlgorithm.TM_255_223.encodeParity(frame, 0, frame.length, 4, parity, 0));
+    }
+
+    @Test
+    public void testFrameCorrection() {
+        Random r = new Random(1000);
+        for(int depth : new int[] {1, 2, 3, 4, 5, 8}) {
+            for(ReedSolomonAlgorithm rs : new ReedSolomonAlgorithm[] {ReedSolomonAlgorithm.TM_255_223, ReedSolomonAlgorithm.TM_255_239}) {
+                int messageLength = rs == ReedSolomonAlgorithm.TM_255_223 ? 223 : 239;
+                int maxErrors = rs == ReedSolomonAlgorithm.TM_255_223 ? 16 : 8;
+                byte[] frame = new byte[messageLength * depth];
+                r.nextBytes(frame);
+                byte[] encoded = rs.encodeFrame(frame, depth);
+                // Inject a different number of errors in each codeword
+                byte[] corrupted = encoded.clone();
+                int[] injected = new int[depth];
+                for(int i = 0; i < depth; ++i) {
+                    injected[i] = (i * 5) % (maxErrors + 1);
+                    injectErrors(r, corrupted, i, depth, injected[i]);
+                }
+                if(Arrays.stream(injected).sum() > 0) {
+                    assertNull(rs.decodeFrame(corrupted.clone(), depth, true));
+                }
+                int[] corrected = new int[depth];
+                byte[] decoded = rs.correctFrame(corrupted, depth, corrected);
+                assertArrayEquals(frame, decoded);
+                assertArrayEquals(injected, corrected);
+                // In-place correction
+                assertArrayEquals(encoded, corrupted);
+            }
+        }
+    }
+
+    @Test
+    public void testFrameCorrectionFailure() {
+        Random r = new Random(2000);
+        byte[] frame = new byte[223 * 5];
+        r.nextBytes(frame);
+        byte[] encoded = ReedSolomonAlgorithm.TM_255_223.encodeFrame(frame, 5);
+        injectErrors(r, encoded, 3, 5, 40);
+        byte[] copy = encoded.clone();
+        assertNull(ReedSolomonAlgorithm.TM_255_223.correctFrame(encoded, 5, null));
+        // Failed codewords are not modified
+        assertArrayEquals(copy, encoded);
+        assertThrows(IllegalArgumentException.class, () -> ReedSolomonAlgorithm.TM_255_223.correctFrame(copy, 4, null));
+        assertThrows(IllegalArgumentException.class, () -> ReedSolomonAlgorithm.TM_255_223.correctFrame(copy, 5, new int[2]));
+
+        // Correctable codewords before the failed one: their corrections are reverted
+        injectErrors(r, encoded, 0, 5, 16);
+        injectErrors(r, encoded, 1, 5, 3);
+        byte[] partial = encoded.clone();
+        assertFalse(ReedSolomonAlgorithm.TM_255_223.correctFrame(encoded, 0, encoded.length, 5, new int[5]));
+        assertArrayEquals(partial, encoded);
+        // Same result with a frame located at an offset
+        byte[] shifted = new byte[encoded.length + 7];
+        System.arraycopy(encoded, 0, shifted, 7, encoded.length);
+        byte[] shiftedCopy = shifted.clone();
+        assertFalse(ReedSolomonAlgorithm.TM_255_223.correctFrame(shifted, 7, encoded.length, 5, null));
+        assertArrayEquals(shiftedCopy, shifted);
+    }
+
+    @Test
+    public void testCodewordCorrection() {
+        Random r = new Random(3000);
+        byte[] message = new byte[223];
+        r.nextBytes(message);
+        byte[] codeword = ReedSolomonAlgorithm.TM_255_223.encodeCodeword(message);
+        byte[] corrupted = codeword.clone();
+        assertEquals(0, ReedSolomonAlgorithm.TM_255_223.correctCodeword(corrupted));
+        injectErrors(r, corrupted, 0, 1, 16);
+        assertEquals(16, ReedSolomonAlgorithm.TM_255_223.correctCodeword(corrupted));
+        assertArrayEquals(codeword, corrupted);
+    }
+
+    private static void injectErrors(Random r, byte[] codeblock, int codeword, int depth, int numErrors) {
+        Set<Integer> positions = new HashSet<>();
+        while(positions.size() < numErrors) {
+            positions.add(r.nextInt(codeblock.length / depth));
+        }
+        for(int p : positions) {
+            codeblock[codeword + p * depth] ^= (byte) (1 + r.nextInt(255));
+        }
+    }
+
     @Test
     public void testEncodingSpeed() {
         {
@@ -73,4 +181,35 @@ class ReedSolomonAlgorithmTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testDecodingSpeed() {
+        byte[] frame = StringUtil.toByteArray(testFrame);
+        byte[] encoded = ReedSolomonAlgorithm.TM_255_223.encodeFrame(frame, 5);
+        long time = System.currentTimeMillis();
+        int decodedTimes = 0;
+        for(int i = 0; i < 10000; ++i) {
+            byte[] decoded = ReedSolomonAlgorithm.TM_255_223.decodeFrame(encoded, 5, true);
+            // Artificial counting...
+            if(decoded != null) {
+                ++decodedTimes;
+            }
+        }
+        long timeEnd = System.currentTimeMillis();
+        double rate = ((double)decodedTimes/(double)(timeEnd - time + 1))*1000;
+        System.out.println("RS checked frames: " + decodedTimes + ", checking time: " + (timeEnd - time) + " ms, checking speed: " + rate + " frames/sec");
+        assertEquals(10000, decodedTimes);
+        // Guarantee at least 1 mbps: at 1279 bytes per CADU, this means ca 100 frames per second
+        assertTrue(rate > 100);
+    }
+
+    @Test
+    public void testCodewordDecoding() {
+        byte[] message = new byte[239];
+        new Random(4000).nextBytes(message);
+        byte[] codeword = ReedSolomonAlgorithm.TM_255_239.encodeCodeword(message);
+        assertArrayEquals(message, ReedSolomonAlgorithm.TM_255_239.decodeCodeword(codeword, true));
+        codeword[240] ^= 0x10;
+        assertNull(ReedSolomonAlgorithm.TM_255_239.decodeCodeword(codeword, true));
+        assertArrayEquals(message, ReedSolomonAlgorithm.TM_255_239.decodeCodeword(codeword, false));
+    }
+}
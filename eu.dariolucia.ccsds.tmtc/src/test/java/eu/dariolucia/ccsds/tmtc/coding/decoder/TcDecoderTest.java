@@ -16,6 +16,9 @@
 
 package eu.dariolucia.ccsds.tmtc.coding.decoder;
 
+import eu.dariolucia.ccsds.tmtc.algorithm.BchCltuAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
 import eu.dariolucia.ccsds.tmtc.coding.encoder.CltuEncoder;
 import eu.dariolucia.ccsds.tmtc.coding.encoder.CltuRandomizerEncoder;
 import eu.dariolucia.ccsds.tmtc.datalink.builder.TcTransferFrameBuilder;
@@ -63,6 +66,45 @@ public class TcDecoderTest {
         assertEquals(tctf.getTransferFrameVersionNumber(), frame.getTransferFrameVersionNumber());
     }
 
+    @Test
+    public void testTcDecodingWithCorrection() {
+        byte[] input = StringUtil.toByteArray(EXPECTED_CLTU);
+        // Corrupt one bit in the first and in the third codeblock
+        input[3] ^= 0x10;
+        input[24] ^= 0x01;
+
+        ChannelDecoder<TcTransferFrame> decoder = ChannelDecoder.create(TcTransferFrame.decodingFunction((vc) -> false, false))
+                .addDecodingFunction(new CltuDecoder(new BchCltuAlgorithm(), BchCltuAlgorithm.DecodingMode.ERROR_CORRECTION))
+                .addDecodingFunction(new CltuRandomizerDecoder())
+                .configure();
+        TcTransferFrame frame = decoder.apply(input);
+        assertNotNull(frame);
+        assertEquals(123, frame.getSpacecraftId());
+        assertEquals(1, frame.getVirtualChannelId());
+        assertTrue(frame.isValid());
+        assertEquals(2, frame.getAnnotationValue(CltuDecoder.ANNOTATION_BCH_CORRECTED_CODEBLOCKS));
+
+        // Stage used on its own
+        CltuDecoder stage = new CltuDecoder(new BchCltuAlgorithm(), BchCltuAlgorithm.DecodingMode.ERROR_CORRECTION);
+        DecodingBuffer corrupted = new DecodingBuffer(input);
+        DecodingBuffer clean = new DecodingBuffer(StringUtil.toByteArray(EXPECTED_CLTU));
+        assertTrue(stage.decode(corrupted));
+        assertTrue(stage.decode(clean));
+        assertEquals(2, corrupted.getAnnotationValue(CltuDecoder.ANNOTATION_BCH_CORRECTED_CODEBLOCKS));
+        assertEquals(0, clean.getAnnotationValue(CltuDecoder.ANNOTATION_BCH_CORRECTED_CODEBLOCKS));
+        assertArrayEquals(corrupted.toArray(), clean.toArray());
+
+        // Corrupt a second bit in the first codeblock: rejected
+        input[4] ^= 0x01;
+        assertNull(decoder.apply(input));
+        assertFalse(stage.decode(new DecodingBuffer(input)));
+
+        // Error detection only: rejected at the first error
+        input = StringUtil.toByteArray(EXPECTED_CLTU);
+        input[24] ^= 0x01;
+        assertNull(new CltuDecoder(new BchCltuAlgorithm(), BchCltuAlgorithm.DecodingMode.ERROR_DETECTION).apply(input));
+    }
+
     @Test
     public void testNullInput() {
         try {
@@ -17,6 +17,8 @@
 package eu.dariolucia.ccsds.tmtc.coding.decoder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.ChannelDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.DecodingBuffer;
 import eu.dariolucia.ccsds.tmtc.coding.encoder.ReedSolomonEncoder;
 import eu.dariolucia.ccsds.tmtc.coding.encoder.TmAsmEncoder;
 import eu.dariolucia.ccsds.tmtc.coding.encoder.TmRandomizerEncoder;
@@ -25,6 +27,7 @@ import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
 import eu.dariolucia.ccsds.tmtc.util.StringUtil;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -70,6 +73,107 @@ public class TmDecoderTest {
         assertEquals(tmtf.getTransferFrameVersionNumber(), frame.getTransferFrameVersionNumber());
     }
 
+    @Test
+    public void testTmDecodingWithCorrection() {
+        byte[] input = StringUtil.toByteArray(EXPECTED_TM);
+        // Corrupt some bytes after the ASM
+        input[10] ^= 0x55;
+        input[11] ^= 0x01;
+        input[700] = (byte) ~input[700];
+
+        ChannelDecoder<TmTransferFrame> decoder = ChannelDecoder.create(TmTransferFrame.decodingFunction(false))
+                .addDecodingFunction(new TmAsmDecoder())
+                .addDecodingFunction(new TmRandomizerDecoder())
+                .addDecodingFunction(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223, 5, true, true))
+                .configure();
+        TmTransferFrame frame = decoder.apply(input);
+        assertEquals(123, frame.getSpacecraftId());
+        assertEquals(1, frame.getVirtualChannelId());
+        assertEquals(22, frame.getMasterChannelFrameCount());
+        assertEquals(14, frame.getVirtualChannelFrameCount());
+        int[] corrected = (int[]) frame.getAnnotationValue(ReedSolomonDecoder.ANNOTATION_RS_CORRECTED_SYMBOLS);
+        assertNotNull(corrected);
+        assertEquals(5, corrected.length);
+        assertEquals(3, corrected[0] + corrected[1] + corrected[2] + corrected[3] + corrected[4]);
+    }
+
+    @Test
+    public void testTmDecodingWithStages() {
+        byte[] expected = new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223, 5, true)
+                .apply(new TmRandomizerDecoder().apply(new TmAsmDecoder().apply(StringUtil.toByteArray(EXPECTED_TM))));
+
+        byte[] input = StringUtil.toByteArray(EXPECTED_TM);
+        input[10] ^= 0x55;
+        input[700] = (byte) ~input[700];
+        ChannelDecoder<TmTransferFrame> decoder = ChannelDecoder.create(TmTransferFrame.decodingFunction(false))
+                .addDecodingStage(new TmAsmDecoder())
+                .addDecodingStage(new TmRandomizerDecoder())
+                .addDecodingStage(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223, 5, true, true))
+                .configure();
+        TmTransferFrame frame = decoder.apply(input);
+        assertArrayEquals(expected, frame.getFrame());
+        int[] corrected = (int[]) frame.getAnnotationValue(ReedSolomonDecoder.ANNOTATION_RS_CORRECTED_SYMBOLS);
+        assertEquals(2, Arrays.stream(corrected).sum());
+
+        // Stages and functions can be mixed
+        decoder = ChannelDecoder.create(TmTransferFrame.decodingFunction(false))
+                .addDecodingStage(new TmAsmDecoder())
+                .addDecodingFunction(new TmRandomizerDecoder())
+                .addDecodingStage(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223, 5, true))
+                .configure();
+        assertArrayEquals(expected, decoder.apply(StringUtil.toByteArray(EXPECTED_TM)).getFrame());
+
+        // Uncorrectable frame, rejected
+        input = StringUtil.toByteArray(EXPECTED_TM);
+        input[100] ^= 0x01;
+        assertNull(decoder.apply(input));
+    }
+
+    @Test
+    public void testTmDecodingFused() {
+        byte[] expected = new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223, 5, true)
+                .apply(new TmRandomizerDecoder().apply(new TmAsmDecoder().apply(StringUtil.toByteArray(EXPECTED_TM))));
+        byte[] cadu = StringUtil.toByteArray(EXPECTED_TM);
+
+        // Function
+        CaduDecoder caduDecoder = new CaduDecoder(ReedSolomonAlgorithm.TM_255_223, 5, false);
+        assertArrayEquals(expected, caduDecoder.apply(cadu.clone()));
+
+        // Stage on a CADU embedded in a larger buffer, with errors
+        byte[] buffer = new byte[cadu.length + 20];
+        System.arraycopy(cadu, 0, buffer, 7, cadu.length);
+        buffer[7 + 50] ^= 0x7F;
+        buffer[7 + 1000] ^= 0x01;
+        CaduDecoder correctingDecoder = new CaduDecoder(ReedSolomonAlgorithm.TM_255_223, 5, true);
+        DecodingBuffer view = new DecodingBuffer(buffer, 7, cadu.length);
+        assertTrue(correctingDecoder.decode(view));
+        assertSame(buffer, view.getData());
+        assertEquals(7 + 4, view.getOffset());
+        assertEquals(1115, view.getLength());
+        assertArrayEquals(expected, Arrays.copyOfRange(buffer, view.getOffset(), view.getOffset() + view.getLength()));
+        // The number of corrected symbols is attached to each buffer, also when the stage is used on its own
+        DecodingBuffer cleanView = new DecodingBuffer(cadu.clone());
+        assertTrue(correctingDecoder.decode(cleanView));
+        assertEquals(2, Arrays.stream(view.getAnnotationValue(ReedSolomonDecoder.ANNOTATION_RS_CORRECTED_SYMBOLS)).sum());
+        assertEquals(0, Arrays.stream(cleanView.getAnnotationValue(ReedSolomonDecoder.ANNOTATION_RS_CORRECTED_SYMBOLS)).sum());
+
+        // Detection only: rejected
+        cadu[50] ^= 0x7F;
+        assertNull(caduDecoder.apply(cadu.clone()));
+
+        // In a channel decoder
+        ChannelDecoder<TmTransferFrame> decoder = ChannelDecoder.create(TmTransferFrame.decodingFunction(false))
+                .addDecodingStage(correctingDecoder)
+                .configure();
+        TmTransferFrame frame = decoder.apply(cadu);
+        assertArrayEquals(expected, frame.getFrame());
+        assertEquals(1, Arrays.stream((int[]) frame.getAnnotationValue(ReedSolomonDecoder.ANNOTATION_RS_CORRECTED_SYMBOLS)).sum());
+
+        // Wrong sync marker
+        cadu[0] = 0;
+        assertThrows(IllegalArgumentException.class, () -> caduDecoder.apply(cadu));
+    }
+
     @Test
     public void testTmDecodingLongerSyncMarker() {
         // Create TM as result
@@ -17,6 +17,7 @@
 package eu.dariolucia.ccsds.tmtc.coding.encoder;
 
 import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.ChannelEncoder;
 import eu.dariolucia.ccsds.tmtc.datalink.builder.TmTransferFrameBuilder;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
 import eu.dariolucia.ccsds.tmtc.util.StringUtil;
@@ -59,6 +60,38 @@ public class TmEncoderTest {
         assertArrayEquals(StringUtil.toByteArray(EXPECTED_TM), encoded.get());
     }
 
+    @Test
+    public void testTmEncodingReuseBuffer() {
+        // Create TM
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(1115, 0, true, false)
+                .setSpacecraftId(123)
+                .setVirtualChannelId(1)
+                .setMasterChannelFrameCount(22)
+                .setVirtualChannelFrameCount(14)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(true)
+                .setOcf(new byte[] { 0, 0, 0, 0 });
+        builder.addData(new byte[TmTransferFrameBuilder.computeUserDataLength(1115, 0, true, false)]);
+
+        TmTransferFrame tmtf = builder.build();
+
+        // RS with buffer reuse, randomize and ASM
+        ReedSolomonEncoder<TmTransferFrame> rsEncoder = new ReedSolomonEncoder<>(ReedSolomonAlgorithm.TM_255_223, 5, true);
+        ChannelEncoder<TmTransferFrame> encoder = ChannelEncoder.<TmTransferFrame>create()
+                .addEncodingFunction(rsEncoder)
+                .addEncodingFunction(new TmRandomizerEncoder<>())
+                .addEncodingFunction(new TmAsmEncoder<>())
+                .configure();
+        for(int i = 0; i < 3; ++i) {
+            assertArrayEquals(StringUtil.toByteArray(EXPECTED_TM), encoder.apply(tmtf));
+        }
+        // The RS output buffer is reused
+        byte[] first = rsEncoder.apply(tmtf, tmtf.getFrame());
+        byte[] second = rsEncoder.apply(tmtf, tmtf.getFrame());
+        assertSame(first, second);
+        assertEquals(1115 + 160, second.length);
+    }
+
     @Test
     public void testTmEncodingLongerSyncMarker() {
         // Create TM
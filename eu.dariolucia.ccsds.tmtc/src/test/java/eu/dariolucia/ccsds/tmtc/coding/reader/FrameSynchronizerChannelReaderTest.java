@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import eu.dariolucia.ccsds.tmtc.coding.encoder.TmAsmEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameSynchronizerChannelReaderTest {
+
+    private static final byte[] ASM = TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER;
+
+    private static final int FRAME_LENGTH = 223;
+
+    /**
+     * Simple bitstream builder.
+     */
+    private static class BitStream {
+        private final BitSet bits = new BitSet();
+        private int length = 0;
+
+        void add(byte[] data, int errorsInFirstByte) {
+            for(int i = 0; i < data.length; ++i) {
+                for(int j = 7; j >= 0; --j) {
+                    boolean bit = ((data[i] >> j) & 1) == 1;
+                    // Flip the first bits if errors are requested
+                    if(i == 0 && 7 - j < errorsInFirstByte) {
+                        bit = !bit;
+                    }
+                    bits.set(length++, bit);
+                }
+            }
+        }
+
+        void addRandomBits(Random r, int n) {
+            for(int i = 0; i < n; ++i) {
+                bits.set(length++, r.nextBoolean());
+            }
+        }
+
+        void dropLastBit() {
+            bits.clear(--length);
+        }
+
+        byte[] toByteArray(boolean inverted) {
+            byte[] out = new byte[(length + 7) / 8];
+            for(int i = 0; i < length; ++i) {
+                if(bits.get(i) != inverted) {
+                    out[i / 8] |= (byte) (0x80 >>> (i % 8));
+                }
+            }
+            return out;
+        }
+    }
+
+    private static List<byte[]> generateFrames(Random r, int n) {
+        List<byte[]> frames = new ArrayList<>();
+        for(int i = 0; i < n; ++i) {
+            byte[] f = new byte[FRAME_LENGTH];
+            r.nextBytes(f);
+            frames.add(f);
+        }
+        return frames;
+    }
+
+    private static FrameSynchronizerChannelReader reader(byte[] stream) {
+        return new FrameSynchronizerChannelReader(Channels.newChannel(new ByteArrayInputStream(stream)), ASM, FRAME_LENGTH);
+    }
+
+    private static List<byte[]> readAll(FrameSynchronizerChannelReader reader) throws IOException {
+        List<byte[]> read = new ArrayList<>();
+        byte[] frame;
+        while((frame = reader.readNext()) != null) {
+            read.add(frame);
+        }
+        return read;
+    }
+
+    @Test
+    void testBitLevelSearch() throws IOException {
+        Random r = new Random(1);
+        List<byte[]> frames = generateFrames(r, 50);
+        BitStream bs = new BitStream();
+        bs.addRandomBits(r, 13);
+        for(byte[] f : frames) {
+            bs.add(ASM, 0);
+            bs.add(f, 0);
+        }
+        FrameSynchronizerChannelReader reader = reader(bs.toByteArray(false)).setCheckCount(2);
+        List<byte[]> read = readAll(reader);
+        assertEquals(50, read.size());
+        for(int i = 0; i < 50; ++i) {
+            assertArrayEquals(frames.get(i), read.get(i));
+        }
+        assertEquals(FrameSynchronizerChannelReader.State.LOCK, reader.getState());
+        assertEquals(50, reader.getLockedFrames());
+        assertFalse(reader.isInverted());
+
+        // Byte-level search cannot find it
+        assertNull(reader(bs.toByteArray(false)).setBitLevelSearch(false).readNext());
+        reader.close();
+    }
+
+    @Test
+    void testIncludeSyncMarkerAndCallerBuffer() throws IOException {
+        Random r = new Random(2);
+        List<byte[]> frames = generateFrames(r, 5);
+        BitStream bs = new BitStream();
+        for(byte[] f : frames) {
+            bs.add(ASM, 0);
+            bs.add(f, 0);
+        }
+        FrameSynchronizerChannelReader reader = reader(bs.toByteArray(false)).setIncludeSyncMarker(true);
+        byte[] buffer = new byte[ASM.length + FRAME_LENGTH + 3];
+        assertEquals(ASM.length + FRAME_LENGTH, reader.readNext(buffer, 3, buffer.length - 3));
+        assertEquals(ASM[0], buffer[3]);
+        assertEquals(frames.get(0)[0], buffer[3 + ASM.length]);
+        assertThrows(IOException.class, () -> reader.readNext(buffer, 0, FRAME_LENGTH));
+        assertThrows(IllegalStateException.class, () -> reader.setCheckCount(3));
+    }
+
+    @Test
+    void testMarkerErrorsAndFlywheel() throws IOException {
+        Random r = new Random(3);
+        List<byte[]> frames = generateFrames(r, 20);
+        BitStream bs = new BitStream();
+        bs.addRandomBits(r, 5);
+        for(int i = 0; i < frames.size(); ++i) {
+            // 2 bit errors in marker 5, 6 bit errors in marker 10
+            bs.add(ASM, i == 5 ? 2 : i == 10 ? 6 : 0);
+            bs.add(frames.get(i), 0);
+        }
+        byte[] stream = bs.toByteArray(false);
+
+        // Tolerance 2, flywheel 1: all frames delivered
+        FrameSynchronizerChannelReader reader = reader(stream).setErrorTolerance(0, 2).setFlywheelCount(1);
+        List<byte[]> read = readAll(reader);
+        assertEquals(20, read.size());
+        for(int i = 0; i < 20; ++i) {
+            assertArrayEquals(frames.get(i), read.get(i));
+        }
+        assertEquals(19, reader.getLockedFrames());
+        assertEquals(1, reader.getFlywheelFrames());
+        assertEquals(0, reader.getLockLosses());
+
+        // No tolerance, no flywheel: lock lost at frame 5 and 10, and recovered after them
+        reader = reader(stream).setErrorTolerance(0, 0).setFlywheelCount(0);
+        read = readAll(reader);
+        assertEquals(18, read.size());
+        assertEquals(2, reader.getLockLosses());
+        assertArrayEquals(frames.get(19), read.get(17));
+    }
+
+    @Test
+    void testInvertedPolarity() throws IOException {
+        Random r = new Random(4);
+        List<byte[]> frames = generateFrames(r, 10);
+        BitStream bs = new BitStream();
+        bs.addRandomBits(r, 3);
+        for(byte[] f : frames) {
+            bs.add(ASM, 0);
+            bs.add(f, 0);
+        }
+        byte[] stream = bs.toByteArray(true);
+        FrameSynchronizerChannelReader reader = reader(stream).setInvertedPolarityDetection(true);
+        List<byte[]> read = readAll(reader);
+        assertEquals(10, read.size());
+        for(int i = 0; i < 10; ++i) {
+            assertArrayEquals(frames.get(i), read.get(i));
+        }
+        assertTrue(reader.isInverted());
+
+        // Without detection, nothing is found
+        assertNull(reader(stream).readNext());
+    }
+
+    @Test
+    void testBitSlip() throws IOException {
+        Random r = new Random(5);
+        List<byte[]> frames = generateFrames(r, 30);
+        BitStream bs = new BitStream();
+        for(int i = 0; i < frames.size(); ++i) {
+            bs.add(ASM, 0);
+            bs.add(frames.get(i), 0);
+            if(i == 10) {
+                // One bit lost at the end of frame 10
+                bs.dropLastBit();
+            }
+            if(i == 20) {
+                // Two bits inserted at the end of frame 20
+                bs.addRandomBits(r, 2);
+            }
+        }
+        FrameSynchronizerChannelReader reader = reader(bs.toByteArray(false)).setBitSlipWindow(2);
+        List<byte[]> read = readAll(reader);
+        assertEquals(30, read.size());
+        for(int i = 0; i < 30; ++i) {
+            if(i != 10) {
+                assertArrayEquals(frames.get(i), read.get(i));
+            }
+        }
+        assertEquals(2, reader.getBitSlips());
+        assertEquals(0, reader.getLockLosses());
+    }
+
+    @Test
+    void testDropoutAndLongStream() throws IOException {
+        Random r = new Random(6);
+        List<byte[]> frames = generateFrames(r, 2000);
+        BitStream bs = new BitStream();
+        List<byte[]> expected = new ArrayList<>();
+        for(int i = 0; i < frames.size(); ++i) {
+            if(i >= 1000 && i < 1005) {
+                // Dropout: noise of random length
+                bs.addRandomBits(r, 1000 + r.nextInt(100));
+                continue;
+            }
+            bs.add(ASM, 0);
+            bs.add(frames.get(i), 0);
+            expected.add(frames.get(i));
+        }
+        FrameSynchronizerChannelReader reader = reader(bs.toByteArray(false)).setFlywheelCount(1).setCheckCount(1);
+        List<byte[]> read = readAll(reader);
+        // The frame before the dropout is delivered, then one flywheel frame (noise) is delivered
+        assertEquals(1, reader.getLockLosses());
+        assertEquals(1, reader.getFlywheelFrames());
+        assertEquals(expected.size() + 1, read.size());
+        for(int i = 0; i < 1000; ++i) {
+            assertArrayEquals(expected.get(i), read.get(i));
+        }
+        for(int i = 1000; i < expected.size(); ++i) {
+            assertArrayEquals(expected.get(i), read.get(i + 1));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFixedLengthChannelReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeFile(int frames, int frameLength, int additionalBytes) throws IOException {
+        byte[] data = new byte[frames * frameLength + additionalBytes];
+        for(int i = 0; i < frames; ++i) {
+            // First 4 bytes: frame counter, then a repeated pattern
+            ByteBuffer.wrap(data, i * frameLength, frameLength).putInt(i);
+            for(int j = 4; j < frameLength; ++j) {
+                data[i * frameLength + j] = (byte) (i + j);
+            }
+        }
+        Path file = tempDir.resolve("frames.bin");
+        Files.write(file, data);
+        return file;
+    }
+
+    @Test
+    void testReadNext() throws IOException {
+        Path file = writeFile(1000, 1115, 0);
+        MappedFixedLengthChannelReader reader = new MappedFixedLengthChannelReader(FileChannel.open(file), 1115, 10000);
+        int counter = 0;
+        byte[] frame;
+        while((frame = reader.readNext()) != null) {
+            assertEquals(counter, ByteBuffer.wrap(frame).getInt());
+            assertEquals((byte) (counter + 1114), frame[1114]);
+            ++counter;
+        }
+        reader.close();
+        assertEquals(1000, counter);
+    }
+
+    @Test
+    void testReadNextTruncated() throws IOException {
+        Path file = writeFile(10, 1115, 100);
+        MappedFixedLengthChannelReader reader = new MappedFixedLengthChannelReader(file, 1115);
+        for(int i = 0; i < 10; ++i) {
+            assertEquals(i, reader.readNextSlice().getInt());
+        }
+        assertThrows(IOException.class, reader::readNext);
+        reader.close();
+    }
+
+    @Test
+    void testParallelStream() throws IOException {
+        Path file = writeFile(1000, 1115, 0);
+        MappedFixedLengthChannelReader reader = new MappedFixedLengthChannelReader(FileChannel.open(file), 1115, 10000);
+        Spliterator<ByteBuffer> spliterator = reader.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(1000, spliterator.estimateSize());
+        List<Integer> counters = reader.stream(true).map(ByteBuffer::getInt).collect(Collectors.toList());
+        assertEquals(1000, counters.size());
+        for(int i = 0; i < counters.size(); ++i) {
+            assertEquals(i, counters.get(i));
+        }
+        assertEquals(499500, reader.stream(true).mapToInt(ByteBuffer::getInt).sum());
+        reader.close();
+
+        // Truncated file
+        Path truncated = writeFile(10, 1115, 100);
+        MappedFixedLengthChannelReader truncatedReader = new MappedFixedLengthChannelReader(truncated, 1115);
+        assertThrows(UncheckedIOException.class, () -> truncatedReader.stream(false).forEach(bb -> {}));
+        truncatedReader.close();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.coding.reader;
+
+import eu.dariolucia.ccsds.tmtc.coding.encoder.TmAsmEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSyncMarkerFixedLengthChannelReaderTest {
+
+    private static final String FILE_TM1 = "dumpFile_tm_1.hex";
+
+    private static final int FRAME_LENGTH = 1275;
+
+    @TempDir
+    Path tempDir;
+
+    private List<byte[]> readFrames() throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream(FILE_TM1));
+        byte[] frame;
+        while((frame = reader.readNext()) != null) {
+            frames.add(frame);
+        }
+        reader.close();
+        return frames;
+    }
+
+    private Path writeFile(List<byte[]> frames, byte[] garbage) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for(int i = 0; i < frames.size(); ++i) {
+            bos.writeBytes(frames.get(i));
+            // Add garbage between frames, if provided
+            if(garbage != null && i % 3 == 0) {
+                bos.writeBytes(garbage);
+            }
+        }
+        Path file = tempDir.resolve("cadu.bin");
+        Files.write(file, bos.toByteArray());
+        return file;
+    }
+
+    private static byte[] toArray(ByteBuffer bb) {
+        byte[] b = new byte[bb.remaining()];
+        bb.get(b);
+        return b;
+    }
+
+    @Test
+    void testReadNext() throws IOException {
+        List<byte[]> frames = readFrames();
+        Path file = writeFile(frames, null);
+        // Small window, to check the remapping
+        MappedSyncMarkerFixedLengthChannelReader reader = new MappedSyncMarkerFixedLengthChannelReader(FileChannel.open(file), TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH, true, true, 4000);
+        int counter = 0;
+        byte[] frame;
+        while((frame = reader.readNext()) != null) {
+            assertArrayEquals(frames.get(counter), frame);
+            ++counter;
+        }
+        reader.close();
+        assertEquals(152, counter);
+    }
+
+    @Test
+    void testReadNextSliceWithoutMarker() throws IOException {
+        List<byte[]> frames = readFrames();
+        Path file = writeFile(frames, null);
+        MappedSyncMarkerFixedLengthChannelReader reader = new MappedSyncMarkerFixedLengthChannelReader(FileChannel.open(file), TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH, false, false);
+        ByteBuffer slice = reader.readNextSlice();
+        assertNotNull(slice);
+        assertTrue(slice.isReadOnly());
+        assertEquals(FRAME_LENGTH, slice.remaining());
+        assertArrayEquals(frames.get(0), ByteBuffer.allocate(4 + FRAME_LENGTH).put(TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER).put(slice).array());
+        byte[] b = new byte[FRAME_LENGTH + 10];
+        assertEquals(FRAME_LENGTH, reader.readNext(b, 10, FRAME_LENGTH));
+        assertThrows(IOException.class, () -> reader.readNext(b, 0, FRAME_LENGTH - 1));
+        reader.close();
+    }
+
+    @Test
+    void testResynchronisation() throws IOException {
+        List<byte[]> frames = readFrames();
+        // Garbage with partial sync markers
+        Path file = writeFile(frames, new byte[] { 0x1A, (byte) 0xCF, (byte) 0xFC, 0x00, 0x1A, 0x1A, 0x55, 0x1A, (byte) 0xCF, 0x11, 0x22 });
+        MappedSyncMarkerFixedLengthChannelReader reader = new MappedSyncMarkerFixedLengthChannelReader(FileChannel.open(file), TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH, true, false, 4000);
+        int counter = 0;
+        byte[] frame;
+        while((frame = reader.readNext()) != null) {
+            assertArrayEquals(frames.get(counter), frame);
+            ++counter;
+        }
+        reader.close();
+        assertEquals(152, counter);
+
+        MappedSyncMarkerFixedLengthChannelReader throwingReader = new MappedSyncMarkerFixedLengthChannelReader(FileChannel.open(file), TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH, true, true);
+        assertNotNull(throwingReader.readNext());
+        assertThrows(SynchronizationLostException.class, throwingReader::readNext);
+        throwingReader.close();
+    }
+
+    @Test
+    void testTruncatedFile() throws IOException {
+        List<byte[]> frames = readFrames();
+        Path file = writeFile(frames.subList(0, 3), null);
+        // Truncate the last frame
+        Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 3 * (4 + FRAME_LENGTH) - 100));
+        MappedSyncMarkerFixedLengthChannelReader reader = new MappedSyncMarkerFixedLengthChannelReader(file, TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH);
+        assertNotNull(reader.readNext());
+        assertNotNull(reader.readNext());
+        assertThrows(IOException.class, reader::readNext);
+        reader.close();
+    }
+
+    @Test
+    void testParallelStream() throws IOException {
+        List<byte[]> frames = readFrames();
+        Path file = writeFile(frames, new byte[] { 0x1A, (byte) 0xCF, (byte) 0xFC, 0x1C, 0x33 });
+        MappedSyncMarkerFixedLengthChannelReader reader = new MappedSyncMarkerFixedLengthChannelReader(FileChannel.open(file), TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH, true, false, 8000);
+        List<byte[]> read = reader.stream(true).map(MappedSyncMarkerFixedLengthChannelReaderTest::toArray).collect(Collectors.toList());
+        assertEquals(152, read.size());
+        for(int i = 0; i < frames.size(); ++i) {
+            assertArrayEquals(frames.get(i), read.get(i));
+        }
+        // The spliterator does not move the reader
+        assertArrayEquals(frames.get(0), reader.readNext());
+        // Spliterator from the current position
+        assertEquals(151, reader.stream(false).count());
+        reader.close();
+    }
+
+    @Test
+    void testStreamSyncLoss() throws IOException {
+        List<byte[]> frames = readFrames();
+        Path file = writeFile(frames, new byte[] { 0x33 });
+        MappedSyncMarkerFixedLengthChannelReader reader = new MappedSyncMarkerFixedLengthChannelReader(FileChannel.open(file), TmAsmEncoder.DEFAULT_ATTACHED_SYNC_MARKER, FRAME_LENGTH, true, true);
+        assertThrows(UncheckedIOException.class, () -> reader.stream(false).count());
+        reader.close();
+    }
+}
@@ -24,10 +24,16 @@ import eu.dariolucia.ccsds.tmtc.ocf.builder.ClcwBuilder;
 import eu.dariolucia.ccsds.tmtc.ocf.pdu.Clcw;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -1050,6 +1056,99 @@ class FarmEngineTest {
         assertNotNull(status.toString());
     }
 
+    @Test
+    public void testSharedExecutor() throws InterruptedException {
+        AtomicInteger poolThreads = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+            poolThreads.incrementAndGet();
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        int nbEngines = 64;
+        int nbFrames = 10;
+        List<FarmEngine> engines = new ArrayList<>();
+        List<List<TcTransferFrame>> sinks = new ArrayList<>();
+        List<TransferFrameCollector<TcTransferFrame>> collectors = new ArrayList<>();
+        List<TcSenderVirtualChannel> vcs = new ArrayList<>();
+        for(int i = 0; i < nbEngines; ++i) {
+            List<TcTransferFrame> sink = new CopyOnWriteArrayList<>();
+            FarmEngine farm = new FarmEngine(i, sink::add, true, nbFrames, 10, FarmState.S1, 0, executor);
+            assertEquals(0, farm.getLastClcw().getReportValue());
+            assertEquals(i, farm.getLastClcw().getVirtualChannelId());
+            TcSenderVirtualChannel vc = new TcSenderVirtualChannel(321, i, VirtualChannelAccessMode.DATA, false, false);
+            TransferFrameCollector<TcTransferFrame> collector = new TransferFrameCollector<>();
+            vc.register(collector);
+            engines.add(farm);
+            sinks.add(sink);
+            collectors.add(collector);
+            vcs.add(vc);
+        }
+        // Interleave the frames of the different virtual channels
+        for(int f = 0; f < nbFrames; ++f) {
+            for(int i = 0; i < nbEngines; ++i) {
+                vcs.get(i).dispatch(true, 0, new byte[100]);
+                engines.get(i).frameArrived(collectors.get(i).retrieveFirst(true));
+            }
+        }
+        for(int i = 0; i < nbEngines; ++i) {
+            FarmEngine farm = engines.get(i);
+            // Processing of all the frames
+            Clcw clcw = farm.get();
+            assertEquals(nbFrames, clcw.getReportValue());
+            assertFalse(clcw.isRetransmitFlag());
+            assertFalse(clcw.isWaitFlag());
+            // Non-blocking retrieval of the same CLCW
+            assertEquals(clcw, farm.getLastClcw());
+        }
+        for(int i = 0; i < nbEngines; ++i) {
+            List<TcTransferFrame> sink = sinks.get(i);
+            long waitUntil = System.currentTimeMillis() + 5000;
+            while(sink.size() < nbFrames && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(5);
+            }
+            assertEquals(nbFrames, sink.size());
+            for(int f = 0; f < nbFrames; ++f) {
+                assertEquals(f, sink.get(f).getVirtualChannelFrameCount());
+            }
+        }
+        assertTrue(poolThreads.get() <= 4);
+
+        // Flags are published without further frames
+        FarmEngine farm = engines.get(0);
+        farm.setStatusField(3);
+        assertEquals(3, farm.get().getStatusField());
+        assertEquals(3, farm.getLastClcw().getStatusField());
+        // Thread confinement
+        assertThrows(IllegalAccessError.class, farm::increaseVr);
+
+        engines.forEach(FarmEngine::dispose);
+        // Shared executor is not stopped
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testConstructionInSaturatedExecutor() throws Exception {
+        // Single thread, busy with the construction: the engine cannot wait for its own tasks
+        ExecutorService executor = Executors.newFixedThreadPool(1, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        Future<FarmEngine> future = executor.submit(() -> new FarmEngine(3, o -> {}, true, 10, 10, FarmState.S1, 5, executor));
+        FarmEngine farm = future.get(5, TimeUnit.SECONDS);
+        assertEquals(5, farm.getLastClcw().getReportValue());
+        assertEquals(3, farm.getLastClcw().getVirtualChannelId());
+        assertFalse(farm.getLastClcw().isLockoutFlag());
+        // Once the executor is free, the engine runs normally
+        farm.setStatusField(2);
+        assertEquals(2, farm.get().getStatusField());
+        assertEquals(5, farm.get().getReportValue());
+        farm.dispose();
+        executor.shutdown();
+    }
+
     private static class FarmListenerStub implements IFarmObserver {
 
         private final List<FarmStatus> lastStatus = new LinkedList<>();
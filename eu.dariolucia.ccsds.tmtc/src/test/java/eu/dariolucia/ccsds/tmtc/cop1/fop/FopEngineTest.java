@@ -23,12 +23,18 @@ import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util.TransferFrameCollec
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TcTransferFrame;
 import eu.dariolucia.ccsds.tmtc.ocf.builder.ClcwBuilder;
 import eu.dariolucia.ccsds.tmtc.ocf.pdu.Clcw;
+import eu.dariolucia.ccsds.tmtc.util.HashedWheelTimer;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
@@ -2043,6 +2049,68 @@ class FopEngineTest {
         assertNotNull(status.toString());
     }
 
+    @Test
+    public void testSharedExecutorAndTimer() throws InterruptedException {
+        AtomicInteger poolThreads = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+            poolThreads.incrementAndGet();
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger timerThreads = new AtomicInteger(0);
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64, r -> {
+            timerThreads.incrementAndGet();
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        int nbEngines = 32;
+        List<FopEngine> engines = new ArrayList<>();
+        List<FopListenerStub> stubs = new ArrayList<>();
+        List<List<TcTransferFrame>> sinks = new ArrayList<>();
+        for(int i = 0; i < nbEngines; ++i) {
+            // VC
+            TcSenderVirtualChannel tcVc = new TcSenderVirtualChannel(123, i, VirtualChannelAccessMode.DATA, true, false);
+            BcFrameCollector bcFactory = new BcFrameCollector(tcVc);
+            tcVc.register(bcFactory);
+            TransferFrameCollector<TcTransferFrame> collector = new TransferFrameCollector<>(o -> o.getFrameType() == TcTransferFrame.FrameType.AD);
+            tcVc.register(collector);
+            // Fop Engine on the shared executor and timer
+            List<TcTransferFrame> sink = new CopyOnWriteArrayList<>();
+            FopEngine fop = new FopEngine(tcVc.getVirtualChannelId(), tcVc::getNextVirtualChannelFrameCounter, tcVc::setVirtualChannelFrameCounter, bcFactory, bcFactory, sink::add, executor, timer);
+            FopListenerStub stub = new FopListenerStub();
+            fop.register(stub);
+            fop.directive(1, FopDirective.SET_FOP_SLIDING_WINDOW, 5);
+            fop.directive(2, FopDirective.SET_T1_INITIAL, 1);
+            fop.directive(3, FopDirective.SET_TIMEOUT_TYPE, 0);
+            fop.directive(4, FopDirective.SET_TRANSMISSION_LIMIT, 2);
+            fop.directive(5, FopDirective.INIT_AD_WITHOUT_CLCW, 0);
+            tcVc.dispatch(true, 0, new byte[100]);
+            fop.transmit(collector.retrieveFirst(true));
+            engines.add(fop);
+            stubs.add(stub);
+            sinks.add(sink);
+        }
+
+        // No CLCW: the frame is retransmitted once upon timer expiration, then the T1 alert is raised
+        for(int i = 0; i < nbEngines; ++i) {
+            assertTrue(stubs.get(i).waitForAlert(FopAlertCode.T1, 5000));
+            assertEquals(2, sinks.get(i).size());
+        }
+        // Thread confinement
+        assertThrows(IllegalAccessError.class, () -> engines.get(0).restartTimer());
+        assertTrue(poolThreads.get() <= 4);
+        assertEquals(1, timerThreads.get());
+
+        engines.forEach(FopEngine::dispose);
+        // Shared executor and timer are not stopped
+        assertFalse(executor.isShutdown());
+        assertFalse(timer.isStopped());
+        executor.shutdown();
+        timer.stop();
+    }
+
     private static class FopListenerStub implements IFopObserver {
 
         private final List<FopStatus> lastStatus = new LinkedList<>();
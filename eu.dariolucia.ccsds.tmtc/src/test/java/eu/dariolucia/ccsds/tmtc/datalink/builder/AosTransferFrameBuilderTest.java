@@ -172,4 +172,102 @@ class AosTransferFrameBuilderTest {
             tb.build();
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAosResetAndReuse() {
+        AosTransferFrameBuilder builder = AosTransferFrameBuilder.create(892, true, 2, AosTransferFrame.UserDataType.M_PDU, true, true)
+                .setSpacecraftId(123)
+                .setVirtualChannelId(42)
+                .setVirtualChannelFrameCount(1000)
+                .setReplayFlag(false)
+                .setVirtualChannelFrameCountUsageFlag(false);
+        // Security data set after some data: the data already written must be moved
+        builder.addData(new byte[] { 1, 2, 3, 4 });
+        builder.setSecurity(new byte[] { 9, 9, 9 }, new byte[] { 8, 8 });
+        builder.addSpacePacket(new byte[] { 0x08, 0x64, (byte) 0xC0, 0x00, 0x00, 0x00, 0x55 });
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        builder.setInsertZone(new byte[] { 6, 6 }).setOcf(new byte[] { 1, 2, 3, 4 });
+        AosTransferFrame first = builder.build();
+        byte[] firstCopy = first.getFrameCopy();
+
+        AosTransferFrameBuilder reference = AosTransferFrameBuilder.create(892, true, 2, AosTransferFrame.UserDataType.M_PDU, true, true)
+                .setSpacecraftId(123)
+                .setVirtualChannelId(42)
+                .setVirtualChannelFrameCount(1000)
+                .setReplayFlag(false)
+                .setVirtualChannelFrameCountUsageFlag(false)
+                .setSecurity(new byte[] { 9, 9, 9 }, new byte[] { 8, 8 });
+        reference.addData(new byte[] { 1, 2, 3, 4 });
+        reference.addSpacePacket(new byte[] { 0x08, 0x64, (byte) 0xC0, 0x00, 0x00, 0x00, 0x55 });
+        reference.addData(new byte[reference.getFreeUserDataLength()]);
+        reference.setInsertZone(new byte[] { 6, 6 }).setOcf(new byte[] { 1, 2, 3, 4 });
+        assertArrayEquals(reference.build().getFrame(), first.getFrame());
+
+        assertTrue(first.isValid());
+        assertTrue(first.isValidHeader());
+        assertArrayEquals(new byte[] { 9, 9, 9 }, first.getSecurityHeaderCopy());
+        assertArrayEquals(new byte[] { 8, 8 }, first.getSecurityTrailerCopy());
+        assertArrayEquals(new byte[] { 6, 6 }, first.getInsertZoneCopy());
+
+        // Reset: the identifiers are kept, the content is not
+        byte[] buffer = new byte[892];
+        builder.reset(buffer).setVirtualChannelFrameCount(1001);
+        assertEquals(AosTransferFrameBuilder.computeUserDataLength(892, true, 2, AosTransferFrame.UserDataType.M_PDU, true, true), builder.getFreeUserDataLength());
+        builder.addData(new byte[] { 1, 2, 3, 4 });
+        builder.addSpacePacket(new byte[] { 0x08, 0x64, (byte) 0xC0, 0x00, 0x00, 0x00, 0x55 });
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        assertException(IllegalStateException.class, builder::build);
+        builder.setInsertZone(new byte[] { 7, 7 });
+        assertException(IllegalStateException.class, builder::build);
+        builder.setOcf(new byte[] { 4, 3, 2, 1 });
+        AosTransferFrame second = builder.build();
+        assertSame(buffer, second.getFrame());
+        assertTrue(second.isValid());
+        assertEquals(123, second.getSpacecraftId());
+        assertEquals(42, second.getVirtualChannelId());
+        assertEquals(1001, second.getVirtualChannelFrameCount());
+        assertEquals(4, second.getFirstHeaderPointer());
+        assertEquals(0, second.getSecurityHeaderLength());
+        // The first frame is not affected
+        assertArrayEquals(firstCopy, first.getFrame());
+
+        // No packet
+        builder.reset().setInsertZone(new byte[] { 7, 7 }).setOcf(new byte[] { 4, 3, 2, 1 });
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        assertEquals(AosTransferFrame.AOS_M_PDU_FIRST_HEADER_POINTER_NO_PACKET, builder.build().getFirstHeaderPointer());
+        assertSame(buffer, second.getFrame());
+
+        assertException(IllegalArgumentException.class, () -> builder.reset(new byte[891]));
+    }
+
+    @Test
+    public void testAosBitstreamDataPointer() {
+        AosTransferFrameBuilder builder = AosTransferFrameBuilder.create(892, false, 0, AosTransferFrame.UserDataType.B_PDU, false, true)
+                .setSpacecraftId(123)
+                .setVirtualChannelId(1)
+                .setVirtualChannelFrameCount(0);
+        builder.addBitstreamData(new byte[10], 80);
+        builder.addBitstreamData(new byte[10], 75);
+        builder.addBitstreamData(new byte[builder.getFreeUserDataLength()], 8);
+        AosTransferFrame frame = builder.build();
+        assertTrue(frame.isValid());
+        assertEquals(155, frame.getBitstreamDataPointer());
+
+        builder.reset();
+        builder.addBitstreamData(new byte[10], 80);
+        builder.addData(new byte[10]);
+        builder.addBitstreamData(new byte[builder.getFreeUserDataLength()], 8);
+        frame = builder.build();
+        assertEquals(80, frame.getBitstreamDataPointer());
+
+        builder.reset();
+        builder.addBitstreamData(new byte[builder.getFreeUserDataLength()], 100000);
+        frame = builder.build();
+        assertEquals(AosTransferFrame.AOS_B_PDU_FIRST_HEADER_POINTER_ALL_DATA, frame.getBitstreamDataPointer());
+
+        builder.reset().setIdle();
+        builder.addBitstreamData(new byte[builder.getFreeUserDataLength()], 0);
+        frame = builder.build();
+        assertEquals(AosTransferFrame.AOS_B_PDU_FIRST_HEADER_POINTER_IDLE, frame.getBitstreamDataPointer());
+    }
+}
@@ -74,4 +74,62 @@ class TcTransferFrameBuilderTest {
         assertArrayEquals(new byte[] {9, 8, 7, 6}, ttf.getSecurityTrailerCopy());
         assertNotNull(ttf.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTcResetAndReuse() {
+        TcTransferFrameBuilder builder = TcTransferFrameBuilder.create(true)
+                .setSpacecraftId(789)
+                .setVirtualChannelId(2)
+                .setFrameSequenceNumber(123)
+                .setBypassFlag(false)
+                .setControlCommandFlag(false);
+        // Segment and security set after some data: the data already written must be moved
+        builder.addData(new byte[] { 1, 2, 3 });
+        builder.setSegment(TcTransferFrame.SequenceFlagType.NO_SEGMENT, 5);
+        builder.setSecurity(new byte[] { 9, 9 }, new byte[] { 8 });
+        builder.addData(new byte[] { 4, 5 });
+        TcTransferFrame first = builder.build();
+        byte[] firstCopy = first.getFrameCopy();
+
+        TcTransferFrameBuilder reference = TcTransferFrameBuilder.create(true)
+                .setSpacecraftId(789)
+                .setVirtualChannelId(2)
+                .setFrameSequenceNumber(123)
+                .setBypassFlag(false)
+                .setControlCommandFlag(false)
+                .setSecurity(new byte[] { 9, 9 }, new byte[] { 8 })
+                .setSegment(TcTransferFrame.SequenceFlagType.NO_SEGMENT, 5);
+        reference.addData(new byte[] { 1, 2, 3, 4, 5 });
+        assertArrayEquals(reference.build().getFrame(), first.getFrame());
+
+        assertEquals(5 + 1 + 2 + 5 + 1 + 2, first.getLength());
+        assertTrue(first.isValid());
+        assertTrue(first.isSegmented());
+        assertEquals(5, first.getMapId());
+        assertArrayEquals(new byte[] { 9, 9 }, first.getSecurityHeaderCopy());
+        assertArrayEquals(new byte[] { 8 }, first.getSecurityTrailerCopy());
+
+        // Reset: the identifiers are kept, the content is not
+        builder.reset().setFrameSequenceNumber(124);
+        assertEquals(TcTransferFrameBuilder.computeMaxUserDataLength(true), builder.getFreeUserDataLength());
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        TcTransferFrame second = builder.build();
+        assertTrue(second.isValid());
+        assertEquals(TcTransferFrame.MAX_TC_FRAME_LENGTH, second.getLength());
+        assertEquals(789, second.getSpacecraftId());
+        assertEquals(2, second.getVirtualChannelId());
+        assertEquals(124, second.getVirtualChannelFrameCount());
+        assertFalse(second.isSegmented());
+        assertFalse(second.isBypassFlag());
+
+        // Maximum length frame: the array backs the frame and it is not re-used
+        builder.reset().setFrameSequenceNumber(125);
+        builder.addData(new byte[] { 1 });
+        TcTransferFrame third = builder.build();
+        assertTrue(third.isValid());
+        assertEquals(TcTransferFrame.MAX_TC_FRAME_LENGTH, second.getLength());
+        assertEquals(124, second.getVirtualChannelFrameCount());
+        assertEquals(125, third.getVirtualChannelFrameCount());
+        assertArrayEquals(firstCopy, first.getFrame());
+    }
+}
@@ -419,4 +419,90 @@ class TmTransferFrameBuilderTest {
             tb.build();
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testResetAndReuse() {
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(1115, 2, true, true)
+                .setSpacecraftId(789)
+                .setVirtualChannelId(2)
+                .setMasterChannelFrameCount(34)
+                .setVirtualChannelFrameCount(123)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(false)
+                .setSegmentLengthIdentifier(3);
+        // Security data set after some data: the data already written must be moved
+        builder.addData(new byte[] { 1, 2, 3 });
+        builder.setSecurity(new byte[] { 9, 9 }, new byte[] { 8 });
+        fill(builder);
+        builder.setSecondaryHeader(new byte[] { 5, 6 }).setOcf(new byte[] { 1, 2, 3, 4 });
+        TmTransferFrame first = builder.build();
+        byte[] firstCopy = first.getFrameCopy();
+
+        TmTransferFrameBuilder reference = TmTransferFrameBuilder.create(1115, 2, true, true)
+                .setSpacecraftId(789)
+                .setVirtualChannelId(2)
+                .setMasterChannelFrameCount(34)
+                .setVirtualChannelFrameCount(123)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(false)
+                .setSegmentLengthIdentifier(3)
+                .setSecurity(new byte[] { 9, 9 }, new byte[] { 8 });
+        reference.addData(new byte[] { 1, 2, 3 });
+        fill(reference);
+        reference.setSecondaryHeader(new byte[] { 5, 6 }).setOcf(new byte[] { 1, 2, 3, 4 });
+        assertArrayEquals(reference.build().getFrame(), first.getFrame());
+
+        assertTrue(first.isValid());
+        assertEquals(3, first.getFirstHeaderPointer());
+        assertArrayEquals(new byte[] { 5, 6 }, first.getSecondaryHeaderCopy());
+        assertArrayEquals(new byte[] { 8 }, first.getSecurityTrailerCopy());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, first.getOcfCopy());
+
+        // Build again without reset: same frame, different array
+        TmTransferFrame again = builder.build();
+        assertNotSame(first.getFrame(), again.getFrame());
+        assertArrayEquals(first.getFrame(), again.getFrame());
+
+        // Reset: the identifiers are kept, the content is not
+        builder.reset();
+        assertEquals(TmTransferFrameBuilder.computeUserDataLength(1115, 2, true, true), builder.getFreeUserDataLength());
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        assertException(IllegalStateException.class, builder::build);
+        builder.setSecondaryHeader(new byte[] { 7, 7 });
+        assertException(IllegalStateException.class, builder::build);
+        builder.setOcf(new byte[] { 4, 3, 2, 1 }).setVirtualChannelFrameCount(124);
+        TmTransferFrame second = builder.build();
+        assertTrue(second.isValid());
+        assertEquals(789, second.getSpacecraftId());
+        assertEquals(2, second.getVirtualChannelId());
+        assertEquals(124, second.getVirtualChannelFrameCount());
+        assertEquals(TmTransferFrame.TM_FIRST_HEADER_POINTER_NO_PACKET, second.getFirstHeaderPointer());
+        assertEquals(0, second.getSecurityHeaderLength());
+        assertArrayEquals(new byte[] { 7, 7 }, second.getSecondaryHeaderCopy());
+        assertArrayEquals(new byte[] { 4, 3, 2, 1 }, second.getOcfCopy());
+        // The first frame is not affected
+        assertArrayEquals(firstCopy, first.getFrame());
+
+        // Caller-provided array
+        byte[] buffer = new byte[1115];
+        builder.reset(buffer).setSecondaryHeader(new byte[] { 7, 7 }).setOcf(new byte[] { 4, 3, 2, 1 }).setIdle();
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        TmTransferFrame third = builder.build();
+        assertSame(buffer, third.getFrame());
+        assertTrue(third.isValid());
+        assertTrue(third.isIdleFrame());
+        assertArrayEquals(firstCopy, first.getFrame());
+
+        assertException(IllegalArgumentException.class, () -> builder.reset(new byte[1114]));
+    }
+
+    private static void fill(TmTransferFrameBuilder builder) {
+        byte[] packet = new byte[300];
+        for(int i = 0; i < packet.length; ++i) {
+            packet[i] = (byte) i;
+        }
+        while(!builder.isFull()) {
+            builder.addSpacePacket(packet);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.ReedSolomonDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.TmAsmDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.reader.LineHexDumpChannelReader;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.StreamUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchProcessingTest {
+
+    private static String FILE_TM1 = "dumpFile_tm_1.hex";
+    private static String FILE_TM4 = "dumpFile_tm_large_packets.hex";
+    private static String FILE_TM_GAP = "dumpFile_tm_gap_1.hex";
+    private static String FILE_TM_ENC = "dumpFile_tm_encapsulation.hex";
+    private static String FILE_TM_ENC_GAP = "dumpFile_tm_encapsulation_gap.hex";
+
+    @Test
+    public void testTmSpacePacketBatches() {
+        checkSameExtraction(FILE_TM1, true, VirtualChannelAccessMode.PACKET, 613);
+        checkSameExtraction(FILE_TM4, false, VirtualChannelAccessMode.PACKET, 5);
+        checkSameExtraction(FILE_TM_GAP, false, VirtualChannelAccessMode.PACKET, -1);
+    }
+
+    @Test
+    public void testTmEncapsulationPacketBatches() {
+        checkSameExtraction(FILE_TM_ENC, false, VirtualChannelAccessMode.ENCAPSULATION, 13);
+        checkSameExtraction(FILE_TM_ENC_GAP, false, VirtualChannelAccessMode.ENCAPSULATION, -1);
+    }
+
+    @Test
+    public void testSingleNotificationPerBatch() {
+        List<TmTransferFrame> frames = frames(FILE_TM1, true).collect(Collectors.toList());
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        AtomicInteger batches = new AtomicInteger(0);
+        AtomicInteger packets = new AtomicInteger(0);
+        AtomicInteger receivedFrames = new AtomicInteger(0);
+        IVirtualChannelReceiverOutput listener = new IVirtualChannelReceiverOutput() {
+            @Override
+            public void transferFrameReceived(AbstractReceiverVirtualChannel vc, AbstractTransferFrame receivedFrame) {
+                receivedFrames.incrementAndGet();
+            }
+
+            @Override
+            public void spacePacketsExtracted(AbstractReceiverVirtualChannel<?> vc, List<ExtractedPacket> extracted) {
+                batches.incrementAndGet();
+                packets.addAndGet(extracted.size());
+                assertThrows(UnsupportedOperationException.class, () -> extracted.add(null));
+                for(ExtractedPacket p : extracted) {
+                    assertNull(p.getPacketView());
+                    assertNotNull(p.getFirstFrame());
+                }
+            }
+
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                fail("Single packet notification not expected in batch mode");
+            }
+        };
+        vc0.register(listener);
+        vc0.processFrames(frames);
+        assertEquals(1, batches.get());
+        assertEquals(613, packets.get());
+        assertEquals(frames.size(), receivedFrames.get());
+
+        // Deregistered listener is not notified
+        vc0.deregister(listener);
+        vc0.processFrames(frames.get(0), frames.get(1));
+        assertEquals(1, batches.get());
+        assertEquals(frames.size(), receivedFrames.get());
+        // Deregistration of unknown listener has no effect
+        vc0.deregister(listener);
+    }
+
+    private void checkSameExtraction(String file, boolean cadu, VirtualChannelAccessMode mode, int expectedPackets) {
+        List<TmTransferFrame> frames = frames(file, cadu).collect(Collectors.toList());
+        List<Object[]> expected = extract(frames, mode, null, 0);
+        if(expectedPackets >= 0) {
+            assertEquals(expectedPackets, expected.size());
+        }
+        for(int batchSize : new int[] { 1, 7, frames.size() }) {
+            check(file, expected, extract(frames, mode, null, batchSize));
+            // Views are released at the end of the batch: the pool must be able to keep all of them
+            PacketBufferPool pool = new PacketBufferPool(1024);
+            check(file, expected, extract(frames, mode, pool, batchSize));
+            // All pooled views were released at the end of each batch, except the buffer of the packet still under
+            // reconstruction, if any
+            assertEquals(pool.getAllocatedBuffers() - (lastVc.isReconstructionPending() ? 1 : 0), pool.getAvailableBuffers());
+        }
+    }
+
+    private void check(String file, List<Object[]> expected, List<Object[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals((byte[]) expected.get(i)[0], (byte[]) actual.get(i)[0], "Packet " + i + " differs in " + file);
+            assertEquals(expected.get(i)[1], actual.get(i)[1]);
+            assertEquals(expected.get(i)[2], actual.get(i)[2]);
+            assertSame(expected.get(i)[3], actual.get(i)[3]);
+        }
+    }
+
+    private TmReceiverVirtualChannel lastVc;
+
+    private List<Object[]> extract(List<TmTransferFrame> frames, VirtualChannelAccessMode mode, PacketBufferPool pool, int batchSize) {
+        TmReceiverVirtualChannel vc = new TmReceiverVirtualChannel(0, mode, true);
+        vc.setPacketBufferPool(pool);
+        List<Object[]> packets = new ArrayList<>();
+        vc.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketsExtracted(AbstractReceiverVirtualChannel<?> vc, List<ExtractedPacket> extracted) {
+                assertTrue(batchSize > 0);
+                add(extracted);
+            }
+
+            @Override
+            public void encapsulationPacketsExtracted(AbstractReceiverVirtualChannel<?> vc, List<ExtractedPacket> extracted) {
+                assertTrue(batchSize > 0);
+                add(extracted);
+            }
+
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                assertEquals(0, batchSize);
+                packets.add(new Object[] { packet, qualityIndicator, gaps.size(), firstFrame });
+            }
+
+            @Override
+            public void encapsulationPacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                assertEquals(0, batchSize);
+                packets.add(new Object[] { packet, qualityIndicator, gaps.size(), firstFrame });
+            }
+
+            private void add(List<ExtractedPacket> extracted) {
+                for(ExtractedPacket p : extracted) {
+                    assertEquals(pool == null, p.getPacketView() == null);
+                    packets.add(new Object[] { p.getPacket(), p.isQualityIndicator(), p.getGaps().size(), p.getFirstFrame() });
+                }
+            }
+        });
+        if(batchSize == 0) {
+            frames.forEach(vc);
+        } else {
+            for(int i = 0; i < frames.size(); i += batchSize) {
+                vc.processFrames(frames.subList(i, Math.min(frames.size(), i + batchSize)));
+            }
+        }
+        lastVc = vc;
+        return packets;
+    }
+
+    private Stream<TmTransferFrame> frames(String file, boolean cadu) {
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream(file));
+        Stream<byte[]> stream = StreamUtil.from(reader);
+        if(cadu) {
+            stream = stream.map(new TmAsmDecoder()).map(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223));
+        }
+        return stream.map(TmTransferFrame.decodingFunction(false))
+                .filter(o -> o.getVirtualChannelId() == 0);
+    }
+}
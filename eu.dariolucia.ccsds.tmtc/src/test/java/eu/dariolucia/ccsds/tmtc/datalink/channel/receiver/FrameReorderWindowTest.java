@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.ReedSolomonDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.TmAsmDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.reader.LineHexDumpChannelReader;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.StreamUtil;
+import eu.dariolucia.ccsds.tmtc.util.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameReorderWindowTest {
+
+    private static String FILE_TM1 = "dumpFile_tm_1.hex";
+
+    @Test
+    public void testReorderAndDuplicates() {
+        List<Integer> released = new ArrayList<>();
+        FrameReorderWindow<TmTransferFrame> window = new FrameReorderWindow<>(4, 256, 0, System::nanoTime, f -> released.add(f.getVirtualChannelFrameCount()));
+        for(int c : new int[] { 10, 12, 11, 11, 13, 15, 14, 10, 16 }) {
+            window.add(frame(c));
+        }
+        assertEquals(List.of(10, 11, 12, 13, 14, 15, 16), released);
+        assertEquals(2, window.getDuplicatedFrames());
+        assertEquals(2, window.getReorderedFrames());
+        assertEquals(0, window.getBufferedFrames());
+
+        // Wrap around
+        released.clear();
+        window = new FrameReorderWindow<>(4, 256, 0, System::nanoTime, f -> released.add(f.getVirtualChannelFrameCount()));
+        for(int c : new int[] { 254, 0, 255, 1 }) {
+            window.add(frame(c));
+        }
+        assertEquals(List.of(254, 255, 0, 1), released);
+    }
+
+    @Test
+    public void testWindowSlideAndRestart() {
+        List<Integer> released = new ArrayList<>();
+        FrameReorderWindow<TmTransferFrame> window = new FrameReorderWindow<>(3, 256, 0, System::nanoTime, f -> released.add(f.getVirtualChannelFrameCount()));
+        // Size rounded up to 4: 1 is missing
+        for(int c : new int[] { 0, 2, 3, 4 }) {
+            window.add(frame(c));
+        }
+        assertEquals(List.of(0), released);
+        assertEquals(3, window.getBufferedFrames());
+        // Beyond the window: 1 is skipped
+        window.add(frame(5));
+        assertEquals(List.of(0, 2, 3, 4, 5), released);
+        assertEquals(0, window.getBufferedFrames());
+        // Frame 1 arrives too late
+        window.add(frame(1));
+        assertEquals(1, window.getDuplicatedFrames());
+        // Frame count restart
+        window.add(frame(8));
+        assertEquals(1, window.getBufferedFrames());
+        window.add(frame(100));
+        assertEquals(List.of(0, 2, 3, 4, 5, 8, 100), released);
+        assertEquals(0, window.getBufferedFrames());
+        // Flush
+        window.add(frame(102));
+        assertEquals(1, window.getBufferedFrames());
+        window.flush();
+        assertEquals(List.of(0, 2, 3, 4, 5, 8, 100, 102), released);
+        assertEquals(0, window.getBufferedFrames());
+    }
+
+    @Test
+    public void testMaxDelay() {
+        AtomicLong time = new AtomicLong(0);
+        List<Integer> released = new ArrayList<>();
+        FrameReorderWindow<TmTransferFrame> window = new FrameReorderWindow<>(8, 256, 100, time::get, f -> released.add(f.getVirtualChannelFrameCount()));
+        window.add(frame(0));
+        window.add(frame(3));
+        time.set(50);
+        window.add(frame(2));
+        time.set(120);
+        window.releaseExpired();
+        // 3 expired: 1 is skipped, 2 is released before 3
+        assertEquals(List.of(0, 2, 3), released);
+        window.add(frame(5));
+        time.set(200);
+        window.add(frame(6));
+        assertEquals(List.of(0, 2, 3), released);
+        time.set(220);
+        window.add(frame(8));
+        assertEquals(List.of(0, 2, 3, 5, 6), released);
+        assertEquals(1, window.getBufferedFrames());
+    }
+
+    @Test
+    public void testMaxDelayAfterOldestReleased() {
+        AtomicLong time = new AtomicLong(0);
+        List<Integer> released = new ArrayList<>();
+        FrameReorderWindow<TmTransferFrame> window = new FrameReorderWindow<>(8, 256, 100, time::get, f -> released.add(f.getVirtualChannelFrameCount()));
+        window.add(frame(0));
+        window.add(frame(2));
+        time.set(80);
+        window.add(frame(4));
+        time.set(90);
+        // The oldest frame (2) is released in sequence, 4 is still waiting for 3
+        window.add(frame(1));
+        assertEquals(List.of(0, 1, 2), released);
+        time.set(110);
+        window.releaseExpired();
+        assertEquals(List.of(0, 1, 2), released);
+        time.set(179);
+        window.releaseExpired();
+        assertEquals(List.of(0, 1, 2), released);
+        time.set(180);
+        window.releaseExpired();
+        assertEquals(List.of(0, 1, 2, 4), released);
+        assertEquals(0, window.getBufferedFrames());
+    }
+
+    @Test
+    public void testWrongConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameReorderWindow<TmTransferFrame>(0, 256, 0, System::nanoTime, f -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new FrameReorderWindow<TmTransferFrame>(65, 256, 0, System::nanoTime, f -> {}));
+        assertThrows(NullPointerException.class, () -> new FrameReorderWindow<TmTransferFrame>(4, 256, 0, null, f -> {}));
+        assertThrows(NullPointerException.class, () -> new FrameReorderWindow<TmTransferFrame>(4, 256, 0, System::nanoTime, null));
+    }
+
+    @Test
+    public void testReorderedExtraction() {
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream(FILE_TM1));
+        List<TmTransferFrame> frames = StreamUtil.from(reader)
+                .map(new TmAsmDecoder())
+                .map(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223))
+                .map(TmTransferFrame.decodingFunction(false))
+                .filter(o -> o.getVirtualChannelId() == 0)
+                .collect(Collectors.toList());
+        // Shuffle the frames in blocks of 4 (except the first one, which sets the expected sequence) and duplicate some of them
+        List<TmTransferFrame> received = new ArrayList<>();
+        Random random = new Random(1);
+        for(int i = 0; i < frames.size(); i += 4) {
+            List<TmTransferFrame> block = new ArrayList<>(frames.subList(i, Math.min(frames.size(), i + 4)));
+            if(i > 0) {
+                Collections.shuffle(block, random);
+            }
+            received.addAll(block);
+            if(i % 12 == 0) {
+                received.add(block.get(0));
+            }
+        }
+
+        List<byte[]> expected = extract(frames, 0);
+        assertEquals(613, expected.size());
+
+        AtomicInteger gaps = new AtomicInteger(0);
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        List<byte[]> packets = new ArrayList<>();
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                assertTrue(qualityIndicator);
+                packets.add(packet);
+            }
+
+            @Override
+            public void gapDetected(AbstractReceiverVirtualChannel vc, int expectedVc, int receivedVc, int missingFrames) {
+                gaps.incrementAndGet();
+            }
+        });
+        vc0.setReorderWindow(8, 0, TimeUnit.MILLISECONDS);
+        received.forEach(vc0);
+        vc0.flushReorderWindow();
+        assertEquals(0, gaps.get());
+        assertEquals(0, vc0.getReorderWindowFrames());
+        assertEquals(received.size() - frames.size(), vc0.getDuplicatedFrames());
+        assertTrue(vc0.getReorderedFrames() > 0);
+        assertEquals(expected.size(), packets.size());
+        for(int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals(expected.get(i), packets.get(i));
+        }
+
+        // Without reorder window
+        assertNotEquals(expected.size(), extract(received, 0).size());
+    }
+
+    private List<byte[]> extract(List<TmTransferFrame> frames, int windowSize) {
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        vc0.setReorderWindow(windowSize, 0, TimeUnit.MILLISECONDS);
+        List<byte[]> packets = new ArrayList<>();
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                packets.add(packet);
+            }
+        });
+        frames.forEach(vc0);
+        assertEquals(0, vc0.getDuplicatedFrames());
+        return packets;
+    }
+
+    private static TmTransferFrame frame(int vcCount) {
+        return TestUtil.tmFrame(123, 1, vcCount, false);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.ReedSolomonDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.TmAsmDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.reader.LineHexDumpChannelReader;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.StreamUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PacketViewTest {
+
+    private static String FILE_TM1 = "dumpFile_tm_1.hex";
+    private static String FILE_TM3 = "dumpFile_tm_segmentation_mixed.hex";
+    private static String FILE_TM4 = "dumpFile_tm_large_packets.hex";
+    private static String FILE_TM_ENC = "dumpFile_tm_encapsulation.hex";
+    private static String FILE_TM_ENC_GAP = "dumpFile_tm_encapsulation_gap.hex";
+    private static String FILE_TM_GAP = "dumpFile_tm_gap_1.hex";
+    private static String FILE_TM_ENC_GAP_2 = "dumpFile_tm_encapsulation_gap_2.hex";
+
+    @Test
+    public void testPacketView() {
+        byte[] data = new byte[] { 0, 1, 2, 3, 4, 5 };
+        PacketView view = new PacketView(data, 2, 3);
+        assertFalse(view.isPooled());
+        assertSame(data, view.getData());
+        assertEquals(2, view.getOffset());
+        assertEquals(3, view.getLength());
+        assertEquals(4, view.getByte(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getByte(3));
+        assertArrayEquals(new byte[] { 2, 3, 4 }, view.toByteArray());
+        ByteBuffer bb = view.asByteBuffer();
+        assertTrue(bb.isReadOnly());
+        assertEquals(3, bb.remaining());
+        assertEquals(2, bb.get(0));
+        // Release has no effect on non-pooled views
+        view.release();
+        view.release();
+        assertEquals(2, view.getByte(0));
+
+        assertThrows(NullPointerException.class, () -> new PacketView(null, 0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> new PacketView(data, 4, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> new PacketView(data, -1, 3));
+    }
+
+    @Test
+    public void testPooledPacketView() {
+        PacketBufferPool pool = new PacketBufferPool(2);
+        byte[] buffer = pool.acquire(100);
+        assertEquals(128, buffer.length);
+        assertEquals(1, pool.getAllocatedBuffers());
+        PacketView view = new PacketView(buffer, 0, 100, pool);
+        assertTrue(view.isPooled());
+        view.retain();
+        view.release();
+        assertEquals(0, pool.getAvailableBuffers());
+        view.release();
+        assertEquals(1, pool.getAvailableBuffers());
+        assertThrows(IllegalStateException.class, view::getData);
+        assertThrows(IllegalStateException.class, view::toByteArray);
+        assertThrows(IllegalStateException.class, view::retain);
+        assertThrows(IllegalStateException.class, view::release);
+        // The buffer is reused
+        assertSame(buffer, pool.acquire(65));
+        assertEquals(1, pool.getAllocatedBuffers());
+        assertEquals(0, pool.getAvailableBuffers());
+    }
+
+    @Test
+    public void testPacketBufferPool() {
+        PacketBufferPool pool = new PacketBufferPool(1);
+        assertEquals(64, pool.acquire(0).length);
+        assertEquals(64, pool.acquire(64).length);
+        assertEquals(65536, pool.acquire(65536).length);
+        assertEquals(131072, pool.acquire(65542).length);
+        // Too large to be pooled
+        byte[] large = pool.acquire(200000);
+        assertEquals(200000, large.length);
+        pool.release(large);
+        assertEquals(0, pool.getAvailableBuffers());
+        // Not fitting a size class
+        pool.release(new byte[100]);
+        assertEquals(0, pool.getAvailableBuffers());
+        // Pool full
+        pool.release(new byte[256]);
+        pool.release(new byte[256]);
+        assertEquals(1, pool.getAvailableBuffers());
+
+        assertThrows(IllegalArgumentException.class, () -> pool.acquire(-1));
+        assertThrows(NullPointerException.class, () -> pool.release(null));
+        assertThrows(IllegalArgumentException.class, () -> new PacketBufferPool(0));
+    }
+
+    @Test
+    public void testTmSpacePacketViews() {
+        checkSpacePacketViews(FILE_TM1, true, 613);
+        checkSpacePacketViews(FILE_TM3, false, -1);
+        checkSpacePacketViews(FILE_TM4, false, 5);
+        checkSpacePacketViews(FILE_TM_GAP, false, -1);
+    }
+
+    private void checkSpacePacketViews(String file, boolean cadu, int expectedPackets) {
+        PacketBufferPool pool = new PacketBufferPool();
+        checkSameExtraction(file, cadu, 0, VirtualChannelAccessMode.PACKET, pool, expectedPackets);
+        // All pooled views were released, except the buffer of the packet still under reconstruction, if any
+        assertEquals(pool.getAllocatedBuffers() - (lastVc.isReconstructionPending() ? 1 : 0), pool.getAvailableBuffers());
+    }
+
+    @Test
+    public void testTmEncapsulationPacketViews() {
+        PacketBufferPool pool = new PacketBufferPool();
+        checkSameExtraction(FILE_TM_ENC, false, 0, VirtualChannelAccessMode.ENCAPSULATION, pool, 13);
+        checkSameExtraction(FILE_TM_ENC_GAP, false, 0, VirtualChannelAccessMode.ENCAPSULATION, pool, -1);
+        // All pooled views were released
+        assertEquals(pool.getAllocatedBuffers(), pool.getAvailableBuffers());
+        // The last packet is still under reconstruction at the end of the file
+        checkSameExtraction(FILE_TM_ENC_GAP_2, false, 0, VirtualChannelAccessMode.ENCAPSULATION, pool, -1);
+        assertTrue(lastVc.isReconstructionPending());
+        assertEquals(pool.getAllocatedBuffers() - 1, pool.getAvailableBuffers());
+    }
+
+    @Test
+    public void testRetainedPacketView() {
+        PacketBufferPool pool = new PacketBufferPool(1024);
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        vc0.setPacketBufferPool(pool);
+        assertSame(pool, vc0.getPacketBufferPool());
+        List<PacketView> retained = new ArrayList<>();
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketViewExtracted(AbstractReceiverVirtualChannel<?> vc, AbstractTransferFrame firstFrame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                if(packet.isPooled()) {
+                    retained.add(packet.retain());
+                }
+            }
+        });
+        frames(FILE_TM1, true, 0).forEach(vc0);
+        assertFalse(retained.isEmpty());
+        // Retained views are not returned to the pool
+        assertEquals(0, pool.getAvailableBuffers());
+        for(PacketView pv : retained) {
+            // Still accessible: primary header version and length consistent with the view
+            assertEquals(0, (pv.getByte(0) & 0xE0));
+            assertEquals(pv.getLength(), ((pv.getByte(4) & 0xFF) << 8 | (pv.getByte(5) & 0xFF)) + 7);
+            pv.release();
+        }
+        assertEquals(retained.size(), pool.getAvailableBuffers());
+    }
+
+    @Test
+    public void testGapListsHandedOver() {
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        List<List<PacketGap>> gapLists = new ArrayList<>();
+        List<Integer> gapSizes = new ArrayList<>();
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                if(!gaps.isEmpty()) {
+                    gapLists.add(gaps);
+                    gapSizes.add(gaps.size());
+                }
+            }
+        });
+        frames(FILE_TM_GAP, false, 0).forEach(vc0);
+        assertFalse(gapLists.isEmpty());
+        for(int i = 0; i < gapLists.size(); ++i) {
+            // Each packet gets its own list, not affected by the processing of the following packets
+            assertEquals(gapSizes.get(i), gapLists.get(i).size());
+            for(int j = i + 1; j < gapLists.size(); ++j) {
+                assertNotSame(gapLists.get(i), gapLists.get(j));
+            }
+            List<PacketGap> gaps = gapLists.get(i);
+            assertThrows(UnsupportedOperationException.class, () -> gaps.add(new PacketGap(0, 1)));
+        }
+    }
+
+    private void checkSameExtraction(String file, boolean cadu, int vcId, VirtualChannelAccessMode mode, PacketBufferPool pool, int expectedPackets) {
+        List<Object[]> expected = extract(file, cadu, vcId, mode, null);
+        List<Object[]> actual = extract(file, cadu, vcId, mode, pool);
+        if(expectedPackets >= 0) {
+            assertEquals(expectedPackets, expected.size());
+        }
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals((byte[]) expected.get(i)[0], (byte[]) actual.get(i)[0], "Packet " + i + " differs in " + file);
+            assertEquals(expected.get(i)[1], actual.get(i)[1]);
+            assertEquals(expected.get(i)[2], actual.get(i)[2]);
+        }
+    }
+
+    private TmReceiverVirtualChannel lastVc;
+
+    private List<Object[]> extract(String file, boolean cadu, int vcId, VirtualChannelAccessMode mode, PacketBufferPool pool) {
+        TmReceiverVirtualChannel vc = new TmReceiverVirtualChannel(vcId, mode, true);
+        vc.setPacketBufferPool(pool);
+        List<Object[]> packets = new ArrayList<>();
+        vc.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                assertNull(pool);
+                packets.add(new Object[] { packet, qualityIndicator, gaps.size() });
+            }
+
+            @Override
+            public void spacePacketViewExtracted(AbstractReceiverVirtualChannel<?> vc, AbstractTransferFrame firstFrame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                assertNotNull(pool);
+                packets.add(new Object[] { packet.toByteArray(), qualityIndicator, gaps.size() });
+            }
+
+            @Override
+            public void encapsulationPacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                assertNull(pool);
+                packets.add(new Object[] { packet, qualityIndicator, gaps.size() });
+            }
+
+            @Override
+            public void encapsulationPacketViewExtracted(AbstractReceiverVirtualChannel<?> vc, AbstractTransferFrame firstFrame, PacketView packet, boolean qualityIndicator, List<PacketGap> gaps) {
+                assertNotNull(pool);
+                packets.add(new Object[] { packet.toByteArray(), qualityIndicator, gaps.size() });
+            }
+        });
+        frames(file, cadu, vcId).forEach(vc);
+        lastVc = vc;
+        return packets;
+    }
+
+    private Stream<TmTransferFrame> frames(String file, boolean cadu, int vcId) {
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream(file));
+        Stream<byte[]> stream = StreamUtil.from(reader);
+        if(cadu) {
+            stream = stream.map(new TmAsmDecoder()).map(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223));
+        }
+        return stream.map(TmTransferFrame.decodingFunction(false))
+                .filter(o -> o.getVirtualChannelId() == vcId);
+    }
+}
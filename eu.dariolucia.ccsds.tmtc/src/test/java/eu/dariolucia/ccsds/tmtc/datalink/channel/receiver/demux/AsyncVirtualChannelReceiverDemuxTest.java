@@ -0,0 +1,262 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.ReedSolomonDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.TmAsmDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.reader.LineHexDumpChannelReader;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.IVirtualChannelReceiverOutput;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.TmReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.StreamUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncVirtualChannelReceiverDemuxTest {
+
+    private static final String FILE_TM1 = "dumpFile_tm_1.hex";
+
+    @Test
+    public void testTmVc0SpacePacket() throws InterruptedException {
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        TmReceiverVirtualChannel vc7 = new TmReceiverVirtualChannel(7, VirtualChannelAccessMode.DATA, true);
+        AsyncVirtualChannelReceiverDemux demux = new AsyncVirtualChannelReceiverDemux(vc0, vc7);
+        List<byte[]> goodPackets = new CopyOnWriteArrayList<>();
+        List<byte[]> idleFrames = new CopyOnWriteArrayList<>();
+        List<Thread> vc0Threads = new CopyOnWriteArrayList<>();
+        AtomicInteger gaps = new AtomicInteger(0);
+        IVirtualChannelReceiverOutput channelListener = new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                assertEquals(0, vc.getVirtualChannelId());
+                assertTrue(qualityIndicator);
+                goodPackets.add(packet);
+                if(vc0Threads.isEmpty()) {
+                    vc0Threads.add(Thread.currentThread());
+                }
+            }
+
+            @Override
+            public void dataExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame frame, byte[] data) {
+                assertEquals(7, vc.getVirtualChannelId());
+                idleFrames.add(data);
+            }
+
+            @Override
+            public void gapDetected(AbstractReceiverVirtualChannel vc, int expectedVc, int receivedVc, int missingFrames) {
+                gaps.incrementAndGet();
+            }
+        };
+        vc0.register(channelListener);
+        vc7.register(channelListener);
+        frames().forEach(demux);
+        assertTrue(demux.awaitProcessed(10, TimeUnit.SECONDS));
+        // Same result of the synchronous demux: the frames of each VC are processed in order
+        assertEquals(613, goodPackets.size());
+        assertEquals(30, idleFrames.size());
+        assertEquals(0, gaps.get());
+        assertNotEquals(Thread.currentThread(), vc0Threads.get(0));
+
+        VirtualChannelQueueStatistics stats = demux.getStatistics(0);
+        assertEquals(0, stats.getVirtualChannelId());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(AsyncVirtualChannelReceiverDemux.DEFAULT_QUEUE_CAPACITY, stats.getQueueCapacity());
+        assertEquals(stats.getEnqueuedFrames(), stats.getProcessedFrames());
+        assertEquals(0, stats.getDroppedFrames());
+        assertEquals(0, stats.getFailedFrames());
+        assertTrue(stats.getMaxLagNanos() >= stats.getLastLagNanos());
+        assertEquals(30, demux.getStatistics(7).getProcessedFrames());
+        assertNull(demux.getStatistics(1));
+        assertNull(demux.getStatistics(100));
+        assertNotNull(stats.toString());
+
+        demux.dispose();
+        assertThrows(IllegalStateException.class, () -> demux.processFrame(frames().get(0)));
+        assertThrows(IllegalStateException.class, () -> demux.register(new TmReceiverVirtualChannel(1, VirtualChannelAccessMode.DATA, true)));
+    }
+
+    @Test
+    public void testDropPolicy() throws InterruptedException {
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.DATA, true);
+        List<AbstractTransferFrame> notHandled = new CopyOnWriteArrayList<>();
+        AsyncVirtualChannelReceiverDemux demux = new AsyncVirtualChannelReceiverDemux(4, AsyncVirtualChannelReceiverDemux.OverflowPolicy.DROP, null, notHandled::add, vc0);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch firstFrame = new CountDownLatch(1);
+        AtomicInteger gaps = new AtomicInteger(0);
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void transferFrameReceived(AbstractReceiverVirtualChannel vc, AbstractTransferFrame receivedFrame) {
+                firstFrame.countDown();
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void gapDetected(AbstractReceiverVirtualChannel vc, int expectedVc, int receivedVc, int missingFrames) {
+                gaps.incrementAndGet();
+            }
+        });
+        List<TmTransferFrame> frames = frames();
+        List<TmTransferFrame> vc0Frames = frames.stream().filter(o -> o.getVirtualChannelId() == 0).collect(Collectors.toList());
+        demux.processFrame(vc0Frames.get(0));
+        // Wait for the worker to take the first frame
+        assertTrue(firstFrame.await(5, TimeUnit.SECONDS));
+        for(int i = 1; i < 11; ++i) {
+            demux.processFrame(vc0Frames.get(i));
+        }
+        VirtualChannelQueueStatistics stats = demux.getStatistics(0);
+        assertEquals(4, stats.getQueueDepth());
+        assertEquals(5, stats.getEnqueuedFrames());
+        assertEquals(6, stats.getDroppedFrames());
+        // Frames of unregistered VCs go to the handler, on the caller thread
+        frames.stream().filter(o -> o.getVirtualChannelId() == 7).limit(3).forEach(demux);
+        assertEquals(3, notHandled.size());
+        blocker.countDown();
+        assertTrue(demux.awaitProcessed(5, TimeUnit.SECONDS));
+        stats = demux.getStatistics(0);
+        assertEquals(5, stats.getProcessedFrames());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(0, gaps.get());
+        // The dropped frames are detected as a gap, when the next frame is processed
+        demux.processFrame(vc0Frames.get(11));
+        assertTrue(demux.awaitProcessed(5, TimeUnit.SECONDS));
+        assertEquals(1, gaps.get());
+        assertEquals(6, demux.getStatistics(0).getProcessedFrames());
+        demux.dispose();
+    }
+
+    @Test
+    public void testBlockPolicy() throws InterruptedException {
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.DATA, true);
+        List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        AsyncVirtualChannelReceiverDemux demux = new AsyncVirtualChannelReceiverDemux(2, AsyncVirtualChannelReceiverDemux.OverflowPolicy.BLOCK, r -> {
+            Thread t = new Thread(r, "Test worker");
+            t.setUncaughtExceptionHandler((th, e) -> uncaught.add(e));
+            return t;
+        }, null, vc0);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger(0);
+        AtomicInteger failures = new AtomicInteger(0);
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void transferFrameReceived(AbstractReceiverVirtualChannel vc, AbstractTransferFrame receivedFrame) {
+                if(!Thread.currentThread().getName().equals("Test worker")) {
+                    failures.incrementAndGet();
+                }
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if(received.incrementAndGet() == 3) {
+                    // A failure in the processing of a frame does not stop the worker
+                    throw new IllegalStateException("Test exception, ignore");
+                }
+            }
+        });
+        List<TmTransferFrame> vc0Frames = frames().stream().filter(o -> o.getVirtualChannelId() == 0).limit(10).collect(Collectors.toList());
+        Thread producer = new Thread(() -> vc0Frames.forEach(demux));
+        producer.start();
+        // The producer is blocked, since the queue is full
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        assertEquals(0, demux.getStatistics(0).getDroppedFrames());
+        blocker.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(demux.awaitProcessed(5, TimeUnit.SECONDS));
+        VirtualChannelQueueStatistics stats = demux.getStatistics(0);
+        assertEquals(10, stats.getEnqueuedFrames());
+        assertEquals(9, stats.getProcessedFrames());
+        assertEquals(1, stats.getFailedFrames());
+        assertEquals(10, received.get());
+        assertEquals(0, failures.get());
+        // No error handler: the exception is reported to the uncaught exception handler of the worker
+        assertEquals(1, uncaught.size());
+        assertTrue(uncaught.get(0) instanceof IllegalStateException);
+        demux.dispose();
+    }
+
+    @Test
+    public void testErrorHandler() throws InterruptedException {
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.DATA, true);
+        List<AbstractTransferFrame> failedFrames = new CopyOnWriteArrayList<>();
+        List<RuntimeException> errors = new CopyOnWriteArrayList<>();
+        List<Thread> errorThreads = new CopyOnWriteArrayList<>();
+        AsyncVirtualChannelReceiverDemux demux = new AsyncVirtualChannelReceiverDemux(16, AsyncVirtualChannelReceiverDemux.OverflowPolicy.BLOCK, r -> new Thread(r, "Test worker"), null, (frame, error) -> {
+            failedFrames.add(frame);
+            errors.add(error);
+            errorThreads.add(Thread.currentThread());
+        }, vc0);
+        AtomicInteger received = new AtomicInteger(0);
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void transferFrameReceived(AbstractReceiverVirtualChannel vc, AbstractTransferFrame receivedFrame) {
+                if(received.incrementAndGet() % 4 == 0) {
+                    throw new IllegalStateException("Test exception, ignore");
+                }
+            }
+        });
+        List<TmTransferFrame> vc0Frames = frames().stream().filter(o -> o.getVirtualChannelId() == 0).limit(10).collect(Collectors.toList());
+        vc0Frames.forEach(demux);
+        assertTrue(demux.awaitProcessed(5, TimeUnit.SECONDS));
+        VirtualChannelQueueStatistics stats = demux.getStatistics(0);
+        assertEquals(8, stats.getProcessedFrames());
+        assertEquals(2, stats.getFailedFrames());
+        // Each failure is reported with its frame, on the worker thread
+        assertEquals(List.of(vc0Frames.get(3), vc0Frames.get(7)), failedFrames);
+        assertEquals(2, errors.size());
+        assertTrue(errors.stream().allMatch(e -> e instanceof IllegalStateException));
+        assertTrue(errorThreads.stream().allMatch(t -> t.getName().equals("Test worker")));
+        demux.dispose();
+    }
+
+    @Test
+    public void testRegistration() {
+        AsyncVirtualChannelReceiverDemux demux = new AsyncVirtualChannelReceiverDemux();
+        demux.register(new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.DATA, true));
+        assertThrows(IllegalArgumentException.class, () -> demux.register(new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.DATA, true)));
+        assertThrows(IllegalArgumentException.class, () -> demux.register(new TmReceiverVirtualChannel(64, VirtualChannelAccessMode.DATA, true)));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncVirtualChannelReceiverDemux(0, AsyncVirtualChannelReceiverDemux.OverflowPolicy.DROP, null, null));
+        assertThrows(NullPointerException.class, () -> new AsyncVirtualChannelReceiverDemux(1, null, null, null));
+        demux.dispose();
+    }
+
+    private List<TmTransferFrame> frames() {
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream(FILE_TM1));
+        return StreamUtil.from(reader)
+                .map(new TmAsmDecoder())
+                .map(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223))
+                .map(TmTransferFrame.decodingFunction(false))
+                .collect(Collectors.toList());
+    }
+}
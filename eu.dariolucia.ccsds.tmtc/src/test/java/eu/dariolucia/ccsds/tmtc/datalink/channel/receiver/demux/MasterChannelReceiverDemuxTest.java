@@ -0,0 +1,247 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+import eu.dariolucia.ccsds.tmtc.algorithm.ReedSolomonAlgorithm;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.ReedSolomonDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.decoder.TmAsmDecoder;
+import eu.dariolucia.ccsds.tmtc.coding.reader.LineHexDumpChannelReader;
+import eu.dariolucia.ccsds.tmtc.datalink.builder.AosTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.IVirtualChannelReceiverOutput;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.TmReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AosTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrameView;
+import eu.dariolucia.ccsds.tmtc.util.StreamUtil;
+import eu.dariolucia.ccsds.tmtc.util.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MasterChannelReceiverDemuxTest {
+
+    @Test
+    public void testMixedStream() {
+        List<AbstractTransferFrame> tm100vc0 = new ArrayList<>();
+        List<AbstractTransferFrame> tm100 = new ArrayList<>();
+        List<AbstractTransferFrame> aos100vc2 = new ArrayList<>();
+        List<AbstractTransferFrame> unrouted = new ArrayList<>();
+        MasterChannelReceiverDemux demux = new MasterChannelReceiverDemux(unrouted::add, false);
+        demux.register(0, 100, 0, tm100vc0::add);
+        demux.registerMasterChannel(0, 100, tm100::add);
+        demux.register(1, 100, 2, aos100vc2::add);
+
+        for(int i = 0; i < 10; ++i) {
+            demux.processFrame(tmFrame(100, 0, i));
+            demux.processFrame(tmFrame(100, 1, i));
+            demux.processFrame(tmFrame(200, 0, i));
+            demux.processFrame(aosFrame(100, 2, (16777210 + i) % 16777216)); // counter wraps around
+            demux.processFrame(aosFrame(100, 3, i));
+        }
+        assertEquals(10, tm100vc0.size());
+        assertEquals(10, tm100.size());
+        assertTrue(tm100.stream().allMatch(o -> o.getVirtualChannelId() == 1));
+        assertEquals(10, aos100vc2.size());
+        assertTrue(aos100vc2.stream().allMatch(o -> o instanceof AosTransferFrame));
+        assertEquals(20, unrouted.size());
+        assertEquals(20, demux.getUnroutedFrames());
+
+        GvcidStatistics stats = demux.getStatistics(0, 100, 0);
+        assertEquals(0, stats.getTransferFrameVersionNumber());
+        assertEquals(100, stats.getSpacecraftId());
+        assertEquals(0, stats.getVirtualChannelId());
+        assertEquals(10, stats.getFrames());
+        assertEquals(0, stats.getInvalidFrames());
+        assertEquals(0, stats.getGaps());
+        assertEquals(0, demux.getStatistics(1, 100, 2).getGaps());
+        GvcidStatistics mcStats = demux.getMasterChannelStatistics(0, 100);
+        assertEquals(-1, mcStats.getVirtualChannelId());
+        assertEquals(10, mcStats.getFrames());
+        assertNull(demux.getStatistics(0, 200, 0));
+        assertNull(demux.getStatistics(0, 100, 64));
+        assertNull(demux.getMasterChannelStatistics(1, 100));
+        assertEquals(3, demux.getStatistics().size());
+        assertNotNull(stats.toString());
+    }
+
+    @Test
+    public void testGapsAndInvalidFrames() {
+        List<AbstractTransferFrame> received = new ArrayList<>();
+        MasterChannelReceiverDemux demux = new MasterChannelReceiverDemux();
+        demux.register(0, 100, 0, received::add);
+        demux.registerMasterChannel(0, 100, received::add);
+        // 0, 1, 2, 5, 6 (gap of 2 frames), 255, 0 (gap of 248 frames)
+        for(int counter : new int[] {0, 1, 2, 5, 6, 255, 0}) {
+            demux.processFrame(tmFrame(100, 0, counter));
+        }
+        // Master channel route: gaps are detected per virtual channel
+        for(int counter : new int[] {10, 11, 12}) {
+            demux.processFrame(tmFrame(100, 1, counter));
+            demux.processFrame(tmFrame(100, 2, counter + 100));
+        }
+        demux.processFrame(tmFrame(100, 1, 14));
+        // Invalid frame: not forwarded
+        TmTransferFrame frame = tmFrame(100, 0, 1);
+        byte[] corrupted = frame.getFrameCopy();
+        corrupted[20] ^= 0x01;
+        demux.processFrame(new TmTransferFrame(corrupted, true));
+
+        GvcidStatistics stats = demux.getStatistics(0, 100, 0);
+        assertEquals(8, stats.getFrames());
+        assertEquals(1, stats.getInvalidFrames());
+        assertEquals(2, stats.getGaps());
+        assertEquals(250, stats.getMissingFrames());
+        GvcidStatistics mcStats = demux.getMasterChannelStatistics(0, 100);
+        assertEquals(7, mcStats.getFrames());
+        assertEquals(1, mcStats.getGaps());
+        assertEquals(1, mcStats.getMissingFrames());
+        assertEquals(14, received.size());
+
+        // Now forward invalid frames
+        MasterChannelReceiverDemux demux2 = new MasterChannelReceiverDemux(null, true);
+        demux2.register(0, 100, 0, received::add);
+        demux2.processFrame(new TmTransferFrame(corrupted, true));
+        assertEquals(15, received.size());
+        assertEquals(1, demux2.getStatistics(0, 100, 0).getInvalidFrames());
+    }
+
+    @Test
+    public void testRegistration() {
+        MasterChannelReceiverDemux demux = new MasterChannelReceiverDemux();
+        List<AbstractTransferFrame> received = new ArrayList<>();
+        // Many routes, to force the resize of the table
+        for(int scid = 0; scid < 100; ++scid) {
+            demux.register(0, scid, scid % 8, received::add);
+        }
+        assertThrows(IllegalArgumentException.class, () -> demux.register(0, 5, 5, received::add));
+        assertThrows(IllegalArgumentException.class, () -> demux.register(0, 5, 64, received::add));
+        assertThrows(IllegalArgumentException.class, () -> demux.register(4, 5, 1, received::add));
+        assertThrows(IllegalArgumentException.class, () -> demux.register(0, 1024, 1, received::add));
+        assertThrows(NullPointerException.class, () -> demux.register(0, 5, 1, null));
+        demux.registerMasterChannel(0, 5, received::add);
+        assertThrows(IllegalArgumentException.class, () -> demux.registerMasterChannel(0, 5, received::add));
+
+        for(int scid = 0; scid < 100; ++scid) {
+            demux.processFrame(tmFrame(scid, scid % 8, 0));
+        }
+        assertEquals(100, received.size());
+        assertEquals(0, demux.getUnroutedFrames());
+
+        assertTrue(demux.deregister(0, 7, 7));
+        assertFalse(demux.deregister(0, 7, 7));
+        assertFalse(demux.deregister(0, 7, 70));
+        assertFalse(demux.deregister(5, 7, 7));
+        demux.processFrame(tmFrame(7, 7, 1));
+        assertEquals(1, demux.getUnroutedFrames());
+        // Frames of SCID 5 on VC 5 go to the VC route, the others to the master channel route
+        demux.processFrame(tmFrame(5, 5, 1));
+        demux.processFrame(tmFrame(5, 6, 1));
+        assertEquals(2, demux.getStatistics(0, 5, 5).getFrames());
+        assertNull(demux.getStatistics(0, 5, 6));
+        assertEquals(1, demux.getMasterChannelStatistics(0, 5).getFrames());
+        assertTrue(demux.deregisterMasterChannel(0, 5));
+        assertFalse(demux.deregisterMasterChannel(0, 5));
+        demux.processFrame(tmFrame(5, 6, 2));
+        assertEquals(2, demux.getUnroutedFrames());
+        assertEquals(99, demux.getStatistics().size());
+    }
+
+    @Test
+    public void testHotRegistration() throws InterruptedException {
+        MasterChannelReceiverDemux demux = new MasterChannelReceiverDemux();
+        List<AbstractTransferFrame> received = new ArrayList<>();
+        demux.register(0, 100, 0, received::add);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread registrar = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    for (int scid = 200; scid < 240; ++scid) {
+                        demux.register(0, scid, 1, o -> { });
+                    }
+                    for (int scid = 200; scid < 240; ++scid) {
+                        demux.deregister(0, scid, 1);
+                    }
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        });
+        registrar.start();
+        TmTransferFrame frame = tmFrame(100, 0, 0);
+        for(int i = 0; i < 20000; ++i) {
+            demux.processFrame(frame);
+        }
+        running.set(false);
+        registrar.join(5000);
+        assertTrue(errors.isEmpty());
+        assertEquals(20000, received.size());
+        assertEquals(0, demux.getUnroutedFrames());
+    }
+
+    @Test
+    public void testTmFileWithViews() {
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream("dumpFile_tm_1.hex"));
+        List<byte[]> frames = StreamUtil.from(reader)
+                .map(new TmAsmDecoder())
+                .map(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223))
+                .collect(Collectors.toList());
+        int scid = new TmTransferFrame(frames.get(0), false).getSpacecraftId();
+
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        List<byte[]> goodPackets = new ArrayList<>();
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                if(qualityIndicator) {
+                    goodPackets.add(packet);
+                }
+            }
+        });
+        MasterChannelReceiverDemux demux = new MasterChannelReceiverDemux();
+        demux.register(0, scid, vc0);
+        TmTransferFrameView view = new TmTransferFrameView(false);
+        frames.forEach(o -> demux.processFrame(view.wrap(o)));
+        assertEquals(613, goodPackets.size());
+        assertEquals(0, demux.getStatistics(0, scid, 0).getGaps());
+        assertEquals(frames.size() - demux.getStatistics(0, scid, 0).getFrames(), demux.getUnroutedFrames());
+    }
+
+    private static TmTransferFrame tmFrame(int scid, int vcid, int counter) {
+        return TestUtil.tmFrame(scid, vcid, counter, true);
+    }
+
+    private static AosTransferFrame aosFrame(int scid, int vcid, int counter) {
+        AosTransferFrameBuilder builder = AosTransferFrameBuilder.create(128, false, 0, AosTransferFrame.UserDataType.VCA, false, true)
+                .setSpacecraftId(scid)
+                .setVirtualChannelId(vcid)
+                .setVirtualChannelFrameCount(counter)
+                .setReplayFlag(false)
+                .setVirtualChannelFrameCountUsageFlag(false);
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        return builder.build();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.demux;
+
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
+import eu.dariolucia.ccsds.tmtc.util.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiStationFrameMergerTest {
+
+    @Test
+    public void testBestCopySelection() {
+        AtomicLong time = new AtomicLong(0);
+        List<AbstractTransferFrame> merged = new ArrayList<>();
+        MultiStationFrameMerger merger = new MultiStationFrameMerger(3, 16, 1000, false, merged::add, time::get);
+        assertEquals(3, merger.getSources());
+        for(int i = 0; i < 10; ++i) {
+            // Source 0: valid, 5 corrected symbols
+            merger.processFrame(0, tmFrame(i, 5, false));
+            // Source 2: invalid, no corrected symbols
+            merger.processFrame(2, tmFrame(i, 0, true));
+            assertEquals(1, merger.getPendingFrames());
+            // Source 1: valid, 1 corrected symbol, completes the frame
+            merger.processFrame(1, tmFrame(i, 1, false));
+            assertEquals(0, merger.getPendingFrames());
+        }
+        assertEquals(10, merged.size());
+        for(int i = 0; i < 10; ++i) {
+            assertEquals(i, merged.get(i).getVirtualChannelFrameCount());
+            assertTrue(merged.get(i).isValid());
+            assertArrayEquals(new int[] { 1 }, merged.get(i).getAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS));
+        }
+        assertEquals(10, merger.getEmittedFrames());
+        assertEquals(0, merger.getStatistics(0).getSelectedFrames());
+        assertEquals(10, merger.getStatistics(1).getSelectedFrames());
+        FrameMergerSourceStatistics stats = merger.getStatistics(2);
+        assertEquals(2, stats.getSource());
+        assertEquals(10, stats.getFrames());
+        assertEquals(10, stats.getInvalidFrames());
+        assertEquals(0, stats.getSelectedFrames());
+        assertEquals(0, stats.getDuplicateFrames());
+        assertNotNull(stats.toString());
+
+        // Tie: first received copy
+        merger.processFrame(2, tmFrame(10, 2, false));
+        merger.processFrame(0, tmFrame(10, 2, false));
+        merger.processFrame(1, tmFrame(10, 2, false));
+        assertEquals(1, merger.getStatistics(2).getSelectedFrames());
+    }
+
+    @Test
+    public void testMaxDelayAndLateCopies() {
+        AtomicLong time = new AtomicLong(0);
+        List<AbstractTransferFrame> merged = new ArrayList<>();
+        MultiStationFrameMerger merger = new MultiStationFrameMerger(2, 16, 1000, false, merged::add, time::get);
+        merger.processFrame(0, tmFrame(0, 0, false));
+        merger.processFrame(0, tmFrame(1, 0, false));
+        // Same frame twice from the same source
+        merger.processFrame(0, tmFrame(1, 0, false));
+        time.set(500);
+        merger.processFrame(0, tmFrame(2, 0, false));
+        assertEquals(0, merged.size());
+        time.set(1000);
+        merger.releaseExpiredFrames();
+        assertEquals(2, merged.size());
+        // Late copy from source 1: dropped
+        merger.processFrame(1, tmFrame(0, 0, false));
+        // Copy from source 1 before the delay expires: emitted
+        merger.processFrame(1, tmFrame(2, 0, false));
+        assertEquals(3, merged.size());
+        assertEquals(2, merger.getStatistics(0).getDuplicateFrames() + merger.getStatistics(1).getDuplicateFrames());
+        assertEquals(3, merger.getStatistics(0).getSelectedFrames());
+
+        merger.processFrame(1, tmFrame(3, 0, false));
+        assertEquals(1, merger.getPendingFrames());
+        merger.flush();
+        assertEquals(0, merger.getPendingFrames());
+        assertEquals(4, merged.size());
+        assertEquals(1, merger.getStatistics(1).getSelectedFrames());
+    }
+
+    @Test
+    public void testCapacityAndInvalidFrames() {
+        AtomicLong time = new AtomicLong(0);
+        List<AbstractTransferFrame> merged = new ArrayList<>();
+        MultiStationFrameMerger merger = new MultiStationFrameMerger(2, 4, 1000, false, merged::add, time::get);
+        for(int i = 0; i < 10; ++i) {
+            merger.processFrame(0, tmFrame(i, 0, i == 3));
+            assertTrue(merger.getPendingFrames() <= 4);
+        }
+        // Frame 3 invalid and dropped
+        assertEquals(5, merged.size());
+        assertEquals(1, merger.getDiscardedFrames());
+        assertEquals(List.of(0, 1, 2, 4, 5), counters(merged));
+        // Copy of frame 3 from source 1 is late
+        merger.processFrame(1, tmFrame(3, 0, false));
+        assertEquals(1, merger.getStatistics(1).getDuplicateFrames());
+        merger.flush();
+        assertEquals(List.of(0, 1, 2, 4, 5, 6, 7, 8, 9), counters(merged));
+
+        // Forward invalid frames
+        merged.clear();
+        merger = new MultiStationFrameMerger(2, 4, 1000, true, merged::add, time::get);
+        merger.processFrame(0, tmFrame(0, 0, true));
+        merger.processFrame(1, tmFrame(0, 0, true));
+        assertEquals(1, merged.size());
+        assertFalse(merged.get(0).isValid());
+        assertEquals(0, merger.getDiscardedFrames());
+    }
+
+    @Test
+    public void testReceptionTime() {
+        List<AbstractTransferFrame> merged = new ArrayList<>();
+        MultiStationFrameMerger merger = new MultiStationFrameMerger(2, 16, 1, TimeUnit.SECONDS, false, merged::add);
+        Instant t0 = Instant.parse("2026-01-01T00:00:00Z");
+        // Same counters, reception times 10 seconds apart: different frames
+        merger.processFrame(0, tmFrame(0, 0, false, t0));
+        merger.processFrame(0, tmFrame(0, 0, false, t0.plusSeconds(10)));
+        assertEquals(2, merger.getPendingFrames());
+        // Copies within the maximum delay
+        merger.processFrame(1, tmFrame(0, 0, false, t0.plusSeconds(10).plusMillis(20)));
+        merger.processFrame(1, tmFrame(0, 0, false, t0.plusMillis(10)));
+        assertEquals(0, merger.getPendingFrames());
+        assertEquals(2, merged.size());
+        assertEquals(t0, merged.get(0).getAnnotationValue(AnnotationKey.RECEPTION_TIME));
+    }
+
+    @Test
+    public void testCounterWrapAroundWithoutReceptionTime() {
+        AtomicLong time = new AtomicLong(0);
+        List<AbstractTransferFrame> merged = new ArrayList<>();
+        // Frame counters wrap around every 256 frames, twice the capacity is lower
+        MultiStationFrameMerger merger = new MultiStationFrameMerger(2, 16, 1000, false, merged::add, time::get);
+        int lag = 5;
+        int nbFrames = 1000;
+        for(int i = 0; i < nbFrames + lag; ++i) {
+            if(i < nbFrames) {
+                merger.processFrame(0, tmFrame(i % 256, 1, false));
+            }
+            if(i >= lag) {
+                merger.processFrame(1, tmFrame((i - lag) % 256, 0, false));
+                assertEquals(Math.min(i, nbFrames - 1) - (i - lag), merger.getPendingFrames());
+            }
+        }
+        assertEquals(0, merger.getPendingFrames());
+        assertEquals(nbFrames, merged.size());
+        for(int i = 0; i < nbFrames; ++i) {
+            assertEquals(i % 256, merged.get(i).getVirtualChannelFrameCount());
+        }
+        // All the frames were completed by source 1, with fewer corrected symbols
+        assertEquals(nbFrames, merger.getStatistics(1).getSelectedFrames());
+        assertEquals(0, merger.getStatistics(0).getDuplicateFrames());
+        assertEquals(0, merger.getStatistics(1).getDuplicateFrames());
+    }
+
+    @Test
+    public void testWrongConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiStationFrameMerger(0, 16, 1, TimeUnit.SECONDS, false, o -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new MultiStationFrameMerger(65, 16, 1, TimeUnit.SECONDS, false, o -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new MultiStationFrameMerger(2, 0, 1, TimeUnit.SECONDS, false, o -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new MultiStationFrameMerger(2, 16, 0, TimeUnit.SECONDS, false, o -> {}));
+        assertThrows(NullPointerException.class, () -> new MultiStationFrameMerger(2, 16, 1, TimeUnit.SECONDS, false, null));
+        MultiStationFrameMerger merger = new MultiStationFrameMerger(2, 16, 1, TimeUnit.SECONDS, false, o -> {});
+        assertThrows(IllegalArgumentException.class, () -> merger.processFrame(2, tmFrame(0, 0, false)));
+        assertThrows(IllegalArgumentException.class, () -> merger.getStatistics(-1));
+    }
+
+    private static List<Integer> counters(List<AbstractTransferFrame> frames) {
+        List<Integer> counters = new ArrayList<>();
+        frames.forEach(o -> counters.add(o.getVirtualChannelFrameCount()));
+        return counters;
+    }
+
+    private static TmTransferFrame tmFrame(int counter, int correctedSymbols, boolean corrupted) {
+        return tmFrame(counter, correctedSymbols, corrupted, null);
+    }
+
+    private static TmTransferFrame tmFrame(int counter, int correctedSymbols, boolean corrupted, Instant receptionTime) {
+        TmTransferFrame frame = TestUtil.tmFrame(100, 1, counter, true);
+        if(corrupted) {
+            byte[] data = frame.getFrameCopy();
+            data[20] ^= 0x01;
+            frame = new TmTransferFrame(data, true);
+        }
+        if(correctedSymbols > 0) {
+            frame.setAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS, new int[] { correctedSymbols });
+        }
+        if(receptionTime != null) {
+            frame.setAnnotationValue(AnnotationKey.RECEPTION_TIME, receptionTime);
+        }
+        return frame;
+    }
+}
@@ -26,6 +26,7 @@ import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.IVirtualChannelReceive
 import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.TmReceiverVirtualChannel;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
 import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrameView;
 import eu.dariolucia.ccsds.tmtc.util.StreamUtil;
 import org.junit.jupiter.api.Test;
 
@@ -161,6 +162,44 @@ class VirtualChannelReceiverDemuxTest {
         assertEquals(30, notHandled.size());
     }
 
+    @Test
+    public void testTmVc0SpacePacketFromView() {
+        // Create a virtual channel for VC0 only: frames on other VCs must be dropped without being decoded
+        TmReceiverVirtualChannel vc0 = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        VirtualChannelReceiverDemux demux = new VirtualChannelReceiverDemux(vc0);
+        List<byte[]> goodPackets = new CopyOnWriteArrayList<>();
+        List<byte[]> badPackets = new CopyOnWriteArrayList<>();
+        List<AbstractTransferFrame> frames = new LinkedList<>();
+        vc0.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void transferFrameReceived(AbstractReceiverVirtualChannel vc, AbstractTransferFrame receivedFrame) {
+                frames.add(receivedFrame);
+            }
+
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                if(qualityIndicator) {
+                    goodPackets.add(packet);
+                } else {
+                    badPackets.add(packet);
+                }
+            }
+        });
+        // Build the reader
+        String FILE_TM1 = "dumpFile_tm_1.hex";
+        LineHexDumpChannelReader reader = new LineHexDumpChannelReader(this.getClass().getClassLoader().getResourceAsStream(FILE_TM1));
+        // A single view is re-pointed to each frame
+        TmTransferFrameView view = new TmTransferFrameView(false);
+        StreamUtil.from(reader) // Reads the frames, correctly segmented
+                .map(new TmAsmDecoder()) // Remove ASM
+                .map(new ReedSolomonDecoder(ReedSolomonAlgorithm.TM_255_223)) // Remove R-S codeblock
+                .forEach(frame -> demux.processFrame(view.wrap(frame))); // Push to the demux
+        // Check the list of packets
+        assertEquals(613, goodPackets.size());
+        assertEquals(0, badPackets.size());
+        assertEquals(152 - 30, frames.size());
+    }
+
     @Test
     public void testDoubleRegistration() {
         // Create a virtual channel for VC0
@@ -30,8 +30,11 @@ import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
 import eu.dariolucia.ccsds.tmtc.util.StringUtil;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -150,6 +153,94 @@ class TmSenderVirtualChannelTest {
         return packets;
     }
 
+    @Test
+    public void testPushModeSpacePacketBuffers() {
+        List<IPacket> packets = generateRandomSpacePackets(2000, new Random(42));
+        List<ByteBuffer> buffers = toBuffers(packets);
+
+        List<TmTransferFrame> expected = new ArrayList<>();
+        List<Integer> expectedBuffered = new ArrayList<>();
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.PACKET, true, 1115, () -> 0, this::ocfSupplier);
+        vc0.register((vc, generatedFrame, bufferedBytes) -> {
+            expected.add((TmTransferFrame) generatedFrame);
+            expectedBuffered.add(bufferedBytes);
+        });
+        int expectedRemaining = vc0.dispatch(packets);
+
+        List<TmTransferFrame> actual = new ArrayList<>();
+        List<Integer> actualBuffered = new ArrayList<>();
+        TmSenderVirtualChannel vc1 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.PACKET, true, 1115, () -> 0, this::ocfSupplier);
+        vc1.register((vc, generatedFrame, bufferedBytes) -> {
+            actual.add((TmTransferFrame) generatedFrame);
+            actualBuffered.add(bufferedBytes);
+        });
+        // Submitted in two batches
+        int actualRemaining = vc1.dispatchBuffers(buffers.subList(0, 1000));
+        actualRemaining = vc1.dispatchBuffers(buffers.subList(1000, buffers.size()));
+
+        assertTrue(expected.size() > 100);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expectedRemaining, actualRemaining);
+        for (int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals(expected.get(i).getFrame(), actual.get(i).getFrame());
+            assertTrue(actual.get(i).isValid());
+        }
+        // The buffered bytes are consistent within each batch
+        assertEquals(expectedBuffered.subList(expectedBuffered.size() - 10, expectedBuffered.size()), actualBuffered.subList(actualBuffered.size() - 10, actualBuffered.size()));
+        // Buffers are not consumed
+        for (int i = 0; i < buffers.size(); ++i) {
+            assertEquals(packets.get(i).getLength(), buffers.get(i).remaining());
+        }
+
+        // Wrong mode
+        TmSenderVirtualChannel vc2 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.DATA, true, 1115, () -> 0, this::ocfSupplier);
+        assertThrows(IllegalStateException.class, () -> vc2.dispatchBuffers(buffers));
+    }
+    private List<IPacket> generateRandomSpacePackets(int n, Random random) {
+        List<IPacket> toReturn = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            byte[] body = new byte[1 + random.nextInt(i % 10 == 0 ? 3000 : 200)];
+            random.nextBytes(body);
+            SpacePacketBuilder spp = SpacePacketBuilder.create()
+                    .setApid(200)
+                    .setQualityIndicator(true)
+                    .setSecondaryHeaderFlag(false)
+                    .setTelemetryPacket()
+                    .setPacketSequenceCount(i % 16384);
+            spp.addData(body);
+            toReturn.add(spp.build());
+        }
+        return toReturn;
+    }
+
+    private List<ByteBuffer> toBuffers(List<IPacket> packets) {
+        // All packets in a single array, with some leading bytes: heap slices, direct and read-only buffers
+        int total = packets.stream().mapToInt(IPacket::getLength).sum();
+        ByteBuffer all = ByteBuffer.allocate(total + 3);
+        all.put(new byte[] { 1, 2, 3 });
+        for (IPacket p : packets) {
+            all.put(p.getPacket());
+        }
+        List<ByteBuffer> toReturn = new ArrayList<>(packets.size());
+        int offset = 3;
+        for (int i = 0; i < packets.size(); ++i) {
+            int length = packets.get(i).getLength();
+            ByteBuffer slice = ByteBuffer.wrap(all.array(), offset, length).slice();
+            if (i % 3 == 1) {
+                ByteBuffer direct = ByteBuffer.allocateDirect(length + 5);
+                direct.position(5);
+                direct.put(slice.duplicate());
+                direct.position(5);
+                slice = direct;
+            } else if (i % 3 == 2) {
+                slice = slice.asReadOnlyBuffer();
+            }
+            toReturn.add(slice);
+            offset += length;
+        }
+        return toReturn;
+    }
+
     private List<IPacket> generateSpacePackets(int n) {
         return generateSpacePackets(n, 400);
     }
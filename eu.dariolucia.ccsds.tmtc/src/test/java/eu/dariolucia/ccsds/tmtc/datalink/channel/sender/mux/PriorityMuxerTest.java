@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.mux;
+
+import eu.dariolucia.ccsds.tmtc.datalink.builder.TmTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.util.AnnotationKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityMuxerTest {
+
+    @Test
+    public void testStrictPriority() {
+        PriorityMuxer<TmTransferFrame> mux = new PriorityMuxer<>(null, PriorityMuxer.OverflowPolicy.DROP);
+        mux.register(0, 0, 1, 16);
+        mux.register(5, 1, 1, 16);
+        assertNull(mux.nextFrame());
+        for(int i = 0; i < 4; ++i) {
+            mux.accept(frame(5, i));
+        }
+        assertEquals(5, mux.nextFrame().getVirtualChannelId());
+        // Frames from the high priority VC are always served first
+        mux.accept(frame(0, 0));
+        mux.accept(frame(0, 1));
+        assertEquals(2, mux.getQueuedFrames(0));
+        assertEquals(0, mux.get().getVirtualChannelId());
+        assertEquals(0, mux.get().getVirtualChannelId());
+        assertEquals(5, mux.get().getVirtualChannelId());
+        assertEquals(2, mux.getTransmittedFrames(0));
+        assertEquals(2, mux.getTransmittedFrames(5));
+        assertEquals(2, mux.getQueuedFrames(5));
+    }
+
+    @Test
+    public void testWeights() {
+        PriorityMuxer<TmTransferFrame> mux = new PriorityMuxer<>(null, PriorityMuxer.OverflowPolicy.DROP);
+        mux.register(1, 5, 3, 64);
+        mux.register(2, 5, 1, 64);
+        for(int i = 0; i < 40; ++i) {
+            mux.accept(frame(1, i));
+            mux.accept(frame(2, i));
+        }
+        List<Integer> vcs = new ArrayList<>();
+        for(int i = 0; i < 40; ++i) {
+            vcs.add((int) mux.nextFrame().getVirtualChannelId());
+        }
+        assertEquals(List.of(1, 1, 1, 2), vcs.subList(0, 4));
+        assertEquals(30, vcs.stream().filter(o -> o == 1).count());
+        assertEquals(10, vcs.stream().filter(o -> o == 2).count());
+        // 10 frames left for VC 1, 30 for VC 2
+        for(int i = 0; i < 13; ++i) {
+            assertEquals(i % 4 == 3 ? 2 : 1, mux.nextFrame().getVirtualChannelId());
+        }
+        // VC 1 is empty: VC 2 takes all the bandwidth
+        for(int i = 0; i < 27; ++i) {
+            assertEquals(2, mux.nextFrame().getVirtualChannelId());
+        }
+        assertNull(mux.nextFrame());
+    }
+
+    @Test
+    public void testIdleFramesAndOverflow() {
+        TmTransferFrame idle = frame(7, 0);
+        PriorityMuxer<TmTransferFrame> mux = new PriorityMuxer<>(() -> idle, PriorityMuxer.OverflowPolicy.DROP);
+        mux.register(0, 0, 1, 4);
+        assertSame(idle, mux.nextFrame());
+        for(int i = 0; i < 6; ++i) {
+            mux.accept(frame(0, i));
+        }
+        assertEquals(2, mux.getDroppedFrames(0));
+        for(int i = 0; i < 4; ++i) {
+            assertEquals(i, mux.nextFrame().getVirtualChannelFrameCount());
+        }
+        assertSame(idle, mux.nextFrame());
+        assertEquals(2, mux.getIdleFrames());
+
+        assertThrows(IllegalArgumentException.class, () -> mux.accept(frame(1, 0)));
+        assertThrows(IllegalArgumentException.class, () -> mux.register(0, 0, 1, 4));
+        assertThrows(IllegalArgumentException.class, () -> mux.register(64, 0, 1, 4));
+        assertThrows(IllegalArgumentException.class, () -> mux.register(1, 0, 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> mux.register(1, 0, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> mux.getQueuedFrames(1));
+        assertThrows(NullPointerException.class, () -> new PriorityMuxer<TmTransferFrame>(null, null));
+    }
+
+    @Test
+    public void testTmMasterChannelCounter() throws InterruptedException {
+        TmSenderVirtualChannel idleVc = new TmSenderVirtualChannel(123, 7, VirtualChannelAccessMode.DATA, true, 1115, () -> 0, null);
+        List<TmTransferFrame> idleFrames = new ArrayList<>();
+        idleVc.register((vc, generatedFrame, bufferedBytes) -> idleFrames.add((TmTransferFrame) generatedFrame));
+        idleVc.dispatchIdle(new byte[] { 0x55 });
+        TmPriorityMuxer mux = new TmPriorityMuxer(() -> idleFrames.get(0), PriorityMuxer.OverflowPolicy.BLOCK);
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.DATA, true, 1115, () -> 0, null);
+        TmSenderVirtualChannel vc1 = new TmSenderVirtualChannel(123, 1, VirtualChannelAccessMode.DATA, true, 1115, () -> 0, null);
+        mux.register(vc0, 0, 1);
+        mux.register(vc1, 1, 1);
+        mux.setMasterChannelCounter(250);
+        // Generators on separate threads, blocked by the small queues until the frames are pulled
+        Thread[] generators = new Thread[] { new Thread(() -> generate(vc0)), new Thread(() -> generate(vc1)) };
+        for(Thread t : generators) {
+            t.start();
+        }
+        List<TmTransferFrame> transmitted = new ArrayList<>();
+        int[] vcCounters = new int[] { 0, 0 };
+        while(vcCounters[0] + vcCounters[1] < 2 * 110 && transmitted.size() < 100000) {
+            TmTransferFrame frame = mux.nextFrame();
+            transmitted.add(frame);
+            if(frame.getVirtualChannelId() != 7) {
+                // Per VC order is kept
+                assertEquals(vcCounters[frame.getVirtualChannelId()]++ % 256, frame.getVirtualChannelFrameCount());
+            }
+        }
+        for(Thread t : generators) {
+            t.join();
+        }
+        int expectedCounter = 250;
+        for(TmTransferFrame frame : transmitted) {
+            assertEquals(expectedCounter, frame.getMasterChannelFrameCount());
+            assertTrue(frame.isValid());
+            expectedCounter = (expectedCounter + 1) % 256;
+        }
+        assertEquals(110, mux.getTransmittedFrames(0));
+        assertEquals(110, mux.getTransmittedFrames(1));
+        assertEquals(transmitted.size() - 220, mux.getIdleFrames());
+    }
+
+    @Test
+    public void testInterruptedWhileBlocked() throws InterruptedException {
+        PriorityMuxer<TmTransferFrame> mux = new PriorityMuxer<>(null, PriorityMuxer.OverflowPolicy.BLOCK);
+        mux.register(0, 0, 1, 1);
+        mux.accept(frame(0, 0));
+        AtomicBoolean interruptFlag = new AtomicBoolean(false);
+        Thread generator = new Thread(() -> {
+            // Queue full: blocked until interrupted
+            mux.accept(frame(0, 1));
+            interruptFlag.set(Thread.currentThread().isInterrupted());
+        });
+        generator.start();
+        generator.interrupt();
+        generator.join();
+        assertTrue(interruptFlag.get());
+        assertEquals(1, mux.getDroppedFrames(0));
+        assertEquals(0, mux.nextFrame().getVirtualChannelFrameCount());
+        assertNull(mux.nextFrame());
+    }
+
+    @Test
+    public void testTmAnnotationsKept() {
+        TmPriorityMuxer mux = new TmPriorityMuxer(null, PriorityMuxer.OverflowPolicy.DROP);
+        mux.register(0, 0, 1, 4);
+        mux.setMasterChannelCounter(10);
+        TmTransferFrame frame = frame(0, 0);
+        frame.setAnnotationValue(AnnotationKey.QUALITY, true);
+        frame.setAnnotationValue("custom", "value");
+        mux.accept(frame);
+        TmTransferFrame transmitted = mux.nextFrame();
+        // Master channel frame count changed: new frame, same annotations
+        assertNotSame(frame, transmitted);
+        assertEquals(10, transmitted.getMasterChannelFrameCount());
+        assertEquals(true, transmitted.getAnnotationValue(AnnotationKey.QUALITY));
+        assertEquals("value", transmitted.getAnnotationValue("custom"));
+        assertEquals(List.of(AnnotationKey.QUALITY, "custom"), new ArrayList<>(transmitted.getAnnotationKeys()));
+    }
+
+    private void generate(TmSenderVirtualChannel vc) {
+        // One frame per dispatch
+        for(int i = 0; i < 110; ++i) {
+            vc.dispatch(new byte[vc.getMaxUserDataLength()]);
+        }
+    }
+
+    private static TmTransferFrame frame(int vcid, int counter) {
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(128, 0, false, false)
+                .setSpacecraftId(123)
+                .setVirtualChannelId(vcid)
+                .setMasterChannelFrameCount(0)
+                .setVirtualChannelFrameCount(counter)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(true)
+                .setSegmentLengthIdentifier(3);
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        return builder.build();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.IVirtualChannelDataProvider;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.BitstreamData;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.IPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramePacerTest {
+
+    @Test
+    public void testVirtualChannelPacing() throws InterruptedException {
+        AtomicInteger availableFrames = new AtomicInteger(50);
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.DATA, false, 1115, () -> 0, null, new IVirtualChannelDataProvider() {
+            @Override
+            public List<IPacket> generateSpacePackets(int virtualChannelId, int availableSpaceInCurrentFrame, int maxNumBytesBeforeOverflow) {
+                return null;
+            }
+
+            @Override
+            public BitstreamData generateBitstreamData(int virtualChannelId, int availableSpaceInCurrentFrame) {
+                return null;
+            }
+
+            @Override
+            public byte[] generateData(int virtualChannelId, int availableSpaceInCurrentFrame) {
+                return availableFrames.getAndDecrement() > 0 ? new byte[availableSpaceInCurrentFrame] : null;
+            }
+        });
+        TmSenderVirtualChannel vc7 = new TmSenderVirtualChannel(123, 7, VirtualChannelAccessMode.DATA, false, 1115, () -> 0, null);
+        TransferFrameCollector<TmTransferFrame> collector = new TransferFrameCollector<>();
+        vc0.register(collector);
+        vc7.register(collector);
+
+        // 1115 bytes + ASM, 1000 frames per second
+        double frameRate = FramePacer.frameRate(1119 * 8 * 1000, 1119);
+        assertEquals(1000.0, frameRate, 0.0001);
+        FramePacer pacer = new FramePacer(frameRate, vc0, vc7, new byte[] { 0x55 });
+        assertFalse(pacer.isRunning());
+        pacer.start();
+        assertTrue(pacer.isRunning());
+        assertThrows(IllegalStateException.class, pacer::start);
+        Thread.sleep(300);
+        pacer.stop();
+        assertFalse(pacer.isRunning());
+
+        List<TmTransferFrame> frames = collector.retrieve();
+        assertEquals(pacer.getEmittedFrames(), frames.size());
+        assertEquals(50, pacer.getDataFrames());
+        assertEquals(50, frames.stream().filter(o -> o.getVirtualChannelId() == 0).count());
+        assertEquals(pacer.getIdleFrames(), frames.stream().filter(TmTransferFrame::isIdleFrame).count());
+        assertTrue(pacer.getIdleFrames() > 0);
+        // Rate
+        assertEquals(1000.0, pacer.getTargetFrameRate(), 0.0001);
+        assertEquals(1000.0, pacer.getEmittedFrameRate(), 100.0);
+        assertTrue(pacer.getEmittedFrames() > 200 && pacer.getEmittedFrames() < 400, "Emitted frames: " + pacer.getEmittedFrames());
+    }
+
+    @Test
+    public void testCatchUp() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        FramePacer pacer = new FramePacer(1000, () -> {
+            if(counter.incrementAndGet() == 10) {
+                // Pause of 20 frames
+                pause(20);
+            }
+            return true;
+        }, null, 100);
+        pacer.start();
+        Thread.sleep(200);
+        pacer.stop();
+        // Catch up: no slot skipped, rate kept
+        assertEquals(0, pacer.getSkippedFrames());
+        assertEquals(counter.get(), pacer.getDataFrames());
+        assertEquals(1000.0, pacer.getEmittedFrameRate(), 100.0);
+        assertTrue(pacer.getMaxLateness(TimeUnit.MILLISECONDS) >= 15);
+
+        // Limited catch up: the older slots are skipped
+        counter.set(0);
+        pacer = new FramePacer(1000, () -> {
+            if(counter.incrementAndGet() == 10) {
+                pause(20);
+            }
+            return true;
+        }, null, 5);
+        pacer.start();
+        Thread.sleep(200);
+        pacer.stop();
+        assertTrue(pacer.getSkippedFrames() >= 10, "Skipped frames: " + pacer.getSkippedFrames());
+        assertTrue(pacer.getMaxLateness(TimeUnit.MILLISECONDS) < 15);
+    }
+
+    @Test
+    public void testCallerThread() {
+        AtomicInteger counter = new AtomicInteger(0);
+        AtomicInteger idleCounter = new AtomicInteger(0);
+        FramePacer[] pacer = new FramePacer[1];
+        pacer[0] = new FramePacer(5000, () -> {
+            if(counter.incrementAndGet() == 50) {
+                try {
+                    pacer[0].stop();
+                } catch (InterruptedException e) {
+                    fail(e);
+                }
+            }
+            return false;
+        }, idleCounter::incrementAndGet, 1);
+        pacer[0].run();
+        assertFalse(pacer[0].isRunning());
+        assertEquals(0, pacer[0].getDataFrames());
+        assertEquals(50, pacer[0].getIdleFrames());
+        assertEquals(50, idleCounter.get());
+    }
+
+    @Test
+    public void testRestartAfterStop() throws InterruptedException {
+        AtomicInteger callerFrames = new AtomicInteger(0);
+        FramePacer pacer = new FramePacer(1000, () -> {
+            if(!Thread.currentThread().getName().equals("Frame pacer")) {
+                callerFrames.incrementAndGet();
+            }
+            return true;
+        }, null, 1);
+        Thread caller = new Thread(pacer::run, "Caller");
+        caller.start();
+        long waitUntil = System.currentTimeMillis() + 5000;
+        while(callerFrames.get() == 0 && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+        assertTrue(callerFrames.get() > 0);
+        // Immediate restart: the old loop on the caller thread terminates anyway
+        pacer.stop();
+        pacer.start();
+        caller.join(5000);
+        assertFalse(caller.isAlive());
+        assertTrue(pacer.isRunning());
+        int frames = callerFrames.get();
+        Thread.sleep(50);
+        pacer.stop();
+        assertFalse(pacer.isRunning());
+        assertEquals(frames, callerFrames.get());
+        assertTrue(pacer.getDataFrames() > frames, "Data frames: " + pacer.getDataFrames());
+    }
+
+    @Test
+    public void testGeneratorException() throws InterruptedException {
+        AtomicInteger idleCounter = new AtomicInteger(0);
+        FramePacer pacer = new FramePacer(5000, () -> false, () -> {
+            int count = idleCounter.incrementAndGet();
+            if(count == 10 || count == 20) {
+                throw new IllegalStateException("Test exception, ignore");
+            }
+        }, 1);
+        // Caller thread: the exception is propagated and the pacer can be restarted
+        assertThrows(IllegalStateException.class, pacer::run);
+        assertFalse(pacer.isRunning());
+        assertEquals(9, pacer.getIdleFrames());
+
+        // Dedicated thread: the exception reaches the uncaught exception handler
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        Thread[] thread = new Thread[1];
+        pacer.start(r -> {
+            thread[0] = new Thread(r);
+            thread[0].setUncaughtExceptionHandler((t, e) -> uncaught.set(e));
+            return thread[0];
+        });
+        thread[0].join(5000);
+        assertFalse(thread[0].isAlive());
+        assertFalse(pacer.isRunning());
+        assertTrue(uncaught.get() instanceof IllegalStateException);
+        assertEquals(20, idleCounter.get());
+        assertEquals(18, pacer.getIdleFrames());
+
+        // Restart after the failure
+        pacer.start();
+        assertTrue(pacer.isRunning());
+        Thread.sleep(50);
+        pacer.stop();
+        assertFalse(pacer.isRunning());
+        assertTrue(pacer.getIdleFrames() > 18, "Idle frames: " + pacer.getIdleFrames());
+    }
+
+    @Test
+    public void testWrongConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new FramePacer(0, () -> true, null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new FramePacer(Double.NaN, () -> true, null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new FramePacer(1, () -> true, null, 0));
+        assertThrows(NullPointerException.class, () -> new FramePacer(1, null, null, 1));
+        assertThrows(IllegalArgumentException.class, () -> FramePacer.frameRate(1000, 0));
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.channel.sender.util;
+
+import eu.dariolucia.ccsds.tmtc.datalink.channel.VirtualChannelAccessMode;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.AbstractReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.IVirtualChannelReceiverOutput;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.receiver.TmReceiverVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.channel.sender.TmSenderVirtualChannel;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.AbstractTransferFrame;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+import eu.dariolucia.ccsds.tmtc.transport.builder.SpacePacketBuilder;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.IPacket;
+import eu.dariolucia.ccsds.tmtc.transport.pdu.SpacePacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiProducerPacketQueueTest {
+
+    @Test
+    public void testPushModeMultipleProducers() throws InterruptedException {
+        int nbProducers = 4;
+        int nbPackets = 2000;
+        MultiProducerPacketQueue queue = new MultiProducerPacketQueue(64);
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.PACKET, true, 1115, () -> 0, null);
+        TransferFrameCollector<TmTransferFrame> collector = new TransferFrameCollector<>();
+        vc0.register(collector);
+        queue.start(vc0);
+        assertTrue(queue.isRunning());
+        assertThrows(IllegalStateException.class, () -> queue.start(vc0));
+
+        List<Thread> threads = new ArrayList<>();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        for(int p = 0; p < nbProducers; ++p) {
+            MultiProducerPacketQueue.Producer producer = queue.registerProducer("Instrument " + p, 16);
+            int apid = 100 + p;
+            Thread t = new Thread(() -> {
+                try {
+                    for (int i = 0; i < nbPackets; ++i) {
+                        if (!producer.offer(packet(apid, i, 20 + i % 50), 10, TimeUnit.SECONDS)) {
+                            errors.add("Timeout on " + producer);
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    errors.add("Interrupted");
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for(Thread t : threads) {
+            t.join(20000);
+            assertFalse(t.isAlive());
+        }
+        queue.stop();
+        assertFalse(queue.isRunning());
+        assertTrue(errors.isEmpty(), errors.toString());
+
+        // Close the last frame
+        vc0.dispatch(packet(200, 0, Math.max(7, vc0.getRemainingFreeSpace())));
+        Map<Integer, List<Integer>> extracted = extract(collector.retrieve());
+        for(int p = 0; p < nbProducers; ++p) {
+            List<Integer> counters = extracted.get(100 + p);
+            assertEquals(nbPackets, counters.size());
+            for(int i = 0; i < nbPackets; ++i) {
+                assertEquals(i, counters.get(i));
+            }
+        }
+
+        // Statistics
+        assertEquals(nbProducers, queue.getProducers().size());
+        for(MultiProducerPacketQueue.Producer producer : queue.getProducers()) {
+            assertEquals(nbPackets, producer.getAcceptedPackets());
+            assertEquals(0, producer.getPendingPackets());
+            assertTrue(producer.getPeakPendingPackets() > 0);
+            assertTrue(producer.getPeakPendingPackets() <= producer.getMaxPendingPackets());
+        }
+        assertEquals(64, queue.getQueueCapacity());
+        assertEquals(0, queue.getQueueDepth());
+        assertTrue(queue.getPeakQueueDepth() > 0);
+        assertTrue(queue.getPeakQueueDepth() <= nbProducers * 16);
+        assertEquals(nbProducers * nbPackets, queue.getDrainedPackets());
+        assertEquals(0, queue.getFailedBatches());
+    }
+
+    @Test
+    public void testPullModeBackpressure() throws InterruptedException {
+        MultiProducerPacketQueue queue = new MultiProducerPacketQueue(8);
+        MultiProducerPacketQueue.Producer p1 = queue.registerProducer("P1", 4);
+        MultiProducerPacketQueue.Producer p2 = queue.registerProducer("P2", 8);
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.PACKET, false, 1115, () -> 0, null, queue);
+        TransferFrameCollector<TmTransferFrame> collector = new TransferFrameCollector<>();
+        vc0.register(collector);
+
+        // Limit of the producer
+        for(int i = 0; i < 4; ++i) {
+            assertTrue(p1.offer(packet(100, i, 100)));
+        }
+        assertFalse(p1.offer(packet(100, 4, 100)));
+        assertFalse(p1.offer(packet(100, 4, 100), 1, TimeUnit.MILLISECONDS));
+        assertEquals(4, p1.getPendingPackets());
+        assertEquals(2, p1.getRejectedPackets());
+        // Capacity of the queue
+        for(int i = 0; i < 4; ++i) {
+            assertTrue(p2.offer(packet(101, i, 100)));
+        }
+        assertFalse(p2.offer(packet(101, 4, 100)));
+        assertEquals(4, p2.getPendingPackets());
+        assertEquals(1, p2.getRejectedPackets());
+        assertEquals(8, queue.getQueueDepth());
+        assertEquals(8, queue.getPeakQueueDepth());
+
+        // Not enough data to emit a frame: 800 bytes
+        assertFalse(vc0.pullNextFrame());
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(0, p1.getPendingPackets());
+        assertEquals(0, p2.getPendingPackets());
+        assertEquals(8, queue.getDrainedPackets());
+        assertTrue(collector.retrieve().isEmpty());
+        assertFalse(vc0.pullNextFrame());
+
+        // Enough data to emit a frame: the packets exceeding the frame stay in the queue
+        for(int i = 4; i < 8; ++i) {
+            assertTrue(p1.offer(packet(100, i, 100)));
+        }
+        assertTrue(p2.offer(packet(101, 4, 400)));
+        assertTrue(vc0.pullNextFrame());
+        assertEquals(1, collector.retrieve().size());
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(1, p2.getPendingPackets());
+        assertEquals(8, p1.getAcceptedPackets());
+        assertEquals(5, p2.getAcceptedPackets());
+
+        // Wrong arguments
+        TmSenderVirtualChannel vc1 = new TmSenderVirtualChannel(123, 1, VirtualChannelAccessMode.DATA, false, 1115, () -> 0, null);
+        assertThrows(IllegalArgumentException.class, () -> queue.drainTo(vc1, 10));
+        assertThrows(IllegalArgumentException.class, () -> queue.start(vc1));
+        assertThrows(IllegalArgumentException.class, () -> queue.drainTo(vc0, 0));
+        assertThrows(NullPointerException.class, () -> queue.drainTo(null, 10));
+        assertThrows(NullPointerException.class, () -> p1.offer(null));
+        assertThrows(IllegalArgumentException.class, () -> queue.registerProducer("P3", 0));
+        assertThrows(NullPointerException.class, () -> queue.registerProducer(null, 1));
+        assertNull(queue.generateData(0, 100));
+        assertNull(queue.generateBitstreamData(0, 100));
+
+        // Drain in push mode
+        assertEquals(1, queue.drainTo(vc0, 10));
+        assertEquals(0, queue.drainTo(vc0, 10));
+        assertEquals(0, p2.getPendingPackets());
+    }
+
+    @Test
+    public void testFailedBatch() throws InterruptedException {
+        MultiProducerPacketQueue queue = new MultiProducerPacketQueue(64);
+        MultiProducerPacketQueue.Producer producer = queue.registerProducer("P1", 64);
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.PACKET, false, 1115, () -> 0, null);
+        AtomicInteger generatedFrames = new AtomicInteger(0);
+        vc0.register((vc, generatedFrame, bufferedBytes) -> {
+            if(generatedFrames.incrementAndGet() == 1) {
+                throw new IllegalStateException("Test exception, ignore");
+            }
+        });
+        List<IPacket> firstBatch = new ArrayList<>();
+        for(int i = 0; i < 20; ++i) {
+            IPacket p = packet(100, i, 100);
+            firstBatch.add(p);
+            assertTrue(producer.offer(p));
+        }
+        List<List<IPacket>> failedBatches = new CopyOnWriteArrayList<>();
+        List<RuntimeException> errors = new CopyOnWriteArrayList<>();
+        queue.start(vc0, null, (packets, error) -> {
+            failedBatches.add(packets);
+            errors.add(error);
+        });
+        waitForEmptyQueue(queue);
+        // The failed batch is reported, not counted as drained
+        waitFor(() -> !failedBatches.isEmpty());
+        assertEquals(1, failedBatches.size());
+        assertEquals(firstBatch, failedBatches.get(0));
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+        assertEquals(1, queue.getFailedBatches());
+        assertEquals(20, queue.getFailedPackets());
+        assertEquals(0, queue.getDrainedPackets());
+        // The packing continues
+        for(int i = 20; i < 40; ++i) {
+            assertTrue(producer.offer(packet(100, i, 100)));
+        }
+        waitFor(() -> queue.getDrainedPackets() == 20);
+        queue.stop();
+        assertEquals(20, queue.getDrainedPackets());
+        assertEquals(1, queue.getFailedBatches());
+        assertEquals(20, queue.getFailedPackets());
+        assertTrue(generatedFrames.get() > 1);
+
+        // Direct drain: failure counted and propagated
+        for(int i = 40; i < 50; ++i) {
+            assertTrue(producer.offer(packet(100, i, 100)));
+        }
+        vc0.register((vc, generatedFrame, bufferedBytes) -> {
+            throw new IllegalStateException("Test exception, ignore");
+        });
+        assertThrows(IllegalStateException.class, () -> queue.drainTo(vc0, 100));
+        assertEquals(30, queue.getFailedPackets());
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+    @Test
+    public void testInterruptedPackingThread() throws InterruptedException {
+        MultiProducerPacketQueue queue = new MultiProducerPacketQueue(64);
+        MultiProducerPacketQueue.Producer producer = queue.registerProducer("P1", 64);
+        TmSenderVirtualChannel vc0 = new TmSenderVirtualChannel(123, 0, VirtualChannelAccessMode.PACKET, false, 1115, () -> 0, null);
+        AtomicBoolean interruptFlag = new AtomicBoolean(false);
+        Thread[] thread = new Thread[1];
+        queue.start(vc0, r -> {
+            thread[0] = new Thread(() -> {
+                r.run();
+                interruptFlag.set(Thread.currentThread().isInterrupted());
+            });
+            return thread[0];
+        });
+        assertTrue(producer.offer(packet(100, 0, 100)));
+        waitForEmptyQueue(queue);
+        // Idle packing thread: the interrupt terminates it
+        thread[0].interrupt();
+        thread[0].join(5000);
+        assertFalse(thread[0].isAlive());
+        assertTrue(interruptFlag.get());
+        assertFalse(queue.isRunning());
+        assertEquals(1, queue.getDrainedPackets());
+        // The packing can be restarted
+        queue.start(vc0);
+        assertTrue(producer.offer(packet(100, 1, 100)));
+        waitForEmptyQueue(queue);
+        queue.stop();
+        assertEquals(2, queue.getDrainedPackets());
+    }
+
+    private static void waitForEmptyQueue(MultiProducerPacketQueue queue) throws InterruptedException {
+        waitFor(() -> queue.getQueueDepth() == 0);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long waitUntil = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean() && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static IPacket packet(int apid, int counter, int length) {
+        SpacePacketBuilder spp = SpacePacketBuilder.create()
+                .setApid(apid)
+                .setQualityIndicator(true)
+                .setSecondaryHeaderFlag(false)
+                .setTelemetryPacket()
+                .setPacketSequenceCount(counter);
+        spp.addData(new byte[length - SpacePacket.SP_PRIMARY_HEADER_LENGTH]);
+        return spp.build();
+    }
+
+    private static Map<Integer, List<Integer>> extract(List<TmTransferFrame> frames) {
+        Map<Integer, List<Integer>> counters = new HashMap<>();
+        TmReceiverVirtualChannel receiver = new TmReceiverVirtualChannel(0, VirtualChannelAccessMode.PACKET, true);
+        receiver.register(new IVirtualChannelReceiverOutput() {
+            @Override
+            public void spacePacketExtracted(AbstractReceiverVirtualChannel vc, AbstractTransferFrame firstFrame, byte[] packet, boolean qualityIndicator) {
+                SpacePacket sp = new SpacePacket(packet, qualityIndicator);
+                counters.computeIfAbsent((int) sp.getApid(), k -> new ArrayList<>()).add((int) sp.getPacketSequenceCount());
+            }
+        });
+        frames.forEach(receiver);
+        return counters;
+    }
+}
@@ -16,6 +16,7 @@
 
 package eu.dariolucia.ccsds.tmtc.datalink.pdu;
 
+import eu.dariolucia.ccsds.tmtc.datalink.builder.TcTransferFrameBuilder;
 import eu.dariolucia.ccsds.tmtc.util.StringUtil;
 import org.junit.jupiter.api.Test;
 
@@ -38,4 +39,24 @@ class TcTransferFrameTest {
         // For coverage only
         assertNotNull(tctf.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTcTransferFrameVirtualChannelIdDecoding() {
+        for(int vcId = 0; vcId < 64; ++vcId) {
+            TcTransferFrameBuilder builder = TcTransferFrameBuilder.create(true)
+                    .setSpacecraftId(1023)
+                    .setVirtualChannelId(vcId)
+                    .setFrameSequenceNumber(255)
+                    .setBypassFlag(true)
+                    .setControlCommandFlag(false);
+            builder.addData(new byte[10]);
+            byte[] encoded = builder.build().getFrame();
+
+            TcTransferFrame tctf = new TcTransferFrame(encoded, (vc) -> false, true);
+            assertEquals(vcId, tctf.getVirtualChannelId());
+            assertEquals(1023, tctf.getSpacecraftId());
+            assertEquals(255, tctf.getVirtualChannelFrameCount());
+            assertTrue(tctf.isValid());
+        }
+    }
+}
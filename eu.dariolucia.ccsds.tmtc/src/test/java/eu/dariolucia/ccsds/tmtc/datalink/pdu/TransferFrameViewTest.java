@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018-2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.datalink.pdu;
+
+import eu.dariolucia.ccsds.tmtc.datalink.builder.TmTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.util.StringUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferFrameViewTest {
+
+    private static final byte[] TC_FRAME = StringUtil.toByteArray("207B001717C1000102030405060708090A0B0C0D0E0F0DEF");
+
+    private static byte[] embed(byte[] frame, int offset, int trailing) {
+        byte[] data = new byte[offset + frame.length + trailing];
+        System.arraycopy(frame, 0, data, offset, frame.length);
+        return data;
+    }
+
+    private static TmTransferFrame buildTmFrame(int vcId, int vcCount, boolean idle) {
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(1115, 4, true, true)
+                .setSpacecraftId(789)
+                .setVirtualChannelId(vcId)
+                .setMasterChannelFrameCount(vcCount + 1)
+                .setVirtualChannelFrameCount(vcCount)
+                .setSecondaryHeader(new byte[] { 1, 2, 3, 4 })
+                .setOcf(new byte[] { 5, 6, 7, 8 })
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(false)
+                .setSegmentLengthIdentifier(3);
+        if(idle) {
+            builder.setIdle();
+        }
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        return builder.build();
+    }
+
+    @Test
+    public void testTmTransferFrameView() {
+        TmTransferFrameView view = new TmTransferFrameView(true);
+        for(int i = 0; i < 3; ++i) {
+            TmTransferFrame frame = buildTmFrame(i + 1, 100 + i, i == 2);
+            byte[] data = embed(frame.getFrame(), 3 + i, 5);
+            assertSame(view, view.wrap(data, 3 + i, frame.getLength()));
+
+            assertEquals(frame.getTransferFrameVersionNumber(), view.getTransferFrameVersionNumber());
+            assertEquals(frame.getSpacecraftId(), view.getSpacecraftId());
+            assertEquals(frame.getVirtualChannelId(), view.getVirtualChannelId());
+            assertEquals(frame.getMasterChannelFrameCount(), view.getMasterChannelFrameCount());
+            assertEquals(frame.getVirtualChannelFrameCount(), view.getVirtualChannelFrameCount());
+            assertEquals(frame.isOcfPresent(), view.isOcfPresent());
+            assertEquals(frame.getOcfStart(), view.getOcfStart());
+            assertEquals(frame.isSecondaryHeaderPresent(), view.isSecondaryHeaderPresent());
+            assertEquals(frame.getSecondaryHeaderLength(), view.getSecondaryHeaderLength());
+            assertEquals(frame.isSynchronisationFlag(), view.isSynchronisationFlag());
+            assertEquals(frame.isPacketOrderFlag(), view.isPacketOrderFlag());
+            assertEquals(frame.getSegmentLengthIdentifier(), view.getSegmentLengthIdentifier());
+            assertEquals(frame.getFirstHeaderPointer(), view.getFirstHeaderPointer());
+            assertEquals(frame.isNoStartPacket(), view.isNoStartPacket());
+            assertEquals(frame.isIdleFrame(), view.isIdleFrame());
+            assertEquals(frame.getDataFieldStart(), view.getDataFieldStart());
+            assertEquals(frame.getDataFieldLength(), view.getDataFieldLength());
+            assertEquals(frame.getFecf(), view.getFecf());
+            assertTrue(view.isValid());
+            assertArrayEquals(frame.getFrame(), view.getFrameCopy());
+
+            TmTransferFrame copy = view.toFrame();
+            assertArrayEquals(frame.getFrame(), copy.getFrame());
+            assertNotSame(data, copy.getFrame());
+            assertTrue(copy.isValid());
+
+            // Corrupt the frame: the validity must be recomputed after a new wrap
+            data[3 + i + 20] ^= 0x01;
+            assertTrue(view.isValid());
+            assertFalse(view.wrap(data, 3 + i, frame.getLength()).isValid());
+        }
+    }
+
+    @Test
+    public void testAosTransferFrameView() {
+        AosTransferFrameView idleView = new AosTransferFrameView(true, 0, AosTransferFrame.UserDataType.IDLE, true, true);
+        AosTransferFrameView mpduView = new AosTransferFrameView(true, 0, AosTransferFrame.UserDataType.M_PDU, true, true);
+        AosTransferFrameView bpduView = new AosTransferFrameView(true, 0, AosTransferFrame.UserDataType.B_PDU, true, true);
+        AosTransferFrameView[] views = new AosTransferFrameView[] { idleView, mpduView, bpduView };
+        byte[][] frames = new byte[][] { AosTransferFrameTest.AOS_FRAME_01, AosTransferFrameTest.AOS_FRAME_02, AosTransferFrameTest.AOS_FRAME_03 };
+        for(int i = 0; i < views.length; ++i) {
+            AosTransferFrameView view = views[i];
+            AosTransferFrame frame = new AosTransferFrame(frames[i], true, 0, view.getUserDataType(), true, true);
+            view.wrap(embed(frames[i], 11, 0), 11, frames[i].length);
+
+            assertEquals(frame.getTransferFrameVersionNumber(), view.getTransferFrameVersionNumber());
+            assertEquals(frame.getSpacecraftId(), view.getSpacecraftId());
+            assertEquals(frame.getVirtualChannelId(), view.getVirtualChannelId());
+            assertEquals(frame.getVirtualChannelFrameCount(), view.getVirtualChannelFrameCount());
+            assertEquals(frame.isReplayFlag(), view.isReplayFlag());
+            assertEquals(frame.isVirtualChannelFrameCountUsageFlag(), view.isVirtualChannelFrameCountUsageFlag());
+            assertEquals(frame.getVirtualChannelFrameCountCycle(), view.getVirtualChannelFrameCountCycle());
+            assertEquals(frame.isOcfPresent(), view.isOcfPresent());
+            assertEquals(frame.getOcfStart(), view.getOcfStart());
+            assertEquals(frame.getDataFieldStart(), view.getDataFieldStart());
+            assertEquals(frame.getDataFieldLength(), view.getDataFieldLength());
+            assertEquals(frame.isIdleFrame(), view.isIdleFrame());
+            assertEquals(frame.isValidHeader(), view.isValidHeader());
+            assertEquals(frame.isValid(), view.isValid());
+            if(view.getUserDataType() == AosTransferFrame.UserDataType.M_PDU) {
+                assertEquals(frame.getFirstHeaderPointer(), view.getFirstHeaderPointer());
+                assertEquals(frame.isNoStartPacket(), view.isNoStartPacket());
+            } else {
+                assertEquals(-1, view.getFirstHeaderPointer());
+            }
+            if(view.getUserDataType() == AosTransferFrame.UserDataType.B_PDU) {
+                assertEquals(frame.getBitstreamDataPointer(), view.getBitstreamDataPointer());
+            } else {
+                assertEquals(-1, view.getBitstreamDataPointer());
+            }
+            assertArrayEquals(frames[i], view.toFrame().getFrame());
+        }
+    }
+
+    @Test
+    public void testTcTransferFrameView() {
+        TcTransferFrameView view = new TcTransferFrameView(vc -> true, true);
+        // Simulate virtual fill after CLTU decoding
+        byte[] data = embed(TC_FRAME, 2, 6);
+        view.wrap(data, 2, TC_FRAME.length + 6);
+        TcTransferFrame frame = new TcTransferFrame(TC_FRAME, vc -> true, true);
+
+        assertEquals(TC_FRAME.length, view.getLength());
+        assertEquals(frame.getLength(), view.getFrameLength());
+        assertEquals(frame.getTransferFrameVersionNumber(), view.getTransferFrameVersionNumber());
+        assertEquals(frame.getSpacecraftId(), view.getSpacecraftId());
+        assertEquals(frame.getVirtualChannelId(), view.getVirtualChannelId());
+        assertEquals(frame.getVirtualChannelFrameCount(), view.getVirtualChannelFrameCount());
+        assertEquals(frame.isBypassFlag(), view.isBypassFlag());
+        assertEquals(frame.isControlCommandFlag(), view.isControlCommandFlag());
+        assertEquals(frame.getFrameType(), view.getFrameType());
+        assertEquals(frame.isSegmented(), view.isSegmented());
+        assertEquals(frame.getMapId(), view.getMapId());
+        assertEquals(frame.getSequenceFlag(), view.getSequenceFlag());
+        assertEquals(frame.getDataFieldStart(), view.getDataFieldStart());
+        assertEquals(frame.getDataFieldLength(), view.getDataFieldLength());
+        assertFalse(view.isOcfPresent());
+        assertEquals(-1, view.getOcfStart());
+        assertFalse(view.isIdleFrame());
+        assertTrue(view.isValid());
+        assertArrayEquals(TC_FRAME, view.toFrame().getFrame());
+    }
+
+    @Test
+    public void testWrongWrap() {
+        TmTransferFrameView view = new TmTransferFrameView(true);
+        assertThrows(NullPointerException.class, () -> view.wrap(null, 0, 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.wrap(new byte[10], 5, 10));
+        assertThrows(IllegalArgumentException.class, () -> view.wrap(new byte[7]));
+        // Wrong TFVN detected only when the frame is decoded
+        byte[] frame = buildTmFrame(1, 1, false).getFrameCopy();
+        frame[0] |= (byte) 0x40;
+        view.wrap(frame);
+        assertEquals(1, view.getTransferFrameVersionNumber());
+        assertThrows(IllegalArgumentException.class, view::toFrame);
+        assertThrows(IllegalStateException.class, () -> new TmTransferFrameView(false).wrap(frame).getFecf());
+    }
+}
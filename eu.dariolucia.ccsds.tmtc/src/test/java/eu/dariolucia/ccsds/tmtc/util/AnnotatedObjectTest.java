@@ -0,0 +1,178 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotatedObjectTest {
+
+    @Test
+    public void testInlineAndMapAnnotations() {
+        TestObject obj = new TestObject();
+        assertTrue(obj.getAnnotationKeys().isEmpty());
+        assertNull(obj.getAnnotationValue("A"));
+        assertNull(obj.clearAnnotationValue("A"));
+        assertFalse(obj.isAnnotationPresent("A"));
+
+        // Inline storage
+        for(int i = 0; i < AnnotatedObject.INLINE_ANNOTATIONS; ++i) {
+            obj.setAnnotationValue("K" + i, i);
+        }
+        assertEquals(AnnotatedObject.INLINE_ANNOTATIONS, obj.getAnnotationKeys().size());
+        obj.setAnnotationValue("K1", 100);
+        assertEquals(100, obj.getAnnotationValue("K1"));
+        assertEquals(Arrays.asList("K0", "K1", "K2", "K3"), new ArrayList<>(obj.getAnnotationKeys()));
+
+        // Removal keeps the order
+        assertEquals(100, obj.clearAnnotationValue("K1"));
+        assertFalse(obj.isAnnotationPresent("K1"));
+        assertEquals(Arrays.asList("K0", "K2", "K3"), new ArrayList<>(obj.getAnnotationKeys()));
+
+        // Move to the map storage
+        obj.setAnnotationValue("K4", 4);
+        obj.setAnnotationValue("K5", 5);
+        obj.setAnnotationValue((Object) null, 6);
+        assertEquals(Arrays.asList("K0", "K2", "K3", "K4", "K5", null), new ArrayList<>(obj.getAnnotationKeys()));
+        for(int i : new int[] {0, 2, 3, 4, 5}) {
+            assertEquals(i, obj.getAnnotationValue("K" + i));
+        }
+        assertEquals(6, obj.getAnnotationValue((Object) null));
+
+        obj.clearAnnotations();
+        assertTrue(obj.getAnnotationKeys().isEmpty());
+        obj.setAnnotationValue("K0", 0);
+        assertEquals(1, obj.getAnnotationKeys().size());
+        assertEquals(0, obj.getAnnotationValue("K0"));
+    }
+
+    @Test
+    public void testSetIfAbsent() {
+        TestObject obj = new TestObject();
+        assertNull(obj.setAnnotationValueIfAbsent("A", 1));
+        assertEquals(1, obj.setAnnotationValueIfAbsent("A", 2));
+        assertEquals(1, obj.getAnnotationValue("A"));
+        obj.setAnnotationValue("B", null);
+        assertNull(obj.setAnnotationValueIfAbsent("B", 3));
+        assertEquals(3, obj.getAnnotationValue("B"));
+        for(int i = 0; i < AnnotatedObject.INLINE_ANNOTATIONS; ++i) {
+            obj.setAnnotationValueIfAbsent("K" + i, i);
+        }
+        assertEquals(AnnotatedObject.INLINE_ANNOTATIONS + 2, obj.getAnnotationKeys().size());
+        assertEquals(1, obj.setAnnotationValueIfAbsent("A", 4));
+    }
+
+    @Test
+    public void testTypedKeys() {
+        TestObject obj = new TestObject();
+        Instant now = Instant.now();
+        obj.setAnnotationValue(AnnotationKey.RECEPTION_TIME, now);
+        obj.setAnnotationValue(AnnotationKey.QUALITY, true);
+        obj.setAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS, new int[] {1, 0, 2});
+
+        assertEquals(now, obj.getAnnotationValue(AnnotationKey.RECEPTION_TIME));
+        assertTrue(obj.getAnnotationValue(AnnotationKey.QUALITY));
+        assertArrayEquals(new int[] {1, 0, 2}, obj.getAnnotationValue(AnnotationKey.RS_CORRECTED_SYMBOLS));
+        assertNull(obj.getAnnotationValue(AnnotationKey.BCH_CORRECTED_CODEBLOCKS));
+
+        // Same name, same type: same key
+        assertEquals(now, obj.getAnnotationValue(new AnnotationKey<>("##RECEPTION_TIME", Instant.class)));
+        // Same name, different type: different key
+        assertNull(obj.getAnnotationValue(new AnnotationKey<>("##RECEPTION_TIME", Object.class)));
+
+        // Wrong type, rejected also when the untyped setter is used
+        AnnotationKey<String> key = new AnnotationKey<>("TEST", String.class);
+        Object wrongValue = 3;
+        assertThrows(ClassCastException.class, () -> obj.setAnnotationValue((Object) key, wrongValue));
+        assertThrows(ClassCastException.class, () -> obj.setAnnotationValueIfAbsent(key, wrongValue));
+        assertFalse(obj.isAnnotationPresent(key));
+        obj.setAnnotationValue(key, null);
+        assertNull(obj.getAnnotationValue(key));
+        // Plain keys accept any value
+        obj.setAnnotationValue("TEST", 3);
+        assertEquals(3, obj.getAnnotationValue("TEST"));
+
+        assertThrows(NullPointerException.class, () -> new AnnotationKey<>(null, String.class));
+        assertThrows(NullPointerException.class, () -> new AnnotationKey<>("TEST", null));
+        assertEquals("TEST", key.toString());
+    }
+
+    @Test
+    public void testKeySetView() {
+        TestObject obj = new TestObject();
+        Set<Object> keys = obj.getAnnotationKeys();
+        assertSame(keys, obj.getAnnotationKeys());
+        assertEquals(0, keys.size());
+        obj.setAnnotationValue("A", 1);
+        assertEquals(1, keys.size());
+        assertTrue(keys.contains("A"));
+        assertThrows(UnsupportedOperationException.class, () -> keys.add("B"));
+        assertThrows(UnsupportedOperationException.class, () -> keys.iterator().remove());
+        for(int i = 0; i < AnnotatedObject.INLINE_ANNOTATIONS; ++i) {
+            obj.setAnnotationValue("K" + i, i);
+        }
+        assertEquals(AnnotatedObject.INLINE_ANNOTATIONS + 1, keys.size());
+        assertThrows(UnsupportedOperationException.class, () -> {
+            var it = keys.iterator();
+            it.next();
+            it.remove();
+        });
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        for(int count : new int[] {0, 2, AnnotatedObject.INLINE_ANNOTATIONS + 2}) {
+            TestObject obj = new TestObject();
+            List<Object> expectedKeys = new ArrayList<>();
+            for(int i = 0; i < count; ++i) {
+                obj.setAnnotationValue("K" + i, i);
+                expectedKeys.add("K" + i);
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try(ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                oos.writeObject(obj);
+            }
+            TestObject read;
+            try(ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+                read = (TestObject) ois.readObject();
+            }
+            assertEquals(expectedKeys, new ArrayList<>(read.getAnnotationKeys()));
+            for(int i = 0; i < count; ++i) {
+                assertEquals(i, read.getAnnotationValue("K" + i));
+            }
+        }
+    }
+
+    private static class TestObject extends AnnotatedObject {
+        @Override
+        public int getLength() {
+            return 0;
+        }
+    }
+}
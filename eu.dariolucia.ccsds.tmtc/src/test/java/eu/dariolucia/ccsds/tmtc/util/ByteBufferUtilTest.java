@@ -0,0 +1,51 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteBufferUtilTest {
+
+    @Test
+    public void testCopy() {
+        byte[] data = new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+        ByteBuffer heap = ByteBuffer.wrap(data, 2, 6).slice();
+        heap.position(1);
+        ByteBuffer direct = ByteBuffer.allocateDirect(10);
+        direct.put(data).position(3);
+        ByteBuffer readOnly = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        readOnly.position(3);
+
+        for(ByteBuffer bb : new ByteBuffer[] { heap, direct, readOnly }) {
+            int position = bb.position();
+            byte[] dst = new byte[5];
+            ByteBufferUtil.copy(bb, 1, dst, 1, 3);
+            assertArrayEquals(new byte[] { 0, 4, 5, 6, 0 }, dst);
+            assertEquals(position, bb.position());
+            assertThrows(IndexOutOfBoundsException.class, () -> ByteBufferUtil.copy(bb, -1, dst, 0, 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> ByteBufferUtil.copy(bb, 0, dst, 0, -1));
+            assertThrows(IndexOutOfBoundsException.class, () -> ByteBufferUtil.copy(bb, 1, dst, 0, bb.remaining()));
+            assertEquals(position, bb.position());
+        }
+    }
+}
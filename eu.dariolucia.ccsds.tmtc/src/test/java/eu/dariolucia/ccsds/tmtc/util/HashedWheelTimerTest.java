@@ -0,0 +1,118 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    @Test
+    public void testStartRestartCancel() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8, null);
+        try {
+            AtomicInteger expirations = new AtomicInteger(0);
+            AtomicLong expirationTime = new AtomicLong(0);
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> {
+                expirationTime.set(System.nanoTime());
+                expirations.incrementAndGet();
+            });
+            assertFalse(timeout.isStarted());
+            assertFalse(timeout.cancel());
+
+            // Expiration, longer than a round of the wheel (8 * 5 ms)
+            long start = System.nanoTime();
+            timeout.start(100, TimeUnit.MILLISECONDS);
+            assertTrue(timeout.isStarted());
+            waitFor(() -> expirations.get() == 1, 2000);
+            assertEquals(1, expirations.get());
+            assertFalse(timeout.isStarted());
+            assertTrue(expirationTime.get() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+            // Cancellation
+            timeout.start(50, TimeUnit.MILLISECONDS);
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.isStarted());
+            Thread.sleep(150);
+            assertEquals(1, expirations.get());
+
+            // Continuous restart: no expiration until the restarts stop
+            for(int i = 0; i < 20; ++i) {
+                start = System.nanoTime();
+                timeout.start(50, TimeUnit.MILLISECONDS);
+                Thread.sleep(10);
+            }
+            assertEquals(1, expirations.get());
+            waitFor(() -> expirations.get() == 2, 2000);
+            assertEquals(2, expirations.get());
+            assertTrue(expirationTime.get() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+            // Restart from the task
+            AtomicInteger periodic = new AtomicInteger(0);
+            HashedWheelTimer.Timeout[] self = new HashedWheelTimer.Timeout[1];
+            self[0] = timer.newTimeout(() -> {
+                if(periodic.incrementAndGet() < 5) {
+                    self[0].start(10, TimeUnit.MILLISECONDS);
+                }
+            });
+            self[0].start(0, TimeUnit.MILLISECONDS);
+            waitFor(() -> periodic.get() == 5, 2000);
+            Thread.sleep(50);
+            assertEquals(5, periodic.get());
+        } finally {
+            timer.stop();
+        }
+        assertTrue(timer.isStopped());
+        assertThrows(IllegalStateException.class, () -> timer.newTimeout(() -> {}).start(1, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new HashedWheelTimer(0, TimeUnit.MILLISECONDS, 8, null));
+        assertThrows(IllegalArgumentException.class, () -> new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 0, null));
+        assertThrows(NullPointerException.class, () -> timer.newTimeout(null));
+    }
+
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        try {
+            int nbTimeouts = 10000;
+            AtomicInteger expirations = new AtomicInteger(0);
+            for(int i = 0; i < nbTimeouts; ++i) {
+                HashedWheelTimer.Timeout timeout = timer.newTimeout(expirations::incrementAndGet);
+                timeout.start(i % 200, TimeUnit.MILLISECONDS);
+                if(i % 2 == 1) {
+                    timeout.cancel();
+                }
+            }
+            waitFor(() -> expirations.get() == nbTimeouts / 2, 5000);
+            Thread.sleep(100);
+            assertEquals(nbTimeouts / 2, expirations.get());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while(!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
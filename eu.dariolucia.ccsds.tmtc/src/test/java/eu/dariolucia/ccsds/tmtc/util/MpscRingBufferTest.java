@@ -0,0 +1,101 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    public void testOfferPoll() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+        assertNull(ring.peek());
+        for(int i = 0; i < 4; ++i) {
+            assertEquals(i, ring.size());
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.peek());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        for(int i = 1; i < 5; ++i) {
+            assertEquals(i, ring.poll());
+        }
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+        // Several rounds on the same slots
+        for(int i = 0; i < 10; ++i) {
+            assertTrue(ring.offer(i));
+            assertEquals(i, ring.poll());
+        }
+
+        assertEquals(1, new MpscRingBuffer<>(1).capacity());
+        assertEquals(1024, new MpscRingBuffer<>(1024).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+        assertThrows(NullPointerException.class, () -> ring.offer(null));
+    }
+
+    @Test
+    public void testProducersConsumer() throws InterruptedException {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(16);
+        int producers = 4;
+        int elements = 20000;
+        List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; ++p) {
+            int producer = p;
+            Thread t = new Thread(() -> {
+                for(int i = 0; i < elements; ++i) {
+                    while(!ring.offer(producer * elements + i)) {
+                        // Yield instead of spinning, the test can run on a single core
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        int[] expected = new int[producers];
+        int received = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while(received < producers * elements && System.currentTimeMillis() < deadline) {
+            Integer value = ring.poll();
+            if(value == null) {
+                Thread.yield();
+                continue;
+            }
+            // FIFO order for each producer
+            int producer = value / elements;
+            assertEquals(expected[producer]++, value % elements);
+            ++received;
+        }
+        for(Thread t : threads) {
+            t.join(10000);
+            assertFalse(t.isAlive());
+        }
+        assertEquals(producers * elements, received);
+        assertTrue(ring.isEmpty());
+    }
+}
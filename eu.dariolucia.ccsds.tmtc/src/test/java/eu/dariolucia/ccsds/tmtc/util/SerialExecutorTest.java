@@ -0,0 +1,160 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerialExecutorTest {
+
+    @Test
+    public void testSerialExecution() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            int nbExecutors = 8;
+            int nbTasks = 1000;
+            SerialExecutor[] executors = new SerialExecutor[nbExecutors];
+            int[] counters = new int[nbExecutors];
+            AtomicInteger[] running = new AtomicInteger[nbExecutors];
+            AtomicInteger violations = new AtomicInteger(0);
+            for(int i = 0; i < nbExecutors; ++i) {
+                executors[i] = new SerialExecutor(pool);
+                running[i] = new AtomicInteger(0);
+            }
+            for(int t = 0; t < nbTasks; ++t) {
+                for(int i = 0; i < nbExecutors; ++i) {
+                    int idx = i;
+                    int expected = t;
+                    executors[i].execute(() -> {
+                        // One task at a time, in submission order, on the executor thread
+                        if(running[idx].incrementAndGet() != 1 || counters[idx] != expected || !executors[idx].isExecutorThread()) {
+                            violations.incrementAndGet();
+                        }
+                        counters[idx]++;
+                        running[idx].decrementAndGet();
+                    });
+                }
+            }
+            for(SerialExecutor executor : executors) {
+                assertFalse(executor.isExecutorThread());
+                executor.shutdown();
+                assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+                assertTrue(executor.isTerminated());
+                assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+            }
+            assertEquals(0, violations.get());
+            for(int counter : counters) {
+                assertEquals(nbTasks, counter);
+            }
+            // The underlying executor is still running
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShutdownNowAndExceptions() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            SerialExecutor executor = new SerialExecutor(pool);
+            // Exceptions do not stop the execution
+            executor.execute(() -> {
+                throw new IllegalStateException("Test exception, ignore");
+            });
+            Future<Integer> result = executor.submit(() -> 42);
+            assertEquals(42, result.get(5, TimeUnit.SECONDS));
+
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> {});
+            executor.execute(() -> {});
+            List<Runnable> pending = executor.shutdownNow();
+            assertEquals(2, pending.size());
+            assertTrue(executor.isShutdown());
+            // Not terminated until the running task completes
+            assertFalse(executor.isTerminated());
+            release.countDown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertThrows(NullPointerException.class, () -> new SerialExecutor(null));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testErrorPropagation() throws Exception {
+        List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        CountDownLatch errorReported = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((th, e) -> {
+                uncaught.add(e);
+                errorReported.countDown();
+            });
+            return t;
+        });
+        try {
+            SerialExecutor executor = new SerialExecutor(pool);
+            AtomicInteger executed = new AtomicInteger(0);
+            executor.execute(() -> {
+                throw new TestError();
+            });
+            executor.execute(executed::incrementAndGet);
+            // The error is not swallowed: it reaches the thread of the underlying executor
+            assertTrue(errorReported.await(5, TimeUnit.SECONDS));
+            assertEquals(1, uncaught.size());
+            assertTrue(uncaught.get(0) instanceof TestError);
+            // The next tasks are still executed
+            Future<Integer> result = executor.submit(() -> 42);
+            assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            assertEquals(1, executed.get());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class TestError extends Error {
+        private TestError() {
+            super("Test error, ignore");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *   Copyright (c) 2019 Dario Lucia (https://www.dariolucia.eu)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package eu.dariolucia.ccsds.tmtc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpscRingBufferTest {
+
+    @Test
+    public void testOfferPoll() {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+        assertNull(ring.peek());
+        for(int i = 0; i < 4; ++i) {
+            assertEquals(4 - i, ring.remainingCapacity());
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.remainingCapacity());
+        assertEquals(0, ring.peek());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        for(int i = 1; i < 5; ++i) {
+            assertEquals(i, ring.poll());
+        }
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+
+        assertEquals(1, new SpscRingBuffer<>(1).capacity());
+        assertEquals(1024, new SpscRingBuffer<>(1024).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<>(0));
+        assertThrows(NullPointerException.class, () -> ring.offer(null));
+    }
+
+    @Test
+    public void testProducerConsumer() throws InterruptedException {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(16);
+        int elements = 200000;
+        long[] sum = new long[1];
+        // Failures on the consumer thread are recorded and checked on the test thread
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                int expected = 0;
+                while(expected < elements) {
+                    Integer value = ring.poll();
+                    if(value == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    // FIFO order
+                    if(value != expected) {
+                        failure.set(new AssertionError("Expected " + expected + ", got " + value));
+                        return;
+                    }
+                    ++expected;
+                    sum[0] += value;
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        consumer.start();
+        for(int i = 0; i < elements && consumer.isAlive(); ++i) {
+            // Stop producing if the consumer terminated
+            while(!ring.offer(i) && consumer.isAlive()) {
+                Thread.yield();
+            }
+        }
+        consumer.join(10000);
+        assertFalse(consumer.isAlive());
+        assertNull(failure.get(), () -> "Consumer failure: " + failure.get());
+        assertEquals((long) elements * (elements - 1) / 2, sum[0]);
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -16,6 +16,9 @@
 
 package eu.dariolucia.ccsds.tmtc.util;
 
+import eu.dariolucia.ccsds.tmtc.datalink.builder.TmTransferFrameBuilder;
+import eu.dariolucia.ccsds.tmtc.datalink.pdu.TmTransferFrame;
+
 import static org.junit.jupiter.api.Assertions.fail;
 
 public final class TestUtil {
@@ -32,4 +35,21 @@ public final class TestUtil {
             }
         }
     }
+
+    /**
+     * Build a 128 bytes TM frame without secondary header and OCF, filled with zeroes. The master channel frame count
+     * and the virtual channel frame count are both set to the provided counter.
+     */
+    public static TmTransferFrame tmFrame(int scid, int vcid, int counter, boolean fecf) {
+        TmTransferFrameBuilder builder = TmTransferFrameBuilder.create(128, 0, false, fecf)
+                .setSpacecraftId(scid)
+                .setVirtualChannelId(vcid)
+                .setMasterChannelFrameCount(counter)
+                .setVirtualChannelFrameCount(counter)
+                .setPacketOrderFlag(false)
+                .setSynchronisationFlag(true)
+                .setSegmentLengthIdentifier(3);
+        builder.addData(new byte[builder.getFreeUserDataLength()]);
+        return builder.build();
+    }
 }